@@ -34,6 +34,14 @@ public class CustomerController {
         return ResponseEntity.ok(service.findAllCustomers());
     }
 
+    // Unknown ids are left out of the result
+    @GetMapping("/batch")
+    public ResponseEntity<List<CustomerResponse>> findCustomersByIds(
+            @RequestParam("ids") List<String> customerIds
+    ) {
+        return ResponseEntity.ok(service.findCustomersByIds(customerIds));
+    }
+
     @GetMapping("/exists/{customer-id}")
     public ResponseEntity<Boolean> existsById(
             @PathVariable("customer-id") String customerId
@@ -0,0 +1,29 @@
+package com.pavils.ecommerce.customer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tells the services that keep copies of customers, such as the order service's lookup cache,
+ * that a customer changed. Keyed by customer id, so the events of one customer stay in order.
+ */
+@Service
+@RequiredArgsConstructor
+public class CustomerEventProducer {
+
+    private final KafkaTemplate<String, CustomerEvent> kafkaTemplate;
+
+    public void sendEvent(CustomerEvent event) {
+        Message<CustomerEvent> message = MessageBuilder
+                .withPayload(event)
+                .setHeader(KafkaHeaders.TOPIC, "customer-topic")
+                .setHeader(KafkaHeaders.KEY, event.customerId())
+                .build();
+
+        kafkaTemplate.send(message);
+    }
+}
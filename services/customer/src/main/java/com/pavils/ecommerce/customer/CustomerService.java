@@ -14,6 +14,7 @@ public class CustomerService {
 
     private final CustomerRepository repository;
     private final CustomerMapper mapper;
+    private final CustomerEventProducer eventProducer;
 
     public String createCustomer(@Valid CustomerRequest request) {
         var customer = repository.save(mapper.toCustomer(request));
@@ -28,6 +29,7 @@ public class CustomerService {
 
         mergeCustomer(request, customer);
         repository.save(customer);
+        eventProducer.sendEvent(new CustomerEvent(CustomerEventType.UPDATED, customer.getId()));
     }
 
     private void mergeCustomer(@Valid CustomerRequest request, Customer customer) {
@@ -69,7 +71,15 @@ public class CustomerService {
                 ));
     }
 
+    public List<CustomerResponse> findCustomersByIds(List<String> customerIds) {
+        return repository.findAllById(customerIds)
+                .stream()
+                .map(mapper::toCustomerResponse)
+                .toList();
+    }
+
     public void deleteCustomer(String customerId) {
         repository.deleteById(customerId);
+        eventProducer.sendEvent(new CustomerEvent(CustomerEventType.DELETED, customerId));
     }
 }
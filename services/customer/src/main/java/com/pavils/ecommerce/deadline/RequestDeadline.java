@@ -0,0 +1,36 @@
+package com.pavils.ecommerce.deadline;
+
+import io.micrometer.core.instrument.Metrics;
+
+import java.time.Instant;
+
+/**
+ * The deadline of a request: the instant, sent by the gateway in {@value #HEADER} as epoch
+ * milliseconds, after which nobody waits for the answer any more. Requests that arrive after it
+ * are counted as {@code deadline.work.avoided}, tagged by stage.
+ */
+public final class RequestDeadline {
+
+    public static final String HEADER = "X-Request-Deadline";
+
+    private RequestDeadline() {
+    }
+
+    public static void avoided(String stage) {
+        Metrics.counter("deadline.work.avoided", "stage", stage).increment();
+    }
+
+    /**
+     * @return the deadline in {@code header}, or {@code null} if it is missing or malformed
+     */
+    static Instant parse(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(header.strip()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
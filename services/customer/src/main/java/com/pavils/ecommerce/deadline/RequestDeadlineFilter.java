@@ -0,0 +1,30 @@
+package com.pavils.ecommerce.deadline;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Answers a request that arrives after its deadline with 504 before any work is done.
+ */
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var deadline = RequestDeadline.parse(request.getHeader(RequestDeadline.HEADER));
+        if (deadline != null && !deadline.isAfter(Instant.now())) {
+            RequestDeadline.avoided("arrival");
+            response.setStatus(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
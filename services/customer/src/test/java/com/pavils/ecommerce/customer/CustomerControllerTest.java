@@ -183,6 +183,17 @@ class CustomerControllerTest {
                 .andExpect(jsonPath("$.email").value("alice@x.com"));
     }
 
+    @Test
+    void findCustomersByIds_Returns200WithFoundCustomers() throws Exception {
+        CustomerResponse response = new CustomerResponse("c1", "Alice", "Smith", "alice@x.com", address);
+        when(service.findCustomersByIds(List.of("c1", "missing"))).thenReturn(List.of(response));
+
+        mockMvc.perform(get("/api/v1/customers/batch").param("ids", "c1", "missing"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value("c1"));
+    }
+
     @Test
     void findCustomerById_NotFound_Returns404() throws Exception {
         when(service.findCustomerById("missing"))
@@ -26,6 +26,9 @@ class CustomerServiceTest {
     @Mock
     private CustomerMapper mapper;
 
+    @Mock
+    private CustomerEventProducer eventProducer;
+
     @InjectMocks
     private CustomerService service;
 
@@ -68,6 +71,21 @@ class CustomerServiceTest {
                         "Cannot update customer:: No customer found with the provided id:: missing-id");
 
         verify(repository, never()).save(any());
+        verify(eventProducer, never()).sendEvent(any());
+    }
+
+    @Test
+    void updateCustomer_ExistingCustomer_PublishesUpdatedEventAfterSaving() {
+        Customer existing = Customer.builder().id("cust-1").firstname("John").build();
+        CustomerRequest request = new CustomerRequest("cust-1", "Jane", null, null, null);
+
+        when(repository.findById("cust-1")).thenReturn(Optional.of(existing));
+
+        service.updateCustomer(request);
+
+        var inOrder = inOrder(repository, eventProducer);
+        inOrder.verify(repository).save(existing);
+        inOrder.verify(eventProducer).sendEvent(new CustomerEvent(CustomerEventType.UPDATED, "cust-1"));
     }
 
     @Test
@@ -214,6 +232,19 @@ class CustomerServiceTest {
                         "No customer found with the provided id:: missing");
     }
 
+    // ── findCustomersByIds ──────────────────────────────────────────────────
+
+    @Test
+    void findCustomersByIds_ReturnsFoundCustomersMapped() {
+        Customer customer = Customer.builder().id("cust-1").build();
+        CustomerResponse response = new CustomerResponse("cust-1", "John", "Doe", "j@x.com", null);
+
+        when(repository.findAllById(List.of("cust-1", "missing"))).thenReturn(List.of(customer));
+        when(mapper.toCustomerResponse(customer)).thenReturn(response);
+
+        assertThat(service.findCustomersByIds(List.of("cust-1", "missing"))).containsExactly(response);
+    }
+
     // ── deleteCustomer ──────────────────────────────────────────────────────
 
     @Test
@@ -222,4 +253,13 @@ class CustomerServiceTest {
 
         verify(repository).deleteById("cust-1");
     }
+
+    @Test
+    void deleteCustomer_PublishesDeletedEventAfterDeleting() {
+        service.deleteCustomer("cust-1");
+
+        var inOrder = inOrder(repository, eventProducer);
+        inOrder.verify(repository).deleteById("cust-1");
+        inOrder.verify(eventProducer).sendEvent(new CustomerEvent(CustomerEventType.DELETED, "cust-1"));
+    }
 }
@@ -0,0 +1,38 @@
+package com.pavils.gateway;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps endpoints that services only offer to each other, under a {@value #INTERNAL_SEGMENT}
+ * path segment, off every route, the discovery-locator ones included. Such a request is answered
+ * with 404 without being routed.
+ */
+@Component
+public class InternalPathFilter implements GlobalFilter, Ordered {
+
+    public static final String INTERNAL_SEGMENT = "internal";
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        var internal = exchange.getRequest().getPath().pathWithinApplication().elements().stream()
+                .anyMatch(element -> element instanceof PathContainer.PathSegment segment
+                        && INTERNAL_SEGMENT.equalsIgnoreCase(segment.valueToMatch()));
+        if (internal) {
+            exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+            return exchange.getResponse().setComplete();
+        }
+        return chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,86 @@
+package com.pavils.gateway;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Gives every routed request a deadline, sent on as {@value #DEADLINE_HEADER} in epoch
+ * milliseconds, so the services behind the gateway can skip work nobody waits for any more.
+ * <p>
+ * A client may ask for its own budget with {@value #TIMEOUT_HEADER} in milliseconds; a deadline
+ * already set by a service calling another through the gateway is kept. Either way the deadline
+ * is capped at the maximum timeout, and a request whose deadline already passed is answered with
+ * 504 without being routed.
+ */
+@Component
+public class RequestDeadlineFilter implements GlobalFilter, Ordered {
+
+    public static final String DEADLINE_HEADER = "X-Request-Deadline";
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private final Duration defaultTimeout;
+    private final Duration maxTimeout;
+
+    public RequestDeadlineFilter(
+            @Value("${application.deadline.default-timeout:5000}") long defaultTimeoutMillis,
+            @Value("${application.deadline.max-timeout:30000}") long maxTimeoutMillis
+    ) {
+        this.defaultTimeout = Duration.ofMillis(defaultTimeoutMillis);
+        this.maxTimeout = Duration.ofMillis(maxTimeoutMillis);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        var now = Instant.now();
+        var headers = exchange.getRequest().getHeaders();
+        var latest = now.plus(maxTimeout);
+
+        var deadline = parseMillis(headers.getFirst(DEADLINE_HEADER))
+                .map(Instant::ofEpochMilli)
+                .orElseGet(() -> now.plus(parseMillis(headers.getFirst(TIMEOUT_HEADER))
+                        .map(Duration::ofMillis)
+                        .orElse(defaultTimeout)));
+        if (deadline.isAfter(latest)) {
+            deadline = latest;
+        }
+        if (!deadline.isAfter(now)) {
+            exchange.getResponse().setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+            return exchange.getResponse().setComplete();
+        }
+
+        var deadlineMillis = String.valueOf(deadline.toEpochMilli());
+        var request = exchange.getRequest().mutate()
+                .headers(h -> {
+                    h.remove(TIMEOUT_HEADER);
+                    h.set(DEADLINE_HEADER, deadlineMillis);
+                })
+                .build();
+        return chain.filter(exchange.mutate().request(request).build());
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private static Optional<Long> parseMillis(String value) {
+        if (value == null || value.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Long.parseLong(value.strip()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
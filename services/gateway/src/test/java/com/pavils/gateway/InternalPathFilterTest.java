@@ -0,0 +1,50 @@
+package com.pavils.gateway;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InternalPathFilterTest {
+
+    private final InternalPathFilter filter = new InternalPathFilter();
+
+    @Test
+    void filter_InternalSegment_AnswersNotFoundWithoutRouting() {
+        var direct = filter(MockServerHttpRequest.post("/api/v1/products/internal/purchases/p-1/cancel"));
+        var discovered = filter(MockServerHttpRequest.post("/PRODUCT-SERVICE/api/v1/products/Internal/purchases/p-1/cancel"));
+
+        assertThat(direct.routed()).isNull();
+        assertThat(direct.exchange().getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(discovered.routed()).isNull();
+        assertThat(discovered.exchange().getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void filter_PublicPath_IsRouted() {
+        var purchase = filter(MockServerHttpRequest.post("/api/v1/products/purchase"));
+        var lookalike = filter(MockServerHttpRequest.get("/api/v1/products/search?q=internal"));
+
+        assertThat(purchase.routed()).isNotNull();
+        assertThat(lookalike.routed()).isNotNull();
+    }
+
+    private Result filter(MockServerHttpRequest.BaseBuilder<?> request) {
+        var exchange = MockServerWebExchange.from(request);
+        var routed = new AtomicReference<ServerWebExchange>();
+        filter.filter(exchange, e -> {
+            routed.set(e);
+            return Mono.empty();
+        }).block();
+        return new Result(exchange, routed.get());
+    }
+
+    private record Result(ServerWebExchange exchange, ServerWebExchange routed) {
+    }
+}
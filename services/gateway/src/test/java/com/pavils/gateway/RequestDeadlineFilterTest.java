@@ -0,0 +1,81 @@
+package com.pavils.gateway;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestDeadlineFilterTest {
+
+    private final RequestDeadlineFilter filter = new RequestDeadlineFilter(5_000, 30_000);
+
+    @Test
+    void filter_NoHeaders_SetsDefaultDeadline() {
+        var before = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        var routed = route(MockServerHttpRequest.get("/api/v1/orders"));
+
+        assertThat(deadline(routed)).isBetween(before.plusSeconds(5), Instant.now().plusSeconds(5));
+    }
+
+    @Test
+    void filter_RequestedTimeout_BecomesDeadlineAndIsNotForwarded() {
+        var before = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        var routed = route(MockServerHttpRequest.get("/api/v1/orders")
+                .header(RequestDeadlineFilter.TIMEOUT_HEADER, "800"));
+
+        assertThat(deadline(routed)).isBetween(before.plusMillis(800), Instant.now().plusMillis(800));
+        assertThat(routed.getRequest().getHeaders().containsKey(RequestDeadlineFilter.TIMEOUT_HEADER)).isFalse();
+    }
+
+    @Test
+    void filter_ExistingDeadline_IsKeptButCapped() {
+        var upstream = Instant.now().plusSeconds(2).toEpochMilli();
+        var kept = route(MockServerHttpRequest.get("/api/v1/products/purchase")
+                .header(RequestDeadlineFilter.DEADLINE_HEADER, String.valueOf(upstream)));
+        var capped = route(MockServerHttpRequest.get("/api/v1/products/purchase")
+                .header(RequestDeadlineFilter.DEADLINE_HEADER, String.valueOf(Long.MAX_VALUE)));
+
+        assertThat(deadline(kept).toEpochMilli()).isEqualTo(upstream);
+        assertThat(deadline(capped)).isBefore(Instant.now().plusSeconds(31));
+    }
+
+    @Test
+    void filter_ExpiredDeadline_AnswersGatewayTimeoutWithoutRouting() {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/v1/orders")
+                .header(RequestDeadlineFilter.DEADLINE_HEADER, String.valueOf(Instant.now().minusSeconds(1).toEpochMilli())));
+        var routed = new AtomicReference<ServerWebExchange>();
+
+        filter.filter(exchange, e -> {
+            routed.set(e);
+            return Mono.empty();
+        }).block();
+
+        assertThat(routed.get()).isNull();
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+    }
+
+    private ServerWebExchange route(MockServerHttpRequest.BaseBuilder<?> request) {
+        var routed = new AtomicReference<ServerWebExchange>();
+        filter.filter(MockServerWebExchange.from(request), exchange -> {
+            routed.set(exchange);
+            return Mono.empty();
+        }).block();
+        assertThat(routed.get()).isNotNull();
+        return routed.get();
+    }
+
+    private static Instant deadline(ServerWebExchange exchange) {
+        var header = exchange.getRequest().getHeaders().getFirst(RequestDeadlineFilter.DEADLINE_HEADER);
+        return Instant.ofEpochMilli(Long.parseLong(header));
+    }
+}
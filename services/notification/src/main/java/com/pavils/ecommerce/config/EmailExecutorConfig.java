@@ -0,0 +1,33 @@
+package com.pavils.ecommerce.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class EmailExecutorConfig {
+
+    public static final String EMAIL_EXECUTOR = "emailExecutor";
+
+    // Renders and queues emails off the listener threads. Its queue is bounded, and the Kafka
+    // listeners are paused long before it fills; should it fill anyway, the listener thread renders
+    // the email itself, which slows consumption down instead of piling tasks up on the heap
+    @Bean(EMAIL_EXECUTOR)
+    public ThreadPoolTaskExecutor emailExecutor(
+            @Value("${application.email.executor.threads:4}") int threads,
+            @Value("${application.email.executor.queue-capacity:5000}") int queueCapacity
+    ) {
+        var executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("email-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -0,0 +1,97 @@
+package com.pavils.ecommerce.email;
+
+import com.pavils.ecommerce.kafka.order.Product;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Renders the confirmation emails. The engine keeps parsed templates and compiled expressions in
+ * its caches ({@code spring.thymeleaf.cache}, {@code spring.thymeleaf.enable-spring-el-compiler});
+ * both are filled before the Kafka listeners start, so the first emails after a deploy do not pay
+ * for parsing and compiling. Each thread renders into a buffer of its own that is reused from one
+ * email to the next.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailRenderer implements SmartInitializingSingleton {
+
+    // SpEL compiles an expression once it was interpreted this many times
+    private static final int WARM_UP_RENDERS = 200;
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    // An email with a very long product list is not worth keeping its buffer for
+    private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+    private static final ThreadLocal<StringWriter> BUFFERS =
+            ThreadLocal.withInitial(() -> new StringWriter(INITIAL_BUFFER_SIZE));
+
+    private final SpringTemplateEngine templateEngine;
+
+    public String renderPaymentConfirmation(String customerName, BigDecimal amount, String orderReference) {
+        var context = new Context();
+        context.setVariable("customerName", customerName);
+        context.setVariable("amount", amount);
+        context.setVariable("orderReference", orderReference);
+        return render(EmailTemplates.PAYMENT_CONFIRMATION, context);
+    }
+
+    public String renderOrderConfirmation(
+            String customerName,
+            BigDecimal totalAmount,
+            String orderReference,
+            List<Product> products
+    ) {
+        var context = new Context();
+        context.setVariable("customerName", customerName);
+        context.setVariable("totalAmount", totalAmount);
+        context.setVariable("orderReference", orderReference);
+        context.setVariable("products", products);
+        return render(EmailTemplates.ORDER_CONFIRMATION, context);
+    }
+
+    public String renderOrderPaymentConfirmation(
+            String customerName,
+            BigDecimal totalAmount,
+            BigDecimal amount,
+            String orderReference,
+            List<Product> products
+    ) {
+        var context = new Context();
+        context.setVariable("customerName", customerName);
+        context.setVariable("totalAmount", totalAmount);
+        context.setVariable("amount", amount);
+        context.setVariable("orderReference", orderReference);
+        context.setVariable("products", products);
+        return render(EmailTemplates.ORDER_PAYMENT_CONFIRMATION, context);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        var started = System.nanoTime();
+        var products = List.of(new Product(1, "Warm-up", "Warm-up", BigDecimal.ONE, 1));
+        for (int i = 0; i < WARM_UP_RENDERS; i++) {
+            renderPaymentConfirmation("Warm-up", BigDecimal.ONE, "WARM-UP");
+            renderOrderConfirmation("Warm-up", BigDecimal.ONE, "WARM-UP", products);
+            renderOrderPaymentConfirmation("Warm-up", BigDecimal.ONE, BigDecimal.ONE, "WARM-UP", products);
+        }
+        log.info("Warmed up the email templates in {} ms", (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private String render(EmailTemplates template, Context context) {
+        var buffer = BUFFERS.get();
+        buffer.getBuffer().setLength(0);
+        templateEngine.process(template.getTemplate(), context, buffer);
+        var html = buffer.toString();
+        if (buffer.getBuffer().capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            BUFFERS.remove();
+        }
+        return html;
+    }
+}
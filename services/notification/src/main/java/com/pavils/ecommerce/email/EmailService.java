@@ -1,102 +1,114 @@
 package com.pavils.ecommerce.email;
 
+import com.pavils.ecommerce.config.EmailExecutorConfig;
 import com.pavils.ecommerce.kafka.order.Product;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.context.Context;
-import org.thymeleaf.spring6.SpringTemplateEngine;
 
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Renders emails on the email executor and hands them to {@link SmtpDispatcher}. Each send returns
+ * a future that completes once the SMTP server accepted the email, or exceptionally if it could
+ * not be rendered or sent, so callers can tell a delivered email from a lost one without tying up
+ * an executor thread while it waits for its SMTP batch.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class EmailService {
     private final JavaMailSender mailSender;
-    private final SpringTemplateEngine templateEngine;
+    private final EmailRenderer emailRenderer;
+    private final SmtpDispatcher smtpDispatcher;
+    private final Executor emailExecutor;
+
+    public EmailService(
+            JavaMailSender mailSender,
+            EmailRenderer emailRenderer,
+            SmtpDispatcher smtpDispatcher,
+            @Qualifier(EmailExecutorConfig.EMAIL_EXECUTOR) Executor emailExecutor
+    ) {
+        this.mailSender = mailSender;
+        this.emailRenderer = emailRenderer;
+        this.smtpDispatcher = smtpDispatcher;
+        this.emailExecutor = emailExecutor;
+    }
 
-    @Async
-    public void sendPaymentSuccessEmail(
+    public CompletableFuture<Void> sendPaymentSuccessEmail(
             String destinationEmail,
             String customerName,
             BigDecimal amount,
             String orderReference
-    ) throws MessagingException {
-        MimeMessage mimeMessage = mailSender.createMimeMessage();
-        MimeMessageHelper messageHelper = new MimeMessageHelper(
-                mimeMessage,
-                MimeMessageHelper.MULTIPART_MODE_RELATED,
-                StandardCharsets.UTF_8.name()
-        );
-
-        messageHelper.setFrom("pavils.kuzmins@gmail.com");
-
-        final String templateName = EmailTemplates.PAYMENT_CONFIRMATION.getTemplate();
-
-        Map<String, Object> variables = new HashMap<>();
-        variables.put("customerName", customerName);
-        variables.put("amount", amount);
-        variables.put("orderReference", orderReference);
-
-        Context context = new Context();
-        context.setVariables(variables);
-        messageHelper.setSubject(EmailTemplates.PAYMENT_CONFIRMATION.getSubject());
-
-        sentEmail(destinationEmail, mimeMessage, messageHelper, templateName, context);
+    ) {
+        return sendEmail(destinationEmail, EmailTemplates.PAYMENT_CONFIRMATION,
+                () -> emailRenderer.renderPaymentConfirmation(customerName, amount, orderReference));
     }
 
-    @Async
-    public void sendOrderSuccessEmail(
+    public CompletableFuture<Void> sendOrderSuccessEmail(
             String destinationEmail,
             String customerName,
             BigDecimal amount,
             String orderReference,
             List<Product> products
-    ) throws MessagingException {
-        MimeMessage mimeMessage = mailSender.createMimeMessage();
-        MimeMessageHelper messageHelper = new MimeMessageHelper(
-                mimeMessage,
-                MimeMessageHelper.MULTIPART_MODE_RELATED,
-                StandardCharsets.UTF_8.name()
-        );
-
-        messageHelper.setFrom("pavils.kuzmins@gmail.com");
-
-        final String templateName = EmailTemplates.ORDER_CONFIRMATION.getTemplate();
-
-        Map<String, Object> variables = new HashMap<>();
-        variables.put("customerName", customerName);
-        variables.put("totalAmount", amount);
-        variables.put("orderReference", orderReference);
-        variables.put("products", products);
+    ) {
+        return sendEmail(destinationEmail, EmailTemplates.ORDER_CONFIRMATION,
+                () -> emailRenderer.renderOrderConfirmation(customerName, amount, orderReference, products));
+    }
 
-        Context context = new Context();
-        context.setVariables(variables);
-        messageHelper.setSubject(EmailTemplates.ORDER_CONFIRMATION.getSubject());
+    /**
+     * One email confirming both the order and its payment, instead of one for each.
+     */
+    public CompletableFuture<Void> sendOrderAndPaymentSuccessEmail(
+            String destinationEmail,
+            String customerName,
+            BigDecimal totalAmount,
+            BigDecimal amountPaid,
+            String orderReference,
+            List<Product> products
+    ) {
+        return sendEmail(destinationEmail, EmailTemplates.ORDER_PAYMENT_CONFIRMATION,
+                () -> emailRenderer.renderOrderPaymentConfirmation(customerName, totalAmount, amountPaid, orderReference, products));
+    }
 
-        sentEmail(destinationEmail, mimeMessage, messageHelper, templateName, context);
+    private CompletableFuture<Void> sendEmail(String destinationEmail, EmailTemplates template, Supplier<String> html) {
+        return CompletableFuture
+                .supplyAsync(() -> mimeMessage(destinationEmail, template, html.get()), emailExecutor)
+                .thenCompose(smtpDispatcher::send)
+                .whenComplete((sent, failure) -> {
+                    if (failure == null) {
+                        log.info("Sent email to {} with template {}", destinationEmail, template.getTemplate());
+                    } else {
+                        log.warn("Error while sending email to {} with template {}", destinationEmail, template.getTemplate(), failure);
+                    }
+                });
     }
 
-    private void sentEmail(String destinationEmail, MimeMessage mimeMessage, MimeMessageHelper messageHelper, String templateName, Context context) {
+    private MimeMessage mimeMessage(String destinationEmail, EmailTemplates template, String html) {
         try {
-            String htmlTemplate = templateEngine.process(templateName, context);
-            messageHelper.setText(htmlTemplate, true);
-
+            MimeMessage mimeMessage = mailSender.createMimeMessage();
+            MimeMessageHelper messageHelper = new MimeMessageHelper(
+                    mimeMessage,
+                    MimeMessageHelper.MULTIPART_MODE_RELATED,
+                    StandardCharsets.UTF_8.name()
+            );
+
+            messageHelper.setFrom("pavils.kuzmins@gmail.com");
+            messageHelper.setSubject(template.getSubject());
+            messageHelper.setText(html, true);
             messageHelper.setTo(destinationEmail);
-            mailSender.send(mimeMessage);
-            log.info("Sent email to {} with template {}", destinationEmail, templateName);
+            return mimeMessage;
         } catch (MessagingException e) {
-            log.warn("Error while sending email to {} with template {}", destinationEmail, templateName);
+            throw new CompletionException(e);
         }
     }
 }
@@ -6,7 +6,8 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public enum EmailTemplates {
     PAYMENT_CONFIRMATION("payment-confirmation.html", "Payment successfully processed"),
-    ORDER_CONFIRMATION("order-confirmation.html", "Order successfully processed");
+    ORDER_CONFIRMATION("order-confirmation.html", "Order successfully processed"),
+    ORDER_PAYMENT_CONFIRMATION("order-payment-confirmation.html", "Order successfully processed and paid");
 
     @Getter
     private final String template;
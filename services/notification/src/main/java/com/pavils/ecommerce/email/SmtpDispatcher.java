@@ -0,0 +1,206 @@
+package com.pavils.ecommerce.email;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Sends emails over a small pool of SMTP connections that stay open between messages, instead of
+ * the connection, STARTTLS handshake and AUTH per email that {@code JavaMailSender.send} costs.
+ * <p>
+ * Messages wait in a bounded queue. Each worker of the pool owns one connection, takes up to a
+ * batch of queued messages at a time and sends them back to back. A connection is replaced after
+ * a fixed number of messages, as many servers cap them, and closed once it has been idle for a
+ * while. When a send fails because the connection broke, the worker reconnects and retries that
+ * message once; a message the server rejects fails on its own and the connection is kept.
+ * <p>
+ * {@link #send} never blocks, as it runs on the email executor: when the queue is full the email
+ * fails at once, and is sent again like any other failed email. {@code EmailBackpressure} pauses
+ * the listeners well before that happens.
+ */
+@Component
+@Slf4j
+public class SmtpDispatcher implements AutoCloseable {
+
+    private final JavaMailSenderImpl mailSender;
+    private final BlockingQueue<PendingEmail> queue;
+    private final int batchSize;
+    private final int maxMessagesPerConnection;
+    private final Duration idleTimeout;
+    private final List<Thread> workers;
+    private volatile boolean closed;
+
+    public SmtpDispatcher(
+            JavaMailSenderImpl mailSender,
+            @Value("${application.smtp.pool-size:4}") int poolSize,
+            @Value("${application.smtp.batch-size:50}") int batchSize,
+            @Value("${application.smtp.max-messages-per-connection:100}") int maxMessagesPerConnection,
+            @Value("${application.smtp.queue-capacity:10000}") int queueCapacity,
+            @Value("${application.smtp.idle-timeout:30000}") long idleTimeoutMillis
+    ) {
+        this.mailSender = mailSender;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.idleTimeout = Duration.ofMillis(idleTimeoutMillis);
+        // Platform threads: JavaMail's transports synchronize around their socket I/O, which would
+        // pin virtual threads anyway
+        this.workers = IntStream.range(0, poolSize)
+                .mapToObj(i -> Thread.ofPlatform().daemon().name("smtp-dispatcher-" + i).start(this::work))
+                .toList();
+    }
+
+    /**
+     * Queues {@code message}.
+     *
+     * @return completed once the server accepted the message, or exceptionally if the queue is full
+     * or the message could not be sent
+     */
+    public CompletableFuture<Void> send(MimeMessage message) {
+        var email = new PendingEmail(message, new CompletableFuture<>());
+        if (closed) {
+            email.result().completeExceptionally(new IllegalStateException("The SMTP dispatcher is closed"));
+            return email.result();
+        }
+        if (!queue.offer(email)) {
+            email.result().completeExceptionally(new RejectedExecutionException("The SMTP queue is full"));
+        }
+        return email.result();
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        workers.forEach(Thread::interrupt);
+        for (var worker : workers) {
+            try {
+                worker.join(Duration.ofSeconds(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        var unsent = new ArrayList<PendingEmail>();
+        queue.drainTo(unsent);
+        unsent.forEach(email -> email.result().completeExceptionally(
+                new IllegalStateException("The SMTP dispatcher was closed before the email was sent")));
+    }
+
+    private void work() {
+        var connection = new Connection();
+        var batch = new ArrayList<PendingEmail>(batchSize);
+        try {
+            while (!closed) {
+                var first = queue.poll(idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    connection.close();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                for (var email : batch) {
+                    try {
+                        connection.send(email);
+                    } catch (RuntimeException e) {
+                        // Fails this message only; the connection may be left mid-command, so it is replaced
+                        connection.close();
+                        email.result().completeExceptionally(e);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            batch.forEach(email -> email.result().completeExceptionally(
+                    new IllegalStateException("The SMTP dispatcher was closed before the email was sent")));
+            connection.close();
+        }
+    }
+
+    private record PendingEmail(MimeMessage message, CompletableFuture<Void> result) {
+    }
+
+    /**
+     * One worker's SMTP connection, opened on the first message that needs it.
+     */
+    private final class Connection {
+
+        private Transport transport;
+        private int sent;
+
+        void send(PendingEmail email) {
+            try {
+                deliver(email.message());
+                email.result().complete(null);
+            } catch (MessagingException e) {
+                if (isConnected()) {
+                    email.result().completeExceptionally(e);
+                    return;
+                }
+                log.debug("SMTP connection lost, reconnecting", e);
+                close();
+                try {
+                    deliver(email.message());
+                    email.result().complete(null);
+                } catch (MessagingException retryFailure) {
+                    close();
+                    email.result().completeExceptionally(retryFailure);
+                }
+            }
+        }
+
+        void close() {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Could not close SMTP connection cleanly", e);
+            }
+            transport = null;
+        }
+
+        private void deliver(MimeMessage message) throws MessagingException {
+            if (transport == null) {
+                connect();
+            }
+            message.saveChanges();
+            transport.sendMessage(message, message.getAllRecipients());
+            if (++sent >= maxMessagesPerConnection) {
+                close();
+            }
+        }
+
+        private void connect() throws MessagingException {
+            var connecting = mailSender.getSession().getTransport(mailSender.getProtocol());
+            connecting.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+            transport = connecting;
+            sent = 0;
+        }
+
+        // Costs a NOOP round trip, so only asked after a failure
+        private boolean isConnected() {
+            return transport != null && transport.isConnected();
+        }
+    }
+}
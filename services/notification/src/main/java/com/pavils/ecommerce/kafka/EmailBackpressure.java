@@ -0,0 +1,106 @@
+package com.pavils.ecommerce.kafka;
+
+import com.pavils.ecommerce.email.SmtpDispatcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import static com.pavils.ecommerce.config.EmailExecutorConfig.EMAIL_EXECUTOR;
+
+/**
+ * Stops taking records from Kafka while emails pile up. The backlog is what waits in the email
+ * executor's queue plus what waits for an SMTP connection; once it reaches the high-water mark
+ * every listener container is paused, and once it drained below the low-water mark they are
+ * resumed. The records stay in Kafka meanwhile instead of on the heap. The gap between the marks
+ * keeps the containers from flapping, and the room above the high-water mark absorbs the polls
+ * that are already being processed when the pause is requested. The backlog is only checked while
+ * the listener registry runs, so containers that are still starting or already stopping are left alone.
+ */
+@Component
+@Slf4j
+public class EmailBackpressure {
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final ThreadPoolTaskExecutor emailExecutor;
+    private final SmtpDispatcher smtpDispatcher;
+    private final int highWater;
+    private final int lowWater;
+    private final Counter pauses;
+    private volatile boolean paused;
+
+    public EmailBackpressure(
+            KafkaListenerEndpointRegistry registry,
+            @Qualifier(EMAIL_EXECUTOR) ThreadPoolTaskExecutor emailExecutor,
+            SmtpDispatcher smtpDispatcher,
+            MeterRegistry meterRegistry,
+            @Value("${application.email.backpressure.high-water:2000}") int highWater,
+            @Value("${application.email.backpressure.low-water:500}") int lowWater
+    ) {
+        if (lowWater >= highWater) {
+            throw new IllegalArgumentException("The low-water mark must be below the high-water mark");
+        }
+        this.registry = registry;
+        this.emailExecutor = emailExecutor;
+        this.smtpDispatcher = smtpDispatcher;
+        this.highWater = highWater;
+        this.lowWater = lowWater;
+
+        Gauge.builder("notification.email.queue.depth", emailExecutor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Emails waiting to be rendered")
+                .tag("stage", "render")
+                .register(meterRegistry);
+        Gauge.builder("notification.email.queue.depth", smtpDispatcher, SmtpDispatcher::queued)
+                .description("Emails waiting for an SMTP connection")
+                .tag("stage", "smtp")
+                .register(meterRegistry);
+        Gauge.builder("notification.kafka.paused-partitions", this, EmailBackpressure::pausedPartitions)
+                .description("Partitions the notification listeners stopped fetching from because of the email backlog")
+                .register(meterRegistry);
+        this.pauses = Counter.builder("notification.kafka.pauses")
+                .description("Times the listeners were paused because the email backlog reached the high-water mark")
+                .register(meterRegistry);
+    }
+
+    int backlog() {
+        return emailExecutor.getQueueSize() + smtpDispatcher.queued();
+    }
+
+    @Scheduled(fixedDelayString = "${application.email.backpressure.check-interval:100}")
+    public void check() {
+        if (!registry.isRunning()) {
+            return;
+        }
+        try {
+            var backlog = backlog();
+            if (!paused && backlog >= highWater) {
+                paused = true;
+                pauses.increment();
+                registry.getListenerContainers().forEach(MessageListenerContainer::pause);
+                log.warn("Pausing the Kafka listeners, {} emails are waiting to be sent", backlog);
+            } else if (paused && backlog <= lowWater) {
+                paused = false;
+                registry.getListenerContainers().forEach(MessageListenerContainer::resume);
+                log.info("Resuming the Kafka listeners, {} emails are waiting to be sent", backlog);
+            }
+        } catch (RuntimeException e) {
+            // A failure must not cancel the schedule
+            log.error("Could not apply email backpressure", e);
+        }
+    }
+
+    private double pausedPartitions() {
+        return registry.getListenerContainers()
+                .stream()
+                .filter(MessageListenerContainer::isContainerPaused)
+                .mapToInt(container -> container.getAssignedPartitions() == null ? 0 : container.getAssignedPartitions().size())
+                .sum();
+    }
+}
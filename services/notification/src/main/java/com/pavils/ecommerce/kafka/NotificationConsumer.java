@@ -1,65 +1,89 @@
 package com.pavils.ecommerce.kafka;
 
-import com.pavils.ecommerce.email.EmailService;
 import com.pavils.ecommerce.kafka.order.OrderConfirmation;
 import com.pavils.ecommerce.kafka.payment.PaymentConfirmation;
+import com.pavils.ecommerce.notification.ConfirmationCoalescer;
+import com.pavils.ecommerce.notification.ConfirmationSweeper;
+import com.pavils.ecommerce.notification.EmailState;
 import com.pavils.ecommerce.notification.Notification;
 import com.pavils.ecommerce.notification.NotificationRepository;
-import jakarta.mail.MessagingException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
+
 import static com.pavils.ecommerce.notification.NotificationType.*;
 
+/**
+ * Takes a poll's worth of confirmations at a time and stores them with one bulk write. Offsets
+ * are committed only after the listener returns, i.e. after the write was acknowledged, so a
+ * failed write redelivers the whole batch. Each notification's id is the record's topic,
+ * partition and offset, so redelivered records are recognised as already stored and their emails
+ * are not sent twice. The emails of stored notifications go through {@link ConfirmationCoalescer},
+ * which may hold a confirmation for a moment to email it together with its partner;
+ * {@link ConfirmationSweeper} sends again any email that was stored but never confirmed sent.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NotificationConsumer {
 
     private final NotificationRepository repository;
-    private final EmailService emailService;
+    private final ConfirmationCoalescer coalescer;
 
-    @KafkaListener(topics = "payment-topic")
-    public void consumePaymentSuccessNotification(PaymentConfirmation paymentConfirmation) throws MessagingException {
-        log.info("Consuming message from the payment-topic. Topic:: {}", paymentConfirmation);
+    @KafkaListener(topics = "payment-topic", batch = "true")
+    public void consumePaymentSuccessNotifications(List<ConsumerRecord<String, PaymentConfirmation>> records) {
+        log.debug("Consuming {} messages from the payment-topic", records.size());
 
-        repository.save(Notification.builder()
-                .type(PAYMENT_CONFIRMATION)
-                .notificationDate(LocalDateTime.now())
-                .paymentConfirmation(paymentConfirmation)
-                .build()
-        );
+        var now = LocalDateTime.now();
+        var holdUntil = coalescer.holdUntil().orElse(null);
+        var stored = repository.insertNew(records.stream()
+                .filter(record -> record.value() != null)
+                .map(record -> Notification.builder()
+                        .id(notificationId(record))
+                        .type(PAYMENT_CONFIRMATION)
+                        .notificationDate(now)
+                        .paymentConfirmation(record.value())
+                        .orderReference(record.value().orderReference())
+                        .emailState(holdUntil == null ? EmailState.SENDING : EmailState.PENDING)
+                        .coalesceUntil(holdUntil)
+                        .claimedAt(holdUntil == null ? now : null)
+                        .attempts(holdUntil == null ? 1 : 0)
+                        .build())
+                .toList());
 
-        String customerName = paymentConfirmation.customerFirstname() + " " + paymentConfirmation.customerLastname();
-        emailService.sendPaymentSuccessEmail(
-                paymentConfirmation.customerEmail(),
-                customerName,
-                paymentConfirmation.amount(),
-                paymentConfirmation.orderReference()
-        );
+        coalescer.dispatch(stored);
     }
 
-    @KafkaListener(topics = "order-topic")
-    public void consumeOrderSuccessNotification(OrderConfirmation orderConfirmation) throws MessagingException {
-        log.info("Consuming message from the order-topic. Topic:: {}", orderConfirmation);
+    @KafkaListener(topics = "order-topic", batch = "true")
+    public void consumeOrderSuccessNotifications(List<ConsumerRecord<String, OrderConfirmation>> records) {
+        log.debug("Consuming {} messages from the order-topic", records.size());
+
+        var now = LocalDateTime.now();
+        var holdUntil = coalescer.holdUntil().orElse(null);
+        var stored = repository.insertNew(records.stream()
+                .filter(record -> record.value() != null)
+                .map(record -> Notification.builder()
+                        .id(notificationId(record))
+                        .type(ORDER_CONFIRMATION)
+                        .notificationDate(now)
+                        .orderConfirmation(record.value())
+                        .orderReference(record.value().orderReference())
+                        .emailState(holdUntil == null ? EmailState.SENDING : EmailState.PENDING)
+                        .coalesceUntil(holdUntil)
+                        .claimedAt(holdUntil == null ? now : null)
+                        .attempts(holdUntil == null ? 1 : 0)
+                        .build())
+                .toList());
 
-        repository.save(Notification.builder()
-                .type(ORDER_CONFIRMATION)
-                .notificationDate(LocalDateTime.now())
-                .orderConfirmation(orderConfirmation)
-                .build()
-        );
+        coalescer.dispatch(stored);
+    }
 
-        String customerName = orderConfirmation.customer().firstname() + " " + orderConfirmation.customer().lastname();
-        emailService.sendOrderSuccessEmail(
-                orderConfirmation.customer().email(),
-                customerName,
-                orderConfirmation.totalAmount(),
-                orderConfirmation.orderReference(),
-                orderConfirmation.products()
-        );
+    static String notificationId(ConsumerRecord<?, ?> record) {
+        return record.topic() + "-" + record.partition() + "-" + record.offset();
     }
 }
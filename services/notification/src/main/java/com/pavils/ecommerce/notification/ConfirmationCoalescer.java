@@ -0,0 +1,234 @@
+package com.pavils.ecommerce.notification;
+
+import com.pavils.ecommerce.email.EmailService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.pavils.ecommerce.notification.NotificationType.ORDER_CONFIRMATION;
+import static com.pavils.ecommerce.notification.NotificationType.PAYMENT_CONFIRMATION;
+
+/**
+ * Emails the order and the payment confirmation of one order together when both arrive within
+ * a short window of each other, and each on its own otherwise.
+ * <p>
+ * The first confirmation of an order is stored {@link EmailState#PENDING} with a deadline, and
+ * its partner, once stored, claims it and sends the combined email; {@link ConfirmationSweeper}
+ * sends the ones whose window closed on their own. One query finds the partners waiting for a
+ * whole poll, and one update claims them together with their counterparts from the poll.
+ * <p>
+ * Once {@code max-pending} confirmations are waiting, new ones are no longer held. The bound is
+ * checked per poll against {@link ConfirmationStore}'s shared counter, so it can be passed by at
+ * most one poll per consumer.
+ * <p>
+ * An email's notification is only recorded SENT once the SMTP server accepted it: accepted ids
+ * are queued here and written in bulk by the sweeper, and once more on shutdown.
+ */
+@Component
+@Slf4j
+public class ConfirmationCoalescer {
+
+    private static final int RECORD_BATCH_SIZE = 500;
+
+    private final ConfirmationStore store;
+    private final EmailService emailService;
+    private final boolean enabled;
+    private final Duration window;
+    private final long maxPending;
+    private final Counter combined;
+    // Notifications whose email the SMTP server accepted, to be recorded SENT by the next sweep
+    private final ConcurrentLinkedQueue<String> delivered = new ConcurrentLinkedQueue<>();
+
+    public ConfirmationCoalescer(
+            ConfirmationStore store,
+            EmailService emailService,
+            MeterRegistry meterRegistry,
+            @Value("${application.email.coalescing.enabled:false}") boolean enabled,
+            @Value("${application.email.coalescing.window:3000}") long windowMillis,
+            @Value("${application.email.coalescing.max-pending:10000}") long maxPending
+    ) {
+        this.store = store;
+        this.emailService = emailService;
+        this.enabled = enabled;
+        this.window = Duration.ofMillis(windowMillis);
+        this.maxPending = maxPending;
+
+        this.combined = Counter.builder("notification.email.coalesced")
+                .description("Order and payment confirmations emailed together")
+                .tag("outcome", "combined")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return until when a confirmation stored now should wait for its partner, or empty if it
+     * should be emailed right away
+     */
+    public Optional<LocalDateTime> holdUntil() {
+        if (!enabled || store.pending() >= maxPending) {
+            return Optional.empty();
+        }
+        return Optional.of(LocalDateTime.now().plus(window));
+    }
+
+    /**
+     * Emails freshly stored notifications: held ones together with their partner if it is
+     * already waiting, the others right away.
+     */
+    public void dispatch(List<Notification> stored) {
+        var held = new ArrayList<Notification>(stored.size());
+        for (var notification : stored) {
+            if (notification.getEmailState() == EmailState.PENDING) {
+                held.add(notification);
+            } else {
+                send(notification);
+            }
+        }
+        if (held.isEmpty()) {
+            return;
+        }
+
+        store.countPending(held.size());
+        var claimed = List.<Notification>of();
+        try {
+            claimed = claimWithPartners(held);
+            sendTogether(claimed);
+        } finally {
+            store.countPending(-claimed.size());
+        }
+    }
+
+    /**
+     * Emails claimed notifications, the order and the payment confirmation of one order together.
+     *
+     * @return how many were emailed on their own
+     */
+    int sendTogether(List<Notification> claimed) {
+        var single = 0;
+        var byOrder = claimed.stream().collect(Collectors.groupingBy(Notification::getOrderReference, LinkedHashMap::new, Collectors.toList()));
+        for (var notifications : byOrder.values()) {
+            var alone = new ArrayList<>(notifications);
+            var order = notifications.stream().filter(notification -> notification.getType() == ORDER_CONFIRMATION).findFirst();
+            var payment = notifications.stream().filter(notification -> notification.getType() == PAYMENT_CONFIRMATION).findFirst();
+            if (order.isPresent() && payment.isPresent()) {
+                combined.increment();
+                sendCombined(order.get(), payment.get());
+                alone.remove(order.get());
+                alone.remove(payment.get());
+            }
+            for (var notification : alone) {
+                send(notification);
+            }
+            single += alone.size();
+        }
+        return single;
+    }
+
+    /**
+     * Records SENT, a batch per update, what the SMTP server accepted; a failed update puts its
+     * batch back for the next call.
+     */
+    void recordDelivered() {
+        while (!delivered.isEmpty()) {
+            var ids = new ArrayList<String>(RECORD_BATCH_SIZE);
+            for (String id; ids.size() < RECORD_BATCH_SIZE && (id = delivered.poll()) != null; ) {
+                ids.add(id);
+            }
+            try {
+                store.markSent(ids);
+            } catch (RuntimeException e) {
+                delivered.addAll(ids);
+                throw e;
+            }
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        try {
+            recordDelivered();
+        } catch (RuntimeException e) {
+            log.warn("Could not record the emails sent since the last sweep; they will be sent again", e);
+        }
+    }
+
+    /**
+     * Claims the held notifications whose partner is already waiting, together with that partner;
+     * the others stay held until their partner claims them or the sweeper sends them on their own.
+     *
+     * @return what it claimed
+     */
+    private List<Notification> claimWithPartners(List<Notification> held) {
+        var candidates = Stream.concat(store.findWaitingPartners(held).stream(), held.stream())
+                .collect(Collectors.groupingBy(Notification::getOrderReference))
+                .values()
+                .stream()
+                .filter(ConfirmationCoalescer::hasBothTypes)
+                .flatMap(List::stream)
+                .toList();
+        return store.claimPending(candidates);
+    }
+
+    private static boolean hasBothTypes(List<Notification> notifications) {
+        return notifications.stream().anyMatch(notification -> notification.getType() == ORDER_CONFIRMATION)
+                && notifications.stream().anyMatch(notification -> notification.getType() == PAYMENT_CONFIRMATION);
+    }
+
+    private void sendCombined(Notification order, Notification payment) {
+        var orderConfirmation = order.getOrderConfirmation();
+        String customerName = orderConfirmation.customer().firstname() + " " + orderConfirmation.customer().lastname();
+        recordWhenSent(emailService.sendOrderAndPaymentSuccessEmail(
+                orderConfirmation.customer().email(),
+                customerName,
+                orderConfirmation.totalAmount(),
+                payment.getPaymentConfirmation().amount(),
+                orderConfirmation.orderReference(),
+                orderConfirmation.products()
+        ), order, payment);
+    }
+
+    private void send(Notification notification) {
+        if (notification.getType() == PAYMENT_CONFIRMATION) {
+            var paymentConfirmation = notification.getPaymentConfirmation();
+            String customerName = paymentConfirmation.customerFirstname() + " " + paymentConfirmation.customerLastname();
+            recordWhenSent(emailService.sendPaymentSuccessEmail(
+                    paymentConfirmation.customerEmail(),
+                    customerName,
+                    paymentConfirmation.amount(),
+                    paymentConfirmation.orderReference()
+            ), notification);
+        } else {
+            var orderConfirmation = notification.getOrderConfirmation();
+            String customerName = orderConfirmation.customer().firstname() + " " + orderConfirmation.customer().lastname();
+            recordWhenSent(emailService.sendOrderSuccessEmail(
+                    orderConfirmation.customer().email(),
+                    customerName,
+                    orderConfirmation.totalAmount(),
+                    orderConfirmation.orderReference(),
+                    orderConfirmation.products()
+            ), notification);
+        }
+    }
+
+    // A failed email is left SENDING, for the sweeper to send again once retry-after passed
+    private void recordWhenSent(CompletableFuture<Void> email, Notification... notifications) {
+        email.thenRun(() -> {
+            for (var notification : notifications) {
+                delivered.add(notification.getId());
+            }
+        });
+    }
+}
@@ -0,0 +1,206 @@
+package com.pavils.ecommerce.notification;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * The email state of stored notifications, kept in MongoDB so every instance shares it and it
+ * survives rebalances and restarts. A notification is PENDING while it waits for its partner,
+ * SENDING once claimed for sending, and SENT once the SMTP server accepted its email. Claims are
+ * conditional updates that stamp the claimer's token, so of two consumers or sweeps racing for a
+ * notification only one gets it.
+ * <p>
+ * The PENDING confirmations are also counted in a shared counter document, moved with
+ * {@code $inc} as they are stored and claimed, so every instance sees a peak at once.
+ */
+@Component
+public class ConfirmationStore implements SmartInitializingSingleton {
+
+    static final String COUNTERS = "notification_counter";
+    static final String PENDING_COUNTER = "pendingConfirmations";
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean coalescing;
+    // The shared counter as of its last change by this instance
+    private volatile long pending;
+
+    public ConfirmationStore(
+            MongoTemplate mongoTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${application.email.coalescing.enabled:false}") boolean coalescing
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.coalescing = coalescing;
+        Gauge.builder("notification.email.coalescing.pending", this, store -> store.pending)
+                .description("Confirmations waiting for their partner")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        var indexes = mongoTemplate.indexOps(Notification.class);
+        indexes.ensureIndex(new Index()
+                .on("emailState", Sort.Direction.ASC)
+                .on("claimedAt", Sort.Direction.ASC));
+        if (!coalescing) {
+            return;
+        }
+        indexes.ensureIndex(new Index()
+                .on("orderReference", Sort.Direction.ASC)
+                .on("type", Sort.Direction.ASC)
+                .on("emailState", Sort.Direction.ASC));
+        indexes.ensureIndex(new Index()
+                .on("emailState", Sort.Direction.ASC)
+                .on("coalesceUntil", Sort.Direction.ASC));
+        recountPending();
+    }
+
+    long pending() {
+        return pending;
+    }
+
+    /**
+     * @return the PENDING notifications of the orders {@code held} belong to, other than {@code held}
+     */
+    List<Notification> findWaitingPartners(List<Notification> held) {
+        return mongoTemplate.find(
+                Query.query(where("orderReference").in(held.stream().map(Notification::getOrderReference).distinct().toList())
+                        .and("emailState").is(EmailState.PENDING)
+                        .and("_id").nin(held.stream().map(Notification::getId).toList())),
+                Notification.class);
+    }
+
+    List<Notification> findExpired(int limit) {
+        return mongoTemplate.find(
+                Query.query(where("emailState").is(EmailState.PENDING).and("coalesceUntil").lt(LocalDateTime.now()))
+                        .limit(limit),
+                Notification.class);
+    }
+
+    List<Notification> findUnconfirmed(LocalDateTime claimedBefore, int limit) {
+        return mongoTemplate.find(
+                Query.query(unconfirmed(claimedBefore)).limit(limit),
+                Notification.class);
+    }
+
+    List<Notification> claimPending(List<Notification> candidates) {
+        return claim(candidates, where("emailState").is(EmailState.PENDING));
+    }
+
+    List<Notification> claimUnconfirmed(List<Notification> candidates, LocalDateTime claimedBefore) {
+        return claim(candidates, unconfirmed(claimedBefore));
+    }
+
+    /**
+     * @return how many of {@code notifications} it marked FAILED; any claimed again meanwhile are left alone
+     */
+    long markFailed(List<Notification> notifications, LocalDateTime claimedBefore) {
+        if (notifications.isEmpty()) {
+            return 0;
+        }
+        return mongoTemplate.updateMulti(
+                Query.query(where("_id").in(notifications.stream().map(Notification::getId).toList()))
+                        .addCriteria(unconfirmed(claimedBefore)),
+                Update.update("emailState", EmailState.FAILED),
+                Notification.class).getModifiedCount();
+    }
+
+    void markSent(List<String> ids) {
+        mongoTemplate.updateMulti(
+                Query.query(where("_id").in(ids).and("emailState").is(EmailState.SENDING)),
+                Update.update("emailState", EmailState.SENT),
+                Notification.class);
+    }
+
+    void countPending(long delta) {
+        if (!coalescing || delta == 0) {
+            return;
+        }
+        var counter = mongoTemplate.findAndModify(
+                Query.query(where("_id").is(PENDING_COUNTER)),
+                new Update().inc("value", delta),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                Document.class,
+                COUNTERS);
+        pending = counter.get("value", Number.class).longValue();
+    }
+
+    /**
+     * Corrects a counter that a crash between a write and its {@code $inc} left off. Only
+     * overwrites it if no {@code $inc} moved it while counting, so a lost race costs one more
+     * recount rather than a wrong count.
+     */
+    void recountPending() {
+        var counter = mongoTemplate.findById(PENDING_COUNTER, Document.class, COUNTERS);
+        var counted = mongoTemplate.count(Query.query(where("emailState").is(EmailState.PENDING)), Notification.class);
+        if (counter == null) {
+            mongoTemplate.upsert(Query.query(where("_id").is(PENDING_COUNTER)),
+                    new Update().setOnInsert("value", counted), COUNTERS);
+            pending = counted;
+            return;
+        }
+        var recounted = mongoTemplate.updateFirst(
+                Query.query(where("_id").is(PENDING_COUNTER).and("value").is(counter.get("value"))),
+                Update.update("value", counted),
+                COUNTERS);
+        if (recounted.getMatchedCount() == 1) {
+            pending = counted;
+        }
+    }
+
+    /**
+     * Claims whichever of {@code candidates} still match {@code claimable} with one update; only
+     * when another consumer or sweep took some of them meanwhile does it ask which ones it got.
+     */
+    private List<Notification> claim(List<Notification> candidates, Criteria claimable) {
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        var ids = candidates.stream().map(Notification::getId).toList();
+        var token = UUID.randomUUID().toString();
+        var claimed = mongoTemplate.updateMulti(
+                Query.query(where("_id").in(ids)).addCriteria(claimable),
+                Update.update("emailState", EmailState.SENDING)
+                        .set("claimToken", token)
+                        .set("claimedAt", LocalDateTime.now())
+                        .inc("attempts", 1),
+                Notification.class).getModifiedCount();
+        if (claimed == candidates.size()) {
+            return candidates;
+        }
+        if (claimed == 0) {
+            return List.of();
+        }
+
+        var query = Query.query(where("_id").in(ids).and("claimToken").is(token));
+        query.fields().include("_id");
+        var ours = mongoTemplate.find(query, Notification.class)
+                .stream()
+                .map(Notification::getId)
+                .collect(Collectors.toCollection(HashSet::new));
+        return candidates.stream().filter(candidate -> ours.contains(candidate.getId())).toList();
+    }
+
+    private static Criteria unconfirmed(LocalDateTime claimedBefore) {
+        return where("emailState").is(EmailState.SENDING).and("claimedAt").lt(claimedBefore);
+    }
+}
@@ -0,0 +1,117 @@
+package com.pavils.ecommerce.notification;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Does, on a schedule, what does not happen as notifications are consumed: records the emails
+ * the SMTP server accepted, sends the held confirmations whose coalescing window closed on their
+ * own, and sends again what was claimed but never confirmed sent.
+ * <p>
+ * Delivery is at least once. A notification still SENDING {@code retry-after} after it was
+ * claimed is claimed again and resent, up to {@code max-attempts} times before it is marked
+ * FAILED. An email whose acceptance was not recorded before a crash, or that was merely slower
+ * than {@code retry-after}, is therefore sent twice. The sweep runs whether or not coalescing is
+ * enabled, a batch at a time until nothing is left.
+ */
+@Component
+@Slf4j
+public class ConfirmationSweeper {
+
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    private final ConfirmationStore store;
+    private final ConfirmationCoalescer coalescer;
+    private final boolean coalescing;
+    private final Duration retryAfter;
+    private final int maxAttempts;
+    private final Counter separate;
+    private final Counter retried;
+    private final Counter undeliverable;
+
+    public ConfirmationSweeper(
+            ConfirmationStore store,
+            ConfirmationCoalescer coalescer,
+            MeterRegistry meterRegistry,
+            @Value("${application.email.coalescing.enabled:false}") boolean coalescing,
+            @Value("${application.email.retry-after:120000}") long retryAfterMillis,
+            @Value("${application.email.max-attempts:5}") int maxAttempts
+    ) {
+        this.store = store;
+        this.coalescer = coalescer;
+        this.coalescing = coalescing;
+        this.retryAfter = Duration.ofMillis(retryAfterMillis);
+        this.maxAttempts = maxAttempts;
+
+        this.separate = Counter.builder("notification.email.coalesced")
+                .description("Held confirmations emailed on their own because their partner did not arrive in time")
+                .tag("outcome", "separate")
+                .register(meterRegistry);
+        this.retried = Counter.builder("notification.email.retried")
+                .description("Emails sent again because the SMTP server did not confirm them in time")
+                .register(meterRegistry);
+        this.undeliverable = Counter.builder("notification.email.undeliverable")
+                .description("Notifications given up on after max-attempts sends")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${application.email.coalescing.sweep-interval:1000}")
+    public void sweep() {
+        try {
+            coalescer.recordDelivered();
+            if (coalescing) {
+                sendExpired();
+            }
+            retryUnconfirmed();
+            if (coalescing) {
+                store.recountPending();
+            }
+        } catch (RuntimeException e) {
+            // Whatever it missed stays in its state for the next sweep
+            log.error("Could not sweep the stored notifications", e);
+        }
+    }
+
+    private void sendExpired() {
+        List<Notification> expired;
+        do {
+            expired = store.findExpired(SWEEP_BATCH_SIZE);
+            var claimed = store.claimPending(expired);
+            try {
+                separate.increment(coalescer.sendTogether(claimed));
+            } finally {
+                store.countPending(-claimed.size());
+            }
+        } while (expired.size() == SWEEP_BATCH_SIZE);
+    }
+
+    private void retryUnconfirmed() {
+        List<Notification> unconfirmed;
+        do {
+            var claimedBefore = LocalDateTime.now().minus(retryAfter);
+            unconfirmed = store.findUnconfirmed(claimedBefore, SWEEP_BATCH_SIZE);
+
+            var failed = store.markFailed(
+                    unconfirmed.stream().filter(notification -> notification.getAttempts() >= maxAttempts).toList(),
+                    claimedBefore);
+            if (failed > 0) {
+                undeliverable.increment(failed);
+                log.error("Gave up emailing {} notifications after {} attempts", failed, maxAttempts);
+            }
+
+            var claimed = store.claimUnconfirmed(
+                    unconfirmed.stream().filter(notification -> notification.getAttempts() < maxAttempts).toList(),
+                    claimedBefore);
+            retried.increment(claimed.size());
+            coalescer.sendTogether(claimed);
+        } while (unconfirmed.size() == SWEEP_BATCH_SIZE);
+    }
+}
@@ -0,0 +1,11 @@
+package com.pavils.ecommerce.notification;
+
+public enum EmailState {
+    // Waiting for its partner confirmation to be emailed together
+    PENDING,
+    // Claimed and handed to the SMTP server, which has not confirmed it yet
+    SENDING,
+    SENT,
+    // Given up on after too many attempts
+    FAILED
+}
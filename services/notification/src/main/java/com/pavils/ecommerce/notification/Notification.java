@@ -22,4 +22,13 @@ public class Notification {
     private LocalDateTime notificationDate;
     private PaymentConfirmation paymentConfirmation;
     private OrderConfirmation orderConfirmation;
+    private String orderReference;
+    private EmailState emailState;
+    // Until when a PENDING notification waits for its partner before it is emailed on its own
+    private LocalDateTime coalesceUntil;
+    // Set by whoever claimed a notification, to tell its claims from a concurrent one's
+    private String claimToken;
+    // When it was last claimed for sending; a SENDING notification claimed too long ago is sent again
+    private LocalDateTime claimedAt;
+    private int attempts;
 }
@@ -0,0 +1,14 @@
+package com.pavils.ecommerce.notification;
+
+import java.util.List;
+
+public interface NotificationBatchRepository {
+
+    /**
+     * Inserts the notifications with one unordered bulk write and waits for it to be acknowledged.
+     * Notifications whose id is already stored, e.g. from a redelivered batch, are skipped.
+     *
+     * @return the notifications that were new, in their original order
+     */
+    List<Notification> insertNew(List<Notification> notifications);
+}
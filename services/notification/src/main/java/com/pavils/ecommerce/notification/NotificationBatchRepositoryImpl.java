@@ -0,0 +1,45 @@
+package com.pavils.ecommerce.notification;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+@RequiredArgsConstructor
+public class NotificationBatchRepositoryImpl implements NotificationBatchRepository {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Notification> insertNew(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return List.of();
+        }
+        try {
+            // Unordered, so the server can apply the inserts in any order and one duplicate does
+            // not stop the rest of the batch
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Notification.class)
+                    .insert(notifications)
+                    .execute();
+            return notifications;
+        } catch (BulkOperationException e) {
+            var duplicates = new HashSet<Integer>();
+            for (var error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+                duplicates.add(error.getIndex());
+            }
+            return IntStream.range(0, notifications.size())
+                    .filter(index -> !duplicates.contains(index))
+                    .mapToObj(notifications::get)
+                    .toList();
+        }
+    }
+}
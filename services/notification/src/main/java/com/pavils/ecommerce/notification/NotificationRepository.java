@@ -2,5 +2,5 @@ package com.pavils.ecommerce.notification;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-public interface NotificationRepository extends MongoRepository<Notification, String> {
+public interface NotificationRepository extends MongoRepository<Notification, String>, NotificationBatchRepository {
 }
@@ -0,0 +1,77 @@
+package com.pavils.ecommerce.email;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Emails per second against a local SMTP stand-in, first with {@code JavaMailSender.send} per
+ * email from as many threads as Spring's default {@code @Async} executor has, as the notification
+ * service used to send them, and then through {@link SmtpDispatcher}'s pooled connections.
+ * <p>
+ * The stand-in accepts everything; a real server's STARTTLS and AUTH round trips are modelled by
+ * a delay per connection, {@code -Dbenchmark.handshake-delay} in ms (default 20). Set the number
+ * of emails with {@code -Dbenchmark.emails} (default 2000), the sending threads with
+ * {@code -Dbenchmark.threads} (default 8) and the pool with {@code -Dbenchmark.pool-size}
+ * (default 4). Run with {@code mvn test-compile} and then this class's {@code main} from the test
+ * classpath.
+ */
+public class EmailDispatchBenchmark {
+
+    private static final int EMAILS = Integer.getInteger("benchmark.emails", 2000);
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 8);
+    private static final int POOL_SIZE = Integer.getInteger("benchmark.pool-size", 4);
+    private static final Duration HANDSHAKE_DELAY = Duration.ofMillis(Long.getLong("benchmark.handshake-delay", 20));
+
+    public static void main(String[] args) throws Exception {
+        try (var smtp = new SmtpStandIn(HANDSHAKE_DELAY)) {
+            var mailSender = new JavaMailSenderImpl();
+            mailSender.setHost("localhost");
+            mailSender.setPort(smtp.port());
+
+            var started = System.nanoTime();
+            try (var executor = Executors.newFixedThreadPool(THREADS)) {
+                IntStream.range(0, EMAILS).forEach(i -> executor.execute(() -> mailSender.send(message(mailSender, i))));
+            }
+            report("connection per email", started, smtp.connections(), smtp.messages());
+
+            var connectionsBefore = smtp.connections();
+            var messagesBefore = smtp.messages();
+            started = System.nanoTime();
+            try (var dispatcher = new SmtpDispatcher(mailSender, POOL_SIZE, 50, 100, EMAILS, 30_000)) {
+                var sent = IntStream.range(0, EMAILS)
+                        .mapToObj(i -> dispatcher.send(message(mailSender, i)))
+                        .toArray(CompletableFuture[]::new);
+                CompletableFuture.allOf(sent).get(10, TimeUnit.MINUTES);
+                report("pooled connections", started, smtp.connections() - connectionsBefore, smtp.messages() - messagesBefore);
+            }
+        }
+    }
+
+    private static void report(String label, long startedNanos, int connections, int messages) {
+        var seconds = (System.nanoTime() - startedNanos) / 1_000_000_000.0;
+        System.out.printf("%-22s %6d emails in %6.2f s  %8.0f emails/s  %5d connections%n",
+                label, messages, seconds, messages / seconds, connections);
+    }
+
+    private static MimeMessage message(JavaMailSenderImpl mailSender, int i) {
+        try {
+            var message = mailSender.createMimeMessage();
+            message.setFrom(new InternetAddress("shop@example.com"));
+            message.setRecipient(Message.RecipientType.TO, new InternetAddress("customer" + i + "@example.com"));
+            message.setSubject("Order " + i);
+            message.setText("Thank you for your order");
+            return message;
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
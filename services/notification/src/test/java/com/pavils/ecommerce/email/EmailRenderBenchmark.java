@@ -0,0 +1,94 @@
+package com.pavils.ecommerce.email;
+
+import com.pavils.ecommerce.kafka.order.Product;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Rendering cost of the order confirmation email with 1, 20 and 200 products per order.
+ * {@code previousOrderConfirmation} renders the way {@code EmailService} used to: a fresh map and
+ * context per email, processed into a new string by an engine with Spring Boot's defaults, i.e.
+ * parsed templates cached but SpEL interpreted. {@code rendererOrderConfirmation} goes through
+ * {@link EmailRenderer}, warmed up as on startup, with the SpEL compiler on and a reused buffer.
+ * Run with {@code mvn test-compile} and then this class's {@code main} from the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailRenderBenchmark {
+
+    @Param({"1", "20", "200"})
+    private int products;
+
+    private List<Product> orderProducts;
+    private SpringTemplateEngine previousEngine;
+    private EmailRenderer renderer;
+
+    @Setup
+    public void setUp() {
+        orderProducts = IntStream.rangeClosed(1, products)
+                .mapToObj(i -> new Product(i, "Product " + i, "Description " + i, BigDecimal.valueOf(i * 100L + 99, 2), i % 3 + 1))
+                .toList();
+
+        previousEngine = engine(false);
+        // Spring Boot's engine parsed each template on first use, so the baseline starts warm too
+        previousOrderConfirmation();
+
+        renderer = new EmailRenderer(engine(true));
+        renderer.afterSingletonsInstantiated();
+    }
+
+    @Benchmark
+    public String previousOrderConfirmation() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("customerName", "John Doe");
+        variables.put("totalAmount", new BigDecimal("1234.56"));
+        variables.put("orderReference", "REF-001");
+        variables.put("products", orderProducts);
+
+        Context context = new Context();
+        context.setVariables(variables);
+        return previousEngine.process(EmailTemplates.ORDER_CONFIRMATION.getTemplate(), context);
+    }
+
+    @Benchmark
+    public String rendererOrderConfirmation() {
+        return renderer.renderOrderConfirmation("John Doe", new BigDecimal("1234.56"), "REF-001", orderProducts);
+    }
+
+    private static SpringTemplateEngine engine(boolean springElCompiler) {
+        var resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+
+        var engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        engine.setEnableSpringELCompiler(springElCompiler);
+        return engine;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EmailRenderBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,56 @@
+package com.pavils.ecommerce.email;
+
+import com.pavils.ecommerce.kafka.order.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmailRendererTest {
+
+    private EmailRenderer renderer;
+
+    @BeforeEach
+    void setUp() {
+        var resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        var engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        engine.setEnableSpringELCompiler(true);
+        renderer = new EmailRenderer(engine);
+        renderer.afterSingletonsInstantiated();
+    }
+
+    @Test
+    void renderOrderConfirmation_ListsEveryProduct() {
+        var products = List.of(
+                new Product(1, "Keyboard", "Mechanical", new BigDecimal("79.90"), 1),
+                new Product(2, "Mouse", "Wireless", new BigDecimal("25.00"), 2)
+        );
+
+        var html = renderer.renderOrderConfirmation("John Doe", new BigDecimal("129.90"), "REF-001", products);
+
+        assertThat(html).contains("John Doe", "REF-001", "129.90", "Keyboard", "79.90", "Mouse", "25.00");
+    }
+
+    @Test
+    void render_ReusedBuffer_CarriesNothingOverFromThePreviousEmail() {
+        var manyProducts = IntStream.rangeClosed(1, 200)
+                .mapToObj(i -> new Product(i, "Product " + i, "Description", BigDecimal.ONE, 1))
+                .toList();
+        renderer.renderOrderConfirmation("John Doe", BigDecimal.TEN, "REF-LONG", manyProducts);
+
+        var html = renderer.renderPaymentConfirmation("Jane Roe", new BigDecimal("10.00"), "REF-002");
+
+        assertThat(html).contains("Jane Roe", "REF-002").doesNotContain("REF-LONG", "Product 200");
+        assertThat(html.strip()).endsWith("</html>");
+    }
+}
@@ -0,0 +1,122 @@
+package com.pavils.ecommerce.email;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SmtpDispatcherTest {
+
+    private SmtpStandIn smtp;
+    private JavaMailSenderImpl mailSender;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtp = new SmtpStandIn(Duration.ZERO);
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtp.port());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        smtp.close();
+    }
+
+    @Test
+    void send_ManyEmails_ReusesConnectionsUpToTheirMessageCap() throws Exception {
+        try (var dispatcher = new SmtpDispatcher(mailSender, 2, 50, 100, 1000, 30_000)) {
+            var sent = IntStream.range(0, 200)
+                    .mapToObj(i -> dispatcher.send(message(i)))
+                    .toArray(CompletableFuture[]::new);
+
+            CompletableFuture.allOf(sent).get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(smtp.messages()).isEqualTo(200);
+        assertThat(smtp.connections()).isBetween(2, 4);
+    }
+
+    @Test
+    void send_ConnectionDropped_ReconnectsAndRetriesTheEmail() throws Exception {
+        smtp.dropConnectionAfter(3);
+        try (var dispatcher = new SmtpDispatcher(mailSender, 1, 50, 100, 1000, 30_000)) {
+            var sent = IntStream.range(0, 10)
+                    .mapToObj(i -> dispatcher.send(message(i)))
+                    .toArray(CompletableFuture[]::new);
+
+            CompletableFuture.allOf(sent).get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(smtp.messages()).isEqualTo(10);
+        assertThat(smtp.connections()).isEqualTo(4);
+    }
+
+    @Test
+    void send_AfterClose_FailsWithoutSending() {
+        var dispatcher = new SmtpDispatcher(mailSender, 1, 50, 100, 1000, 30_000);
+        dispatcher.close();
+
+        assertThat(dispatcher.send(message(0))).isCompletedExceptionally();
+        assertThat(smtp.connections()).isZero();
+    }
+
+    @Test
+    void send_QueueFull_FailsAtOnceInsteadOfWaiting() {
+        // No workers, so nothing takes the one queued email
+        try (var dispatcher = new SmtpDispatcher(mailSender, 0, 50, 100, 1, 30_000)) {
+            var queued = dispatcher.send(message(0));
+            var overflow = dispatcher.send(message(1));
+
+            assertThat(queued).isNotDone();
+            assertThatThrownBy(overflow::join).hasCauseInstanceOf(RejectedExecutionException.class);
+        }
+    }
+
+    @Test
+    void send_MessageThrowsUnexpectedly_FailsItAndKeepsSendingTheRest() throws Exception {
+        try (var dispatcher = new SmtpDispatcher(mailSender, 1, 50, 100, 1000, 30_000)) {
+            var broken = dispatcher.send(new MimeMessage(mailSender.getSession()) {
+                @Override
+                public void saveChanges() {
+                    throw new IllegalStateException("Malformed message");
+                }
+            });
+            var next = dispatcher.send(message(1));
+
+            assertThatThrownBy(() -> broken.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+            next.get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(smtp.messages()).isEqualTo(1);
+    }
+
+    private MimeMessage message(int i) {
+        try {
+            var message = mailSender.createMimeMessage();
+            message.setFrom(new InternetAddress("shop@example.com"));
+            message.setRecipient(Message.RecipientType.TO, new InternetAddress("customer" + i + "@example.com"));
+            message.setSubject("Order " + i);
+            message.setText("Thank you for your order");
+            return message;
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
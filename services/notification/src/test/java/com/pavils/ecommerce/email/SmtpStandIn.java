@@ -0,0 +1,112 @@
+package com.pavils.ecommerce.email;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Just enough of an SMTP server to accept mail: it answers every command with success, counts
+ * connections and messages, and throws the messages away. {@code handshakeDelay} is spent once per
+ * connection, standing in for the STARTTLS and AUTH round trips of a real server.
+ */
+class SmtpStandIn implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Duration handshakeDelay;
+    private final ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger messages = new AtomicInteger();
+    private volatile int dropConnectionAfterMessages = Integer.MAX_VALUE;
+
+    SmtpStandIn(Duration handshakeDelay) throws IOException {
+        this.serverSocket = new ServerSocket(0);
+        this.handshakeDelay = handshakeDelay;
+        sessions.execute(this::accept);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    int connections() {
+        return connections.get();
+    }
+
+    int messages() {
+        return messages.get();
+    }
+
+    // Makes the server hang up after that many messages on a connection, without a reply
+    void dropConnectionAfter(int messages) {
+        this.dropConnectionAfterMessages = messages;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                sessions.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        connections.incrementAndGet();
+        try (socket;
+             var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             var out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+            Thread.sleep(handshakeDelay);
+            reply(out, "220 localhost SMTP stand-in");
+            var sentOnConnection = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                var command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+                switch (command) {
+                    case "EHLO", "HELO" -> reply(out, "250 localhost");
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // discarded
+                        }
+                        if (++sentOnConnection > dropConnectionAfterMessages) {
+                            return;
+                        }
+                        messages.incrementAndGet();
+                        reply(out, "250 OK");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "250 OK");
+                }
+            }
+        } catch (IOException e) {
+            // client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void reply(Writer out, String line) throws IOException {
+        out.write(line + "\r\n");
+        out.flush();
+    }
+}
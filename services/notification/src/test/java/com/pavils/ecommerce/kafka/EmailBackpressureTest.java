@@ -0,0 +1,109 @@
+package com.pavils.ecommerce.kafka;
+
+import com.pavils.ecommerce.email.SmtpDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class EmailBackpressureTest {
+
+    @Mock
+    private KafkaListenerEndpointRegistry registry;
+
+    @Mock
+    private ThreadPoolTaskExecutor emailExecutor;
+
+    @Mock
+    private SmtpDispatcher smtpDispatcher;
+
+    @Mock
+    private MessageListenerContainer paymentContainer;
+
+    @Mock
+    private MessageListenerContainer orderContainer;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EmailBackpressure backpressure;
+
+    @BeforeEach
+    void setUp() {
+        when(registry.isRunning()).thenReturn(true);
+        when(registry.getListenerContainers()).thenReturn(List.of(paymentContainer, orderContainer));
+        backpressure = new EmailBackpressure(registry, emailExecutor, smtpDispatcher, meterRegistry, 100, 20);
+    }
+
+    @Test
+    void check_BacklogReachesHighWater_PausesEveryContainerOnce() {
+        when(emailExecutor.getQueueSize()).thenReturn(60);
+        when(smtpDispatcher.queued()).thenReturn(40);
+
+        backpressure.check();
+        backpressure.check();
+
+        verify(paymentContainer, times(1)).pause();
+        verify(orderContainer, times(1)).pause();
+        assertThat(meterRegistry.counter("notification.kafka.pauses").count()).isEqualTo(1);
+    }
+
+    @Test
+    void check_BacklogBetweenTheMarks_KeepsTheContainersPaused() {
+        when(emailExecutor.getQueueSize()).thenReturn(100, 50, 20);
+
+        backpressure.check();
+        backpressure.check();
+        verify(paymentContainer, never()).resume();
+
+        backpressure.check();
+        verify(paymentContainer).resume();
+        verify(orderContainer).resume();
+    }
+
+    @Test
+    void check_BacklogBelowHighWater_LeavesTheContainersRunning() {
+        when(emailExecutor.getQueueSize()).thenReturn(99);
+
+        backpressure.check();
+
+        verifyNoInteractions(paymentContainer, orderContainer);
+    }
+
+    @Test
+    void check_ListenersNotStartedYet_LeavesTheContainersAlone() {
+        when(registry.isRunning()).thenReturn(false);
+        when(emailExecutor.getQueueSize()).thenReturn(100);
+
+        backpressure.check();
+
+        verifyNoInteractions(paymentContainer, orderContainer);
+        assertThat(meterRegistry.counter("notification.kafka.pauses").count()).isZero();
+    }
+
+    @Test
+    void gauges_ReportQueueDepthsAndPausedPartitions() {
+        when(emailExecutor.getQueueSize()).thenReturn(7);
+        when(smtpDispatcher.queued()).thenReturn(3);
+        when(paymentContainer.isContainerPaused()).thenReturn(true);
+        when(paymentContainer.getAssignedPartitions()).thenReturn(List.of(
+                new TopicPartition("payment-topic", 0), new TopicPartition("payment-topic", 1)));
+
+        assertThat(meterRegistry.get("notification.email.queue.depth").tag("stage", "render").gauge().value()).isEqualTo(7);
+        assertThat(meterRegistry.get("notification.email.queue.depth").tag("stage", "smtp").gauge().value()).isEqualTo(3);
+        assertThat(meterRegistry.get("notification.kafka.paused-partitions").gauge().value()).isEqualTo(2);
+    }
+}
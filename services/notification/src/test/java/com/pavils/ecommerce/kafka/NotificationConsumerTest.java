@@ -0,0 +1,112 @@
+package com.pavils.ecommerce.kafka;
+
+import com.pavils.ecommerce.email.EmailService;
+import com.pavils.ecommerce.kafka.order.Customer;
+import com.pavils.ecommerce.kafka.order.OrderConfirmation;
+import com.pavils.ecommerce.kafka.payment.PaymentConfirmation;
+import com.pavils.ecommerce.kafka.payment.PaymentMethod;
+import com.pavils.ecommerce.notification.ConfirmationCoalescer;
+import com.pavils.ecommerce.notification.ConfirmationStore;
+import com.pavils.ecommerce.notification.EmailState;
+import com.pavils.ecommerce.notification.Notification;
+import com.pavils.ecommerce.notification.NotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.pavils.ecommerce.notification.NotificationType.ORDER_CONFIRMATION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationConsumerTest {
+
+    @Mock
+    private NotificationRepository repository;
+
+    @Mock
+    private EmailService emailService;
+
+    private NotificationConsumer consumer;
+
+    @Captor
+    private ArgumentCaptor<List<Notification>> notificationsCaptor;
+
+    @BeforeEach
+    void setUp() {
+        // Coalescing off: every confirmation is emailed right away
+        var meterRegistry = new SimpleMeterRegistry();
+        var store = new ConfirmationStore(mock(MongoTemplate.class), meterRegistry, false);
+        var coalescer = new ConfirmationCoalescer(store, emailService, meterRegistry, false, 3000, 10_000);
+        consumer = new NotificationConsumer(repository, coalescer);
+    }
+
+    @Test
+    void consumePaymentSuccessNotifications_Batch_StoresAllWithOneWriteKeyedByOffset() throws Exception {
+        var records = List.of(paymentRecord(7, "REF-1"), paymentRecord(8, "REF-2"));
+        when(repository.insertNew(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(emailService.sendPaymentSuccessEmail(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumer.consumePaymentSuccessNotifications(records);
+
+        verify(repository, times(1)).insertNew(notificationsCaptor.capture());
+        assertThat(notificationsCaptor.getValue())
+                .extracting(Notification::getId)
+                .containsExactly("payment-topic-0-7", "payment-topic-0-8");
+        // Sent only once the SMTP server accepted them
+        assertThat(notificationsCaptor.getValue())
+                .extracting(Notification::getEmailState)
+                .containsOnly(EmailState.SENDING);
+        verify(repository, never()).save(any());
+        verify(emailService).sendPaymentSuccessEmail("john@example.com", "John Doe", new BigDecimal("10.00"), "REF-1");
+        verify(emailService).sendPaymentSuccessEmail("john@example.com", "John Doe", new BigDecimal("10.00"), "REF-2");
+    }
+
+    @Test
+    void consumePaymentSuccessNotifications_RedeliveredRecords_AreNotEmailedAgain() throws Exception {
+        var records = List.of(paymentRecord(7, "REF-1"), paymentRecord(8, "REF-2"));
+        when(repository.insertNew(anyList())).thenAnswer(invocation ->
+                invocation.<List<Notification>>getArgument(0).subList(1, 2));
+        when(emailService.sendPaymentSuccessEmail(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumer.consumePaymentSuccessNotifications(records);
+
+        verify(emailService, times(1)).sendPaymentSuccessEmail(anyString(), anyString(), any(), anyString());
+        verify(emailService).sendPaymentSuccessEmail("john@example.com", "John Doe", new BigDecimal("10.00"), "REF-2");
+    }
+
+    @Test
+    void consumeOrderSuccessNotifications_Batch_StoresOrderConfirmations() throws Exception {
+        var confirmation = new OrderConfirmation("REF-3", new BigDecimal("30.00"), PaymentMethod.VISA_CARD,
+                new Customer("cust-1", "Jane", "Roe", "jane@example.com"), List.of());
+        when(repository.insertNew(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(emailService.sendOrderSuccessEmail(any(), any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumer.consumeOrderSuccessNotifications(List.of(new ConsumerRecord<>("order-topic", 1, 4L, "REF-3", confirmation)));
+
+        verify(repository).insertNew(notificationsCaptor.capture());
+        var notification = notificationsCaptor.getValue().get(0);
+        assertThat(notification.getId()).isEqualTo("order-topic-1-4");
+        assertThat(notification.getType()).isEqualTo(ORDER_CONFIRMATION);
+        verify(emailService).sendOrderSuccessEmail("jane@example.com", "Jane Roe", new BigDecimal("30.00"), "REF-3", List.of());
+    }
+
+    private static ConsumerRecord<String, PaymentConfirmation> paymentRecord(long offset, String reference) {
+        var confirmation = new PaymentConfirmation(reference, new BigDecimal("10.00"), PaymentMethod.PAYPAL,
+                "John", "Doe", "john@example.com");
+        return new ConsumerRecord<>("payment-topic", 0, offset, reference, confirmation);
+    }
+}
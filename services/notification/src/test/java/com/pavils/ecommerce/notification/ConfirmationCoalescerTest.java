@@ -0,0 +1,236 @@
+package com.pavils.ecommerce.notification;
+
+import com.pavils.ecommerce.email.EmailService;
+import com.pavils.ecommerce.kafka.order.Customer;
+import com.pavils.ecommerce.kafka.order.OrderConfirmation;
+import com.pavils.ecommerce.kafka.order.Product;
+import com.pavils.ecommerce.kafka.payment.PaymentConfirmation;
+import com.pavils.ecommerce.kafka.payment.PaymentMethod;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.pavils.ecommerce.notification.NotificationType.ORDER_CONFIRMATION;
+import static com.pavils.ecommerce.notification.NotificationType.PAYMENT_CONFIRMATION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConfirmationCoalescerTest {
+
+    private static final List<Product> PRODUCTS = List.of(
+            new Product(1, "Keyboard", "Mechanical keyboard", new BigDecimal("30.00"), 1));
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private EmailService emailService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ConfirmationCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        // The SMTP server accepts every email unless a test says otherwise
+        var accepted = CompletableFuture.<Void>completedFuture(null);
+        lenient().when(emailService.sendOrderSuccessEmail(any(), any(), any(), any(), any())).thenReturn(accepted);
+        lenient().when(emailService.sendPaymentSuccessEmail(any(), any(), any(), any())).thenReturn(accepted);
+        lenient().when(emailService.sendOrderAndPaymentSuccessEmail(any(), any(), any(), any(), any(), any())).thenReturn(accepted);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (coalescer != null) {
+            coalescer.close();
+        }
+    }
+
+    @Test
+    void dispatch_CoalescingDisabled_EmailsEachConfirmationRightAway() throws Exception {
+        coalescer = coalescer(false, 10_000);
+
+        assertThat(coalescer.holdUntil()).isEmpty();
+        coalescer.dispatch(List.of(order(EmailState.SENDING), payment(EmailState.SENDING)));
+
+        verify(emailService).sendOrderSuccessEmail("john@example.com", "John Doe", new BigDecimal("30.00"), "REF-1", PRODUCTS);
+        verify(emailService).sendPaymentSuccessEmail("john@example.com", "John Doe", new BigDecimal("30.00"), "REF-1");
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void dispatch_PartnerNotStoredYet_HoldsTheConfirmation() throws Exception {
+        coalescer = coalescer(true, 10_000);
+        countPendingAs(1);
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class))).thenReturn(List.of());
+
+        assertThat(coalescer.holdUntil()).isPresent();
+        coalescer.dispatch(List.of(order(EmailState.PENDING)));
+
+        verifyNoInteractions(emailService);
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Notification.class));
+    }
+
+    @Test
+    void dispatch_PartnerWaiting_SendsOneCombinedEmail() throws Exception {
+        coalescer = coalescer(true, 10_000);
+        countPendingAs(0);
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class))).thenReturn(List.of(order(EmailState.PENDING)));
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Notification.class)))
+                .thenReturn(claimed(2));
+
+        coalescer.dispatch(List.of(payment(EmailState.PENDING)));
+
+        verify(emailService).sendOrderAndPaymentSuccessEmail("john@example.com", "John Doe",
+                new BigDecimal("30.00"), new BigDecimal("30.00"), "REF-1", PRODUCTS);
+        verify(emailService, never()).sendOrderSuccessEmail(anyString(), anyString(), any(), anyString(), any());
+        verify(emailService, never()).sendPaymentSuccessEmail(anyString(), anyString(), any(), anyString());
+        assertThat(meterRegistry.get("notification.email.coalesced").tag("outcome", "combined").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void dispatch_ClaimedByThePartnerConcurrently_SendsThePartnerOnItsOwn() throws Exception {
+        coalescer = coalescer(true, 10_000);
+        countPendingAs(1);
+        var order = order(EmailState.PENDING);
+        // The waiting order, then the one of the two this dispatch managed to claim
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class))).thenReturn(List.of(order), List.of(order));
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Notification.class)))
+                .thenReturn(claimed(1));
+
+        coalescer.dispatch(List.of(payment(EmailState.PENDING)));
+
+        verify(emailService).sendOrderSuccessEmail("john@example.com", "John Doe", new BigDecimal("30.00"), "REF-1", PRODUCTS);
+        verify(emailService, never()).sendPaymentSuccessEmail(anyString(), anyString(), any(), anyString());
+        verify(emailService, never()).sendOrderAndPaymentSuccessEmail(anyString(), anyString(), any(), any(), anyString(), any());
+    }
+
+    @Test
+    void dispatch_WholePoll_ClaimsItsPartnersWithOneQueryAndOneUpdate() throws Exception {
+        coalescer = coalescer(true, 10_000);
+        countPendingAs(0);
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class)))
+                .thenReturn(List.of(order(EmailState.PENDING, "REF-1", 1), order(EmailState.PENDING, "REF-2", 2)));
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Notification.class)))
+                .thenReturn(claimed(4));
+
+        coalescer.dispatch(List.of(payment(EmailState.PENDING, "REF-1", 1), payment(EmailState.PENDING, "REF-2", 2)));
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Notification.class));
+        verify(mongoTemplate, times(1)).updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Notification.class));
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class), eq(Notification.class));
+        verify(emailService).sendOrderAndPaymentSuccessEmail("john@example.com", "John Doe",
+                new BigDecimal("30.00"), new BigDecimal("30.00"), "REF-1", PRODUCTS);
+        verify(emailService).sendOrderAndPaymentSuccessEmail("john@example.com", "John Doe",
+                new BigDecimal("30.00"), new BigDecimal("30.00"), "REF-2", PRODUCTS);
+    }
+
+    @Test
+    void holdUntil_PeakWithinOneSweepInterval_StopsHoldingAtOnce() throws Exception {
+        coalescer = coalescer(true, 2);
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class))).thenReturn(List.of());
+        countPendingAs(2);
+
+        assertThat(coalescer.holdUntil()).isPresent();
+        coalescer.dispatch(List.of(order(EmailState.PENDING), payment(EmailState.PENDING)));
+
+        assertThat(coalescer.holdUntil()).isEmpty();
+        assertThat(meterRegistry.get("notification.email.coalescing.pending").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void recordDelivered_EmailAccepted_MarksItSent() {
+        coalescer = coalescer(false, 10_000);
+        coalescer.dispatch(List.of(order(EmailState.SENDING)));
+
+        coalescer.recordDelivered();
+
+        var query = ArgumentCaptor.forClass(Query.class);
+        var update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateMulti(query.capture(), update.capture(), eq(Notification.class));
+        assertThat(query.getValue().getQueryObject().get("_id", Document.class).getList("$in", String.class))
+                .containsExactly("order-topic-0-1");
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("emailState"))
+                .isEqualTo(EmailState.SENT);
+    }
+
+    @Test
+    void recordDelivered_EmailRefused_LeavesItSending() {
+        coalescer = coalescer(false, 10_000);
+        when(emailService.sendOrderSuccessEmail(any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("SMTP server unavailable")));
+        coalescer.dispatch(List.of(order(EmailState.SENDING)));
+
+        coalescer.recordDelivered();
+
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Notification.class));
+    }
+
+    private void countPendingAs(long value) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq(ConfirmationStore.COUNTERS)))
+                .thenReturn(new Document("value", value));
+    }
+
+    private static UpdateResult claimed(long count) {
+        return UpdateResult.acknowledged(count, count, null);
+    }
+
+    private ConfirmationCoalescer coalescer(boolean enabled, long maxPending) {
+        var store = new ConfirmationStore(mongoTemplate, meterRegistry, enabled);
+        return new ConfirmationCoalescer(store, emailService, meterRegistry, enabled, 3000, maxPending);
+    }
+
+    private static Notification order(EmailState emailState) {
+        return order(emailState, "REF-1", 1);
+    }
+
+    private static Notification order(EmailState emailState, String reference, long offset) {
+        return Notification.builder()
+                .id("order-topic-0-" + offset)
+                .type(ORDER_CONFIRMATION)
+                .notificationDate(LocalDateTime.now())
+                .orderConfirmation(new OrderConfirmation(reference, new BigDecimal("30.00"), PaymentMethod.VISA_CARD,
+                        new Customer("c-1", "John", "Doe", "john@example.com"), PRODUCTS))
+                .orderReference(reference)
+                .emailState(emailState)
+                .build();
+    }
+
+    private static Notification payment(EmailState emailState) {
+        return payment(emailState, "REF-1", 1);
+    }
+
+    private static Notification payment(EmailState emailState, String reference, long offset) {
+        return Notification.builder()
+                .id("payment-topic-0-" + offset)
+                .type(PAYMENT_CONFIRMATION)
+                .notificationDate(LocalDateTime.now())
+                .paymentConfirmation(new PaymentConfirmation(reference, new BigDecimal("30.00"), PaymentMethod.VISA_CARD,
+                        "John", "Doe", "john@example.com"))
+                .orderReference(reference)
+                .emailState(emailState)
+                .build();
+    }
+}
@@ -0,0 +1,202 @@
+package com.pavils.ecommerce.notification;
+
+import com.pavils.ecommerce.email.EmailService;
+import com.pavils.ecommerce.kafka.order.Customer;
+import com.pavils.ecommerce.kafka.order.OrderConfirmation;
+import com.pavils.ecommerce.kafka.order.Product;
+import com.pavils.ecommerce.kafka.payment.PaymentMethod;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.pavils.ecommerce.notification.NotificationType.ORDER_CONFIRMATION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConfirmationSweeperTest {
+
+    private static final List<Product> PRODUCTS = List.of(
+            new Product(1, "Keyboard", "Mechanical keyboard", new BigDecimal("30.00"), 1));
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private EmailService emailService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        // The SMTP server accepts every email unless a test says otherwise
+        lenient().when(emailService.sendOrderSuccessEmail(any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void sweep_WindowClosed_SendsTheConfirmationOnItsOwn() {
+        var sweeper = sweeper(true);
+        countPendingAs(0);
+        recountPendingAs(0, 0);
+        // The expired confirmation, then nothing left to retry
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class))).thenReturn(List.of(order(EmailState.PENDING)), List.of());
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Notification.class)))
+                .thenReturn(claimed(1));
+
+        sweeper.sweep();
+
+        verify(emailService).sendOrderSuccessEmail("john@example.com", "John Doe", new BigDecimal("30.00"), "REF-1", PRODUCTS);
+        assertThat(meterRegistry.get("notification.email.coalesced").tag("outcome", "separate").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void sweep_MoreExpiredThanOneBatch_SweepsUntilNoneIsLeft() {
+        var sweeper = sweeper(true);
+        var order = order(EmailState.PENDING);
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class)))
+                .thenReturn(Collections.nCopies(500, order))
+                .thenReturn(List.of(order))
+                .thenReturn(List.of());
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Notification.class)))
+                .thenReturn(claimed(500), claimed(1));
+        countPendingAs(0);
+        recountPendingAs(0, 0);
+
+        sweeper.sweep();
+
+        verify(mongoTemplate, times(3)).find(any(Query.class), eq(Notification.class));
+        verify(emailService, times(501)).sendOrderSuccessEmail(anyString(), anyString(), any(), anyString(), any());
+    }
+
+    @Test
+    void sweep_CounterLeftOffByACrash_IsRecounted() {
+        var sweeper = sweeper(true);
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class))).thenReturn(List.of());
+        recountPendingAs(5, 1);
+
+        sweeper.sweep();
+
+        assertThat(meterRegistry.get("notification.email.coalescing.pending").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void sweep_EmailAccepted_MarksItSent() {
+        var store = new ConfirmationStore(mongoTemplate, meterRegistry, false);
+        var coalescer = new ConfirmationCoalescer(store, emailService, meterRegistry, false, 3000, 10_000);
+        var sweeper = new ConfirmationSweeper(store, coalescer, meterRegistry, false, 120_000, 5);
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class))).thenReturn(List.of());
+        coalescer.dispatch(List.of(order(EmailState.SENDING)));
+
+        sweeper.sweep();
+
+        var update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateMulti(any(Query.class), update.capture(), eq(Notification.class));
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("emailState"))
+                .isEqualTo(EmailState.SENT);
+    }
+
+    @Test
+    void sweep_ClaimedButNeverConfirmed_SendsItAgain() {
+        var sweeper = sweeper(false);
+        var order = order(EmailState.SENDING);
+        order.setAttempts(1);
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class))).thenReturn(List.of(order), List.of());
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Notification.class)))
+                .thenReturn(claimed(1));
+
+        sweeper.sweep();
+
+        var update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateMulti(any(Query.class), update.capture(), eq(Notification.class));
+        assertThat(update.getValue().getUpdateObject().get("$inc", Document.class).get("attempts")).isEqualTo(1);
+        verify(emailService).sendOrderSuccessEmail("john@example.com", "John Doe", new BigDecimal("30.00"), "REF-1", PRODUCTS);
+        assertThat(meterRegistry.get("notification.email.retried").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void sweep_SentMaxAttemptsTimes_GivesUp() {
+        var sweeper = sweeper(false);
+        var order = order(EmailState.SENDING);
+        order.setAttempts(5);
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class))).thenReturn(List.of(order), List.of());
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Notification.class)))
+                .thenReturn(claimed(1));
+
+        sweeper.sweep();
+
+        var update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateMulti(any(Query.class), update.capture(), eq(Notification.class));
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("emailState"))
+                .isEqualTo(EmailState.FAILED);
+        verify(emailService, never()).sendOrderSuccessEmail(anyString(), anyString(), any(), anyString(), any());
+        assertThat(meterRegistry.get("notification.email.undeliverable").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void sweep_StoreUnavailable_KeepsTheScheduleRunning() {
+        var sweeper = sweeper(false);
+        when(mongoTemplate.find(any(Query.class), eq(Notification.class)))
+                .thenThrow(new IllegalStateException("MongoDB unavailable"));
+
+        sweeper.sweep();
+
+        verifyNoInteractions(emailService);
+    }
+
+    private void countPendingAs(long value) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq(ConfirmationStore.COUNTERS)))
+                .thenReturn(new Document("value", value));
+    }
+
+    private void recountPendingAs(long counterValue, long counted) {
+        when(mongoTemplate.findById(ConfirmationStore.PENDING_COUNTER, Document.class, ConfirmationStore.COUNTERS))
+                .thenReturn(new Document("value", counterValue));
+        when(mongoTemplate.count(any(Query.class), eq(Notification.class))).thenReturn(counted);
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(ConfirmationStore.COUNTERS)))
+                .thenReturn(UpdateResult.acknowledged(1, counterValue == counted ? 0L : 1L, null));
+    }
+
+    private static UpdateResult claimed(long count) {
+        return UpdateResult.acknowledged(count, count, null);
+    }
+
+    private ConfirmationSweeper sweeper(boolean coalescing) {
+        var store = new ConfirmationStore(mongoTemplate, meterRegistry, coalescing);
+        var coalescer = new ConfirmationCoalescer(store, emailService, meterRegistry, coalescing, 3000, 10_000);
+        return new ConfirmationSweeper(store, coalescer, meterRegistry, coalescing, 120_000, 5);
+    }
+
+    private static Notification order(EmailState emailState) {
+        return Notification.builder()
+                .id("order-topic-0-1")
+                .type(ORDER_CONFIRMATION)
+                .notificationDate(LocalDateTime.now())
+                .orderConfirmation(new OrderConfirmation("REF-1", new BigDecimal("30.00"), PaymentMethod.VISA_CARD,
+                        new Customer("c-1", "John", "Doe", "john@example.com"), PRODUCTS))
+                .orderReference("REF-1")
+                .emailState(emailState)
+                .build();
+    }
+}
@@ -0,0 +1,139 @@
+package com.pavils.ecommerce.batch;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Collects the single-key lookups that arrive within {@code maxWait} of each other and resolves
+ * them with one call of {@code batchFunction}, then hands every caller its own value. A batch is
+ * sent early once it holds {@code maxBatchSize} distinct keys; a key requested twice in the same
+ * batch is looked up once. Keys missing from the batch result resolve to {@code null}, and a
+ * failed call fails every lookup of its batch.
+ * <p>
+ * Batch calls run on {@code executor}; a single daemon thread only tells when a batch is due.
+ */
+public class BatchLoader<K, V> implements AutoCloseable {
+
+    private final Function<Set<K>, Map<K, V>> batchFunction;
+    private final int maxBatchSize;
+    private final Duration maxWait;
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+    // Not synchronized: callers are virtual threads, which a monitor would pin
+    private final ReentrantLock lock = new ReentrantLock();
+    private final DistributionSummary batchSizes;
+    private final DistributionSummary fillRatios;
+    private final Timer calls;
+
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+
+    public BatchLoader(
+            String name,
+            Function<Set<K>, Map<K, V>> batchFunction,
+            int maxBatchSize,
+            Duration maxWait,
+            Executor executor,
+            MeterRegistry meterRegistry
+    ) {
+        this.batchFunction = batchFunction;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWait = maxWait;
+        this.executor = executor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("batch-loader-" + name).factory());
+
+        this.batchSizes = DistributionSummary.builder("order.batch.size")
+                .description("Distinct keys resolved per batch call")
+                .tag("loader", name)
+                .register(meterRegistry);
+        this.fillRatios = DistributionSummary.builder("order.batch.fill-ratio")
+                .description("Batch size relative to the maximum batch size")
+                .tag("loader", name)
+                .register(meterRegistry);
+        this.calls = Timer.builder("order.batch.calls")
+                .description("Batch calls to the downstream service")
+                .tag("loader", name)
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<V> load(K key) {
+        Map<K, CompletableFuture<V>> full = null;
+        CompletableFuture<V> future;
+        lock.lock();
+        try {
+            future = pending.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+
+            if (pending.size() >= maxBatchSize) {
+                full = pending;
+                pending = new LinkedHashMap<>();
+            } else if (pending.size() == 1) {
+                var batch = pending;
+                scheduler.schedule(() -> sendIfStillPending(batch), maxWait.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (full != null) {
+            send(full);
+        }
+        return future;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    // The batch may already have been sent because it filled up
+    private void sendIfStillPending(Map<K, CompletableFuture<V>> batch) {
+        lock.lock();
+        try {
+            if (pending != batch) {
+                return;
+            }
+            pending = new LinkedHashMap<>();
+        } finally {
+            lock.unlock();
+        }
+        send(batch);
+    }
+
+    private void send(Map<K, CompletableFuture<V>> batch) {
+        batchSizes.record(batch.size());
+        fillRatios.record((double) batch.size() / maxBatchSize);
+        try {
+            executor.execute(() -> resolve(batch));
+        } catch (RejectedExecutionException e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private void resolve(Map<K, CompletableFuture<V>> batch) {
+        try {
+            var values = calls.record(() -> batchFunction.apply(batch.keySet()));
+            batch.forEach((key, future) -> future.complete(values.get(key)));
+        } catch (RuntimeException e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.pavils.ecommerce.config;
+
+import com.pavils.ecommerce.deadline.DeadlinePropagatingExecutorService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ExecutorConfig {
+
+    // Remote calls of one checkout run side by side; they mostly wait on I/O, so a virtual
+    // thread per call is cheaper than sizing a pool. Tasks keep the deadline of the request
+    // that started them, so the calls they make carry it on
+    @Bean(destroyMethod = "close")
+    public ExecutorService orderExecutor() {
+        return new DeadlinePropagatingExecutorService(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
@@ -0,0 +1,77 @@
+package com.pavils.ecommerce.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * One pooled HTTP client for every downstream call of the order service. {@link RestTemplateConfig}
+ * builds the product client on it, and OpenFeign picks the same {@link CloseableHttpClient} bean up
+ * for the customer and payment clients, so all three share keep-alive connections per route.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager downstreamConnectionManager(
+            @Value("${application.http-client.max-connections:200}") int maxConnections,
+            @Value("${application.http-client.max-connections-per-route:50}") int maxConnectionsPerRoute,
+            @Value("${application.http-client.connect-timeout:2000}") long connectTimeoutMillis,
+            @Value("${application.http-client.read-timeout:5000}") long readTimeoutMillis,
+            @Value("${application.http-client.connection-ttl:300000}") long connectionTtlMillis
+    ) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                // LIFO keeps the hot connections busy and lets the rest go idle and expire
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMillis))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+                        .setTimeToLive(TimeValue.ofMilliseconds(connectionTtlMillis))
+                        // Tomcat drops keep-alive connections after 60s idle; check before reusing older ones
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(30))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient downstreamHttpClient(
+            PoolingHttpClientConnectionManager downstreamConnectionManager,
+            @Value("${application.http-client.connection-request-timeout:1000}") long connectionRequestTimeoutMillis,
+            @Value("${application.http-client.max-idle-time:60000}") long maxIdleTimeMillis,
+            @Value("${application.http-client.compression:true}") boolean compression
+    ) {
+        var builder = HttpClientBuilder.create()
+                .setConnectionManager(downstreamConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeoutMillis))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(maxIdleTimeMillis))
+                // Checkout calls are not idempotent, a retried purchase would take the stock twice
+                .disableAutomaticRetries();
+        if (!compression) {
+            builder.disableContentCompression();
+        }
+        return builder.build();
+    }
+
+    @Bean
+    public MeterBinder downstreamConnectionPoolMetrics(PoolingHttpClientConnectionManager downstreamConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(downstreamConnectionManager, "downstream");
+    }
+}
@@ -14,4 +14,13 @@ public class KafkaOrderTopicConfig {
                 .name("order-topic")
                 .build();
     }
+
+    // Several partitions so the payment service can consume payment requests in parallel
+    @Bean
+    public NewTopic paymentRequestTopic() {
+        return TopicBuilder
+                .name("payment-request-topic")
+                .partitions(6)
+                .build();
+    }
 }
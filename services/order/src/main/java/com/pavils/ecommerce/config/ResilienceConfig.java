@@ -0,0 +1,49 @@
+package com.pavils.ecommerce.config;
+
+import com.pavils.ecommerce.resilience.DownstreamGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * One {@link DownstreamGuard} per downstream service, injected by bean name. Each one is tuned
+ * under {@code application.resilience.<dependency>}; unset values fall back to the defaults below.
+ * A call timeout shorter than {@code application.http-client.read-timeout} abandons calls the
+ * dependency may still complete, so the guard of a call with side effects should outlast it.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    @Bean
+    public DownstreamGuard customerGuard(Environment environment, ExecutorService orderExecutor, MeterRegistry meterRegistry) {
+        return guard("customer", environment, orderExecutor, meterRegistry);
+    }
+
+    @Bean
+    public DownstreamGuard productGuard(Environment environment, ExecutorService orderExecutor, MeterRegistry meterRegistry) {
+        return guard("product", environment, orderExecutor, meterRegistry);
+    }
+
+    @Bean
+    public DownstreamGuard paymentGuard(Environment environment, ExecutorService orderExecutor, MeterRegistry meterRegistry) {
+        return guard("payment", environment, orderExecutor, meterRegistry);
+    }
+
+    private static DownstreamGuard guard(String name, Environment environment, ExecutorService executor,
+                                         MeterRegistry meterRegistry) {
+        var prefix = "application.resilience." + name + ".";
+        var settings = new DownstreamGuard.Settings(
+                environment.getProperty(prefix + "max-concurrent-calls", Integer.class, 100),
+                Duration.ofMillis(environment.getProperty(prefix + "call-timeout", Long.class, 6000L)),
+                environment.getProperty(prefix + "failure-rate-threshold", Float.class, 50f),
+                environment.getProperty(prefix + "sliding-window-size", Integer.class, 50),
+                environment.getProperty(prefix + "minimum-number-of-calls", Integer.class, 20),
+                Duration.ofMillis(environment.getProperty(prefix + "open-duration", Long.class, 10000L))
+        );
+        return new DownstreamGuard(name, settings, executor, meterRegistry);
+    }
+}
@@ -1,14 +1,45 @@
 package com.pavils.ecommerce.config;
 
+import com.pavils.ecommerce.deadline.DeadlineHeaderInterceptor;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class RestTemplateConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(
+            CloseableHttpClient downstreamHttpClient,
+            DeadlineHeaderInterceptor deadlineHeaderInterceptor,
+            @Value("${application.http-client.http2:false}") boolean http2,
+            @Value("${application.http-client.connect-timeout:2000}") long connectTimeoutMillis,
+            @Value("${application.http-client.read-timeout:5000}") long readTimeoutMillis
+    ) {
+        ClientHttpRequestFactory requestFactory;
+        if (http2) {
+            // The JDK client multiplexes every call to a host over one HTTP/2 connection instead
+            // of pooling, and falls back to HTTP/1.1 when the product service does not upgrade
+            var jdkClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                    .build();
+            var jdkRequestFactory = new JdkClientHttpRequestFactory(jdkClient);
+            jdkRequestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMillis));
+            requestFactory = jdkRequestFactory;
+        } else {
+            requestFactory = new HttpComponentsClientHttpRequestFactory(downstreamHttpClient);
+        }
+        var restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(deadlineHeaderInterceptor);
+        return restTemplate;
     }
 }
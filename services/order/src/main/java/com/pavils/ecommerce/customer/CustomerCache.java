@@ -0,0 +1,113 @@
+package com.pavils.ecommerce.customer;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the customers looked up through {@link CustomerLoader}, so a checkout only calls the
+ * customer service for customers it has not seen lately.
+ * <p>
+ * Entries are evicted by {@link CustomerEventConsumer} as soon as the customer service reports a
+ * change, and expire after {@code application.customer-cache.ttl} in case an event is missed.
+ * Unknown ids are remembered too, for the much shorter {@code negative-ttl}, so a burst of orders
+ * for a bad id costs one remote call. Concurrent lookups of the same id share one remote call,
+ * which is awaited outside the cache's locks.
+ */
+@Component
+public class CustomerCache {
+
+    private final CustomerLoader customerLoader;
+    private final AsyncCache<String, Optional<CustomerResponse>> customers;
+    private final Timer remoteLookups;
+    private final Counter hits;
+    private final Counter negativeHits;
+    private final Counter misses;
+    private final Counter savedSeconds;
+
+    public CustomerCache(
+            CustomerLoader customerLoader,
+            MeterRegistry meterRegistry,
+            @Value("${application.customer-cache.size:100000}") long size,
+            @Value("${application.customer-cache.ttl:600000}") long ttlMillis,
+            @Value("${application.customer-cache.negative-ttl:5000}") long negativeTtlMillis
+    ) {
+        this.customerLoader = customerLoader;
+        var ttl = Duration.ofMillis(ttlMillis);
+        var negativeTtl = Duration.ofMillis(negativeTtlMillis);
+        this.customers = Caffeine.newBuilder()
+                .maximumSize(size)
+                .expireAfter(Expiry.<String, Optional<CustomerResponse>>creating((id, customer) ->
+                        customer.isPresent() ? ttl : negativeTtl))
+                .buildAsync();
+
+        this.remoteLookups = Timer.builder("order.customer-cache.remote-lookups")
+                .description("Customer lookups that had to call the customer service")
+                .register(meterRegistry);
+        this.hits = lookups(meterRegistry, "hit");
+        this.negativeHits = lookups(meterRegistry, "negative-hit");
+        this.misses = lookups(meterRegistry, "miss");
+        this.savedSeconds = Counter.builder("order.customer-cache.saved")
+                .description("Checkout time saved by cache hits, at the mean remote lookup time")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("order.customer-cache.hit-ratio", this, CustomerCache::hitRatio)
+                .description("Share of customer lookups answered from the cache")
+                .register(meterRegistry);
+        Gauge.builder("order.customer-cache.cached", customers, cache -> cache.synchronous().estimatedSize())
+                .description("Customers and unknown ids held in memory")
+                .register(meterRegistry);
+    }
+
+    public Optional<CustomerResponse> findCustomerById(String customerId) {
+        var loaded = new boolean[1];
+        var customer = customers.get(customerId, (id, executor) -> {
+            loaded[0] = true;
+            var started = System.nanoTime();
+            return customerLoader.findCustomerById(id).whenComplete((found, failure) ->
+                    remoteLookups.record(System.nanoTime() - started, TimeUnit.NANOSECONDS));
+        });
+
+        if (loaded[0]) {
+            misses.increment();
+        }
+        try {
+            var found = customer.join();
+            if (!loaded[0]) {
+                (found.isPresent() ? hits : negativeHits).increment();
+                savedSeconds.increment(remoteLookups.mean(TimeUnit.SECONDS));
+            }
+            return found;
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    public void evict(String customerId) {
+        customers.synchronous().invalidate(customerId);
+    }
+
+    private double hitRatio() {
+        var answered = hits.count() + negativeHits.count();
+        var total = answered + misses.count();
+        return total == 0 ? 0 : answered / total;
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("order.customer-cache.lookups")
+                .description("Customer lookups by whether the cache answered them")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -2,9 +2,10 @@ package com.pavils.ecommerce.customer;
 
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 
-import java.util.Optional;
+import java.util.Collection;
+import java.util.List;
 
 @FeignClient(
         name = "product-service",
@@ -12,8 +13,9 @@ import java.util.Optional;
 )
 public interface CustomerClient {
 
-    @GetMapping("/{customer-id}")
-    Optional<CustomerResponse> findCustomerById(
-            @PathVariable("customer-id") String customerId
+    // Unknown ids are left out of the result
+    @GetMapping("/batch")
+    List<CustomerResponse> findCustomersByIds(
+            @RequestParam("ids") Collection<String> customerIds
     );
 }
@@ -0,0 +1,7 @@
+package com.pavils.ecommerce.customer;
+
+public record CustomerEvent(
+        CustomerEventType type,
+        String customerId
+) {
+}
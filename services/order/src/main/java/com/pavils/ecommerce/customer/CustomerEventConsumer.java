@@ -0,0 +1,28 @@
+package com.pavils.ecommerce.customer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerEventConsumer {
+
+    private final CustomerCache customerCache;
+
+    /**
+     * Every instance keeps its own cache, so each one listens in a group of its own. Only events
+     * published after startup matter; the cache starts empty.
+     */
+    @KafkaListener(
+            topics = "customer-topic",
+            groupId = "orderCustomerCache-#{T(java.util.UUID).randomUUID()}",
+            properties = "auto.offset.reset=latest"
+    )
+    public void consumeCustomerEvent(CustomerEvent event) {
+        log.debug("Evicting customer {} from the lookup cache: {}", event.customerId(), event.type());
+        customerCache.evict(event.customerId());
+    }
+}
@@ -0,0 +1,6 @@
+package com.pavils.ecommerce.customer;
+
+public enum CustomerEventType {
+    UPDATED,
+    DELETED
+}
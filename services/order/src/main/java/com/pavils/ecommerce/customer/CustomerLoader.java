@@ -0,0 +1,56 @@
+package com.pavils.ecommerce.customer;
+
+import com.pavils.ecommerce.batch.BatchLoader;
+import com.pavils.ecommerce.deadline.RequestDeadline;
+import com.pavils.ecommerce.resilience.DownstreamGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Looks customers up through the customer service's multi-id endpoint, so the lookups of
+ * concurrent checkouts share one request. A batch serves many requests, so it is sent without the
+ * deadline of whichever one happened to fill it.
+ */
+@Component
+public class CustomerLoader implements AutoCloseable {
+
+    private final BatchLoader<String, CustomerResponse> loader;
+
+    public CustomerLoader(
+            CustomerClient customerClient,
+            DownstreamGuard customerGuard,
+            ExecutorService orderExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${application.batch.customer.max-size:100}") int maxBatchSize,
+            @Value("${application.batch.customer.max-wait:5}") long maxWaitMillis
+    ) {
+        this.loader = new BatchLoader<>(
+                "customer",
+                customerIds -> RequestDeadline.callWithout(() ->
+                                customerGuard.call(() -> customerClient.findCustomersByIds(customerIds)))
+                        .stream()
+                        .collect(Collectors.toMap(CustomerResponse::id, Function.identity(), (first, second) -> first)),
+                maxBatchSize,
+                Duration.ofMillis(maxWaitMillis),
+                orderExecutor,
+                meterRegistry
+        );
+    }
+
+    public CompletableFuture<Optional<CustomerResponse>> findCustomerById(String customerId) {
+        return loader.load(customerId).thenApply(Optional::ofNullable);
+    }
+
+    @Override
+    public void close() {
+        loader.close();
+    }
+}
@@ -0,0 +1,33 @@
+package com.pavils.ecommerce.deadline;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Passes the current request's deadline on to the services it calls, through OpenFeign, which picks
+ * this bean up for every client, and through the {@code RestTemplate}.
+ */
+@Component
+public class DeadlineHeaderInterceptor implements RequestInterceptor, ClientHttpRequestInterceptor {
+
+    @Override
+    public void apply(RequestTemplate template) {
+        RequestDeadline.current().ifPresent(deadline ->
+                template.header(RequestDeadline.HEADER, String.valueOf(deadline.toEpochMilli())));
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        RequestDeadline.current().ifPresent(deadline ->
+                request.getHeaders().set(RequestDeadline.HEADER, String.valueOf(deadline.toEpochMilli())));
+        return execution.execute(request, body);
+    }
+}
@@ -0,0 +1,50 @@
+package com.pavils.ecommerce.deadline;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every task with the {@link RequestDeadline} of the thread that submitted it, so the remote
+ * calls a request fans out to still carry its deadline.
+ */
+public class DeadlinePropagatingExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+
+    public DeadlinePropagatingExecutorService(ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        var deadline = RequestDeadline.current().orElse(null);
+        delegate.execute(() -> RequestDeadline.runWith(deadline, command));
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,109 @@
+package com.pavils.ecommerce.deadline;
+
+import com.pavils.ecommerce.exception.DeadlineExceededException;
+import io.micrometer.core.instrument.Metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * The deadline of the request being served: the instant, sent by the gateway in {@value #HEADER}
+ * as epoch milliseconds, after which nobody waits for the answer any more. Every service compares
+ * it with its own clock, which assumes clocks kept in sync, e.g. by NTP.
+ * <p>
+ * The deadline is held per thread. {@link RequestDeadlineFilter} sets it for an incoming request,
+ * {@link DeadlinePropagatingExecutorService} hands it to the tasks the request starts, and
+ * {@link DeadlineHeaderInterceptor} puts it on outgoing calls. Work skipped because the deadline
+ * passed is counted as {@code deadline.work.avoided}, tagged by stage.
+ */
+public final class RequestDeadline {
+
+    public static final String HEADER = "X-Request-Deadline";
+
+    private static final ThreadLocal<Instant> CURRENT = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static Optional<Instant> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    public static Optional<Duration> remaining() {
+        return current().map(deadline -> Duration.between(Instant.now(), deadline));
+    }
+
+    public static boolean isExpired() {
+        var deadline = CURRENT.get();
+        return deadline != null && !deadline.isAfter(Instant.now());
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline passed, counting {@code stage} as avoided
+     */
+    public static void check(String stage) {
+        if (isExpired()) {
+            throw exceeded(stage);
+        }
+    }
+
+    public static DeadlineExceededException exceeded(String stage) {
+        avoided(stage);
+        return new DeadlineExceededException("The request deadline passed before " + stage);
+    }
+
+    public static void avoided(String stage) {
+        Metrics.counter("deadline.work.avoided", "stage", stage).increment();
+    }
+
+    public static <T> T callWith(Instant deadline, Supplier<T> work) {
+        var previous = set(deadline);
+        try {
+            return work.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    public static void runWith(Instant deadline, Runnable work) {
+        callWith(deadline, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    // For work that is owed whether or not the client still waits, e.g. giving stock back
+    public static <T> T callWithout(Supplier<T> work) {
+        return callWith(null, work);
+    }
+
+    public static void runWithout(Runnable work) {
+        runWith(null, work);
+    }
+
+    /**
+     * @return the deadline in {@code header}, or {@code null} if it is missing or malformed
+     */
+    static Instant parse(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(header.strip()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static Instant set(Instant deadline) {
+        var previous = CURRENT.get();
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,11 @@
+package com.pavils.ecommerce.exception;
+
+/**
+ * Work that was skipped because the client's request deadline had already passed.
+ */
+public class DeadlineExceededException extends BusinessException {
+
+    public DeadlineExceededException(String msg) {
+        super(msg);
+    }
+}
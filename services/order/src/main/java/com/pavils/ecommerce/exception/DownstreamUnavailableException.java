@@ -0,0 +1,12 @@
+package com.pavils.ecommerce.exception;
+
+/**
+ * A downstream service that was not called because its circuit breaker is open or too many calls
+ * to it are already running, or that did not answer within its call timeout.
+ */
+public class DownstreamUnavailableException extends BusinessException {
+
+    public DownstreamUnavailableException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,12 @@
+package com.pavils.ecommerce.exception;
+
+/**
+ * An {@code Idempotency-Key} that was sent with a different order, or whose first request is
+ * still running on another instance.
+ */
+public class IdempotencyConflictException extends BusinessException {
+
+    public IdempotencyConflictException(String msg) {
+        super(msg);
+    }
+}
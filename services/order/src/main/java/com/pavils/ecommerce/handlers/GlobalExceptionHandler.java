@@ -2,6 +2,9 @@ package com.pavils.ecommerce.handlers;
 
 
 import com.pavils.ecommerce.exception.BusinessException;
+import com.pavils.ecommerce.exception.DeadlineExceededException;
+import com.pavils.ecommerce.exception.DownstreamUnavailableException;
+import com.pavils.ecommerce.exception.IdempotencyConflictException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -21,6 +24,27 @@ public class GlobalExceptionHandler {
                 .body(ex.getMsg());
     }
 
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<String> handle(IdempotencyConflictException ex) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(ex.getMsg());
+    }
+
+    @ExceptionHandler(DownstreamUnavailableException.class)
+    public ResponseEntity<String> handle(DownstreamUnavailableException ex) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ex.getMsg());
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<String> handle(DeadlineExceededException ex) {
+        return ResponseEntity
+                .status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(ex.getMsg());
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handle(MethodArgumentNotValidException ex) {
         var errors = new HashMap<String, String>();
@@ -0,0 +1,37 @@
+package com.pavils.ecommerce.idempotency;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * The persistent tier of the order dedupe store. A row is claimed before an order is placed and
+ * gets its order id in the same transaction as the order; a row without an order id is a request
+ * still in progress. A row whose order is paid after that transaction stays payment-pending until
+ * the payment succeeded.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+@Entity
+@Table(name = "order_idempotency_key")
+public class IdempotencyRecord {
+
+    @Id
+    @Column(length = 255)
+    private String idempotencyKey;
+    // SHA-256 of the request body, so a key reused for a different order is refused
+    @Column(length = 64, nullable = false)
+    private String fingerprint;
+    private Integer orderId;
+    @Column(nullable = false)
+    private boolean paymentPending;
+    @Column(nullable = false)
+    private LocalDateTime createdDate;
+}
@@ -0,0 +1,65 @@
+package com.pavils.ecommerce.idempotency;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // Inserts the key, or takes over a claim whose owner gave up before storing an order; 0 when taken
+    @Modifying
+    @Query(value = """
+            insert into order_idempotency_key (idempotency_key, fingerprint, created_date)
+            values (:key, :fingerprint, :now)
+            on conflict (idempotency_key) do update
+                set fingerprint = excluded.fingerprint, created_date = excluded.created_date
+                where order_idempotency_key.order_id is null
+                  and order_idempotency_key.created_date < :staleBefore
+            """, nativeQuery = true)
+    int claim(
+            @Param("key") String key,
+            @Param("fingerprint") String fingerprint,
+            @Param("now") LocalDateTime now,
+            @Param("staleBefore") LocalDateTime staleBefore
+    );
+
+    // Takes over a stored order whose payment failed, or whose owner gave up on it; 0 when taken
+    @Modifying
+    @Query("""
+            update IdempotencyRecord r set r.createdDate = :now
+            where r.idempotencyKey = :key and r.paymentPending = true and r.createdDate < :staleBefore
+            """)
+    int claimPayment(
+            @Param("key") String key,
+            @Param("now") LocalDateTime now,
+            @Param("staleBefore") LocalDateTime staleBefore
+    );
+
+    @Modifying
+    @Query("update IdempotencyRecord r set r.orderId = :orderId, r.paymentPending = :paymentPending where r.idempotencyKey = :key")
+    int complete(
+            @Param("key") String key,
+            @Param("orderId") Integer orderId,
+            @Param("paymentPending") boolean paymentPending
+    );
+
+    @Modifying
+    @Query("update IdempotencyRecord r set r.paymentPending = false where r.idempotencyKey = :key")
+    int settle(@Param("key") String key);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.idempotencyKey = :key and r.orderId is null")
+    int release(@Param("key") String key);
+
+    // Backdates the claim on a stored order whose payment failed, so the next retry takes it over at once
+    @Modifying
+    @Query("update IdempotencyRecord r set r.createdDate = :staleBefore where r.idempotencyKey = :key and r.paymentPending = true")
+    int releasePayment(@Param("key") String key, @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.createdDate < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,278 @@
+package com.pavils.ecommerce.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pavils.ecommerce.exception.IdempotencyConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Answers a repeated {@code Idempotency-Key} with the order the first request created instead of
+ * placing it again.
+ * <p>
+ * The front tier is an in-memory cache of recent keys. It also holds requests still running on
+ * this instance, so a concurrent duplicate waits for the first one and shares its outcome. The
+ * persistent tier is {@code order_idempotency_key}: a key is claimed there before the order is
+ * placed, which makes duplicates that reach another instance wait for the stored order id. A
+ * failed order releases its claim so the client can retry; a claim left behind by a crashed
+ * instance is taken over after {@code application.idempotency.in-progress-timeout}.
+ * <p>
+ * An order paid by a blocking call after its transaction is stored payment-pending, and the key
+ * only answers with it once the payment succeeded. If the payment fails, the order stays, and a
+ * retry of the key pays that order instead of placing a new one.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+
+    private final IdempotencyRecordRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, CompletableFuture<StoredOrder>> recent;
+    private final Duration retention;
+    private final Duration inProgressTimeout;
+    private final Duration waitTimeout;
+    private final Counter memoryHits;
+    private final Counter inFlightHits;
+    private final Counter databaseHits;
+    private final Counter misses;
+    private final Counter paymentRetries;
+    private final Counter conflicts;
+
+    public IdempotencyStore(
+            IdempotencyRecordRepository repository,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${application.idempotency.cache-size:100000}") long cacheSize,
+            @Value("${application.idempotency.retention:86400000}") long retentionMillis,
+            @Value("${application.idempotency.in-progress-timeout:60000}") long inProgressTimeoutMillis,
+            @Value("${application.idempotency.wait-timeout:10000}") long waitTimeoutMillis
+    ) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.retention = Duration.ofMillis(retentionMillis);
+        this.inProgressTimeout = Duration.ofMillis(inProgressTimeoutMillis);
+        this.waitTimeout = Duration.ofMillis(waitTimeoutMillis);
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(retention)
+                .build();
+
+        this.memoryHits = hits(meterRegistry, "memory");
+        this.inFlightHits = hits(meterRegistry, "in-flight");
+        this.databaseHits = hits(meterRegistry, "database");
+        this.misses = meterRegistry.counter("order.idempotency.misses");
+        this.paymentRetries = meterRegistry.counter("order.idempotency.payment-retries");
+        this.conflicts = meterRegistry.counter("order.idempotency.conflicts");
+        Gauge.builder("order.idempotency.cached", recent, Cache::estimatedSize)
+                .description("Idempotency keys held in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the order stored for {@code key}, or runs {@code placeOrder} once and returns its
+     * result. {@code placeOrder} must call {@link #complete} inside the transaction that stores
+     * the order, and {@link #settle} once a payment made after that transaction succeeded. A
+     * stored order whose payment did not succeed is handed to {@code payOrder} instead, which
+     * must settle it the same way.
+     *
+     * @throws IdempotencyConflictException if the key was used for a different request, or its
+     *                                      first request is still running after the wait timeout
+     */
+    public Integer execute(String key, Object request, Supplier<Integer> placeOrder, Consumer<Integer> payOrder) {
+        var fingerprint = fingerprint(request);
+        var pending = new CompletableFuture<StoredOrder>();
+        var existing = recent.asMap().putIfAbsent(key, pending);
+        if (existing != null) {
+            (existing.isDone() ? memoryHits : inFlightHits).increment();
+            return orderIdOf(key, fingerprint, await(key, existing));
+        }
+
+        try {
+            var stored = resolve(key, fingerprint, placeOrder, payOrder);
+            pending.complete(stored);
+            return orderIdOf(key, fingerprint, stored);
+        } catch (RuntimeException e) {
+            // Removed first, so a completed future in the cache always holds an order
+            recent.asMap().remove(key, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Stores the order id for a claimed key; called in the order's own transaction, so the key
+     * never places a second order once one exists. With {@code paymentPending} the key does not
+     * answer with the order until {@link #settle} is called.
+     */
+    public void complete(String key, Integer orderId, boolean paymentPending) {
+        repository.complete(key, orderId, paymentPending);
+    }
+
+    /**
+     * Records that the payment of the key's order succeeded. Logged rather than thrown if it
+     * fails, since the order is paid by then; a retry of the key then pays it again, which the
+     * payment service answers with the order's existing payment.
+     */
+    public void settle(String key) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.settle(key));
+        } catch (RuntimeException e) {
+            log.error("Could not record the payment for idempotency key {}", key, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.idempotency.purge-interval:3600000}")
+    public void purgeExpired() {
+        var purged = transactionTemplate.execute(status ->
+                repository.deleteCreatedBefore(LocalDateTime.now().minus(retention)));
+        log.debug("Purged {} expired idempotency keys", purged);
+    }
+
+    private StoredOrder resolve(String key, String fingerprint, Supplier<Integer> placeOrder, Consumer<Integer> payOrder) {
+        var deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            if (claim(key, fingerprint)) {
+                misses.increment();
+                try {
+                    return new StoredOrder(fingerprint, placeOrder.get());
+                } catch (RuntimeException e) {
+                    release(key);
+                    throw e;
+                }
+            }
+
+            var record = repository.findById(key);
+            if (record.isPresent()) {
+                var stored = new StoredOrder(record.get().getFingerprint(), record.get().getOrderId());
+                if (!stored.fingerprint().equals(fingerprint)) {
+                    return stored;
+                }
+                if (stored.orderId() != null && !record.get().isPaymentPending()) {
+                    databaseHits.increment();
+                    return stored;
+                }
+                if (stored.orderId() != null && claimPayment(key)) {
+                    paymentRetries.increment();
+                    try {
+                        payOrder.accept(stored.orderId());
+                        return stored;
+                    } catch (RuntimeException e) {
+                        release(key);
+                        throw e;
+                    }
+                }
+            }
+            // Another request is placing or paying this order, or just gave up on it and the key is free again
+            if (System.nanoTime() > deadline) {
+                throw stillRunning(key);
+            }
+            pause(key);
+        }
+    }
+
+    private boolean claim(String key, String fingerprint) {
+        var now = LocalDateTime.now();
+        var claimed = transactionTemplate.execute(status ->
+                repository.claim(key, fingerprint, now, now.minus(inProgressTimeout)));
+        return claimed != null && claimed == 1;
+    }
+
+    private boolean claimPayment(String key) {
+        var now = LocalDateTime.now();
+        var claimed = transactionTemplate.execute(status ->
+                repository.claimPayment(key, now, now.minus(inProgressTimeout)));
+        return claimed != null && claimed == 1;
+    }
+
+    // Frees a bare claim, or the claim on a stored order whose payment failed
+    private void release(String key) {
+        var staleBefore = LocalDateTime.now().minus(inProgressTimeout).minusSeconds(1);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                repository.release(key);
+                repository.releasePayment(key, staleBefore);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not release idempotency key {}; it frees up after the in-progress timeout", key, e);
+        }
+    }
+
+    private StoredOrder await(String key, CompletableFuture<StoredOrder> existing) {
+        try {
+            return existing.get(waitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw stillRunning(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw stillRunning(key);
+        }
+    }
+
+    private Integer orderIdOf(String key, String fingerprint, StoredOrder stored) {
+        if (stored.orderId() == null || !stored.fingerprint().equals(fingerprint)) {
+            conflicts.increment();
+            throw new IdempotencyConflictException("Idempotency-Key " + key + " was already used for a different order");
+        }
+        return stored.orderId();
+    }
+
+    private IdempotencyConflictException stillRunning(String key) {
+        conflicts.increment();
+        return new IdempotencyConflictException("The order for Idempotency-Key " + key + " is still being processed");
+    }
+
+    private void pause(String key) {
+        try {
+            Thread.sleep(POLL_INTERVAL);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw stillRunning(key);
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint the request", e);
+        }
+    }
+
+    private static Counter hits(MeterRegistry meterRegistry, String tier) {
+        return Counter.builder("order.idempotency.hits")
+                .description("Requests answered from the dedupe store instead of placing the order again")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    private record StoredOrder(String fingerprint, Integer orderId) {
+    }
+}
@@ -1,11 +1,8 @@
 package com.pavils.ecommerce.kafka;
 
+import com.pavils.ecommerce.outbox.Outbox;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -13,16 +10,15 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class OrderProducer {
 
-    private final KafkaTemplate<String, OrderConfirmation> kafkaTemplate;
+    private final Outbox outbox;
 
+    /**
+     * Queues the confirmation in the order outbox as part of the caller's transaction;
+     * it reaches {@code order-topic} once the relay picks it up after commit.
+     */
     public void sendOrderConfirmation(OrderConfirmation orderConfirmation) {
-        log.info("Sending order confirmation");
+        log.info("Queueing order confirmation");
 
-        Message<OrderConfirmation> message = MessageBuilder
-                .withPayload(orderConfirmation)
-                .setHeader(KafkaHeaders.TOPIC, "order-topic")
-                .build();
-
-        kafkaTemplate.send(message);
+        outbox.enqueue("order-topic", orderConfirmation.orderReference(), "orderConfirmation", orderConfirmation);
     }
 }
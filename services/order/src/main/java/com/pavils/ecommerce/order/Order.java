@@ -29,8 +29,15 @@ public class Order {
     @Enumerated(EnumType.STRING)
     private PaymentMethod paymentMethod;
     private String customerId;
+    // Set once the payment service accepted the payment; stays empty until then in async payment mode
+    private Integer paymentId;
+    // Set once the payment service rejected the payment; the order is then never confirmed
+    private LocalDateTime paymentFailedDate;
+    // Under which the product service took the stock, to give it back if the payment is rejected
+    private String purchaseId;
 
     @OneToMany(mappedBy = "order")
+    @OrderBy("id")
     private List<OrderLine> orderLines;
     @CreatedDate
     @Column(updatable = false, nullable = false)
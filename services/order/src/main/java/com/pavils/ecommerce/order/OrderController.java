@@ -1,10 +1,13 @@
 package com.pavils.ecommerce.order;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -16,9 +19,10 @@ public class OrderController {
 
     @PostMapping
     public ResponseEntity<Integer> createOrder(
+            @RequestHeader(name = "Idempotency-Key", required = false) @Size(max = 255) String idempotencyKey,
             @RequestBody @Valid OrderRequest request
     ) {
-        return ResponseEntity.ok(service.createOrder(request));
+        return ResponseEntity.ok(service.createOrder(request, idempotencyKey));
     }
 
     @GetMapping
@@ -26,6 +30,27 @@ public class OrderController {
         return ResponseEntity.ok(service.findAll());
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<OrderPageResponse> findPage(
+            @RequestParam(value = "customerId", required = false) String customerId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "paymentMethod", required = false) PaymentMethod paymentMethod,
+            @RequestParam(value = "afterCreatedDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterCreatedDate,
+            @RequestParam(value = "afterId", required = false) Integer afterId,
+            @RequestParam(value = "size", defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(service.findPage(
+                new OrderFilter(customerId, from, to, paymentMethod), afterCreatedDate, afterId, size));
+    }
+
+    @GetMapping("/{order-id}/detail")
+    public ResponseEntity<OrderDetailResponse> findDetailById(
+            @PathVariable("order-id") Integer orderId
+    ) {
+        return ResponseEntity.ok(service.findDetailById(orderId));
+    }
+
     @GetMapping("/{order-id}")
     public ResponseEntity<OrderResponse> findById(
          @PathVariable("order-id") Integer orderId
@@ -0,0 +1,20 @@
+package com.pavils.ecommerce.order;
+
+import com.pavils.ecommerce.orderline.OrderLineResponse;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record OrderDetailResponse(
+        Integer id,
+        String reference,
+        BigDecimal amount,
+        PaymentMethod paymentMethod,
+        String customerId,
+        Integer paymentId,
+        LocalDateTime paymentFailedDate,
+        LocalDateTime createdDate,
+        List<OrderLineResponse> lines
+) {
+}
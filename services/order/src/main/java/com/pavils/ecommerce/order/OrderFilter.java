@@ -0,0 +1,14 @@
+package com.pavils.ecommerce.order;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional filters of the order listing; {@code from} is inclusive and {@code to} exclusive.
+ */
+public record OrderFilter(
+        String customerId,
+        LocalDateTime from,
+        LocalDateTime to,
+        PaymentMethod paymentMethod
+) {
+}
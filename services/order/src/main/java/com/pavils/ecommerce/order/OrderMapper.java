@@ -1,10 +1,16 @@
 package com.pavils.ecommerce.order;
 
+import com.pavils.ecommerce.orderline.OrderLineMapper;
 import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 @Service
+@RequiredArgsConstructor
 public class OrderMapper {
+
+    private final OrderLineMapper orderLineMapper;
+
     public Order toOrder(@Valid OrderRequest request) {
         return Order
                 .builder()
@@ -25,4 +31,21 @@ public class OrderMapper {
                 order.getCustomerId()
         );
     }
+
+    public OrderDetailResponse toOrderDetail(Order order) {
+        return new OrderDetailResponse(
+                order.getId(),
+                order.getReference(),
+                order.getTotalAmount(),
+                order.getPaymentMethod(),
+                order.getCustomerId(),
+                order.getPaymentId(),
+                order.getPaymentFailedDate(),
+                order.getCreatedDate(),
+                order.getOrderLines()
+                        .stream()
+                        .map(orderLineMapper::toOrderLineResponse)
+                        .toList()
+        );
+    }
 }
@@ -0,0 +1,15 @@
+package com.pavils.ecommerce.order;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderPageRepository {
+
+    /**
+     * Reads up to {@code limit} orders matching {@code filter}, newest first, starting after the
+     * order at ({@code afterCreatedDate}, {@code afterId}), or from the newest when both are null.
+     * Only the filters that are set become part of the query, so the planner can pick the index
+     * that leads with them.
+     */
+    List<OrderSummary> findPage(OrderFilter filter, LocalDateTime afterCreatedDate, Integer afterId, int limit);
+}
@@ -0,0 +1,67 @@
+package com.pavils.ecommerce.order;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class OrderPageRepositoryImpl implements OrderPageRepository {
+
+    private static final String SELECT_ORDER_SUMMARY = """
+            select id, reference, total_amount, payment_method, customer_id, created_date
+            from customer_order
+            where true
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<OrderSummary> findPage(OrderFilter filter, LocalDateTime afterCreatedDate, Integer afterId, int limit) {
+        var sql = new StringBuilder(SELECT_ORDER_SUMMARY);
+        var args = new ArrayList<>();
+
+        if (filter.customerId() != null) {
+            sql.append(" and customer_id = ?");
+            args.add(filter.customerId());
+        }
+        if (filter.paymentMethod() != null) {
+            sql.append(" and payment_method = ?");
+            args.add(filter.paymentMethod().name());
+        }
+        if (filter.from() != null) {
+            sql.append(" and created_date >= ?");
+            args.add(filter.from());
+        }
+        if (filter.to() != null) {
+            sql.append(" and created_date < ?");
+            args.add(filter.to());
+        }
+        // Row comparison, so the cursor is one range condition on the (created_date, id) index suffix
+        if (afterCreatedDate != null && afterId != null) {
+            sql.append(" and (created_date, id) < (?, ?)");
+            args.add(afterCreatedDate);
+            args.add(afterId);
+        }
+        sql.append(" order by created_date desc, id desc limit ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), OrderPageRepositoryImpl::toSummary, args.toArray());
+    }
+
+    private static OrderSummary toSummary(ResultSet resultSet, int rowNum) throws SQLException {
+        var paymentMethod = resultSet.getString("payment_method");
+        return new OrderSummary(
+                resultSet.getInt("id"),
+                resultSet.getString("reference"),
+                resultSet.getBigDecimal("total_amount"),
+                paymentMethod == null ? null : PaymentMethod.valueOf(paymentMethod),
+                resultSet.getString("customer_id"),
+                resultSet.getObject("created_date", LocalDateTime.class)
+        );
+    }
+}
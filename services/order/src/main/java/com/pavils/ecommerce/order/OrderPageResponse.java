@@ -0,0 +1,11 @@
+package com.pavils.ecommerce.order;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record OrderPageResponse(
+        List<OrderSummary> orders,
+        LocalDateTime nextAfterCreatedDate,
+        Integer nextAfterId
+) {
+}
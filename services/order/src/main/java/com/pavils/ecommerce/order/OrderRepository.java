@@ -1,6 +1,14 @@
 package com.pavils.ecommerce.order;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface OrderRepository extends JpaRepository<Order, Integer> {
+import java.util.Optional;
+
+public interface OrderRepository extends JpaRepository<Order, Integer>, OrderPageRepository {
+
+    // The order and all its lines in one select
+    @Query("select o from Order o left join fetch o.orderLines where o.id = :id")
+    Optional<Order> findDetailById(@Param("id") Integer id);
 }
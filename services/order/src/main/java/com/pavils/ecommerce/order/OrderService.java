@@ -1,80 +1,309 @@
 package com.pavils.ecommerce.order;
 
-import com.pavils.ecommerce.customer.CustomerClient;
+import com.pavils.ecommerce.customer.CustomerCache;
+import com.pavils.ecommerce.customer.CustomerResponse;
+import com.pavils.ecommerce.deadline.RequestDeadline;
 import com.pavils.ecommerce.exception.BusinessException;
+import com.pavils.ecommerce.idempotency.IdempotencyStore;
 import com.pavils.ecommerce.kafka.OrderConfirmation;
 import com.pavils.ecommerce.kafka.OrderProducer;
 import com.pavils.ecommerce.orderline.OrderLineRequest;
 import com.pavils.ecommerce.orderline.OrderLineService;
 import com.pavils.ecommerce.payment.PaymentClient;
 import com.pavils.ecommerce.payment.PaymentRequest;
+import com.pavils.ecommerce.payment.PaymentRequestProducer;
 import com.pavils.ecommerce.product.ProductClient;
-import com.pavils.ecommerce.product.PurchaseRequest;
+import com.pavils.ecommerce.product.PurchaseResponse;
+import com.pavils.ecommerce.resilience.DownstreamGuard;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class OrderService {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
+    // When set, the payment is handed to the payment service as an event instead of a blocking call
+    @Value("${application.payment.async:false}")
+    private boolean asyncPayment;
+
     private final OrderRepository orderRepository;
-    private final CustomerClient customerClient;
+    private final CustomerCache customerCache;
     private final ProductClient productClient;
     private final OrderMapper mapper;
     private final OrderLineService orderLineService;
     private final OrderProducer orderProducer;
     private final PaymentClient paymentClient;
+    private final ExecutorService orderExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentRequestProducer paymentRequestProducer;
+    private final IdempotencyStore idempotencyStore;
+    private final DownstreamGuard productGuard;
+    private final DownstreamGuard paymentGuard;
 
     public Integer createOrder(@Valid OrderRequest request) {
+        return placeOrder(request, null);
+    }
+
+    /**
+     * Like {@link #createOrder(OrderRequest)}, but a repeated or concurrent request with the same
+     * {@code idempotencyKey} is answered with the order the first one created. If that order's
+     * payment failed, the repeated request pays it instead.
+     */
+    public Integer createOrder(@Valid OrderRequest request, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return placeOrder(request, null);
+        }
+        return idempotencyStore.execute(idempotencyKey, request,
+                () -> placeOrder(request, idempotencyKey),
+                orderId -> payStoredOrder(orderId, idempotencyKey));
+    }
+
+    private Integer placeOrder(OrderRequest request, String idempotencyKey) {
+
+        //check the customer --> cache or OpenFeign, and purchase the product --> product_ms, side by side
+        var purchaseId = UUID.randomUUID().toString();
+        var customerLookup = CompletableFuture.supplyAsync(() -> findCustomer(request.customerId()), orderExecutor);
+        var productPurchase = CompletableFuture.supplyAsync(
+                () -> productGuard.call(() -> productClient.purchaseRequest(purchaseId, request.products())), orderExecutor);
+        awaitBoth(customerLookup, productPurchase, purchaseId);
+
+        var customer = customerLookup.join();
+        var purchasedProducts = productPurchase.join();
 
-        //check the customer --> OpenFeign
-        var customer = customerClient.findCustomerById(request.customerId())
-                .orElseThrow(() -> new BusinessException("Cannot create order:: Customer not found with the provided ID::" + request.customerId()));
-
-        //purchase the product --> product_ms
-        var purchasedProducts = productClient.purchaseRequest(request.products());
-
-        //persist order
-        var order = orderRepository.save(mapper.toOrder(request));
-
-        //persist order lines
-        for (PurchaseRequest purchaseRequest : request.products()) {
-            orderLineService.saveOrderLine(
-                    new OrderLineRequest(
-                            null,
-                            order.getId(),
-                            purchaseRequest.productId(),
-                            purchaseRequest.quantity()
-                    )
+        //nobody waits for an order whose deadline passed meanwhile: give the stock back instead of storing it
+        if (RequestDeadline.isExpired()) {
+            CompletableFuture.runAsync(() -> releaseStock(purchaseId), orderExecutor);
+            throw RequestDeadline.exceeded("order-persist");
+        }
+
+        //persist order and order lines in one transaction; if it rolls back, no order holds the stock any more
+        Order order;
+        try {
+            order = transactionTemplate.execute(status ->
+                    persistOrder(request, idempotencyKey, purchaseId, customer, purchasedProducts));
+        } catch (RuntimeException e) {
+            CompletableFuture.runAsync(() -> releaseStock(purchaseId), orderExecutor);
+            throw e;
+        }
+
+        if (!asyncPayment) {
+            var confirmation = new OrderConfirmation(
+                    request.reference(),
+                    request.amount(),
+                    request.paymentMethod(),
+                    customer,
+                    purchasedProducts
             );
+            pay(order, toPaymentRequest(request, order, customer), idempotencyKey, confirmation);
         }
 
-        var paymentRequest = new PaymentRequest(
+        return order.getId();
+    }
+
+    //an earlier request with this key stored the order, but its payment failed: pay that order instead of placing another
+    private void payStoredOrder(Integer orderId, String idempotencyKey) {
+        var order = orderRepository.findDetailById(orderId)
+                .orElseThrow(() -> new EntityNotFoundException(
+                        String.format("No order found with the provided ID: %d", orderId))
+                );
+        var customer = findCustomer(order.getCustomerId());
+
+        pay(
+                order,
+                new PaymentRequest(order.getTotalAmount(), order.getPaymentMethod(), order.getId(), order.getReference(), customer),
+                idempotencyKey,
+                storedConfirmation(order, customer)
+        );
+    }
+
+    /**
+     * Queues, in the caller's transaction, the confirmations of orders whose asynchronous payment
+     * the payment service accepted. An order whose customer cannot be looked up is logged and
+     * left unconfirmed; the payment service still sends its own payment confirmation.
+     */
+    public void confirmPaidOrders(Collection<Integer> orderIds) {
+        for (var orderId : orderIds) {
+            var order = orderRepository.findDetailById(orderId);
+            if (order.isEmpty()) {
+                log.warn("Cannot confirm paid order {}: it does not exist", orderId);
+                continue;
+            }
+            try {
+                var customer = findCustomer(order.get().getCustomerId());
+                orderProducer.sendOrderConfirmation(storedConfirmation(order.get(), customer));
+            } catch (BusinessException e) {
+                log.error("Could not confirm paid order {}", order.get().getReference(), e);
+            }
+        }
+    }
+
+    /**
+     * Gives back the stock of an order whose asynchronous payment was rejected.
+     */
+    public void releasePurchase(String purchaseId) {
+        releaseStock(purchaseId);
+    }
+
+    //the confirmation of a stored order, with the names and prices its lines were charged at
+    private static OrderConfirmation storedConfirmation(Order order, CustomerResponse customer) {
+        var purchasedProducts = order.getOrderLines()
+                .stream()
+                .map(line -> new PurchaseResponse(
+                        line.getProductId(), line.getProductName(), null, line.getUnitPrice(), line.getQuantity()))
+                .toList();
+        return new OrderConfirmation(order.getReference(), order.getTotalAmount(), order.getPaymentMethod(), customer, purchasedProducts);
+    }
+
+    //the order is committed, so its payment is owed whether or not the client still waits
+    private void pay(Order order, PaymentRequest paymentRequest, String idempotencyKey, OrderConfirmation confirmation) {
+        RequestDeadline.callWithout(() -> paymentGuard.call(() -> paymentClient.requestOrderPayment(paymentRequest)));
+        //the key answers with the order from now on
+        if (idempotencyKey != null) {
+            idempotencyStore.settle(idempotencyKey);
+        }
+        //only a paid order is confirmed: order confirmation --> outbox --> notifications_ms
+        confirm(order, confirmation);
+    }
+
+    private Order persistOrder(
+            OrderRequest request,
+            String idempotencyKey,
+            String purchaseId,
+            CustomerResponse customer,
+            List<PurchaseResponse> purchasedProducts
+    ) {
+        // Flushed so the order row exists before its lines are inserted over plain JDBC
+        var newOrder = mapper.toOrder(request);
+        newOrder.setPurchaseId(purchaseId);
+        var order = orderRepository.saveAndFlush(newOrder);
+
+        //order lines carry the name and price the product service charged, as of now
+        var purchased = purchasedProducts.stream()
+                .filter(product -> product.productId() != null)
+                .collect(Collectors.toMap(PurchaseResponse::productId, Function.identity(), (first, second) -> first));
+        orderLineService.saveOrderLines(
+                request.products()
+                        .stream()
+                        .map(purchaseRequest -> {
+                            var product = purchased.get(purchaseRequest.productId());
+                            return new OrderLineRequest(
+                                    null,
+                                    order.getId(),
+                                    purchaseRequest.productId(),
+                                    purchaseRequest.quantity(),
+                                    product == null ? null : product.name(),
+                                    product == null ? null : product.price()
+                            );
+                        })
+                        .toList()
+        );
+
+        //payment requested event --> outbox --> payment_ms, committed together with the order; either way
+        //the order is confirmed only once its payment succeeded, by the payment result when asynchronous
+        if (asyncPayment) {
+            paymentRequestProducer.requestOrderPayment(toPaymentRequest(request, order, customer));
+        }
+
+        //idempotency key --> order id, so a retry never places the order twice; a blocking payment
+        //still has to settle the key before a retry is answered with the order
+        if (idempotencyKey != null) {
+            idempotencyStore.complete(idempotencyKey, order.getId(), !asyncPayment);
+        }
+        return order;
+    }
+
+    // The order is paid by now, so a failure here must not fail it; the payment service still
+    // sends its own payment confirmation
+    private void confirm(Order order, OrderConfirmation confirmation) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> orderProducer.sendOrderConfirmation(confirmation));
+        } catch (RuntimeException e) {
+            log.error("Could not queue the confirmation of paid order {}", order.getReference(), e);
+        }
+    }
+
+    private static PaymentRequest toPaymentRequest(OrderRequest request, Order order, CustomerResponse customer) {
+        return new PaymentRequest(
                 request.amount(),
                 request.paymentMethod(),
                 order.getId(),
                 order.getReference(),
                 customer
         );
+    }
 
-        paymentClient.requestOrderPayment(paymentRequest);
-
-        //send the order confirmation --> notifications_ms (Kafka)
-        orderProducer.sendOrderConfirmation(
-                new OrderConfirmation(
-                        request.reference(),
-                        request.amount(),
-                        request.paymentMethod(),
-                        customer,
-                        purchasedProducts
-                )
-        );
+    private CustomerResponse findCustomer(String customerId) {
+        return customerCache.findCustomerById(customerId)
+                .orElseThrow(() -> new BusinessException("Cannot create order:: Customer not found with the provided ID::" + customerId));
+    }
 
-        return order.getId();
+    /**
+     * Returns once both calls succeeded, or throws the first failure without waiting for the
+     * other call. A pending customer lookup is simply abandoned. A purchase cannot be recalled
+     * once it was sent, and a failed or timed-out call does not tell whether the product service
+     * took it, so its stock is given back by purchase id in the background once the call ends,
+     * whatever its outcome. A cancel for a purchase that never happened only keeps a late one out.
+     */
+    private void awaitBoth(
+            CompletableFuture<CustomerResponse> customerLookup,
+            CompletableFuture<List<PurchaseResponse>> productPurchase,
+            String purchaseId
+    ) {
+        var firstFailure = new CompletableFuture<Void>();
+        customerLookup.whenComplete((customer, failure) -> {
+            if (failure != null) {
+                firstFailure.completeExceptionally(failure);
+            }
+        });
+        productPurchase.whenComplete((purchased, failure) -> {
+            if (failure != null) {
+                firstFailure.completeExceptionally(failure);
+            }
+        });
+
+        try {
+            CompletableFuture.anyOf(firstFailure, CompletableFuture.allOf(customerLookup, productPurchase)).join();
+        } catch (CompletionException e) {
+            customerLookup.cancel(true);
+            productPurchase.whenCompleteAsync((purchased, failure) -> releaseStock(purchaseId), orderExecutor);
+            throw unwrap(e);
+        }
+    }
+
+    // Not guarded, and sent without the request's deadline: giving stock back must not be skipped
+    // while the product breaker is open or the client gone, and it runs off the request path anyway
+    private void releaseStock(String purchaseId) {
+        try {
+            RequestDeadline.runWithout(() -> productClient.cancelPurchase(purchaseId));
+        } catch (RuntimeException e) {
+            log.error("Could not give back the stock of abandoned purchase {}", purchaseId, e);
+        }
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException runtimeException ? runtimeException : e;
     }
 
     public List<OrderResponse> findAll() {
@@ -84,6 +313,26 @@ public class OrderService {
                 .toList();
     }
 
+    public OrderPageResponse findPage(OrderFilter filter, LocalDateTime afterCreatedDate, Integer afterId, int size) {
+        var pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        var orders = orderRepository.findPage(filter, afterCreatedDate, afterId, pageSize);
+
+        var last = orders.size() < pageSize ? null : orders.get(orders.size() - 1);
+        return new OrderPageResponse(
+                orders,
+                last == null ? null : last.createdDate(),
+                last == null ? null : last.id()
+        );
+    }
+
+    public OrderDetailResponse findDetailById(Integer orderId) {
+        return orderRepository.findDetailById(orderId)
+                .map(mapper::toOrderDetail)
+                .orElseThrow(() -> new EntityNotFoundException(
+                        String.format("No order found with the provided ID: %d", orderId))
+                );
+    }
+
     public OrderResponse findById(Integer orderId) {
         return orderRepository.findById(orderId)
                 .map(mapper::fromOrder)
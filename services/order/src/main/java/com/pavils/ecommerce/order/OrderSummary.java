@@ -0,0 +1,14 @@
+package com.pavils.ecommerce.order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record OrderSummary(
+        Integer id,
+        String reference,
+        BigDecimal amount,
+        PaymentMethod paymentMethod,
+        String customerId,
+        LocalDateTime createdDate
+) {
+}
@@ -4,6 +4,8 @@ import com.pavils.ecommerce.order.Order;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.math.BigDecimal;
+
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
@@ -21,4 +23,7 @@ public class OrderLine {
     private Order order;
     private Integer productId;
     private double quantity;
+    // The product as it was sold, so reading an order never needs the product service
+    private String productName;
+    private BigDecimal unitPrice;
 }
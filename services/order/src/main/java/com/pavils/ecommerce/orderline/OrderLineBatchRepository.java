@@ -0,0 +1,11 @@
+package com.pavils.ecommerce.orderline;
+
+import java.util.List;
+
+public interface OrderLineBatchRepository {
+
+    /**
+     * Assigns ids from {@code order_line_seq} and inserts the order lines as one JDBC batch.
+     */
+    void insertAll(List<OrderLine> orderLines);
+}
@@ -0,0 +1,33 @@
+package com.pavils.ecommerce.orderline;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class OrderLineBatchRepositoryImpl implements OrderLineBatchRepository {
+
+    private static final String INSERT_ORDER_LINE = """
+            insert into order_line (id, order_id, product_id, quantity, product_name, unit_price)
+            values (?, ?, ?, ?, ?, ?)
+            """;
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<OrderLine> orderLines) {
+        PooledIds.assign(entityManager, OrderLine.class, orderLines, OrderLine::setId);
+
+        jdbcTemplate.batchUpdate(INSERT_ORDER_LINE, orderLines, orderLines.size(), (statement, orderLine) -> {
+            statement.setInt(1, orderLine.getId());
+            statement.setInt(2, orderLine.getOrder().getId());
+            statement.setInt(3, orderLine.getProductId());
+            statement.setDouble(4, orderLine.getQuantity());
+            statement.setString(5, orderLine.getProductName());
+            statement.setBigDecimal(6, orderLine.getUnitPrice());
+        });
+    }
+}
@@ -16,12 +16,17 @@ public class OrderLineMapper {
                 )
                 .productId(request.productId())
                 .quantity(request.quantity())
+                .productName(request.productName())
+                .unitPrice(request.unitPrice())
                 .build();
     }
 
     public OrderLineResponse toOrderLineResponse(OrderLine orderLine) {
         return new OrderLineResponse(
                 orderLine.getId(),
+                orderLine.getProductId(),
+                orderLine.getProductName(),
+                orderLine.getUnitPrice(),
                 orderLine.getQuantity()
         );
     }
@@ -4,6 +4,6 @@ import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
 
-public interface OrderLineRepository extends JpaRepository<OrderLine, Integer> {
+public interface OrderLineRepository extends JpaRepository<OrderLine, Integer>, OrderLineBatchRepository {
     List<OrderLine> findByOrderId(Integer orderId);
 }
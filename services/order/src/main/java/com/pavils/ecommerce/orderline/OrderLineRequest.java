@@ -1,9 +1,13 @@
 package com.pavils.ecommerce.orderline;
 
+import java.math.BigDecimal;
+
 public record OrderLineRequest(
         Integer id,
         Integer orderId,
         Integer productId,
-        double quantity
+        double quantity,
+        String productName,
+        BigDecimal unitPrice
 ) {
 }
@@ -1,7 +1,12 @@
 package com.pavils.ecommerce.orderline;
 
+import java.math.BigDecimal;
+
 public record OrderLineResponse(
         Integer id,
+        Integer productId,
+        String productName,
+        BigDecimal unitPrice,
         double quantity
 ) {
 }
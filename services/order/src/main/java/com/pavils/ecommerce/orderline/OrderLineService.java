@@ -17,6 +17,13 @@ public class OrderLineService {
         repository.save(mapper.toOrderLine(orderLineRequest));
     }
 
+    // Joins the caller's transaction; all lines go to the database as one JDBC batch
+    public void saveOrderLines(List<OrderLineRequest> orderLineRequests) {
+        repository.insertAll(orderLineRequests.stream()
+                .map(mapper::toOrderLine)
+                .toList());
+    }
+
     public List<OrderLineResponse> findByOrderId(Integer orderId) {
         return repository.findByOrderId(orderId)
                 .stream()
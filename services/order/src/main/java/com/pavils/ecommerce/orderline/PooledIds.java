@@ -0,0 +1,34 @@
+package com.pavils.ecommerce.orderline;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Assigns ids to entities that are inserted over plain JDBC, from the entity's own Hibernate
+ * generator. That generator shares its pooled optimizer with {@code EntityManager.persist}, so with
+ * the sequence's {@code increment by 50} one {@code nextval} serves 50 rows, and ids assigned here
+ * never collide with the ones Hibernate assigns itself.
+ */
+final class PooledIds {
+
+    private PooledIds() {
+    }
+
+    static <T> void assign(EntityManager entityManager, Class<T> entityType, List<T> entities, BiConsumer<T, Integer> setId) {
+        var session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        var generator = (IdentifierGenerator) entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(entityType)
+                .getGenerator();
+
+        for (var entity : entities) {
+            setId.accept(entity, (Integer) generator.generate(session, entity));
+        }
+    }
+}
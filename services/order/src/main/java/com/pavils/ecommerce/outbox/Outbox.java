@@ -0,0 +1,36 @@
+package com.pavils.ecommerce.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class Outbox {
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Queues a record as part of the caller's transaction; {@link OutboxRelay} sends it after
+     * commit. {@code payloadType} is the type id consumers map back to their own class.
+     */
+    public void enqueue(String topic, String key, String payloadType, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + payloadType + " for " + topic, e);
+        }
+
+        outboxRepository.save(
+                OutboxEvent.builder()
+                        .topic(topic)
+                        .messageKey(key)
+                        .payloadType(payloadType)
+                        .payload(json)
+                        .build()
+        );
+    }
+}
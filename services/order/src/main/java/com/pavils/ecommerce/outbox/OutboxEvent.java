@@ -0,0 +1,41 @@
+package com.pavils.ecommerce.outbox;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * A Kafka record waiting to be relayed. It is written in the same transaction as the order it
+ * belongs to and deleted once the broker acknowledged it. A record that keeps failing is
+ * dead-lettered instead: it stays in the table but is no longer relayed.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "order_outbox")
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String topic;
+    private String messageKey;
+    // Sent as the __TypeId__ header, which consumers map back to their own class
+    private String payloadType;
+    @Column(columnDefinition = "text")
+    private String payload;
+    private int attempts;
+    private String lastError;
+    private LocalDateTime deadLetteredDate;
+
+    @CreatedDate
+    @Column(updatable = false, nullable = false)
+    private LocalDateTime createdDate;
+}
@@ -0,0 +1,162 @@
+package com.pavils.ecommerce.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains {@code order_outbox} to Kafka in the background, so checkout never waits on the broker.
+ * <p>
+ * Each cycle locks a batch of rows, hands all of them to the producer at once so they leave in a
+ * few large compressed batches, and deletes the rows the broker acknowledged in the same
+ * transaction. Rows that failed stay in the outbox and are retried on the next cycle, up to
+ * {@code max-attempts} times; after that they are dead-lettered, so a record the broker will never
+ * take (oversized, say) cannot hold up the rows behind it. Dead-lettered rows are counted, logged
+ * and kept for an operator. Delivery is at least once: a crash between the acknowledgement and the
+ * commit sends those rows again.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final OutboxRepository outboxRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final int maxAttempts;
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter deadLettered;
+
+    public OutboxRelay(
+            OutboxRepository outboxRepository,
+            KafkaTemplate<String, String> kafkaTemplate,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${application.outbox.relay.enabled:true}") boolean enabled,
+            @Value("${application.outbox.relay.batch-size:500}") int batchSize,
+            @Value("${application.outbox.relay.send-timeout:10000}") long sendTimeoutMillis,
+            @Value("${application.outbox.relay.max-attempts:10}") int maxAttempts
+    ) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.sendTimeout = Duration.ofMillis(sendTimeoutMillis);
+        this.maxAttempts = maxAttempts;
+        this.sent = meterRegistry.counter("order.outbox.sent");
+        this.failed = meterRegistry.counter("order.outbox.failed");
+        this.deadLettered = meterRegistry.counter("order.outbox.dead-lettered");
+
+        Gauge.builder("order.outbox.depth", outboxRepository, OutboxRepository::countByDeadLetteredDateIsNull)
+                .description("Records waiting in the order outbox")
+                .register(meterRegistry);
+        Gauge.builder("order.outbox.dead-letters", outboxRepository, OutboxRepository::countByDeadLetteredDateIsNotNull)
+                .description("Records the relay gave up on, kept in the order outbox")
+                .register(meterRegistry);
+        Gauge.builder("order.outbox.lag", outboxRepository, OutboxRelay::oldestAgeSeconds)
+                .description("Age of the oldest record waiting in the order outbox")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${application.outbox.relay.poll-interval:100}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        // A fully delivered batch means more rows are probably waiting; keep going instead of sleeping
+        Integer relayed;
+        do {
+            relayed = transactionTemplate.execute(status -> relayBatch());
+        } while (relayed != null && relayed == batchSize);
+    }
+
+    private int relayBatch() {
+        var events = outboxRepository.lockNextBatch(batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        var sends = new ArrayList<CompletableFuture<?>>(events.size());
+        for (var event : events) {
+            var record = new ProducerRecord<String, String>(event.getTopic(), event.getMessageKey(), event.getPayload());
+            record.headers().add(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME,
+                    event.getPayloadType().getBytes(StandardCharsets.UTF_8));
+            sends.add(send(record));
+        }
+
+        var delivered = new ArrayList<OutboxEvent>(events.size());
+        var deadline = System.nanoTime() + sendTimeout.toNanos();
+        for (int i = 0; i < events.size(); i++) {
+            var event = events.get(i);
+            try {
+                sends.get(i).get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                delivered.add(event);
+            } catch (ExecutionException | TimeoutException e) {
+                var cause = e instanceof ExecutionException ? e.getCause() : e;
+                recordFailure(event, cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        outboxRepository.deleteAllByIdInBatch(delivered.stream().map(OutboxEvent::getId).toList());
+        sent.increment(delivered.size());
+        return delivered.size();
+    }
+
+    // A record the producer rejects up front (too large, say) must fail on its own, not the whole batch
+    private CompletableFuture<?> send(ProducerRecord<String, String> record) {
+        try {
+            return kafkaTemplate.send(record);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void recordFailure(OutboxEvent event, Throwable cause) {
+        event.setAttempts(event.getAttempts() + 1);
+        event.setLastError(truncate(String.valueOf(cause)));
+        failed.increment();
+        if (event.getAttempts() >= maxAttempts) {
+            event.setDeadLetteredDate(LocalDateTime.now());
+            deadLettered.increment();
+            log.error("Dead-lettered outbox record {} to {} after {} attempts", event.getId(), event.getTopic(), event.getAttempts(), cause);
+        } else {
+            log.warn("Could not relay outbox record {} to {} (attempt {})", event.getId(), event.getTopic(), event.getAttempts(), cause);
+        }
+    }
+
+    private static double oldestAgeSeconds(OutboxRepository outboxRepository) {
+        var oldest = outboxRepository.findOldestCreatedDate();
+        return oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis() / 1000.0;
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,28 @@
+package com.pavils.ecommerce.outbox;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Skips rows another order-service instance is relaying right now, and dead-lettered ones
+    @Query(value = """
+            select * from order_outbox
+            where dead_lettered_date is null
+            order by id
+            limit :limit
+            for update skip locked
+            """, nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(@Param("limit") int limit);
+
+    @Query("select min(e.createdDate) from OutboxEvent e where e.deadLetteredDate is null")
+    LocalDateTime findOldestCreatedDate();
+
+    long countByDeadLetteredDateIsNull();
+
+    long countByDeadLetteredDateIsNotNull();
+}
@@ -0,0 +1,25 @@
+package com.pavils.ecommerce.payment;
+
+import com.pavils.ecommerce.outbox.Outbox;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentRequestProducer {
+
+    private final Outbox outbox;
+
+    /**
+     * Queues a payment-requested event in the order outbox as part of the caller's transaction.
+     * The payment service consumes it from {@code payment-request-topic} and answers on
+     * {@code payment-result-topic}.
+     */
+    public void requestOrderPayment(PaymentRequest request) {
+        log.debug("Queueing payment request for order {}", request.orderId());
+
+        outbox.enqueue("payment-request-topic", request.orderReference(), "paymentRequested", request);
+    }
+}
@@ -0,0 +1,10 @@
+package com.pavils.ecommerce.payment;
+
+public record PaymentResult(
+        Integer orderId,
+        String orderReference,
+        Integer paymentId,
+        PaymentStatus status,
+        String reason
+) {
+}
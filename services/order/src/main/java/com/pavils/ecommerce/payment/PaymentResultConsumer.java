@@ -0,0 +1,80 @@
+package com.pavils.ecommerce.payment;
+
+import com.pavils.ecommerce.order.OrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentResultConsumer {
+
+    // Guarded on the current state, so a redelivered result changes nothing and confirms nothing twice
+    static final String SET_PAYMENT_ID = """
+            update customer_order set payment_id = ?
+            where id = ? and payment_id is null and payment_failed_date is null
+            """;
+    static final String MARK_PAYMENT_FAILED = """
+            update customer_order set payment_failed_date = ?
+            where id = ? and payment_id is null and payment_failed_date is null
+            returning purchase_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderService orderService;
+
+    /**
+     * Records the payment ids of a poll's worth of accepted payments in one JDBC batch and queues
+     * those orders' confirmations in the same transaction. An order whose payment was rejected is
+     * marked payment-failed, is never confirmed, and gets its stock back once the transaction
+     * committed; its idempotency key keeps answering with it, so the client sees the failure.
+     * Offsets are committed after the listener returns, so a failed batch is delivered again.
+     */
+    @KafkaListener(topics = "payment-result-topic", groupId = "orderPaymentResultGroup", batch = "true")
+    public void consumePaymentResults(List<PaymentResult> results) {
+        var accepted = results.stream()
+                .filter(result -> result.status() == PaymentStatus.ACCEPTED)
+                .toList();
+        var rejected = results.stream()
+                .filter(result -> result.status() == PaymentStatus.REJECTED)
+                .toList();
+        var abandonedPurchases = new ArrayList<String>();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!accepted.isEmpty()) {
+                var updated = jdbcTemplate.batchUpdate(SET_PAYMENT_ID, accepted.stream()
+                        .map(result -> new Object[]{result.paymentId(), result.orderId()})
+                        .toList());
+                var paid = new ArrayList<Integer>(accepted.size());
+                for (int i = 0; i < updated.length; i++) {
+                    if (updated[i] != 0) {
+                        paid.add(accepted.get(i).orderId());
+                    }
+                }
+                orderService.confirmPaidOrders(paid);
+            }
+
+            // Rejections are rare, so one statement each
+            var now = LocalDateTime.now();
+            for (var result : rejected) {
+                log.warn("Payment for order {} was rejected: {}", result.orderReference(), result.reason());
+                jdbcTemplate.queryForList(MARK_PAYMENT_FAILED, String.class, now, result.orderId())
+                        .stream()
+                        .filter(Objects::nonNull)
+                        .forEach(abandonedPurchases::add);
+            }
+        });
+
+        abandonedPurchases.forEach(orderService::releasePurchase);
+    }
+}
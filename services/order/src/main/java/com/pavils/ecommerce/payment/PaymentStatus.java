@@ -0,0 +1,6 @@
+package com.pavils.ecommerce.payment;
+
+public enum PaymentStatus {
+    ACCEPTED,
+    REJECTED
+}
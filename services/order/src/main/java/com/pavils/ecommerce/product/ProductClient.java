@@ -14,14 +14,25 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ProductClient {
 
+    public static final String PURCHASE_ID_HEADER = "X-Purchase-Id";
+
     @Value("${application.config.product-url}")
     private String productUrl;
 
+    // Reached directly, as the gateway does not route internal endpoints
+    @Value("${application.config.product-internal-url}")
+    private String productInternalUrl;
+
     private final RestTemplate restTemplate;
 
-    public List<PurchaseResponse> purchaseRequest(List<PurchaseRequest> request) {
+    /**
+     * Purchases the products under {@code purchaseId}, which is what {@link #cancelPurchase(String)}
+     * gives the stock back by.
+     */
+    public List<PurchaseResponse> purchaseRequest(String purchaseId, List<PurchaseRequest> request) {
         HttpHeaders headers = new HttpHeaders();
         headers.set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        headers.set(PURCHASE_ID_HEADER, purchaseId);
 
         HttpEntity<List<PurchaseRequest>> requestEntity = new HttpEntity<>(request, headers);
         ParameterizedTypeReference<List<PurchaseResponse>> responseType =
@@ -42,4 +53,18 @@ public class ProductClient {
 
         return responseEntity.getBody();
     }
+
+    /**
+     * Gives back the stock of the purchase made under {@code purchaseId}, at most once. Safe to
+     * call when the purchase failed or never arrived: it is then refused should it still arrive.
+     */
+    public void cancelPurchase(String purchaseId) {
+        restTemplate.exchange(
+                productInternalUrl + "/purchases/{purchase-id}/cancel",
+                HttpMethod.POST,
+                HttpEntity.EMPTY,
+                Void.class,
+                purchaseId
+        );
+    }
 }
@@ -1,8 +1,12 @@
 package com.pavils.ecommerce.product;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
+
 import java.math.BigDecimal;
 
 public record PurchaseResponse(
+        // The product service names it id
+        @JsonAlias("id")
         Integer productId,
         String name,
         String description,
@@ -0,0 +1,206 @@
+package com.pavils.ecommerce.resilience;
+
+import com.pavils.ecommerce.deadline.RequestDeadline;
+import com.pavils.ecommerce.exception.BusinessException;
+import com.pavils.ecommerce.exception.DeadlineExceededException;
+import com.pavils.ecommerce.exception.DownstreamUnavailableException;
+import feign.FeignException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Isolates the calls to one downstream service, so a slow or failing dependency costs checkout
+ * a fast error instead of its request threads.
+ * <p>
+ * A semaphore bulkhead bounds the calls in flight and rejects the rest at once. Each call runs on
+ * its own virtual thread and is abandoned, and interrupted, once it exceeds the call timeout; its
+ * bulkhead permit is only returned when it really ends, so a hanging dependency cannot pile up
+ * more than the bulkhead's worth of calls. Timeouts and server-side failures feed a circuit
+ * breaker, which fails calls fast while open. Rejections and timeouts surface as
+ * {@link DownstreamUnavailableException}; the call's own exceptions are rethrown unchanged.
+ * <p>
+ * A call is never sent once the request's {@link RequestDeadline} has passed, and is given no
+ * longer than the deadline leaves. Running out of deadline is the client's budget, not the
+ * dependency's health, so it surfaces as {@link DeadlineExceededException} and is kept out of the
+ * circuit breaker.
+ */
+public class DownstreamGuard {
+
+    private final String name;
+    private final Duration callTimeout;
+    private final ExecutorService executor;
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final Timer successes;
+    private final Timer failures;
+    private final Timer timeouts;
+    private final Timer deadlineExceeded;
+    private final Counter bulkheadRejections;
+    private final Counter circuitOpenRejections;
+
+    public DownstreamGuard(String name, Settings settings, ExecutorService executor, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.callTimeout = settings.callTimeout();
+        this.executor = executor;
+        this.bulkhead = Bulkhead.of(name, BulkheadConfig.custom()
+                .maxConcurrentCalls(settings.maxConcurrentCalls())
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        this.circuitBreaker = CircuitBreaker.of(name, CircuitBreakerConfig.custom()
+                .failureRateThreshold(settings.failureRateThreshold())
+                .slidingWindowSize(settings.slidingWindowSize())
+                .minimumNumberOfCalls(settings.minimumNumberOfCalls())
+                .waitDurationInOpenState(settings.openDuration())
+                .recordException(DownstreamGuard::isDownstreamFailure)
+                .build());
+
+        this.successes = calls(meterRegistry, "success");
+        this.failures = calls(meterRegistry, "failure");
+        this.timeouts = calls(meterRegistry, "timeout");
+        this.deadlineExceeded = calls(meterRegistry, "deadline-exceeded");
+        this.bulkheadRejections = rejections(meterRegistry, "bulkhead-full");
+        this.circuitOpenRejections = rejections(meterRegistry, "circuit-open");
+        Gauge.builder("order.downstream.in-flight", bulkhead,
+                        b -> b.getBulkheadConfig().getMaxConcurrentCalls() - b.getMetrics().getAvailableConcurrentCalls())
+                .description("Calls to the downstream service currently running")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        Gauge.builder("order.downstream.circuit-open", circuitBreaker,
+                        breaker -> breaker.getState() == CircuitBreaker.State.OPEN ? 1 : 0)
+                .description("1 while the circuit breaker rejects calls to the downstream service")
+                .tag("dependency", name)
+                .register(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> call) {
+        RequestDeadline.check(name + "-call");
+        if (!circuitBreaker.tryAcquirePermission()) {
+            circuitOpenRejections.increment();
+            throw new DownstreamUnavailableException("The " + name + " service is unavailable, please try again later");
+        }
+        if (!bulkhead.tryAcquirePermission()) {
+            circuitBreaker.releasePermission();
+            bulkheadRejections.increment();
+            throw new DownstreamUnavailableException("The " + name + " service is overloaded, please try again later");
+        }
+
+        var timeout = RequestDeadline.remaining()
+                .filter(remaining -> remaining.compareTo(callTimeout) < 0)
+                .orElse(callTimeout);
+        var started = System.nanoTime();
+        try {
+            var result = execute(call, timeout);
+            var elapsed = System.nanoTime() - started;
+            successes.record(elapsed, TimeUnit.NANOSECONDS);
+            circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            var elapsed = System.nanoTime() - started;
+            if (RequestDeadline.isExpired()) {
+                // Timed out, or answered 504, because the client gave up; say nothing about the dependency
+                deadlineExceeded.record(elapsed, TimeUnit.NANOSECONDS);
+                circuitBreaker.releasePermission();
+                throw new DeadlineExceededException("The request deadline passed while waiting for the "
+                        + name + " service");
+            }
+            (e instanceof CallTimeoutException ? timeouts : failures).record(elapsed, TimeUnit.NANOSECONDS);
+            circuitBreaker.onError(elapsed, TimeUnit.NANOSECONDS, e);
+            if (e instanceof CallTimeoutException) {
+                throw new DownstreamUnavailableException("The " + name + " service did not answer within "
+                        + callTimeout.toMillis() + " ms, please try again later");
+            }
+            throw e;
+        }
+    }
+
+    private <T> T execute(Supplier<T> call, Duration timeout) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                try {
+                    return call.get();
+                } finally {
+                    bulkhead.onComplete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.onComplete();
+            throw e;
+        }
+
+        try {
+            return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new CallTimeoutException();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CallTimeoutException();
+        }
+    }
+
+    // Rejected requests are the caller's fault, not a sign that the dependency is unhealthy
+    private static boolean isDownstreamFailure(Throwable failure) {
+        return !(failure instanceof HttpClientErrorException
+                || failure instanceof FeignException.FeignClientException
+                || failure instanceof BusinessException);
+    }
+
+    private Timer calls(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("order.downstream.calls")
+                .description("Calls to a downstream service that passed the bulkhead and circuit breaker")
+                .tag("dependency", name)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("order.downstream.rejections")
+                .description("Calls to a downstream service that were failed without being sent")
+                .tag("dependency", name)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param failureRateThreshold percentage of failed calls in the sliding window that opens the breaker
+     * @param minimumNumberOfCalls calls needed before the failure rate is judged at all
+     * @param openDuration         how long the breaker stays open before letting trial calls through
+     */
+    public record Settings(
+            int maxConcurrentCalls,
+            Duration callTimeout,
+            float failureRateThreshold,
+            int slidingWindowSize,
+            int minimumNumberOfCalls,
+            Duration openDuration
+    ) {
+    }
+
+    private static class CallTimeoutException extends RuntimeException {
+
+        private CallTimeoutException() {
+            super(null, null, false, false);
+        }
+    }
+}
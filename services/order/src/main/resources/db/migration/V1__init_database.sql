@@ -0,0 +1,40 @@
+create table if not exists customer_order (
+    id integer not null primary key,
+    reference varchar(255),
+    total_amount numeric(38, 2),
+    payment_method varchar(255),
+    customer_id varchar(255),
+    payment_id integer,
+    created_date timestamp(6) not null,
+    last_modified_date timestamp(6)
+);
+
+create table if not exists order_line (
+    id integer not null primary key,
+    order_id integer
+        constraint order_line_customer_order_id_fk references customer_order,
+    product_id integer,
+    quantity double precision not null
+);
+
+create table if not exists order_outbox (
+    id bigint not null primary key,
+    topic varchar(255),
+    message_key varchar(255),
+    payload_type varchar(255),
+    payload text,
+    attempts integer not null,
+    last_error varchar(255),
+    created_date timestamp(6) not null
+);
+
+create table if not exists order_idempotency_key (
+    idempotency_key varchar(255) not null primary key,
+    fingerprint varchar(64) not null,
+    order_id integer,
+    created_date timestamp(6) not null
+);
+
+create sequence if not exists customer_order_seq increment by 50;
+create sequence if not exists order_line_seq increment by 50;
+create sequence if not exists order_outbox_seq increment by 50;
@@ -0,0 +1,19 @@
+-- Keyset indexes for GET /api/v1/orders/page, newest first. Each one leads with its filter column,
+-- ends with (created_date, id) for the cursor, and includes the listed columns, so a page is read
+-- from the index alone. Built concurrently so a large customer_order keeps taking orders meanwhile.
+
+create index concurrently if not exists customer_order_customer_created_idx
+    on customer_order (customer_id, created_date, id)
+    include (reference, total_amount, payment_method);
+
+create index concurrently if not exists customer_order_payment_method_created_idx
+    on customer_order (payment_method, created_date, id)
+    include (reference, total_amount, customer_id);
+
+create index concurrently if not exists customer_order_created_idx
+    on customer_order (created_date, id)
+    include (reference, total_amount, payment_method, customer_id);
+
+-- Lines are always read by their order
+create index concurrently if not exists order_line_order_id_idx
+    on order_line (order_id);
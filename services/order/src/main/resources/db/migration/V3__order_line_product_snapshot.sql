@@ -0,0 +1,4 @@
+-- Name and unit price of the product at purchase time; empty for lines written before this
+alter table order_line
+    add column if not exists product_name varchar(255),
+    add column if not exists unit_price numeric(38, 2);
@@ -0,0 +1,8 @@
+-- Set once a record has failed max-attempts times; the relay leaves such rows for an operator
+alter table order_outbox
+    add column if not exists dead_lettered_date timestamp(6);
+
+-- The relay and its gauges only read rows that are still waiting
+create index if not exists order_outbox_waiting_idx
+    on order_outbox (id)
+    where dead_lettered_date is null;
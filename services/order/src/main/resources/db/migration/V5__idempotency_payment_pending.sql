@@ -0,0 +1,3 @@
+-- Set while a stored order still waits for its blocking payment; a retry of the key pays it instead of answering
+alter table order_idempotency_key
+    add column if not exists payment_pending boolean not null default false;
@@ -0,0 +1,7 @@
+-- The purchase that took the order's stock, so a rejected payment can give it back
+alter table customer_order
+    add column if not exists purchase_id varchar(36);
+
+-- Set once the payment service rejected the order's payment
+alter table customer_order
+    add column if not exists payment_failed_date timestamp(6);
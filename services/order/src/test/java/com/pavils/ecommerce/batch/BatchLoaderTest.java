@@ -0,0 +1,97 @@
+package com.pavils.ecommerce.batch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchLoaderTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Set<String>> calls = new CopyOnWriteArrayList<>();
+
+    private BatchLoader<String, String> loader;
+
+    @AfterEach
+    void tearDown() {
+        loader.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void load_LookupsWithinTheWindow_AreSentAsOneBatch() throws Exception {
+        loader = loader(ids -> ids.stream().collect(Collectors.toMap(Function.identity(), String::toUpperCase)),
+                10, Duration.ofMillis(200));
+
+        var a = loader.load("a");
+        var b = loader.load("b");
+        var duplicate = loader.load("a");
+
+        assertThat(a.get(5, TimeUnit.SECONDS)).isEqualTo("A");
+        assertThat(b.get(5, TimeUnit.SECONDS)).isEqualTo("B");
+        assertThat(duplicate).isSameAs(a);
+        assertThat(calls).containsExactly(Set.of("a", "b"));
+        assertThat(meterRegistry.get("order.batch.fill-ratio").summary().mean()).isEqualTo(0.2);
+    }
+
+    @Test
+    void load_FullBatch_IsSentWithoutWaiting() throws Exception {
+        loader = loader(ids -> ids.stream().collect(Collectors.toMap(Function.identity(), String::toUpperCase)),
+                2, Duration.ofMinutes(1));
+
+        var a = loader.load("a");
+        var b = loader.load("b");
+        var c = loader.load("c");
+
+        assertThat(CompletableFuture.allOf(a, b).get(5, TimeUnit.SECONDS)).isNull();
+        assertThat(c).isNotDone();
+        assertThat(calls).containsExactly(Set.of("a", "b"));
+        assertThat(meterRegistry.get("order.batch.size").summary().max()).isEqualTo(2);
+    }
+
+    @Test
+    void load_KeyMissingFromResult_ResolvesToNull() throws Exception {
+        loader = loader(ids -> Map.of("a", "A"), 10, Duration.ofMillis(10));
+
+        var missing = loader.load("missing");
+        loader.load("a");
+
+        assertThat(missing.get(5, TimeUnit.SECONDS)).isNull();
+    }
+
+    @Test
+    void load_FailedBatchCall_FailsEveryLookupOfTheBatch() {
+        loader = loader(ids -> {
+            throw new IllegalStateException("downstream unavailable");
+        }, 10, Duration.ofMillis(10));
+
+        var a = loader.load("a");
+        var b = loader.load("b");
+
+        assertThatThrownBy(() -> a.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> b.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    private BatchLoader<String, String> loader(Function<Set<String>, Map<String, String>> batchFunction,
+                                               int maxBatchSize, Duration maxWait) {
+        return new BatchLoader<>("test", ids -> {
+            calls.add(Set.copyOf(ids));
+            return batchFunction.apply(ids);
+        }, maxBatchSize, maxWait, executor, meterRegistry);
+    }
+}
@@ -0,0 +1,178 @@
+package com.pavils.ecommerce.config;
+
+import com.pavils.ecommerce.deadline.DeadlineHeaderInterceptor;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TCP connections opened per order by the three downstream calls of a checkout (customer lookup,
+ * product purchase, payment request), first through a bare {@code new RestTemplate()} and then
+ * through the pooled client from {@link HttpClientConfig}. Every connection opened is a TCP
+ * handshake, so the difference per order is the handshakes the pool saves.
+ * <p>
+ * The downstream services are an in-process HTTP stand-in behind a counting TCP relay; nothing else
+ * needs to run. Load is tuned with {@code -Dbenchmark.orders} (default 20000) and
+ * {@code -Dbenchmark.clients} (default 64).
+ * Run with {@code mvn test-compile} and then this class's {@code main} from the test classpath.
+ */
+public class DownstreamConnectionBenchmark {
+
+    private static final int ORDERS = Integer.getInteger("benchmark.orders", 20_000);
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 64);
+    private static final int CALLS_PER_ORDER = 3;
+
+    public static void main(String[] args) throws Exception {
+        var standIn = startStandIn();
+        try (var relay = new CountingRelay(standIn.getAddress().getPort())) {
+            var baseUrl = "http://localhost:" + relay.port() + "/api/v1";
+
+            run("bare RestTemplate", new RestTemplate(), baseUrl, relay);
+
+            var config = new HttpClientConfig();
+            var connectionManager = config.downstreamConnectionManager(200, CLIENTS, 2000, 5000, 300_000);
+            try (var httpClient = config.downstreamHttpClient(connectionManager, 1000, 60_000, true)) {
+                var pooled = new RestTemplateConfig().restTemplate(httpClient, new DeadlineHeaderInterceptor(), false, 2000, 5000);
+                run("pooled keep-alive", pooled, baseUrl, relay);
+            }
+        } finally {
+            standIn.stop(0);
+        }
+    }
+
+    private static void run(String label, RestTemplate restTemplate, String baseUrl, CountingRelay relay)
+            throws InterruptedException {
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        var purchase = new HttpEntity<>("[{\"productId\": 1, \"quantity\": 1}]", headers);
+        var payment = new HttpEntity<>("{\"amount\": 9.99}", headers);
+        var remaining = new AtomicLong(ORDERS);
+
+        relay.reset();
+        var started = System.nanoTime();
+        try (var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.submit(() -> {
+                    while (remaining.getAndDecrement() > 0) {
+                        restTemplate.getForObject(baseUrl + "/customers/customer-1", String.class);
+                        restTemplate.postForObject(baseUrl + "/products/purchase", purchase, String.class);
+                        restTemplate.postForObject(baseUrl + "/payments", payment, String.class);
+                    }
+                    return null;
+                });
+            }
+        }
+        var seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+
+        var connections = relay.connections();
+        System.out.printf("%-18s orders=%d  %8.1f orders/s  connections=%d  connections/order=%.4f  handshakes saved/order=%.4f%n",
+                label,
+                ORDERS,
+                ORDERS / seconds,
+                connections,
+                (double) connections / ORDERS,
+                CALLS_PER_ORDER - (double) connections / ORDERS);
+    }
+
+    private static HttpServer startStandIn() throws IOException {
+        var server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/v1/customers/", exchange -> respond(exchange,
+                "{\"id\": \"customer-1\", \"firstname\": \"Load\", \"lastname\": \"Test\", \"email\": \"load@example.com\"}"));
+        server.createContext("/api/v1/products/purchase", exchange -> respond(exchange,
+                "[{\"productId\": 1, \"name\": \"Widget\", \"description\": \"A widget\", \"price\": 9.99, \"quantity\": 1}]"));
+        server.createContext("/api/v1/payments", exchange -> respond(exchange, "1"));
+        server.start();
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            var bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    /**
+     * Forwards every accepted connection to the stand-in and counts how many were opened.
+     */
+    private static final class CountingRelay implements AutoCloseable {
+
+        private final ServerSocket serverSocket;
+        private final int targetPort;
+        private final AtomicLong connections = new AtomicLong();
+        private final Thread acceptor;
+
+        private CountingRelay(int targetPort) throws IOException {
+            this.serverSocket = new ServerSocket(0, 1024);
+            this.targetPort = targetPort;
+            this.acceptor = Thread.ofVirtual().start(this::accept);
+        }
+
+        private int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private long connections() {
+            return connections.get();
+        }
+
+        private void reset() {
+            connections.set(0);
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    var client = serverSocket.accept();
+                    connections.incrementAndGet();
+                    var target = new Socket("localhost", targetPort);
+                    Thread.ofVirtual().start(() -> pipe(client, target));
+                    Thread.ofVirtual().start(() -> pipe(target, client));
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+
+        private static void pipe(Socket from, Socket to) {
+            try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+                in.transferTo(out);
+            } catch (IOException e) {
+                // the other side went away
+            } finally {
+                closeQuietly(from);
+                closeQuietly(to);
+            }
+        }
+
+        private static void closeQuietly(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            acceptor.interrupt();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.pavils.ecommerce.config;
+
+import com.pavils.ecommerce.deadline.DeadlineHeaderInterceptor;
+import com.pavils.ecommerce.product.ProductClient;
+import com.pavils.ecommerce.product.PurchaseRequest;
+import com.pavils.ecommerce.product.PurchaseResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpClientConfigTest {
+
+    private static final String PURCHASE_RESPONSE =
+            "[{\"productId\": 1, \"name\": \"Widget\", \"description\": \"A widget\", \"price\": 9.99, \"quantity\": 1}]";
+
+    private final HttpClientConfig config = new HttpClientConfig();
+    private final AtomicBoolean servedGzip = new AtomicBoolean();
+
+    private HttpServer server;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/v1/products/purchase", this::respond);
+        server.start();
+
+        connectionManager = config.downstreamConnectionManager(20, 5, 1000, 1000, 60_000);
+        httpClient = config.downstreamHttpClient(connectionManager, 1000, 60_000, true);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void sequentialPurchases_ReuseOneKeptAliveConnection() {
+        ProductClient productClient = productClient(false);
+
+        for (int i = 0; i < 20; i++) {
+            productClient.purchaseRequest("purchase-1", List.of(new PurchaseRequest(1, 1.0)));
+        }
+
+        assertThat(connectionManager.getTotalStats().getAvailable()).isEqualTo(1);
+        assertThat(connectionManager.getTotalStats().getLeased()).isZero();
+    }
+
+    @Test
+    void gzippedResponse_IsDecompressed() {
+        List<PurchaseResponse> result = productClient(false).purchaseRequest("purchase-1", List.of(new PurchaseRequest(1, 1.0)));
+
+        assertThat(servedGzip).isTrue();
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).name()).isEqualTo("Widget");
+    }
+
+    @Test
+    void http2Enabled_StillReachesHttp11Server() {
+        List<PurchaseResponse> result = productClient(true).purchaseRequest("purchase-1", List.of(new PurchaseRequest(1, 1.0)));
+
+        assertThat(result).hasSize(1);
+        assertThat(connectionManager.getTotalStats().getAvailable()).isZero();
+    }
+
+    private ProductClient productClient(boolean http2) {
+        var restTemplate = new RestTemplateConfig().restTemplate(httpClient, new DeadlineHeaderInterceptor(), http2, 1000, 1000);
+        var productClient = new ProductClient(restTemplate);
+        ReflectionTestUtils.setField(productClient, "productUrl",
+                "http://localhost:" + server.getAddress().getPort() + "/api/v1/products");
+        return productClient;
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            var body = PURCHASE_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            var acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                var gzipped = new ByteArrayOutputStream();
+                try (var gzip = new GZIPOutputStream(gzipped)) {
+                    gzip.write(body);
+                }
+                body = gzipped.toByteArray();
+                servedGzip.set(true);
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+}
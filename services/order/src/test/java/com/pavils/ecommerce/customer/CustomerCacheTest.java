@@ -0,0 +1,97 @@
+package com.pavils.ecommerce.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerCacheTest {
+
+    private static final long NEGATIVE_TTL_MILLIS = 50;
+
+    @Mock
+    private CustomerLoader customerLoader;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CustomerResponse customer =
+            new CustomerResponse("customer-123", "John", "Doe", "john@example.com");
+
+    private CustomerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CustomerCache(customerLoader, meterRegistry, 100, 600_000, NEGATIVE_TTL_MILLIS);
+    }
+
+    @Test
+    void findCustomerById_RepeatedLookup_CallsCustomerServiceOnce() {
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+
+        var first = cache.findCustomerById("customer-123");
+        var second = cache.findCustomerById("customer-123");
+
+        assertThat(first).contains(customer);
+        assertThat(second).contains(customer);
+        verify(customerLoader, times(1)).findCustomerById("customer-123");
+        assertThat(lookups("hit")).isEqualTo(1);
+        assertThat(lookups("miss")).isEqualTo(1);
+        assertThat(meterRegistry.get("order.customer-cache.hit-ratio").gauge().value()).isEqualTo(0.5);
+        assertThat(meterRegistry.get("order.customer-cache.remote-lookups").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void findCustomerById_AfterEviction_LooksCustomerUpAgain() {
+        var updated = new CustomerResponse("customer-123", "John", "Doe", "john.doe@example.com");
+        when(customerLoader.findCustomerById("customer-123"))
+                .thenReturn(completedFuture(Optional.of(customer)))
+                .thenReturn(completedFuture(Optional.of(updated)));
+
+        cache.findCustomerById("customer-123");
+        cache.evict("customer-123");
+
+        assertThat(cache.findCustomerById("customer-123")).contains(updated);
+        verify(customerLoader, times(2)).findCustomerById("customer-123");
+    }
+
+    @Test
+    void findCustomerById_UnknownId_IsRememberedUntilNegativeTtlExpires() throws InterruptedException {
+        when(customerLoader.findCustomerById("unknown")).thenReturn(completedFuture(Optional.empty()));
+
+        assertThat(cache.findCustomerById("unknown")).isEmpty();
+        assertThat(cache.findCustomerById("unknown")).isEmpty();
+        verify(customerLoader, times(1)).findCustomerById("unknown");
+        assertThat(lookups("negative-hit")).isEqualTo(1);
+
+        Thread.sleep(NEGATIVE_TTL_MILLIS * 2);
+
+        assertThat(cache.findCustomerById("unknown")).isEmpty();
+        verify(customerLoader, times(2)).findCustomerById("unknown");
+    }
+
+    @Test
+    void findCustomerById_CustomerServiceFails_DoesNotCacheTheFailure() {
+        when(customerLoader.findCustomerById("customer-123"))
+                .thenReturn(failedFuture(new IllegalStateException("customer service unavailable")))
+                .thenReturn(completedFuture(Optional.of(customer)));
+
+        assertThatThrownBy(() -> cache.findCustomerById("customer-123"))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.findCustomerById("customer-123")).contains(customer);
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.counter("order.customer-cache.lookups", "result", result).count();
+    }
+}
@@ -0,0 +1,84 @@
+package com.pavils.ecommerce.deadline;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestDeadlineFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestDeadlineFilter filter = new RequestDeadlineFilter();
+
+    @BeforeEach
+    void setUp() {
+        Metrics.addRegistry(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    void doFilter_ExpiredDeadline_AnswersGatewayTimeoutWithoutCallingTheController() throws Exception {
+        var request = new MockHttpServletRequest("POST", "/api/v1/orders");
+        request.addHeader(RequestDeadline.HEADER, String.valueOf(Instant.now().minusSeconds(1).toEpochMilli()));
+        var response = new MockHttpServletResponse();
+        var chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(504);
+        assertThat(chain.getRequest()).isNull();
+        assertThat(meterRegistry.get("deadline.work.avoided").tag("stage", "arrival").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void doFilter_FutureDeadline_IsVisibleToTheRequestAndItsTasksThenCleared() throws Exception {
+        var deadline = Instant.ofEpochMilli(Instant.now().plusSeconds(30).toEpochMilli());
+        var request = new MockHttpServletRequest("POST", "/api/v1/orders");
+        request.addHeader(RequestDeadline.HEADER, String.valueOf(deadline.toEpochMilli()));
+        var seenByRequest = new AtomicReference<Optional<Instant>>();
+        var seenByTask = new AtomicReference<Optional<Instant>>();
+
+        try (var executor = new DeadlinePropagatingExecutorService(Executors.newVirtualThreadPerTaskExecutor())) {
+            filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+                seenByRequest.set(RequestDeadline.current());
+                try {
+                    executor.submit(() -> seenByTask.set(RequestDeadline.current())).get();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        assertThat(seenByRequest.get()).contains(deadline);
+        assertThat(seenByTask.get()).contains(deadline);
+        assertThat(RequestDeadline.current()).isEmpty();
+    }
+
+    @Test
+    void doFilter_MalformedDeadline_IsIgnored() throws Exception {
+        var request = new MockHttpServletRequest("GET", "/api/v1/orders");
+        request.addHeader(RequestDeadline.HEADER, "soon");
+        var response = new MockHttpServletResponse();
+        var seen = new AtomicReference<Optional<Instant>>();
+
+        filter.doFilter(request, response, (req, res) -> seen.set(RequestDeadline.current()));
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(seen.get()).isEmpty();
+    }
+}
@@ -1,6 +1,8 @@
 package com.pavils.ecommerce.handlers;
 
 import com.pavils.ecommerce.exception.BusinessException;
+import com.pavils.ecommerce.exception.DownstreamUnavailableException;
+import com.pavils.ecommerce.exception.IdempotencyConflictException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.MethodParameter;
@@ -43,6 +45,26 @@ class GlobalExceptionHandlerTest {
         assertThat(response.getBody()).isEmpty();
     }
 
+    @Test
+    void handleIdempotencyConflictException_Returns409WithMessage() {
+        IdempotencyConflictException ex = new IdempotencyConflictException("Idempotency-Key k was already used for a different order");
+
+        ResponseEntity<String> response = handler.handle(ex);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(response.getBody()).isEqualTo("Idempotency-Key k was already used for a different order");
+    }
+
+    @Test
+    void handleDownstreamUnavailableException_Returns503WithMessage() {
+        DownstreamUnavailableException ex = new DownstreamUnavailableException("The product service is unavailable, please try again later");
+
+        ResponseEntity<String> response = handler.handle(ex);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getBody()).isEqualTo("The product service is unavailable, please try again later");
+    }
+
     @Test
     void handleMethodArgumentNotValidException_SingleError_ReturnsBadRequestWithErrorMap() throws Exception {
         BeanPropertyBindingResult bindingResult =
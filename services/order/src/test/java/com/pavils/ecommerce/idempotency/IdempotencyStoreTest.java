@@ -0,0 +1,229 @@
+package com.pavils.ecommerce.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pavils.ecommerce.exception.BusinessException;
+import com.pavils.ecommerce.exception.IdempotencyConflictException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyStoreTest {
+
+    private static final Map<String, String> ORDER = Map.of("reference", "REF-1");
+    private static final Consumer<Integer> NEVER_PAID_AGAIN = orderId -> {
+        throw new AssertionError("order paid again");
+    };
+
+    @Mock
+    private IdempotencyRecordRepository repository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private IdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStore(repository, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                objectMapper, meterRegistry, 100, 86_400_000, 60_000, 300);
+    }
+
+    @Test
+    void execute_RepeatedKey_PlacesOrderOnceAndAnswersFromMemory() {
+        when(repository.claim(eq("key-1"), anyString(), any(), any())).thenReturn(1);
+        var placed = new AtomicInteger();
+
+        var first = store.execute("key-1", ORDER, () -> 40 + placed.incrementAndGet(), NEVER_PAID_AGAIN);
+        var second = store.execute("key-1", ORDER, () -> 40 + placed.incrementAndGet(), NEVER_PAID_AGAIN);
+
+        assertThat(first).isEqualTo(41);
+        assertThat(second).isEqualTo(41);
+        assertThat(placed).hasValue(1);
+        assertThat(hits("memory")).isEqualTo(1);
+        verify(repository, times(1)).claim(eq("key-1"), anyString(), any(), any());
+    }
+
+    @Test
+    void execute_ConcurrentDuplicate_WaitsForTheFirstRequest() throws Exception {
+        when(repository.claim(eq("key-1"), anyString(), any(), any())).thenReturn(1);
+        var firstStarted = new CountDownLatch(1);
+        var releaseFirst = new CountDownLatch(1);
+        var placed = new AtomicInteger();
+        var duplicateResult = new AtomicInteger();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var first = executor.submit(() -> store.execute("key-1", ORDER, () -> {
+                placed.incrementAndGet();
+                firstStarted.countDown();
+                await(releaseFirst);
+                return 42;
+            }, NEVER_PAID_AGAIN));
+            assertThat(firstStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            var duplicate = Thread.ofVirtual().start(() ->
+                    duplicateResult.set(store.execute("key-1", ORDER, placed::incrementAndGet, NEVER_PAID_AGAIN)));
+            // Released only once the duplicate found the first request in flight
+            awaitInFlightHit();
+
+            releaseFirst.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+            assertThat(duplicate.join(Duration.ofSeconds(5))).isTrue();
+        }
+
+        assertThat(duplicateResult).hasValue(42);
+        assertThat(placed).hasValue(1);
+        assertThat(hits("in-flight")).isEqualTo(1);
+    }
+
+    @Test
+    void execute_KeyStoredByAnotherInstance_ReturnsStoredOrder() throws Exception {
+        when(repository.claim(eq("key-1"), anyString(), any(), any())).thenReturn(0);
+        when(repository.findById("key-1")).thenReturn(Optional.of(record(fingerprint(ORDER), 7)));
+
+        var orderId = store.execute("key-1", ORDER, () -> {
+            throw new AssertionError("order placed twice");
+        }, NEVER_PAID_AGAIN);
+
+        assertThat(orderId).isEqualTo(7);
+        assertThat(hits("database")).isEqualTo(1);
+    }
+
+    @Test
+    void execute_KeyStillRunningOnAnotherInstance_ConflictsAfterWaitTimeout() throws Exception {
+        when(repository.claim(eq("key-1"), anyString(), any(), any())).thenReturn(0);
+        when(repository.findById("key-1")).thenReturn(Optional.of(record(fingerprint(ORDER), null)));
+
+        assertThatThrownBy(() -> store.execute("key-1", ORDER, () -> 1, NEVER_PAID_AGAIN))
+                .isInstanceOf(IdempotencyConflictException.class)
+                .hasFieldOrPropertyWithValue("msg", "The order for Idempotency-Key key-1 is still being processed");
+        assertThat(meterRegistry.counter("order.idempotency.conflicts").count()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_KeyReusedForDifferentOrder_Conflicts() {
+        when(repository.claim(eq("key-1"), anyString(), any(), any())).thenReturn(1);
+        store.execute("key-1", ORDER, () -> 41, NEVER_PAID_AGAIN);
+
+        assertThatThrownBy(() -> store.execute("key-1", Map.of("reference", "REF-2"), () -> 42, NEVER_PAID_AGAIN))
+                .isInstanceOf(IdempotencyConflictException.class)
+                .hasFieldOrPropertyWithValue("msg", "Idempotency-Key key-1 was already used for a different order");
+    }
+
+    @Test
+    void execute_FailedOrder_ReleasesKeySoARetryPlacesIt() {
+        when(repository.claim(eq("key-1"), anyString(), any(), any())).thenReturn(1);
+
+        assertThatThrownBy(() -> store.execute("key-1", ORDER, () -> {
+            throw new BusinessException("Insufficient stock");
+        }, NEVER_PAID_AGAIN)).isInstanceOf(BusinessException.class);
+        var retried = store.execute("key-1", ORDER, () -> 43, NEVER_PAID_AGAIN);
+
+        assertThat(retried).isEqualTo(43);
+        verify(repository).release("key-1");
+        assertThat(meterRegistry.counter("order.idempotency.misses").count()).isEqualTo(2);
+    }
+
+    @Test
+    void execute_StoredOrderWithFailedPayment_PaysItInsteadOfPlacingAnother() throws Exception {
+        when(repository.claim(eq("key-1"), anyString(), any(), any())).thenReturn(0);
+        var unpaid = record(fingerprint(ORDER), 7);
+        unpaid.setPaymentPending(true);
+        when(repository.findById("key-1")).thenReturn(Optional.of(unpaid));
+        when(repository.claimPayment(eq("key-1"), any(), any())).thenReturn(1);
+        var paid = new AtomicInteger();
+
+        var orderId = store.execute("key-1", ORDER, () -> {
+            throw new AssertionError("order placed twice");
+        }, paid::set);
+
+        assertThat(orderId).isEqualTo(7);
+        assertThat(paid).hasValue(7);
+        assertThat(meterRegistry.counter("order.idempotency.payment-retries").count()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_PaymentOfStoredOrderFailsAgain_FreesTheKeyForTheNextRetry() throws Exception {
+        when(repository.claim(eq("key-1"), anyString(), any(), any())).thenReturn(0);
+        var unpaid = record(fingerprint(ORDER), 7);
+        unpaid.setPaymentPending(true);
+        when(repository.findById("key-1")).thenReturn(Optional.of(unpaid));
+        when(repository.claimPayment(eq("key-1"), any(), any())).thenReturn(1);
+
+        assertThatThrownBy(() -> store.execute("key-1", ORDER, () -> 1, orderId -> {
+            throw new BusinessException("Card declined");
+        })).isInstanceOf(BusinessException.class);
+
+        verify(repository).releasePayment(eq("key-1"), any());
+    }
+
+    @Test
+    void execute_StoredOrderStillBeingPaid_ConflictsAfterWaitTimeout() throws Exception {
+        when(repository.claim(eq("key-1"), anyString(), any(), any())).thenReturn(0);
+        var unpaid = record(fingerprint(ORDER), 7);
+        unpaid.setPaymentPending(true);
+        when(repository.findById("key-1")).thenReturn(Optional.of(unpaid));
+        when(repository.claimPayment(eq("key-1"), any(), any())).thenReturn(0);
+
+        assertThatThrownBy(() -> store.execute("key-1", ORDER, () -> 1, NEVER_PAID_AGAIN))
+                .isInstanceOf(IdempotencyConflictException.class)
+                .hasFieldOrPropertyWithValue("msg", "The order for Idempotency-Key key-1 is still being processed");
+    }
+
+    private void awaitInFlightHit() throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (hits("in-flight") == 0) {
+            assertThat(System.nanoTime()).as("duplicate never waited for the first request").isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private double hits(String tier) {
+        return meterRegistry.counter("order.idempotency.hits", "tier", tier).count();
+    }
+
+    private String fingerprint(Object request) throws Exception {
+        var digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+        return HexFormat.of().formatHex(digest);
+    }
+
+    private static IdempotencyRecord record(String fingerprint, Integer orderId) {
+        return IdempotencyRecord.builder()
+                .idempotencyKey("key-1")
+                .fingerprint(fingerprint)
+                .orderId(orderId)
+                .createdDate(LocalDateTime.now())
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.pavils.ecommerce.order;
+
+import com.pavils.ecommerce.OrderApplication;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test for {@code POST /api/v1/orders} with request handling on platform threads and then
+ * on virtual threads ({@code spring.threads.virtual.enabled}). Prints requests per second and
+ * latency percentiles for both modes.
+ * <p>
+ * Customer, product and payment services are replaced by in-process HTTP stand-ins that answer
+ * after a fixed delay. Order confirmations are written to the outbox as usual, but the outbox
+ * relay is switched off, so no Kafka broker is needed. The order tables need a
+ * PostgreSQL database; override the connection with {@code -Dharness.jdbc.url},
+ * {@code -Dharness.jdbc.username} and {@code -Dharness.jdbc.password}. Load is tuned with
+ * {@code -Dharness.clients} (default 400), {@code -Dharness.seconds} (default 20) and
+ * {@code -Dharness.downstream-latency-ms} (default 50).
+ * Run with {@code mvn test-compile} and then this class's {@code main} from the test classpath.
+ */
+public class CheckoutLoadHarness {
+
+    private static final int CLIENTS = Integer.getInteger("harness.clients", 400);
+    private static final int SECONDS = Integer.getInteger("harness.seconds", 20);
+    private static final int WARMUP_SECONDS = Integer.getInteger("harness.warmup-seconds", 5);
+    private static final int DOWNSTREAM_LATENCY_MS = Integer.getInteger("harness.downstream-latency-ms", 50);
+
+    static final String ORDER_BODY = """
+            {"reference": "LOAD", "amount": 19.98, "paymentMethod": "PAYPAL", "customerId": "customer-1",
+             "products": [{"productId": 1, "quantity": 1}, {"productId": 2, "quantity": 1}]}
+            """;
+
+    public static void main(String[] args) throws Exception {
+        var downstream = startDownstreamStandIns();
+        try {
+            var baseUrl = "http://localhost:" + downstream.getAddress().getPort();
+            for (boolean virtualThreads : new boolean[]{false, true}) {
+                try (var context = startOrderService(baseUrl, "spring.threads.virtual.enabled=" + virtualThreads)) {
+                    var port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                    var ordersUrl = URI.create("http://localhost:" + port + "/api/v1/orders");
+
+                    drive(ordersUrl, WARMUP_SECONDS);
+                    var result = drive(ordersUrl, SECONDS);
+                    System.out.printf("%-16s clients=%d  %8.1f req/s  p50=%6.1f ms  p99=%6.1f ms  max=%7.1f ms  errors=%d%n",
+                            virtualThreads ? "virtual threads" : "platform threads",
+                            CLIENTS,
+                            result.requestsPerSecond(),
+                            result.percentileMillis(0.50),
+                            result.percentileMillis(0.99),
+                            result.percentileMillis(1.0),
+                            result.errors());
+                }
+            }
+        } finally {
+            downstream.stop(0);
+        }
+    }
+
+    static ConfigurableApplicationContext startOrderService(String baseUrl, String... properties) {
+        return new SpringApplicationBuilder(OrderApplication.class)
+                .properties(properties)
+                .properties(
+                        "server.port=0",
+                        "application.outbox.relay.enabled=false",
+                        "spring.kafka.listener.auto-startup=false",
+                        "spring.kafka.admin.auto-create=false",
+                        "spring.cloud.config.enabled=false",
+                        "spring.cloud.config.import-check.enabled=false",
+                        "eureka.client.enabled=false",
+                        "logging.level.root=WARN",
+                        // Measures request handling, so the bulkheads must not shed any of the load
+                        "application.resilience.customer.max-concurrent-calls=100000",
+                        "application.resilience.product.max-concurrent-calls=100000",
+                        "application.resilience.payment.max-concurrent-calls=100000",
+                        "spring.flyway.baseline-on-migrate=true",
+                        "spring.flyway.baseline-version=0",
+                        "spring.datasource.url=" + System.getProperty("harness.jdbc.url", "jdbc:postgresql://localhost:5432/order?reWriteBatchedInserts=true"),
+                        "spring.datasource.username=" + System.getProperty("harness.jdbc.username", "postgres"),
+                        "spring.datasource.password=" + System.getProperty("harness.jdbc.password", "0102"),
+                        "application.config.customer-url=" + baseUrl + "/api/v1/customers",
+                        "application.config.product-url=" + baseUrl + "/api/v1/products",
+                        "application.config.product-internal-url=" + baseUrl + "/api/v1/products/internal",
+                        "application.config.payment-url=" + baseUrl + "/api/v1/payments")
+                .run();
+    }
+
+    private static Result drive(URI ordersUrl, int seconds) throws InterruptedException {
+        var latencies = Collections.synchronizedList(new ArrayList<Long>());
+        var errors = new AtomicLong();
+        var deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        var request = HttpRequest.newBuilder(ordersUrl)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(ORDER_BODY))
+                .build();
+
+        try (var clients = Executors.newVirtualThreadPerTaskExecutor();
+             var http = HttpClient.newBuilder().executor(clients).build()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.submit(() -> {
+                    var own = new ArrayList<Long>();
+                    while (System.nanoTime() < deadline) {
+                        var started = System.nanoTime();
+                        try {
+                            var response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() == 200) {
+                                own.add(System.nanoTime() - started);
+                            } else {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    latencies.addAll(own);
+                    return null;
+                });
+            }
+        }
+
+        var sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Result(sorted, seconds, errors.get());
+    }
+
+    static HttpServer startDownstreamStandIns() throws IOException {
+        var server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/v1/customers/", exchange -> respond(exchange,
+                "[{\"id\": \"customer-1\", \"firstname\": \"Load\", \"lastname\": \"Test\", \"email\": \"load@example.com\"}]"));
+        server.createContext("/api/v1/products/purchase", exchange -> respond(exchange, """
+                [{"id": 1, "name": "Widget", "description": "A widget", "price": 9.99, "quantity": 1},
+                 {"id": 2, "name": "Gadget", "description": "A gadget", "price": 9.99, "quantity": 1}]
+                """));
+        server.createContext("/api/v1/products/internal/", exchange -> respond(exchange, ""));
+        server.createContext("/api/v1/payments", exchange -> respond(exchange, "1"));
+        server.start();
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            Thread.sleep(DOWNSTREAM_LATENCY_MS);
+            var bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    record Result(long[] sortedNanos, int seconds, long errors) {
+
+        double requestsPerSecond() {
+            return (double) sortedNanos.length / seconds;
+        }
+
+        double percentileMillis(double percentile) {
+            if (sortedNanos.length == 0) {
+                return Double.NaN;
+            }
+            var index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+            return sortedNanos[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+}
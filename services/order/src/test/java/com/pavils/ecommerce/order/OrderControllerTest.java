@@ -2,6 +2,8 @@ package com.pavils.ecommerce.order;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pavils.ecommerce.exception.BusinessException;
+import com.pavils.ecommerce.exception.IdempotencyConflictException;
+import com.pavils.ecommerce.orderline.OrderLineResponse;
 import com.pavils.ecommerce.product.PurchaseRequest;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.Test;
@@ -14,10 +16,13 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -29,7 +34,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         "spring.cloud.config.import-check.enabled=false",
         "application.config.customer-url=http://localhost:8080",
         "application.config.payment-url=http://localhost:8081",
-        "application.config.product-url=http://localhost:8082"
+        "application.config.product-url=http://localhost:8082",
+        "application.config.product-internal-url=http://localhost:8083"
 })
 class OrderControllerTest {
 
@@ -52,7 +58,7 @@ class OrderControllerTest {
                 null, "REF-001", new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD,
                 "customer-123", List.of(new PurchaseRequest(1, 2.0))
         );
-        when(orderService.createOrder(any(OrderRequest.class))).thenReturn(42);
+        when(orderService.createOrder(any(OrderRequest.class), isNull())).thenReturn(42);
 
         mockMvc.perform(post("/api/v1/orders")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -125,7 +131,7 @@ class OrderControllerTest {
                 null, "REF-001", new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD,
                 "unknown-customer", List.of(new PurchaseRequest(1, 2.0))
         );
-        when(orderService.createOrder(any(OrderRequest.class)))
+        when(orderService.createOrder(any(OrderRequest.class), isNull()))
                 .thenThrow(new BusinessException(
                         "Cannot create order:: Customer not found with the provided ID::unknown-customer"));
 
@@ -135,6 +141,38 @@ class OrderControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void createOrder_WithIdempotencyKey_PassesKeyToService() throws Exception {
+        OrderRequest request = new OrderRequest(
+                null, "REF-001", new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD,
+                "customer-123", List.of(new PurchaseRequest(1, 2.0))
+        );
+        when(orderService.createOrder(any(OrderRequest.class), eq("retry-1"))).thenReturn(42);
+
+        mockMvc.perform(post("/api/v1/orders")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("42"));
+    }
+
+    @Test
+    void createOrder_IdempotencyKeyReusedForOtherOrder_Returns409() throws Exception {
+        OrderRequest request = new OrderRequest(
+                null, "REF-001", new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD,
+                "customer-123", List.of(new PurchaseRequest(1, 2.0))
+        );
+        when(orderService.createOrder(any(OrderRequest.class), eq("retry-1")))
+                .thenThrow(new IdempotencyConflictException("Idempotency-Key retry-1 was already used for a different order"));
+
+        mockMvc.perform(post("/api/v1/orders")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     void findAll_Returns200WithList() throws Exception {
         List<OrderResponse> orders = List.of(
@@ -160,6 +198,41 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.length()").value(0));
     }
 
+    @Test
+    void findPage_FiltersAndCursor_ArePassedToService() throws Exception {
+        LocalDateTime created = LocalDateTime.of(2025, 3, 1, 9, 30);
+        OrderFilter filter = new OrderFilter("cust-1", LocalDateTime.of(2025, 1, 1, 0, 0), null, PaymentMethod.PAYPAL);
+        when(orderService.findPage(filter, created, 17, 20)).thenReturn(new OrderPageResponse(
+                List.of(new OrderSummary(12, "REF-12", BigDecimal.TEN, PaymentMethod.PAYPAL, "cust-1", created.minusDays(1))),
+                null, null));
+
+        mockMvc.perform(get("/api/v1/orders/page")
+                        .param("customerId", "cust-1")
+                        .param("from", "2025-01-01T00:00:00")
+                        .param("paymentMethod", "PAYPAL")
+                        .param("afterCreatedDate", "2025-03-01T09:30:00")
+                        .param("afterId", "17")
+                        .param("size", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orders[0].id").value(12))
+                .andExpect(jsonPath("$.nextAfterId").doesNotExist());
+    }
+
+    @Test
+    void findDetailById_ExistingOrder_Returns200WithLines() throws Exception {
+        OrderDetailResponse detail = new OrderDetailResponse(1, "REF-1", new BigDecimal("19.98"), PaymentMethod.PAYPAL,
+                "cust-1", 4, null, LocalDateTime.of(2025, 5, 1, 10, 0),
+                List.of(new OrderLineResponse(10, 1, "Widget", new BigDecimal("9.99"), 2.0)));
+        when(orderService.findDetailById(1)).thenReturn(detail);
+
+        mockMvc.perform(get("/api/v1/orders/1/detail"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reference").value("REF-1"))
+                .andExpect(jsonPath("$.lines.length()").value(1))
+                .andExpect(jsonPath("$.lines[0].productName").value("Widget"))
+                .andExpect(jsonPath("$.lines[0].unitPrice").value(9.99));
+    }
+
     @Test
     void findById_ExistingOrder_Returns200() throws Exception {
         OrderResponse response = new OrderResponse(1, "REF-1", new BigDecimal("50.00"), PaymentMethod.PAYPAL, "cust-1");
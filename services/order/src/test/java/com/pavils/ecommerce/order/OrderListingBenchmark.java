@@ -0,0 +1,191 @@
+package com.pavils.ecommerce.order;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Latency of {@code GET /api/v1/orders/page} queries on a synthetic {@code customer_order} of 10
+ * million rows, first with the V1 schema (primary keys only) and then after the V2 listing
+ * indexes. Prints p50/p99 per filter combination together with the scan the planner chose.
+ * <p>
+ * The table lives in its own schema, {@code order_listing_benchmark}, of the database from
+ * docker-compose, and is kept between runs; it is regenerated when its row count differs.
+ * Override the connection with {@code -Dbenchmark.jdbc.url}, {@code -Dbenchmark.jdbc.username}
+ * and {@code -Dbenchmark.jdbc.password}, and the size with {@code -Dbenchmark.rows} (default
+ * 10000000), {@code -Dbenchmark.iterations} (default 200) and
+ * {@code -Dbenchmark.unindexed-iterations} (default 5; every query is a full table scan then).
+ * Run with {@code mvn test-compile} and then this class's {@code main} from the test classpath.
+ */
+public class OrderListingBenchmark {
+
+    private static final String SCHEMA = "order_listing_benchmark";
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 10_000_000);
+    private static final int CUSTOMERS = ROWS / 100;
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200);
+    private static final int UNINDEXED_ITERATIONS = Integer.getInteger("benchmark.unindexed-iterations", 5);
+    private static final int PAGE_SIZE = 50;
+    // One order every three seconds, so 10M rows span almost a year
+    private static final LocalDateTime FIRST_ORDER = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final int SECONDS_BETWEEN_ORDERS = 3;
+
+    public static void main(String[] args) {
+        var url = System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/order");
+        var username = System.getProperty("benchmark.jdbc.username", "postgres");
+        var password = System.getProperty("benchmark.jdbc.password", "0102");
+        var separator = url.contains("?") ? "&" : "?";
+
+        var flyway = Flyway.configure()
+                .dataSource(url, username, password)
+                .schemas(SCHEMA)
+                .cleanDisabled(false);
+        var dataSource = new SingleConnectionDataSource(url + separator + "currentSchema=" + SCHEMA, username, password, true);
+        try {
+            var jdbcTemplate = new JdbcTemplate(dataSource);
+            var recording = new RecordingJdbcTemplate(dataSource);
+            var repository = new OrderPageRepositoryImpl(recording);
+
+            var existing = tableRows(jdbcTemplate);
+            if (existing != ROWS) {
+                System.out.printf("generating %d orders (found %d)%n", ROWS, existing);
+                flyway.load().clean();
+                flyway.target("1").load().migrate();
+                generate(jdbcTemplate);
+            } else {
+                jdbcTemplate.execute("drop index if exists customer_order_customer_created_idx, "
+                        + "customer_order_payment_method_created_idx, customer_order_created_idx, order_line_order_id_idx");
+                jdbcTemplate.update("delete from flyway_schema_history where version = '2'");
+            }
+
+            run("primary key only", repository, recording, jdbcTemplate, UNINDEXED_ITERATIONS);
+
+            flyway.load().migrate();
+            // Index-only scans need an up-to-date visibility map
+            jdbcTemplate.execute("vacuum analyze customer_order");
+            run("listing indexes", repository, recording, jdbcTemplate, ITERATIONS);
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static void run(String schema, OrderPageRepository repository, RecordingJdbcTemplate recording,
+                            JdbcTemplate jdbcTemplate, int iterations) {
+        System.out.printf("%n%s (%d iterations)%n", schema, iterations);
+        var random = ThreadLocalRandom.current();
+
+        measure("customer", repository, recording, jdbcTemplate, iterations, () ->
+                new Query(new OrderFilter(customer(random), null, null, null), null, null));
+        measure("customer + 30 days", repository, recording, jdbcTemplate, iterations, () -> {
+            var from = randomInstant(random);
+            return new Query(new OrderFilter(customer(random), from, from.plusDays(30), null), null, null);
+        });
+        measure("payment method", repository, recording, jdbcTemplate, iterations, () ->
+                new Query(new OrderFilter(null, null, null, paymentMethod(random)), null, null));
+        // A cursor at a random point in the year costs what the same page reached by paging does
+        measure("payment method, deep page", repository, recording, jdbcTemplate, iterations, () ->
+                new Query(new OrderFilter(null, null, null, paymentMethod(random)), randomInstant(random), Integer.MAX_VALUE));
+        measure("last 24 hours", repository, recording, jdbcTemplate, iterations, () -> {
+            var to = randomInstant(random);
+            return new Query(new OrderFilter(null, to.minusDays(1), to, null), null, null);
+        });
+    }
+
+    private static void measure(String label, OrderPageRepository repository, RecordingJdbcTemplate recording,
+                                JdbcTemplate jdbcTemplate, int iterations, Supplier<Query> queries) {
+        var nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            var query = queries.get();
+            var started = System.nanoTime();
+            repository.findPage(query.filter(), query.afterCreatedDate(), query.afterId(), PAGE_SIZE);
+            nanos[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(nanos);
+
+        System.out.printf("  %-28s p50=%9.2f ms  p99=%9.2f ms  %s%n",
+                label,
+                percentileMillis(nanos, 0.50),
+                percentileMillis(nanos, 0.99),
+                scan(jdbcTemplate, recording));
+    }
+
+    private static String scan(JdbcTemplate jdbcTemplate, RecordingJdbcTemplate recording) {
+        var plan = jdbcTemplate.queryForList("explain " + recording.lastSql, String.class, recording.lastArgs);
+        return plan.stream()
+                .filter(line -> line.contains("Scan"))
+                .map(String::strip)
+                .map(line -> line.replaceFirst("^->\\s*", "").replaceFirst("\\s+\\(cost=.*", ""))
+                .findFirst()
+                .orElse(plan.get(0));
+    }
+
+    private static void generate(JdbcTemplate jdbcTemplate) {
+        var started = System.nanoTime();
+        jdbcTemplate.update("""
+                insert into customer_order (id, reference, total_amount, payment_method, customer_id, created_date)
+                select g,
+                       'REF-' || g,
+                       (g % 100000) / 100.0,
+                       (array['PAYPAL', 'CREDIT_CARD', 'VISA_CARD', 'MASTER_CARD', 'BITCOIN'])[1 + g % 5],
+                       'customer-' || (hashint4(g) & 2147483647) % ?,
+                       ? + g * make_interval(secs => ?)
+                from generate_series(1, ?) g
+                """, CUSTOMERS, FIRST_ORDER, SECONDS_BETWEEN_ORDERS, ROWS);
+        jdbcTemplate.execute("vacuum analyze customer_order");
+        System.out.printf("generated in %.1f s%n", (System.nanoTime() - started) / 1_000_000_000.0);
+    }
+
+    private static long tableRows(JdbcTemplate jdbcTemplate) {
+        var exists = jdbcTemplate.queryForObject("select to_regclass('customer_order') is not null", Boolean.class);
+        return Boolean.TRUE.equals(exists)
+                ? jdbcTemplate.queryForObject("select count(*) from customer_order", Long.class)
+                : 0;
+    }
+
+    private static String customer(ThreadLocalRandom random) {
+        return "customer-" + random.nextInt(CUSTOMERS);
+    }
+
+    private static PaymentMethod paymentMethod(ThreadLocalRandom random) {
+        var methods = PaymentMethod.values();
+        return methods[random.nextInt(methods.length)];
+    }
+
+    private static LocalDateTime randomInstant(ThreadLocalRandom random) {
+        return FIRST_ORDER.plusSeconds(random.nextLong((long) ROWS * SECONDS_BETWEEN_ORDERS));
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        var index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private record Query(OrderFilter filter, LocalDateTime afterCreatedDate, Integer afterId) {
+    }
+
+    /**
+     * Remembers the last listing query, so its plan can be shown next to its timings.
+     */
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+
+        private String lastSql;
+        private Object[] lastArgs;
+
+        private RecordingJdbcTemplate(SingleConnectionDataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            lastSql = sql;
+            lastArgs = args;
+            return super.query(sql, rowMapper, args);
+        }
+    }
+}
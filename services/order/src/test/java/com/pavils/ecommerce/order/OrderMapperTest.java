@@ -1,10 +1,14 @@
 package com.pavils.ecommerce.order;
 
+import com.pavils.ecommerce.orderline.OrderLine;
+import com.pavils.ecommerce.orderline.OrderLineMapper;
+import com.pavils.ecommerce.orderline.OrderLineResponse;
 import com.pavils.ecommerce.product.PurchaseRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -15,7 +19,7 @@ class OrderMapperTest {
 
     @BeforeEach
     void setUp() {
-        mapper = new OrderMapper();
+        mapper = new OrderMapper(new OrderLineMapper());
     }
 
     @Test
@@ -83,4 +87,23 @@ class OrderMapperTest {
         assertThat(response.paymentMethod()).isNull();
         assertThat(response.customerId()).isNull();
     }
+
+    @Test
+    void toOrderDetail_OrderWithLines_MapsOrderAndLineSnapshots() {
+        Order order = Order.builder()
+                .id(3).reference("REF-3").totalAmount(new BigDecimal("19.98")).paymentMethod(PaymentMethod.PAYPAL)
+                .customerId("customer-1").paymentId(8).createdDate(LocalDateTime.of(2025, 5, 1, 10, 0))
+                .build();
+        order.setOrderLines(List.of(OrderLine.builder()
+                .id(30).order(order).productId(1).quantity(2.0).productName("Widget").unitPrice(new BigDecimal("9.99"))
+                .build()));
+
+        OrderDetailResponse detail = mapper.toOrderDetail(order);
+
+        assertThat(detail.id()).isEqualTo(3);
+        assertThat(detail.paymentId()).isEqualTo(8);
+        assertThat(detail.createdDate()).isEqualTo(LocalDateTime.of(2025, 5, 1, 10, 0));
+        assertThat(detail.lines()).containsExactly(
+                new OrderLineResponse(30, 1, "Widget", new BigDecimal("9.99"), 2.0));
+    }
 }
@@ -0,0 +1,135 @@
+package com.pavils.ecommerce.order;
+
+import com.pavils.ecommerce.customer.CustomerClient;
+import com.pavils.ecommerce.payment.PaymentClient;
+import com.pavils.ecommerce.product.ProductClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Walks the keyset listing against the Flyway schema, including orders created in the same instant
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+@TestPropertySource(properties = {
+        "spring.cloud.config.enabled=false",
+        "eureka.client.enabled=false",
+        "spring.cloud.config.import-check.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.kafka.admin.auto-create=false",
+        "application.outbox.relay.enabled=false",
+        "spring.kafka.listener.auto-startup=false"
+})
+class OrderPageQueryTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @MockitoBean
+    private CustomerClient customerClient;
+
+    @MockitoBean
+    private ProductClient productClient;
+
+    @MockitoBean
+    private PaymentClient paymentClient;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<OrderSummary> inserted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from order_line");
+        jdbcTemplate.update("delete from customer_order");
+        inserted.clear();
+
+        // Every second order shares its created_date with the previous one, so only the id breaks the tie
+        var methods = PaymentMethod.values();
+        for (int id = 1; id <= 40; id++) {
+            var order = new OrderSummary(id, "REF-" + id, null, methods[id % methods.length],
+                    "customer-" + (id % 2), START.plusMinutes(id / 2));
+            jdbcTemplate.update("""
+                    insert into customer_order (id, reference, payment_method, customer_id, created_date)
+                    values (?, ?, ?, ?, ?)
+                    """, order.id(), order.reference(), order.paymentMethod().name(), order.customerId(), order.createdDate());
+            inserted.add(order);
+        }
+    }
+
+    @Test
+    void findPage_WalkingAllPages_ReturnsEveryMatchingOrderOnceNewestFirst() {
+        var filter = new OrderFilter("customer-1", null, null, null);
+
+        var walked = walk(filter, 3);
+
+        assertThat(walked).containsExactlyElementsOf(expected(order -> order.customerId().equals("customer-1")));
+    }
+
+    @Test
+    void findPage_DateRangeAndPaymentMethod_AppliesAllFilters() {
+        var from = START.plusMinutes(5);
+        var to = START.plusMinutes(15);
+        var filter = new OrderFilter(null, from, to, PaymentMethod.PAYPAL);
+
+        var walked = walk(filter, 2);
+
+        assertThat(walked).isNotEmpty();
+        assertThat(walked).containsExactlyElementsOf(expected(order ->
+                order.paymentMethod() == PaymentMethod.PAYPAL
+                        && !order.createdDate().isBefore(from)
+                        && order.createdDate().isBefore(to)));
+    }
+
+    @Test
+    void findPage_NoFilter_EndsWithNullCursor() {
+        var page = orderService.findPage(new OrderFilter(null, null, null, null), null, null, 50);
+
+        assertThat(page.orders()).hasSize(40);
+        assertThat(page.nextAfterCreatedDate()).isNull();
+        assertThat(page.nextAfterId()).isNull();
+    }
+
+    private List<Integer> walk(OrderFilter filter, int size) {
+        var ids = new ArrayList<Integer>();
+        LocalDateTime afterCreatedDate = null;
+        Integer afterId = null;
+        do {
+            var page = orderService.findPage(filter, afterCreatedDate, afterId, size);
+            page.orders().forEach(order -> ids.add(order.id()));
+            afterCreatedDate = page.nextAfterCreatedDate();
+            afterId = page.nextAfterId();
+        } while (afterId != null);
+        return ids;
+    }
+
+    private List<Integer> expected(Predicate<OrderSummary> matches) {
+        return inserted.stream()
+                .filter(matches)
+                .sorted(Comparator.comparing(OrderSummary::createdDate).thenComparing(OrderSummary::id).reversed())
+                .map(OrderSummary::id)
+                .toList();
+    }
+}
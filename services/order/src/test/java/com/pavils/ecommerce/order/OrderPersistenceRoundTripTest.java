@@ -0,0 +1,235 @@
+package com.pavils.ecommerce.order;
+
+import com.pavils.ecommerce.customer.CustomerClient;
+import com.pavils.ecommerce.customer.CustomerResponse;
+import com.pavils.ecommerce.kafka.OrderProducer;
+import com.pavils.ecommerce.payment.PaymentClient;
+import com.pavils.ecommerce.product.ProductClient;
+import com.pavils.ecommerce.orderline.OrderLineResponse;
+import com.pavils.ecommerce.product.PurchaseRequest;
+import com.pavils.ecommerce.product.PurchaseResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// Pins the JDBC statements and round trips of writing one large order and of reading an order back,
+// so a per-line write or a lazy line load shows up as a failure.
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+@TestPropertySource(properties = {
+        "spring.cloud.config.enabled=false",
+        "eureka.client.enabled=false",
+        "spring.cloud.config.import-check.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.kafka.admin.auto-create=false",
+        "application.outbox.relay.enabled=false",
+        "spring.kafka.listener.auto-startup=false"
+})
+class OrderPersistenceRoundTripTest {
+
+    private static final int LINES = 500;
+    private static final JdbcCounter JDBC_COUNTER = new JdbcCounter();
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withUrlParam("reWriteBatchedInserts", "true");
+
+    @MockitoBean
+    private CustomerClient customerClient;
+
+    @MockitoBean
+    private ProductClient productClient;
+
+    @MockitoBean
+    private PaymentClient paymentClient;
+
+    @MockitoBean
+    private OrderProducer orderProducer;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        when(customerClient.findCustomersByIds(any())).thenReturn(List.of(
+                new CustomerResponse("customer-1", "John", "Doe", "john@example.com")));
+        when(productClient.purchaseRequest(any(), any())).thenReturn(List.of());
+
+        // Lets both sequence optimizers fetch their first block, which is not what is measured
+        orderService.createOrder(order("WARM-UP", List.of(new PurchaseRequest(1, 1.0))));
+    }
+
+    @Test
+    void createOrder_500Lines_WritesOrderAndLinesInOneBatch() {
+        var products = IntStream.rangeClosed(1, LINES)
+                .mapToObj(productId -> new PurchaseRequest(productId, 1.0))
+                .toList();
+        JDBC_COUNTER.reset();
+
+        var orderId = orderService.createOrder(order("B2B-500", products));
+
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from order_line where order_id = ?", Integer.class, orderId)).isEqualTo(LINES);
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(distinct id) from order_line where order_id = ?", Integer.class, orderId)).isEqualTo(LINES);
+        // 10 nextval calls for the line ids, the order insert, the line batch and the commit
+        assertThat(JDBC_COUNTER.batches()).isEqualTo(1);
+        assertThat(JDBC_COUNTER.statements()).isLessThanOrEqualTo(LINES / 50 + 2);
+        assertThat(JDBC_COUNTER.roundTrips()).isLessThanOrEqualTo(LINES / 50 + 3);
+    }
+
+    @Test
+    void createOrder_LineInsertFails_RollsBackTheOrder() {
+        var products = List.of(new PurchaseRequest(1, 1.0), new PurchaseRequest(null, 1.0));
+
+        assertThatThrownBy(() -> orderService.createOrder(order("ROLLED-BACK", products)))
+                .isInstanceOf(RuntimeException.class);
+
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from customer_order where reference = 'ROLLED-BACK'", Integer.class)).isZero();
+    }
+
+    @Test
+    void findDetailById_OrderWithLines_ReadsOrderLinesAndSnapshotsInOneStatement() {
+        when(productClient.purchaseRequest(any(), any())).thenReturn(List.of(
+                new PurchaseResponse(1, "Widget", "A widget", new BigDecimal("9.99"), 2.0),
+                new PurchaseResponse(2, "Gadget", "A gadget", new BigDecimal("4.50"), 1.0)));
+        var orderId = orderService.createOrder(order("DETAIL",
+                List.of(new PurchaseRequest(1, 2.0), new PurchaseRequest(2, 1.0))));
+        JDBC_COUNTER.reset();
+
+        var detail = orderService.findDetailById(orderId);
+
+        assertThat(detail.reference()).isEqualTo("DETAIL");
+        assertThat(detail.lines()).extracting(OrderLineResponse::productName).containsExactly("Widget", "Gadget");
+        assertThat(detail.lines().get(0).unitPrice()).isEqualByComparingTo("9.99");
+        assertThat(JDBC_COUNTER.statements()).isEqualTo(1);
+    }
+
+    private static OrderRequest order(String reference, List<PurchaseRequest> products) {
+        return new OrderRequest(null, reference, new BigDecimal("10.00"), PaymentMethod.PAYPAL, "customer-1", products);
+    }
+
+    @TestConfiguration
+    static class CountingDataSource {
+
+        @Bean
+        static BeanPostProcessor countingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? JDBC_COUNTER.wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    /**
+     * Counts statements prepared and calls that wait for the database: every execute, every
+     * executeBatch and every commit.
+     */
+    static class JdbcCounter {
+
+        private final AtomicInteger statements = new AtomicInteger();
+        private final AtomicInteger roundTrips = new AtomicInteger();
+        private final AtomicInteger batches = new AtomicInteger();
+
+        int statements() {
+            return statements.get();
+        }
+
+        int roundTrips() {
+            return roundTrips.get();
+        }
+
+        int batches() {
+            return batches.get();
+        }
+
+        void reset() {
+            statements.set(0);
+            roundTrips.set(0);
+            batches.set(0);
+        }
+
+        DataSource wrap(DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, (method, result) ->
+                    result instanceof Connection connection ? wrap(connection) : result);
+        }
+
+        private Connection wrap(Connection connection) {
+            return proxy(Connection.class, connection, (method, result) -> {
+                if (method.equals("commit")) {
+                    roundTrips.incrementAndGet();
+                }
+                if (result instanceof Statement statement) {
+                    statements.incrementAndGet();
+                    return wrap(statement);
+                }
+                return result;
+            });
+        }
+
+        private Statement wrap(Statement statement) {
+            Class<? extends Statement> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class
+                    : Statement.class;
+            return proxy(type, statement, (method, result) -> {
+                if (method.startsWith("execute")) {
+                    roundTrips.incrementAndGet();
+                }
+                if (method.equals("executeBatch")) {
+                    batches.incrementAndGet();
+                }
+                return result;
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, Object target, ResultHandler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                try {
+                    return handler.handle(method.getName(), method.invoke(target, args));
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }));
+        }
+
+        @FunctionalInterface
+        private interface ResultHandler {
+            Object handle(String method, Object result);
+        }
+    }
+}
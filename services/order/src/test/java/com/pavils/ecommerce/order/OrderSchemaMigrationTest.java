@@ -0,0 +1,73 @@
+package com.pavils.ecommerce.order;
+
+import com.pavils.ecommerce.customer.CustomerClient;
+import com.pavils.ecommerce.payment.PaymentClient;
+import com.pavils.ecommerce.product.ProductClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Applies every migration to an empty database the way the service does on startup, including the
+// ones that build their indexes concurrently outside a transaction.
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+@TestPropertySource(properties = {
+        "spring.cloud.config.enabled=false",
+        "eureka.client.enabled=false",
+        "spring.cloud.config.import-check.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.kafka.admin.auto-create=false",
+        "application.outbox.relay.enabled=false",
+        "spring.kafka.listener.auto-startup=false"
+})
+class OrderSchemaMigrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @MockitoBean
+    private CustomerClient customerClient;
+
+    @MockitoBean
+    private ProductClient productClient;
+
+    @MockitoBean
+    private PaymentClient paymentClient;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void migrate_EmptyDatabase_AppliesEveryMigration() {
+        var applied = jdbcTemplate.queryForList(
+                "select version from flyway_schema_history where success and version is not null order by installed_rank",
+                String.class);
+
+        assertThat(applied).containsExactly("1", "2", "3", "4", "5", "6");
+    }
+
+    @Test
+    void migrate_ConcurrentIndexes_AreBuiltAndValid() {
+        var indexes = jdbcTemplate.queryForList("""
+                select c.relname from pg_index i
+                join pg_class c on c.oid = i.indexrelid
+                where i.indisvalid and c.relname in (
+                    'customer_order_customer_created_idx', 'customer_order_payment_method_created_idx',
+                    'customer_order_created_idx', 'order_line_order_id_idx')
+                """, String.class);
+
+        assertThat(indexes).containsExactlyInAnyOrder(
+                "customer_order_customer_created_idx", "customer_order_payment_method_created_idx",
+                "customer_order_created_idx", "order_line_order_id_idx");
+    }
+}
@@ -0,0 +1,176 @@
+package com.pavils.ecommerce.order;
+
+import com.pavils.ecommerce.customer.CustomerCache;
+import com.pavils.ecommerce.customer.CustomerLoader;
+import com.pavils.ecommerce.customer.CustomerResponse;
+import com.pavils.ecommerce.exception.DownstreamUnavailableException;
+import com.pavils.ecommerce.idempotency.IdempotencyStore;
+import com.pavils.ecommerce.kafka.OrderProducer;
+import com.pavils.ecommerce.orderline.OrderLineService;
+import com.pavils.ecommerce.payment.PaymentClient;
+import com.pavils.ecommerce.payment.PaymentRequestProducer;
+import com.pavils.ecommerce.product.ProductClient;
+import com.pavils.ecommerce.product.PurchaseRequest;
+import com.pavils.ecommerce.resilience.DownstreamGuard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// A product service that accepts connections but never answers must cost checkout a fast 503,
+// not its request threads
+@ExtendWith(MockitoExtension.class)
+class OrderServiceFaultInjectionTest {
+
+    private static final Duration CALL_TIMEOUT = Duration.ofMillis(200);
+    private static final int MAX_CONCURRENT_CALLS = 4;
+    private static final int BREAKER_WINDOW = 4;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private CustomerLoader customerLoader;
+
+    @Mock
+    private ProductClient productClient;
+
+    @Mock
+    private OrderMapper mapper;
+
+    @Mock
+    private OrderLineService orderLineService;
+
+    @Mock
+    private OrderProducer orderProducer;
+
+    @Mock
+    private PaymentClient paymentClient;
+
+    @Mock
+    private PaymentRequestProducer paymentRequestProducer;
+
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch productServiceAnswers = new CountDownLatch(1);
+    private ExecutorService orderExecutor;
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() {
+        orderExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        var productGuard = new DownstreamGuard("product", new DownstreamGuard.Settings(
+                MAX_CONCURRENT_CALLS, CALL_TIMEOUT, 50, BREAKER_WINDOW, BREAKER_WINDOW, Duration.ofMinutes(1)),
+                orderExecutor, meterRegistry);
+        var paymentGuard = new DownstreamGuard("payment", new DownstreamGuard.Settings(
+                100, Duration.ofSeconds(5), 50, 50, 20, Duration.ofMinutes(1)), orderExecutor, meterRegistry);
+        orderService = new OrderService(orderRepository,
+                new CustomerCache(customerLoader, meterRegistry, 100, 600_000, 5_000), productClient, mapper,
+                orderLineService, orderProducer, paymentClient, orderExecutor,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), paymentRequestProducer,
+                idempotencyStore, productGuard, paymentGuard);
+
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(
+                new CustomerResponse("customer-123", "John", "Doe", "john@example.com"))));
+        // Hangs until interrupted, or until the test lets the product service answer
+        lenient().when(productClient.purchaseRequest(any(), any())).thenAnswer(invocation -> {
+            productServiceAnswers.await();
+            return List.of();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        productServiceAnswers.countDown();
+        orderExecutor.shutdownNow();
+    }
+
+    @Test
+    void createOrder_ProductServiceHangs_FailsWithinTheCallTimeout() {
+        var started = System.nanoTime();
+
+        assertThatThrownBy(() -> orderService.createOrder(order()))
+                .isInstanceOf(DownstreamUnavailableException.class)
+                .hasFieldOrPropertyWithValue("msg", "The product service did not answer within 200 ms, please try again later");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(2));
+        verify(orderRepository, never()).saveAndFlush(any());
+        assertThat(meterRegistry.get("order.downstream.calls").tag("dependency", "product").tag("outcome", "timeout")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void createOrder_ManyConcurrentOrdersWhileProductServiceHangs_AllAnswerPromptly() throws Exception {
+        var orders = 50;
+        var started = System.nanoTime();
+        List<Future<Throwable>> outcomes = new ArrayList<>();
+        try (var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < orders; i++) {
+                outcomes.add(clients.submit((Callable<Throwable>) () -> {
+                    try {
+                        orderService.createOrder(order());
+                        return null;
+                    } catch (RuntimeException e) {
+                        return e;
+                    }
+                }));
+            }
+            for (var outcome : outcomes) {
+                assertThat(outcome.get(5, TimeUnit.SECONDS)).isInstanceOf(DownstreamUnavailableException.class);
+            }
+        }
+
+        // Far less than 50 orders one timeout after the other
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(CALL_TIMEOUT.multipliedBy(5));
+        // Bulkhead, then breaker: at most a window's worth of calls reached the hanging service
+        verify(productClient, atMost(MAX_CONCURRENT_CALLS + BREAKER_WINDOW)).purchaseRequest(any(), any());
+        assertThat(meterRegistry.get("order.downstream.rejections").tag("dependency", "product")
+                .counters().stream().mapToDouble(counter -> counter.count()).sum()).isPositive();
+    }
+
+    @Test
+    void createOrder_AfterRepeatedTimeouts_FailsFastWithoutCallingProductService() {
+        for (int i = 0; i < BREAKER_WINDOW; i++) {
+            assertThatThrownBy(() -> orderService.createOrder(order()))
+                    .isInstanceOf(DownstreamUnavailableException.class);
+        }
+        var started = System.nanoTime();
+
+        assertThatThrownBy(() -> orderService.createOrder(order()))
+                .isInstanceOf(DownstreamUnavailableException.class)
+                .hasFieldOrPropertyWithValue("msg", "The product service is unavailable, please try again later");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(CALL_TIMEOUT);
+        verify(productClient, times(BREAKER_WINDOW)).purchaseRequest(any(), any());
+    }
+
+    private static OrderRequest order() {
+        return new OrderRequest(null, "REF-FAULT", new BigDecimal("10.00"), PaymentMethod.PAYPAL,
+                "customer-123", List.of(new PurchaseRequest(1, 1.0)));
+    }
+}
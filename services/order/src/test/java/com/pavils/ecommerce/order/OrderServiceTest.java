@@ -1,32 +1,59 @@
 package com.pavils.ecommerce.order;
 
-import com.pavils.ecommerce.customer.CustomerClient;
+import com.pavils.ecommerce.customer.CustomerCache;
+import com.pavils.ecommerce.customer.CustomerLoader;
 import com.pavils.ecommerce.customer.CustomerResponse;
+import com.pavils.ecommerce.deadline.DeadlinePropagatingExecutorService;
+import com.pavils.ecommerce.deadline.RequestDeadline;
 import com.pavils.ecommerce.exception.BusinessException;
+import com.pavils.ecommerce.exception.DeadlineExceededException;
+import com.pavils.ecommerce.idempotency.IdempotencyStore;
 import com.pavils.ecommerce.kafka.OrderConfirmation;
 import com.pavils.ecommerce.kafka.OrderProducer;
+import com.pavils.ecommerce.orderline.OrderLine;
 import com.pavils.ecommerce.orderline.OrderLineRequest;
 import com.pavils.ecommerce.orderline.OrderLineService;
 import com.pavils.ecommerce.payment.PaymentClient;
+import com.pavils.ecommerce.payment.PaymentRequest;
+import com.pavils.ecommerce.payment.PaymentRequestProducer;
 import com.pavils.ecommerce.product.ProductClient;
 import com.pavils.ecommerce.product.PurchaseRequest;
 import com.pavils.ecommerce.product.PurchaseResponse;
+import com.pavils.ecommerce.resilience.DownstreamGuard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,7 +63,7 @@ class OrderServiceTest {
     private OrderRepository orderRepository;
 
     @Mock
-    private CustomerClient customerClient;
+    private CustomerLoader customerLoader;
 
     @Mock
     private ProductClient productClient;
@@ -53,15 +80,40 @@ class OrderServiceTest {
     @Mock
     private PaymentClient paymentClient;
 
-    @InjectMocks
+    @Mock
+    private PaymentRequestProducer paymentRequestProducer;
+
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    private ExecutorService orderExecutor;
     private OrderService orderService;
 
     @Captor
-    private ArgumentCaptor<OrderLineRequest> orderLineCaptor;
+    private ArgumentCaptor<List<OrderLineRequest>> orderLinesCaptor;
 
     private final CustomerResponse customer =
             new CustomerResponse("customer-123", "John", "Doe", "john@example.com");
 
+    @BeforeEach
+    void setUp() {
+        orderExecutor = new DeadlinePropagatingExecutorService(Executors.newVirtualThreadPerTaskExecutor());
+        var meterRegistry = new SimpleMeterRegistry();
+        var customerCache = new CustomerCache(customerLoader, meterRegistry, 100, 600_000, 5_000);
+        var guardSettings = new DownstreamGuard.Settings(100, Duration.ofSeconds(10), 50, 50, 20, Duration.ofSeconds(10));
+        orderService = new OrderService(orderRepository, customerCache, productClient, mapper,
+                orderLineService, orderProducer, paymentClient, orderExecutor,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), paymentRequestProducer,
+                idempotencyStore,
+                new DownstreamGuard("product", guardSettings, orderExecutor, meterRegistry),
+                new DownstreamGuard("payment", guardSettings, orderExecutor, meterRegistry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderExecutor.shutdownNow();
+    }
+
     @Test
     void createOrder_HappyPath_ReturnsOrderId() {
         OrderRequest request = new OrderRequest(
@@ -73,19 +125,206 @@ class OrderServiceTest {
                 .totalAmount(new BigDecimal("100.00")).paymentMethod(PaymentMethod.CREDIT_CARD)
                 .customerId("customer-123").build();
 
-        when(customerClient.findCustomerById("customer-123")).thenReturn(Optional.of(customer));
-        when(productClient.purchaseRequest(any())).thenReturn(
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+        when(productClient.purchaseRequest(any(), any())).thenReturn(
                 List.of(new PurchaseResponse(1, "Widget", "A widget", new BigDecimal("50.00"), 2.0))
         );
         when(mapper.toOrder(request)).thenReturn(savedOrder);
-        when(orderRepository.save(savedOrder)).thenReturn(savedOrder);
+        when(orderRepository.saveAndFlush(savedOrder)).thenReturn(savedOrder);
 
         Integer result = orderService.createOrder(request);
 
         assertThat(result).isEqualTo(42);
-        verify(orderLineService).saveOrderLine(any(OrderLineRequest.class));
-        verify(paymentClient).requestOrderPayment(any());
-        verify(orderProducer).sendOrderConfirmation(any(OrderConfirmation.class));
+        verify(orderLineService).saveOrderLines(anyList());
+        var paidThenConfirmed = inOrder(paymentClient, orderProducer);
+        paidThenConfirmed.verify(paymentClient).requestOrderPayment(any());
+        paidThenConfirmed.verify(orderProducer).sendOrderConfirmation(any(OrderConfirmation.class));
+        verify(paymentRequestProducer, never()).requestOrderPayment(any());
+    }
+
+    @Test
+    void createOrder_PaymentFails_DoesNotConfirmTheOrder() {
+        OrderRequest request = new OrderRequest(
+                null, "REF-011", new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD,
+                "customer-123", List.of(new PurchaseRequest(1, 2.0))
+        );
+        Order savedOrder = Order.builder().id(45).reference("REF-011").build();
+
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+        when(productClient.purchaseRequest(any(), any())).thenReturn(List.of());
+        when(mapper.toOrder(request)).thenReturn(savedOrder);
+        when(orderRepository.saveAndFlush(savedOrder)).thenReturn(savedOrder);
+        when(paymentClient.requestOrderPayment(any())).thenThrow(new BusinessException("Card declined"));
+
+        assertThatThrownBy(() -> orderService.createOrder(request))
+                .isInstanceOf(BusinessException.class)
+                .hasFieldOrPropertyWithValue("msg", "Card declined");
+
+        verify(orderProducer, never()).sendOrderConfirmation(any());
+    }
+
+    @Test
+    void createOrder_OrderFailsToPersist_GivesBackStockByPurchaseId() {
+        List<PurchaseRequest> products = List.of(new PurchaseRequest(1, 2.0));
+        OrderRequest request = new OrderRequest(
+                null, "REF-012", new BigDecimal("20.00"), PaymentMethod.PAYPAL,
+                "customer-123", products
+        );
+        Order order = Order.builder().reference("REF-012").build();
+
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+        when(productClient.purchaseRequest(any(), eq(products))).thenReturn(
+                List.of(new PurchaseResponse(1, "Widget", "A widget", new BigDecimal("10.00"), 2.0))
+        );
+        when(mapper.toOrder(request)).thenReturn(order);
+        when(orderRepository.saveAndFlush(order)).thenThrow(new IllegalStateException("Connection lost"));
+
+        assertThatThrownBy(() -> orderService.createOrder(request))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Connection lost");
+
+        var purchaseId = ArgumentCaptor.forClass(String.class);
+        verify(productClient).purchaseRequest(purchaseId.capture(), eq(products));
+        verify(productClient, timeout(5000)).cancelPurchase(purchaseId.getValue());
+        verify(paymentClient, never()).requestOrderPayment(any());
+    }
+
+    @Test
+    void createOrder_AsyncPayment_QueuesPaymentRequestInsteadOfCallingPaymentService() {
+        ReflectionTestUtils.setField(orderService, "asyncPayment", true);
+        OrderRequest request = new OrderRequest(
+                null, "REF-007", new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD,
+                "customer-123", List.of(new PurchaseRequest(1, 2.0))
+        );
+        Order savedOrder = Order.builder().id(43).reference("REF-007").build();
+
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+        when(productClient.purchaseRequest(any(), any())).thenReturn(List.of());
+        when(mapper.toOrder(request)).thenReturn(savedOrder);
+        when(orderRepository.saveAndFlush(savedOrder)).thenReturn(savedOrder);
+
+        assertThat(orderService.createOrder(request)).isEqualTo(43);
+
+        verify(paymentRequestProducer).requestOrderPayment(
+                new PaymentRequest(new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD, 43, "REF-007", customer));
+        verify(paymentClient, never()).requestOrderPayment(any());
+        // Confirmed by the payment result once the payment was accepted
+        verify(orderProducer, never()).sendOrderConfirmation(any());
+        // Kept so a rejected payment can give the stock back
+        var purchaseId = ArgumentCaptor.forClass(String.class);
+        verify(productClient).purchaseRequest(purchaseId.capture(), any());
+        assertThat(savedOrder.getPurchaseId()).isEqualTo(purchaseId.getValue());
+    }
+
+    @Test
+    void confirmPaidOrders_StoredOrders_QueuesTheirConfirmations() {
+        Order paidOrder = Order.builder()
+                .id(48).reference("REF-014")
+                .totalAmount(new BigDecimal("19.98")).paymentMethod(PaymentMethod.PAYPAL)
+                .customerId("customer-123").build();
+        paidOrder.setOrderLines(List.of(OrderLine.builder()
+                .productId(1).quantity(2.0).productName("Widget").unitPrice(new BigDecimal("9.99")).build()));
+        when(orderRepository.findDetailById(48)).thenReturn(Optional.of(paidOrder));
+        when(orderRepository.findDetailById(49)).thenReturn(Optional.empty());
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+
+        orderService.confirmPaidOrders(List.of(48, 49));
+
+        verify(orderProducer, times(1)).sendOrderConfirmation(any());
+        verify(orderProducer).sendOrderConfirmation(new OrderConfirmation("REF-014", new BigDecimal("19.98"),
+                PaymentMethod.PAYPAL, customer,
+                List.of(new PurchaseResponse(1, "Widget", null, new BigDecimal("9.99"), 2.0))));
+    }
+
+    @Test
+    void createOrder_WithIdempotencyKey_StoresOrderIdWithTheOrderAndSettlesItOncePaid() {
+        OrderRequest request = new OrderRequest(
+                null, "REF-008", new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD,
+                "customer-123", List.of(new PurchaseRequest(1, 2.0))
+        );
+        Order savedOrder = Order.builder().id(44).reference("REF-008").build();
+
+        when(idempotencyStore.execute(eq("retry-1"), eq(request), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Integer>>getArgument(2).get());
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+        when(productClient.purchaseRequest(any(), any())).thenReturn(List.of());
+        when(mapper.toOrder(request)).thenReturn(savedOrder);
+        when(orderRepository.saveAndFlush(savedOrder)).thenReturn(savedOrder);
+
+        assertThat(orderService.createOrder(request, "retry-1")).isEqualTo(44);
+
+        var storedThenPaid = inOrder(idempotencyStore, paymentClient);
+        storedThenPaid.verify(idempotencyStore).complete("retry-1", 44, true);
+        storedThenPaid.verify(paymentClient).requestOrderPayment(any());
+        storedThenPaid.verify(idempotencyStore).settle("retry-1");
+    }
+
+    @Test
+    void createOrder_WithIdempotencyKeyPaymentFails_LeavesTheKeyUnsettled() {
+        OrderRequest request = new OrderRequest(
+                null, "REF-012", new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD,
+                "customer-123", List.of(new PurchaseRequest(1, 2.0))
+        );
+        Order savedOrder = Order.builder().id(46).reference("REF-012").build();
+
+        when(idempotencyStore.execute(eq("retry-2"), eq(request), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Integer>>getArgument(2).get());
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+        when(productClient.purchaseRequest(any(), any())).thenReturn(List.of());
+        when(mapper.toOrder(request)).thenReturn(savedOrder);
+        when(orderRepository.saveAndFlush(savedOrder)).thenReturn(savedOrder);
+        when(paymentClient.requestOrderPayment(any())).thenThrow(new BusinessException("Card declined"));
+
+        assertThatThrownBy(() -> orderService.createOrder(request, "retry-2"))
+                .isInstanceOf(BusinessException.class);
+
+        verify(idempotencyStore).complete("retry-2", 46, true);
+        verify(idempotencyStore, never()).settle(any());
+    }
+
+    @Test
+    void createOrder_RetryAfterFailedPayment_PaysTheStoredOrder() {
+        OrderRequest request = new OrderRequest(
+                null, "REF-013", new BigDecimal("19.98"), PaymentMethod.CREDIT_CARD,
+                "customer-123", List.of(new PurchaseRequest(1, 2.0))
+        );
+        Order storedOrder = Order.builder()
+                .id(47).reference("REF-013")
+                .totalAmount(new BigDecimal("19.98")).paymentMethod(PaymentMethod.CREDIT_CARD)
+                .customerId("customer-123").build();
+        storedOrder.setOrderLines(List.of(OrderLine.builder()
+                .productId(1).quantity(2.0).productName("Widget").unitPrice(new BigDecimal("9.99")).build()));
+
+        when(idempotencyStore.execute(eq("retry-3"), eq(request), any(), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<Integer>>getArgument(3).accept(47);
+            return 47;
+        });
+        when(orderRepository.findDetailById(47)).thenReturn(Optional.of(storedOrder));
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+
+        assertThat(orderService.createOrder(request, "retry-3")).isEqualTo(47);
+
+        verify(paymentClient).requestOrderPayment(
+                new PaymentRequest(new BigDecimal("19.98"), PaymentMethod.CREDIT_CARD, 47, "REF-013", customer));
+        verify(idempotencyStore).settle("retry-3");
+        verify(orderProducer).sendOrderConfirmation(new OrderConfirmation("REF-013", new BigDecimal("19.98"),
+                PaymentMethod.CREDIT_CARD, customer,
+                List.of(new PurchaseResponse(1, "Widget", null, new BigDecimal("9.99"), 2.0))));
+        verifyNoInteractions(productClient);
+        verify(orderRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void createOrder_DuplicateIdempotencyKey_ReturnsStoredOrderWithoutPlacingIt() {
+        OrderRequest request = new OrderRequest(
+                null, "REF-008", new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD,
+                "customer-123", List.of(new PurchaseRequest(1, 2.0))
+        );
+        when(idempotencyStore.execute(eq("retry-1"), eq(request), any(), any())).thenReturn(44);
+
+        assertThat(orderService.createOrder(request, "retry-1")).isEqualTo(44);
+
+        verifyNoInteractions(customerLoader, productClient, orderRepository, paymentClient);
     }
 
     @Test
@@ -94,7 +333,7 @@ class OrderServiceTest {
                 null, "REF-002", new BigDecimal("50.00"), PaymentMethod.PAYPAL,
                 "unknown-customer", List.of(new PurchaseRequest(1, 1.0))
         );
-        when(customerClient.findCustomerById("unknown-customer")).thenReturn(Optional.empty());
+        when(customerLoader.findCustomerById("unknown-customer")).thenReturn(completedFuture(Optional.empty()));
 
         assertThatThrownBy(() -> orderService.createOrder(request))
                 .isInstanceOf(BusinessException.class)
@@ -122,21 +361,173 @@ class OrderServiceTest {
                 .totalAmount(new BigDecimal("300.00")).paymentMethod(PaymentMethod.VISA_CARD)
                 .customerId("customer-123").build();
 
-        when(customerClient.findCustomerById("customer-123")).thenReturn(Optional.of(customer));
-        when(productClient.purchaseRequest(any())).thenReturn(List.of());
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+        when(productClient.purchaseRequest(any(), any())).thenReturn(List.of());
         when(mapper.toOrder(request)).thenReturn(savedOrder);
-        when(orderRepository.save(savedOrder)).thenReturn(savedOrder);
+        when(orderRepository.saveAndFlush(savedOrder)).thenReturn(savedOrder);
 
         orderService.createOrder(request);
 
-        verify(orderLineService, times(3)).saveOrderLine(orderLineCaptor.capture());
-        List<OrderLineRequest> capturedRequests = orderLineCaptor.getAllValues();
+        verify(orderLineService).saveOrderLines(orderLinesCaptor.capture());
+        List<OrderLineRequest> capturedRequests = orderLinesCaptor.getValue();
+        assertThat(capturedRequests).hasSize(3);
         assertThat(capturedRequests).allMatch(r -> r.orderId().equals(10));
         assertThat(capturedRequests.get(0).productId()).isEqualTo(1);
         assertThat(capturedRequests.get(1).productId()).isEqualTo(2);
         assertThat(capturedRequests.get(2).productId()).isEqualTo(3);
     }
 
+    @Test
+    void createOrder_PurchasedProducts_AreSnapshotOnTheirLines() {
+        OrderRequest request = new OrderRequest(
+                null, "REF-009", new BigDecimal("24.48"), PaymentMethod.PAYPAL,
+                "customer-123", List.of(new PurchaseRequest(1, 2.0), new PurchaseRequest(2, 1.0))
+        );
+        Order savedOrder = Order.builder().id(12).reference("REF-009").build();
+
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+        // The product service does not promise to answer in request order
+        when(productClient.purchaseRequest(any(), any())).thenReturn(List.of(
+                new PurchaseResponse(2, "Gadget", "A gadget", new BigDecimal("4.50"), 1.0),
+                new PurchaseResponse(1, "Widget", "A widget", new BigDecimal("9.99"), 2.0)
+        ));
+        when(mapper.toOrder(request)).thenReturn(savedOrder);
+        when(orderRepository.saveAndFlush(savedOrder)).thenReturn(savedOrder);
+
+        orderService.createOrder(request);
+
+        verify(orderLineService).saveOrderLines(orderLinesCaptor.capture());
+        assertThat(orderLinesCaptor.getValue()).containsExactly(
+                new OrderLineRequest(null, 12, 1, 2.0, "Widget", new BigDecimal("9.99")),
+                new OrderLineRequest(null, 12, 2, 1.0, "Gadget", new BigDecimal("4.50"))
+        );
+    }
+
+    @Test
+    void createOrder_CustomerLookupAndPurchase_RunConcurrently() {
+        OrderRequest request = new OrderRequest(
+                null, "REF-004", new BigDecimal("20.00"), PaymentMethod.PAYPAL,
+                "customer-123", List.of(new PurchaseRequest(1, 1.0))
+        );
+        Order savedOrder = Order.builder().id(11).reference("REF-004").build();
+        // Each call waits for the other one to start, so running them one after the other times out
+        CyclicBarrier bothStarted = new CyclicBarrier(2);
+
+        when(customerLoader.findCustomerById("customer-123")).thenAnswer(invocation -> {
+            bothStarted.await(5, TimeUnit.SECONDS);
+            return completedFuture(Optional.of(customer));
+        });
+        when(productClient.purchaseRequest(any(), any())).thenAnswer(invocation -> {
+            bothStarted.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+        when(mapper.toOrder(request)).thenReturn(savedOrder);
+        when(orderRepository.saveAndFlush(savedOrder)).thenReturn(savedOrder);
+
+        assertThat(orderService.createOrder(request)).isEqualTo(11);
+        verify(productClient, never()).cancelPurchase(any());
+    }
+
+    @Test
+    void createOrder_CustomerNotFoundAfterPurchase_GivesBackReservedStock() {
+        List<PurchaseRequest> products = List.of(new PurchaseRequest(1, 2.0));
+        OrderRequest request = new OrderRequest(
+                null, "REF-005", new BigDecimal("20.00"), PaymentMethod.PAYPAL,
+                "unknown-customer", products
+        );
+        when(customerLoader.findCustomerById("unknown-customer")).thenReturn(completedFuture(Optional.empty()));
+        when(productClient.purchaseRequest(any(), eq(products))).thenReturn(
+                List.of(new PurchaseResponse(1, "Widget", "A widget", new BigDecimal("10.00"), 2.0))
+        );
+
+        assertThatThrownBy(() -> orderService.createOrder(request))
+                .isInstanceOf(BusinessException.class);
+
+        var purchaseId = ArgumentCaptor.forClass(String.class);
+        verify(productClient).purchaseRequest(purchaseId.capture(), eq(products));
+        verify(productClient, timeout(5000)).cancelPurchase(purchaseId.getValue());
+        verify(orderRepository, never()).save(any());
+    }
+
+    @Test
+    void createOrder_PurchaseFails_ThrowsWithoutWaitingForCustomerLookup() throws Exception {
+        OrderRequest request = new OrderRequest(
+                null, "REF-006", new BigDecimal("20.00"), PaymentMethod.PAYPAL,
+                "customer-123", List.of(new PurchaseRequest(1, 99.0))
+        );
+        CountDownLatch customerServiceResponds = new CountDownLatch(1);
+        when(customerLoader.findCustomerById("customer-123")).thenAnswer(invocation -> {
+            customerServiceResponds.await(5, TimeUnit.SECONDS);
+            return completedFuture(Optional.of(customer));
+        });
+        when(productClient.purchaseRequest(any(), any())).thenThrow(new BusinessException("Insufficient stock"));
+
+        try {
+            assertThatThrownBy(() -> orderService.createOrder(request))
+                    .isInstanceOf(BusinessException.class)
+                    .hasFieldOrPropertyWithValue("msg", "Insufficient stock");
+            assertThat(customerServiceResponds.getCount()).isEqualTo(1);
+        } finally {
+            customerServiceResponds.countDown();
+        }
+
+        // Whether the product service took the purchase is unknown; cancelling by id is safe either way
+        var purchaseId = ArgumentCaptor.forClass(String.class);
+        verify(productClient).purchaseRequest(purchaseId.capture(), any());
+        verify(productClient, timeout(5000)).cancelPurchase(purchaseId.getValue());
+        verify(orderRepository, never()).save(any());
+    }
+
+    @Test
+    void createOrder_PurchaseAbandonedAtDeadline_GivesBackStockByPurchaseId() {
+        List<PurchaseRequest> products = List.of(new PurchaseRequest(1, 2.0));
+        OrderRequest request = new OrderRequest(
+                null, "REF-010", new BigDecimal("20.00"), PaymentMethod.PAYPAL,
+                "customer-123", products
+        );
+        when(customerLoader.findCustomerById("customer-123")).thenReturn(completedFuture(Optional.of(customer)));
+        // Still running when the guard gives up on it, so its outcome is unknown
+        when(productClient.purchaseRequest(any(), eq(products))).thenAnswer(invocation -> {
+            Thread.sleep(2000);
+            return List.of();
+        });
+
+        RequestDeadline.runWith(Instant.now().plusMillis(100), () ->
+                assertThatThrownBy(() -> orderService.createOrder(request))
+                        .isInstanceOf(DeadlineExceededException.class));
+
+        var purchaseId = ArgumentCaptor.forClass(String.class);
+        verify(productClient).purchaseRequest(purchaseId.capture(), eq(products));
+        verify(productClient, timeout(5000)).cancelPurchase(purchaseId.getValue());
+        verify(orderRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void createOrder_DeadlinePassesBeforePersisting_GivesBackStockWithoutStoringTheOrder() {
+        List<PurchaseRequest> products = List.of(new PurchaseRequest(1, 2.0));
+        OrderRequest request = new OrderRequest(
+                null, "REF-007", new BigDecimal("20.00"), PaymentMethod.PAYPAL,
+                "customer-123", products
+        );
+        when(customerLoader.findCustomerById("customer-123")).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return completedFuture(Optional.of(customer));
+        });
+        when(productClient.purchaseRequest(any(), eq(products))).thenReturn(
+                List.of(new PurchaseResponse(1, "Widget", "A widget", new BigDecimal("10.00"), 2.0))
+        );
+
+        RequestDeadline.runWith(Instant.now().plusMillis(100), () ->
+                assertThatThrownBy(() -> orderService.createOrder(request))
+                        .isInstanceOf(DeadlineExceededException.class));
+
+        var purchaseId = ArgumentCaptor.forClass(String.class);
+        verify(productClient).purchaseRequest(purchaseId.capture(), eq(products));
+        verify(productClient, timeout(5000)).cancelPurchase(purchaseId.getValue());
+        verify(orderRepository, never()).saveAndFlush(any());
+        verify(paymentClient, never()).requestOrderPayment(any());
+    }
+
     @Test
     void findAll_WithOrders_ReturnsMappedList() {
         Order order1 = Order.builder().id(1).build();
@@ -163,6 +554,46 @@ class OrderServiceTest {
         verify(mapper, never()).fromOrder(any());
     }
 
+    @Test
+    void findPage_FullPage_ReturnsLastOrderAsCursor() {
+        OrderFilter filter = new OrderFilter("cust-1", null, null, null);
+        LocalDateTime newest = LocalDateTime.of(2025, 1, 2, 10, 0);
+        OrderSummary s1 = new OrderSummary(9, "REF-9", BigDecimal.TEN, PaymentMethod.PAYPAL, "cust-1", newest);
+        OrderSummary s2 = new OrderSummary(4, "REF-4", BigDecimal.ONE, PaymentMethod.PAYPAL, "cust-1", newest.minusHours(1));
+        when(orderRepository.findPage(filter, null, null, 2)).thenReturn(List.of(s1, s2));
+
+        OrderPageResponse result = orderService.findPage(filter, null, null, 2);
+
+        assertThat(result.orders()).containsExactly(s1, s2);
+        assertThat(result.nextAfterCreatedDate()).isEqualTo(newest.minusHours(1));
+        assertThat(result.nextAfterId()).isEqualTo(4);
+    }
+
+    @Test
+    void findPage_LastPage_ReturnsNullCursor() {
+        OrderFilter filter = new OrderFilter(null, null, null, PaymentMethod.VISA_CARD);
+        LocalDateTime after = LocalDateTime.of(2025, 1, 2, 10, 0);
+        OrderSummary s1 = new OrderSummary(3, "REF-3", BigDecimal.TEN, PaymentMethod.VISA_CARD, "cust-2", after.minusDays(1));
+        when(orderRepository.findPage(filter, after, 9, 2)).thenReturn(List.of(s1));
+
+        OrderPageResponse result = orderService.findPage(filter, after, 9, 2);
+
+        assertThat(result.orders()).containsExactly(s1);
+        assertThat(result.nextAfterCreatedDate()).isNull();
+        assertThat(result.nextAfterId()).isNull();
+    }
+
+    @Test
+    void findPage_OversizedRequest_ClampsPageSize() {
+        OrderFilter filter = new OrderFilter(null, null, null, null);
+        when(orderRepository.findPage(filter, null, null, 500)).thenReturn(List.of());
+
+        OrderPageResponse result = orderService.findPage(filter, null, null, 100_000);
+
+        assertThat(result.orders()).isEmpty();
+        verify(orderRepository).findPage(filter, null, null, 500);
+    }
+
     @Test
     void findById_ExistingOrder_ReturnsMappedResponse() {
         Order order = Order.builder().id(7).reference("REF-7").build();
@@ -176,6 +607,28 @@ class OrderServiceTest {
         assertThat(result).isEqualTo(response);
     }
 
+    @Test
+    void findDetailById_ExistingOrder_MapsFetchedOrder() {
+        Order order = Order.builder().id(7).reference("REF-7").build();
+        OrderDetailResponse detail = new OrderDetailResponse(7, "REF-7", BigDecimal.TEN, PaymentMethod.PAYPAL,
+                "cust-7", null, null, null, List.of());
+
+        when(orderRepository.findDetailById(7)).thenReturn(Optional.of(order));
+        when(mapper.toOrderDetail(order)).thenReturn(detail);
+
+        assertThat(orderService.findDetailById(7)).isEqualTo(detail);
+        verify(orderRepository, never()).findById(any());
+    }
+
+    @Test
+    void findDetailById_NonExistentOrder_ThrowsEntityNotFoundException() {
+        when(orderRepository.findDetailById(99)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> orderService.findDetailById(99))
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining("99");
+    }
+
     @Test
     void findById_NonExistentOrder_ThrowsEntityNotFoundException() {
         when(orderRepository.findById(99)).thenReturn(Optional.empty());
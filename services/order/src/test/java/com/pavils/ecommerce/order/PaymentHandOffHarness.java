@@ -0,0 +1,104 @@
+package com.pavils.ecommerce.order;
+
+import org.springframework.boot.web.context.WebServerApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.pavils.ecommerce.order.CheckoutLoadHarness.ORDER_BODY;
+
+/**
+ * Checkout throughput with the payment charged synchronously over HTTP and then handed off as a
+ * {@code paymentRequested} event ({@code application.payment.async}). Prints achieved orders per
+ * second and latency percentiles for both modes.
+ * <p>
+ * Orders arrive at a fixed rate whether or not earlier ones have finished, and latency is measured
+ * from the moment an order was due, so a backlog shows up as latency instead of a lower request
+ * rate. Downstream services are the stand-ins from {@link CheckoutLoadHarness}; in async mode the
+ * outbox relay is off, so the payment hand-off costs one outbox insert in the order transaction.
+ * Database settings are the same as for {@link CheckoutLoadHarness}. Load is tuned with
+ * {@code -Dharness.rate} (orders per second, default 1000), {@code -Dharness.seconds} (default 20)
+ * and {@code -Dharness.downstream-latency-ms} (default 50).
+ * Run with {@code mvn test-compile} and then this class's {@code main} from the test classpath.
+ */
+public class PaymentHandOffHarness {
+
+    private static final int RATE = Integer.getInteger("harness.rate", 1000);
+    private static final int SECONDS = Integer.getInteger("harness.seconds", 20);
+    private static final int WARMUP_SECONDS = Integer.getInteger("harness.warmup-seconds", 5);
+
+    public static void main(String[] args) throws Exception {
+        var downstream = CheckoutLoadHarness.startDownstreamStandIns();
+        try {
+            var baseUrl = "http://localhost:" + downstream.getAddress().getPort();
+            for (boolean async : new boolean[]{false, true}) {
+                try (var context = CheckoutLoadHarness.startOrderService(baseUrl,
+                        "application.payment.async=" + async,
+                        "spring.threads.virtual.enabled=true")) {
+                    var port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                    var ordersUrl = URI.create("http://localhost:" + port + "/api/v1/orders");
+
+                    drive(ordersUrl, WARMUP_SECONDS);
+                    var result = drive(ordersUrl, SECONDS);
+                    System.out.printf("%-14s offered=%d/s  %8.1f orders/s  p50=%6.1f ms  p99=%7.1f ms  max=%7.1f ms  errors=%d%n",
+                            async ? "async payment" : "sync payment",
+                            RATE,
+                            result.requestsPerSecond(),
+                            result.percentileMillis(0.50),
+                            result.percentileMillis(0.99),
+                            result.percentileMillis(1.0),
+                            result.errors());
+                }
+            }
+        } finally {
+            downstream.stop(0);
+        }
+    }
+
+    private static CheckoutLoadHarness.Result drive(URI ordersUrl, int seconds) {
+        var latencies = Collections.synchronizedList(new ArrayList<Long>());
+        var errors = new AtomicLong();
+        var orders = (long) RATE * seconds;
+        var interval = TimeUnit.SECONDS.toNanos(1) / RATE;
+        var request = HttpRequest.newBuilder(ordersUrl)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(ORDER_BODY))
+                .build();
+
+        try (var clients = Executors.newVirtualThreadPerTaskExecutor();
+             var http = HttpClient.newBuilder().executor(clients).build()) {
+            var started = System.nanoTime();
+            for (long i = 0; i < orders; i++) {
+                var due = started + i * interval;
+                LockSupport.parkNanos(due - System.nanoTime());
+                clients.submit(() -> {
+                    try {
+                        var response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() == 200) {
+                            latencies.add(System.nanoTime() - due);
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+
+        var sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new CheckoutLoadHarness.Result(sorted, seconds, errors.get());
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 import static org.mockito.Mockito.verify;
@@ -22,7 +23,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         "spring.cloud.config.import-check.enabled=false",
         "application.config.customer-url=http://localhost:8080",
         "application.config.payment-url=http://localhost:8081",
-        "application.config.product-url=http://localhost:8082"
+        "application.config.product-url=http://localhost:8082",
+        "application.config.product-internal-url=http://localhost:8083"
 })
 class OrderLineControllerTest {
 
@@ -39,8 +41,8 @@ class OrderLineControllerTest {
     @Test
     void findByOrderId_WithLines_Returns200WithLineList() throws Exception {
         when(service.findByOrderId(1)).thenReturn(List.of(
-                new OrderLineResponse(1, 2.0),
-                new OrderLineResponse(2, 3.5)
+                new OrderLineResponse(1, 10, "Widget", new BigDecimal("9.99"), 2.0),
+                new OrderLineResponse(2, 11, "Gadget", new BigDecimal("4.50"), 3.5)
         ));
 
         mockMvc.perform(get("/api/v1/order-lines/order/1"))
@@ -48,6 +50,8 @@ class OrderLineControllerTest {
                 .andExpect(jsonPath("$.length()").value(2))
                 .andExpect(jsonPath("$[0].id").value(1))
                 .andExpect(jsonPath("$[0].quantity").value(2.0))
+                .andExpect(jsonPath("$[0].productName").value("Widget"))
+                .andExpect(jsonPath("$[0].unitPrice").value(9.99))
                 .andExpect(jsonPath("$[1].id").value(2))
                 .andExpect(jsonPath("$[1].quantity").value(3.5));
     }
@@ -3,6 +3,8 @@ package com.pavils.ecommerce.orderline;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class OrderLineMapperTest {
@@ -16,7 +18,7 @@ class OrderLineMapperTest {
 
     @Test
     void toOrderLine_ValidRequest_MapsAllFields() {
-        OrderLineRequest request = new OrderLineRequest(10, 5, 42, 3.0);
+        OrderLineRequest request = new OrderLineRequest(10, 5, 42, 3.0, null, null);
 
         OrderLine orderLine = mapper.toOrderLine(request);
 
@@ -27,15 +29,42 @@ class OrderLineMapperTest {
         assertThat(orderLine.getOrder().getId()).isEqualTo(5);
     }
 
+    @Test
+    void toOrderLine_ProductSnapshot_IsCopied() {
+        OrderLineRequest request = new OrderLineRequest(null, 5, 42, 1.0, "Widget", new BigDecimal("9.99"));
+
+        OrderLine orderLine = mapper.toOrderLine(request);
+
+        assertThat(orderLine.getProductName()).isEqualTo("Widget");
+        assertThat(orderLine.getUnitPrice()).isEqualByComparingTo("9.99");
+    }
+
     @Test
     void toOrderLine_NullId_ProducesEntityWithNullId() {
-        OrderLineRequest request = new OrderLineRequest(null, 5, 42, 1.0);
+        OrderLineRequest request = new OrderLineRequest(null, 5, 42, 1.0, null, null);
 
         OrderLine orderLine = mapper.toOrderLine(request);
 
         assertThat(orderLine.getId()).isNull();
     }
 
+    @Test
+    void toOrderLineResponse_WithSnapshot_MapsProductNameAndUnitPrice() {
+        OrderLine orderLine = OrderLine.builder()
+                .id(7)
+                .productId(42)
+                .quantity(2.0)
+                .productName("Widget")
+                .unitPrice(new BigDecimal("9.99"))
+                .build();
+
+        OrderLineResponse response = mapper.toOrderLineResponse(orderLine);
+
+        assertThat(response.productId()).isEqualTo(42);
+        assertThat(response.productName()).isEqualTo("Widget");
+        assertThat(response.unitPrice()).isEqualByComparingTo("9.99");
+    }
+
     @Test
     void toOrderLineResponse_ValidEntity_MapsIdAndQuantity() {
         OrderLine orderLine = OrderLine.builder()
@@ -27,7 +27,7 @@ class OrderLineServiceTest {
 
     @Test
     void saveOrderLine_ValidRequest_DelegatesToMapperThenRepository() {
-        OrderLineRequest request = new OrderLineRequest(null, 1, 10, 2.0);
+        OrderLineRequest request = new OrderLineRequest(null, 1, 10, 2.0, null, null);
         OrderLine orderLine = OrderLine.builder().productId(10).quantity(2.0).build();
         when(mapper.toOrderLine(request)).thenReturn(orderLine);
 
@@ -39,7 +39,7 @@ class OrderLineServiceTest {
 
     @Test
     void saveOrderLine_ExistingId_PassesIdToMapper() {
-        OrderLineRequest request = new OrderLineRequest(5, 1, 10, 2.0);
+        OrderLineRequest request = new OrderLineRequest(5, 1, 10, 2.0, null, null);
         OrderLine orderLine = OrderLine.builder().id(5).productId(10).quantity(2.0).build();
         when(mapper.toOrderLine(argThat(r ->
                 r.id().equals(5) &&
@@ -53,12 +53,27 @@ class OrderLineServiceTest {
         verify(repository).save(orderLine);
     }
 
+    @Test
+    void saveOrderLines_SeveralRequests_InsertsAllMappedLinesInOneCall() {
+        OrderLineRequest first = new OrderLineRequest(null, 1, 10, 2.0, null, null);
+        OrderLineRequest second = new OrderLineRequest(null, 1, 11, 1.0, null, null);
+        OrderLine firstLine = OrderLine.builder().productId(10).quantity(2.0).build();
+        OrderLine secondLine = OrderLine.builder().productId(11).quantity(1.0).build();
+        when(mapper.toOrderLine(first)).thenReturn(firstLine);
+        when(mapper.toOrderLine(second)).thenReturn(secondLine);
+
+        service.saveOrderLines(List.of(first, second));
+
+        verify(repository).insertAll(List.of(firstLine, secondLine));
+        verify(repository, never()).save(any());
+    }
+
     @Test
     void findByOrderId_WithLines_ReturnsMappedResponses() {
         OrderLine line1 = OrderLine.builder().id(1).quantity(1.0).build();
         OrderLine line2 = OrderLine.builder().id(2).quantity(2.0).build();
-        OrderLineResponse response1 = new OrderLineResponse(1, 1.0);
-        OrderLineResponse response2 = new OrderLineResponse(2, 2.0);
+        OrderLineResponse response1 = new OrderLineResponse(1, null, null, null, 1.0);
+        OrderLineResponse response2 = new OrderLineResponse(2, null, null, null, 2.0);
 
         when(repository.findByOrderId(10)).thenReturn(List.of(line1, line2));
         when(mapper.toOrderLineResponse(line1)).thenReturn(response1);
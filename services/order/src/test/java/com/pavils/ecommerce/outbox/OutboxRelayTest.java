@@ -0,0 +1,171 @@
+package com.pavils.ecommerce.outbox;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Captor
+    private ArgumentCaptor<ProducerRecord<String, String>> recordCaptor;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = relay(true, 2);
+    }
+
+    @Test
+    void relay_AcknowledgedRecords_AreSentWithTypeHeaderAndDeleted() {
+        var event = event(1L, "REF-1");
+        when(outboxRepository.lockNextBatch(2)).thenReturn(List.of(event));
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(acknowledged());
+
+        relay.relay();
+
+        verify(kafkaTemplate).send(recordCaptor.capture());
+        var record = recordCaptor.getValue();
+        assertThat(record.topic()).isEqualTo("order-topic");
+        assertThat(record.key()).isEqualTo("REF-1");
+        assertThat(record.value()).isEqualTo("{\"orderReference\":\"REF-1\"}");
+        assertThat(new String(record.headers().lastHeader("__TypeId__").value(), StandardCharsets.UTF_8))
+                .isEqualTo("orderConfirmation");
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(1L));
+        assertThat(meterRegistry.counter("order.outbox.sent").count()).isEqualTo(1);
+    }
+
+    @Test
+    void relay_FailedRecord_StaysInOutboxWithAttemptRecorded() {
+        var delivered = event(1L, "REF-1");
+        var rejected = event(2L, "REF-2");
+        when(outboxRepository.lockNextBatch(2)).thenReturn(List.of(delivered, rejected));
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(acknowledged())
+                .thenReturn(rejected(new IllegalStateException("broker down")));
+
+        relay.relay();
+
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(1L));
+        assertThat(rejected.getAttempts()).isEqualTo(1);
+        assertThat(rejected.getLastError()).contains("broker down");
+        assertThat(meterRegistry.counter("order.outbox.failed").count()).isEqualTo(1);
+        // A partly failed batch must not be retried in a tight loop
+        verify(outboxRepository, times(1)).lockNextBatch(2);
+    }
+
+    @Test
+    void relay_LastAttemptFails_DeadLettersTheRecord() {
+        var poisoned = event(1L, "REF-1");
+        poisoned.setAttempts(2);
+        when(outboxRepository.lockNextBatch(2)).thenReturn(List.of(poisoned));
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(rejected(new IllegalStateException("record too large")));
+
+        relay.relay();
+
+        assertThat(poisoned.getAttempts()).isEqualTo(3);
+        assertThat(poisoned.getDeadLetteredDate()).isNotNull();
+        assertThat(meterRegistry.counter("order.outbox.dead-lettered").count()).isEqualTo(1);
+        verify(outboxRepository).deleteAllByIdInBatch(List.of());
+    }
+
+    @Test
+    void relay_SendThrowsUpFront_FailsOnlyThatRecord() {
+        var delivered = event(1L, "REF-1");
+        var rejected = event(2L, "REF-2");
+        when(outboxRepository.lockNextBatch(2)).thenReturn(List.of(rejected, delivered));
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenThrow(new IllegalArgumentException("record too large"))
+                .thenReturn(acknowledged());
+
+        relay.relay();
+
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(1L));
+        assertThat(rejected.getAttempts()).isEqualTo(1);
+        assertThat(rejected.getDeadLetteredDate()).isNull();
+    }
+
+    @Test
+    void relay_FullBatchDelivered_DrainsTheNextBatchRightAway() {
+        when(outboxRepository.lockNextBatch(2))
+                .thenReturn(List.of(event(1L, "REF-1"), event(2L, "REF-2")))
+                .thenReturn(List.of(event(3L, "REF-3")));
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(acknowledged());
+
+        relay.relay();
+
+        verify(outboxRepository, times(2)).lockNextBatch(2);
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(3L));
+    }
+
+    @Test
+    void relay_Disabled_DoesNotTouchTheOutbox() {
+        relay(false, 2).relay();
+
+        verify(outboxRepository, never()).lockNextBatch(anyInt());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void gauges_ReportDepthAgeOfOldestRecordAndDeadLetters() {
+        when(outboxRepository.countByDeadLetteredDateIsNull()).thenReturn(7L);
+        when(outboxRepository.countByDeadLetteredDateIsNotNull()).thenReturn(1L);
+        when(outboxRepository.findOldestCreatedDate()).thenReturn(LocalDateTime.now().minusSeconds(30));
+
+        assertThat(meterRegistry.get("order.outbox.depth").gauge().value()).isEqualTo(7);
+        assertThat(meterRegistry.get("order.outbox.lag").gauge().value()).isBetween(29.0, 40.0);
+        assertThat(meterRegistry.get("order.outbox.dead-letters").gauge().value()).isEqualTo(1);
+    }
+
+    private OutboxRelay relay(boolean enabled, int batchSize) {
+        return new OutboxRelay(outboxRepository, kafkaTemplate, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                meterRegistry, enabled, batchSize, 1000, 3);
+    }
+
+    private static CompletableFuture<SendResult<String, String>> acknowledged() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static CompletableFuture<SendResult<String, String>> rejected(Exception cause) {
+        return CompletableFuture.failedFuture(cause);
+    }
+
+    private static OutboxEvent event(Long id, String reference) {
+        return OutboxEvent.builder()
+                .id(id)
+                .topic("order-topic")
+                .messageKey(reference)
+                .payloadType("orderConfirmation")
+                .payload("{\"orderReference\":\"" + reference + "\"}")
+                .createdDate(LocalDateTime.now())
+                .build();
+    }
+}
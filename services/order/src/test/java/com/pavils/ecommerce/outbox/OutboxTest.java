@@ -0,0 +1,58 @@
+package com.pavils.ecommerce.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pavils.ecommerce.customer.CustomerResponse;
+import com.pavils.ecommerce.kafka.OrderConfirmation;
+import com.pavils.ecommerce.order.PaymentMethod;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxTest {
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    @Captor
+    private ArgumentCaptor<OutboxEvent> eventCaptor;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Outbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        outbox = new Outbox(outboxRepository, objectMapper);
+    }
+
+    @Test
+    void enqueue_SavesRowWhosePayloadRoundTrips() throws Exception {
+        OrderConfirmation confirmation = new OrderConfirmation(
+                "REF-001",
+                new BigDecimal("99.99"),
+                PaymentMethod.CREDIT_CARD,
+                new CustomerResponse("cust-1", "Jane", "Doe", "jane@example.com"),
+                List.of()
+        );
+
+        outbox.enqueue("order-topic", "REF-001", "orderConfirmation", confirmation);
+
+        verify(outboxRepository).save(eventCaptor.capture());
+        OutboxEvent captured = eventCaptor.getValue();
+        assertThat(captured.getTopic()).isEqualTo("order-topic");
+        assertThat(captured.getMessageKey()).isEqualTo("REF-001");
+        assertThat(captured.getPayloadType()).isEqualTo("orderConfirmation");
+        assertThat(objectMapper.readValue(captured.getPayload(), OrderConfirmation.class)).isEqualTo(confirmation);
+    }
+}
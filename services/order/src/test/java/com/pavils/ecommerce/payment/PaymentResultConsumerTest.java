@@ -0,0 +1,101 @@
+package com.pavils.ecommerce.payment;
+
+import com.pavils.ecommerce.order.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentResultConsumerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private OrderService orderService;
+
+    private PaymentResultConsumer consumer;
+
+    @Captor
+    private ArgumentCaptor<List<Object[]>> argsCaptor;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new PaymentResultConsumer(jdbcTemplate, new TransactionTemplate(transactionManager), orderService);
+    }
+
+    @Test
+    void consumePaymentResults_AcceptedPayments_RecordedInOneBatchAndConfirmed() {
+        when(jdbcTemplate.batchUpdate(eq(PaymentResultConsumer.SET_PAYMENT_ID), anyList())).thenReturn(new int[]{1, 1});
+
+        consumer.consumePaymentResults(List.of(
+                new PaymentResult(1, "REF-1", 101, PaymentStatus.ACCEPTED, null),
+                new PaymentResult(3, "REF-3", 103, PaymentStatus.ACCEPTED, null)
+        ));
+
+        verify(jdbcTemplate).batchUpdate(anyString(), argsCaptor.capture());
+        assertThat(argsCaptor.getValue())
+                .containsExactly(new Object[]{101, 1}, new Object[]{103, 3});
+        verify(orderService).confirmPaidOrders(List.of(1, 3));
+    }
+
+    @Test
+    void consumePaymentResults_RedeliveredAcceptance_IsNotConfirmedAgain() {
+        when(jdbcTemplate.batchUpdate(eq(PaymentResultConsumer.SET_PAYMENT_ID), anyList())).thenReturn(new int[]{0, 1});
+
+        consumer.consumePaymentResults(List.of(
+                new PaymentResult(1, "REF-1", 101, PaymentStatus.ACCEPTED, null),
+                new PaymentResult(3, "REF-3", 103, PaymentStatus.ACCEPTED, null)
+        ));
+
+        verify(orderService).confirmPaidOrders(List.of(3));
+    }
+
+    @Test
+    void consumePaymentResults_Rejection_MarksTheOrderFailedAndGivesBackItsStockAfterCommit() {
+        when(jdbcTemplate.queryForList(eq(PaymentResultConsumer.MARK_PAYMENT_FAILED), eq(String.class), any(), eq(2)))
+                .thenReturn(List.of("purchase-2"));
+
+        consumer.consumePaymentResults(List.of(
+                new PaymentResult(2, "REF-2", null, PaymentStatus.REJECTED, "email is required")
+        ));
+
+        InOrder committedThenReleased = inOrder(transactionManager, orderService);
+        committedThenReleased.verify(transactionManager).commit(any());
+        committedThenReleased.verify(orderService).releasePurchase("purchase-2");
+        verify(orderService, never()).confirmPaidOrders(any());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void consumePaymentResults_RedeliveredRejection_GivesBackNothing() {
+        when(jdbcTemplate.queryForList(eq(PaymentResultConsumer.MARK_PAYMENT_FAILED), eq(String.class), any(), eq(2)))
+                .thenReturn(List.of());
+
+        consumer.consumePaymentResults(List.of(
+                new PaymentResult(2, "REF-2", null, PaymentStatus.REJECTED, "email is required")
+        ));
+
+        verify(orderService, never()).releasePurchase(any());
+    }
+}
@@ -22,6 +22,7 @@ import static org.springframework.test.web.client.response.MockRestResponseCreat
 class ProductClientTest {
 
     private static final String PRODUCT_URL = "http://localhost:8080/api/v1/products";
+    private static final String PRODUCT_INTERNAL_URL = "http://localhost:8050/api/v1/products/internal";
 
     private ProductClient productClient;
     private MockRestServiceServer mockServer;
@@ -33,6 +34,7 @@ class ProductClientTest {
         mockServer = MockRestServiceServer.createServer(restTemplate);
         productClient = new ProductClient(restTemplate);
         ReflectionTestUtils.setField(productClient, "productUrl", PRODUCT_URL);
+        ReflectionTestUtils.setField(productClient, "productInternalUrl", PRODUCT_INTERNAL_URL);
     }
 
     @Test
@@ -47,6 +49,7 @@ class ProductClientTest {
                 .andRespond(withSuccess(responseBody, MediaType.APPLICATION_JSON));
 
         List<PurchaseResponse> result = productClient.purchaseRequest(
+                "purchase-1",
                 List.of(new PurchaseRequest(1, 2.0))
         );
 
@@ -57,13 +60,14 @@ class ProductClientTest {
     }
 
     @Test
-    void purchaseRequest_ContentTypeHeaderIsSet() {
+    void purchaseRequest_ContentTypeAndPurchaseIdHeadersAreSet() {
         mockServer.expect(requestTo(PRODUCT_URL + "/purchase"))
                 .andExpect(method(HttpMethod.POST))
                 .andExpect(header("Content-Type", "application/json"))
+                .andExpect(header(ProductClient.PURCHASE_ID_HEADER, "purchase-1"))
                 .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
 
-        productClient.purchaseRequest(List.of(new PurchaseRequest(1, 1.0)));
+        productClient.purchaseRequest("purchase-1", List.of(new PurchaseRequest(1, 1.0)));
 
         mockServer.verify();
     }
@@ -77,7 +81,7 @@ class ProductClientTest {
                 .andExpect(method(HttpMethod.POST))
                 .andRespond(withBadRequest());
 
-        assertThatThrownBy(() -> productClient.purchaseRequest(List.of(new PurchaseRequest(1, 1.0))))
+        assertThatThrownBy(() -> productClient.purchaseRequest("purchase-1", List.of(new PurchaseRequest(1, 1.0))))
                 .isInstanceOf(HttpClientErrorException.class);
     }
 
@@ -88,7 +92,18 @@ class ProductClientTest {
                 .andExpect(method(HttpMethod.POST))
                 .andRespond(withServerError());
 
-        assertThatThrownBy(() -> productClient.purchaseRequest(List.of(new PurchaseRequest(1, 1.0))))
+        assertThatThrownBy(() -> productClient.purchaseRequest("purchase-1", List.of(new PurchaseRequest(1, 1.0))))
                 .isInstanceOf(HttpServerErrorException.class);
     }
+
+    @Test
+    void cancelPurchase_PostsToInternalCancelEndpointOfThePurchase() {
+        mockServer.expect(requestTo(PRODUCT_INTERNAL_URL + "/purchases/purchase-1/cancel"))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(withSuccess());
+
+        productClient.cancelPurchase("purchase-1");
+
+        mockServer.verify();
+    }
 }
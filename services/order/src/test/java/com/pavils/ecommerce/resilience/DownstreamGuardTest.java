@@ -0,0 +1,179 @@
+package com.pavils.ecommerce.resilience;
+
+import com.pavils.ecommerce.deadline.RequestDeadline;
+import com.pavils.ecommerce.exception.BusinessException;
+import com.pavils.ecommerce.exception.DeadlineExceededException;
+import com.pavils.ecommerce.exception.DownstreamUnavailableException;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DownstreamGuardTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    void call_Success_ReturnsResultAndRecordsLatency() {
+        var guard = guard(10, Duration.ofSeconds(5), 5);
+
+        assertThat(guard.call(() -> 42)).isEqualTo(42);
+        assertThat(calls("success")).isEqualTo(1);
+    }
+
+    @Test
+    void call_HangingCall_TimesOutAndInterruptsIt() throws InterruptedException {
+        var guard = guard(10, Duration.ofMillis(100), 5);
+        var interrupted = new CountDownLatch(1);
+
+        assertThatThrownBy(() -> guard.call(() -> {
+            try {
+                Thread.sleep(Duration.ofMinutes(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        }))
+                .isInstanceOf(DownstreamUnavailableException.class)
+                .hasFieldOrPropertyWithValue("msg", "The test service did not answer within 100 ms, please try again later");
+
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(calls("timeout")).isEqualTo(1);
+    }
+
+    @Test
+    void call_BulkheadFull_RejectsWithoutCalling() throws InterruptedException {
+        var guard = guard(1, Duration.ofSeconds(5), 5);
+        var release = new CountDownLatch(1);
+        var running = new CountDownLatch(1);
+        var first = Thread.ofVirtual().start(() -> guard.call(() -> {
+            running.countDown();
+            await(release);
+            return 1;
+        }));
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            assertThatThrownBy(() -> guard.call(() -> 2))
+                    .isInstanceOf(DownstreamUnavailableException.class)
+                    .hasFieldOrPropertyWithValue("msg", "The test service is overloaded, please try again later");
+            assertThat(rejections("bulkhead-full")).isEqualTo(1);
+        } finally {
+            release.countDown();
+            first.join(Duration.ofSeconds(5));
+        }
+
+        assertThat(guard.call(() -> 3)).isEqualTo(3);
+    }
+
+    @Test
+    void call_ServerErrorsOpenTheBreaker_LaterCallsFailFast() {
+        var guard = guard(10, Duration.ofSeconds(5), 3);
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> guard.call(() -> {
+                throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR);
+            })).isInstanceOf(HttpServerErrorException.class);
+        }
+
+        assertThatThrownBy(() -> guard.call(() -> {
+            throw new AssertionError("called while the breaker is open");
+        }))
+                .isInstanceOf(DownstreamUnavailableException.class)
+                .hasFieldOrPropertyWithValue("msg", "The test service is unavailable, please try again later");
+        assertThat(rejections("circuit-open")).isEqualTo(1);
+        assertThat(meterRegistry.get("order.downstream.circuit-open").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void call_ClientErrors_DoNotOpenTheBreaker() {
+        var guard = guard(10, Duration.ofSeconds(5), 3);
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> guard.call(() -> {
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            })).isInstanceOf(HttpClientErrorException.class);
+            assertThatThrownBy(() -> guard.call(() -> {
+                throw new BusinessException("Insufficient stock");
+            })).isInstanceOf(BusinessException.class);
+        }
+
+        assertThat(guard.call(() -> 1)).isEqualTo(1);
+        assertThat(calls("failure")).isEqualTo(10);
+    }
+
+    @Test
+    void call_DeadlineAlreadyPassed_IsNotSent() {
+        Metrics.addRegistry(meterRegistry);
+        var guard = guard(10, Duration.ofSeconds(5), 5);
+
+        RequestDeadline.runWith(Instant.now().minusSeconds(1), () ->
+                assertThatThrownBy(() -> guard.call(() -> {
+                    throw new AssertionError("called after the deadline");
+                })).isInstanceOf(DeadlineExceededException.class));
+
+        assertThat(meterRegistry.get("deadline.work.avoided").tag("stage", "test-call").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void call_DeadlineShorterThanCallTimeout_GivesUpAtTheDeadlineWithoutOpeningTheBreaker() {
+        var guard = guard(10, Duration.ofSeconds(5), 3);
+
+        for (int i = 0; i < 3; i++) {
+            var started = System.nanoTime();
+            RequestDeadline.runWith(Instant.now().plusMillis(100), () ->
+                    assertThatThrownBy(() -> guard.call(() -> {
+                        try {
+                            Thread.sleep(Duration.ofMinutes(1));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return null;
+                    })).isInstanceOf(DeadlineExceededException.class));
+            assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(5));
+        }
+
+        assertThat(guard.call(() -> 1)).isEqualTo(1);
+        assertThat(calls("deadline-exceeded")).isEqualTo(3);
+        assertThat(calls("timeout")).isZero();
+    }
+
+    private DownstreamGuard guard(int maxConcurrentCalls, Duration callTimeout, int window) {
+        var settings = new DownstreamGuard.Settings(maxConcurrentCalls, callTimeout, 50, window, window, Duration.ofMinutes(1));
+        return new DownstreamGuard("test", settings, executor, meterRegistry);
+    }
+
+    private long calls(String outcome) {
+        return meterRegistry.get("order.downstream.calls").tag("outcome", outcome).timer().count();
+    }
+
+    private double rejections(String reason) {
+        return meterRegistry.get("order.downstream.rejections").tag("reason", reason).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -15,4 +15,11 @@ public class KafkaPaymentTopicConfig {
                 .name("payment-topic")
                 .build();
     }
+
+    @Bean
+    NewTopic paymentResultTopic() {
+        return TopicBuilder
+                .name("payment-result-topic")
+                .build();
+    }
 }
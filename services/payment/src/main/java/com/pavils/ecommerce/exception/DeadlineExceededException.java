@@ -0,0 +1,14 @@
+package com.pavils.ecommerce.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Work that was skipped because the client's request deadline had already passed.
+ */
+@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(String msg) {
+        super(msg);
+    }
+}
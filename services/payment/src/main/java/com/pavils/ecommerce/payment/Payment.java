@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 @Builder
 @Entity
 @EntityListeners(AuditingEntityListener.class)
-@Table(name = "payment")
+// One payment per order, so a retried payment call cannot charge the customer twice
+@Table(name = "payment", uniqueConstraints = @UniqueConstraint(name = "payment_order_id_key", columnNames = "order_id"))
 public class Payment {
 
     @Id
@@ -0,0 +1,11 @@
+package com.pavils.ecommerce.payment;
+
+import java.util.List;
+
+public interface PaymentBatchRepository {
+
+    /**
+     * Assigns ids from {@code payment_seq} and inserts the payments as one JDBC batch.
+     */
+    void insertAll(List<Payment> payments);
+}
@@ -0,0 +1,40 @@
+package com.pavils.ecommerce.payment;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class PaymentBatchRepositoryImpl implements PaymentBatchRepository {
+
+    private static final String INSERT_PAYMENT = """
+            insert into payment (id, amount, order_id, payment_method, created_date)
+            values (?, ?, ?, ?, ?)
+            """;
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<Payment> payments) {
+        PooledIds.assign(entityManager, Payment.class, payments, Payment::setId);
+
+        var now = LocalDateTime.now();
+        for (var payment : payments) {
+            payment.setCreatedDate(now);
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_PAYMENT, payments, payments.size(), (statement, payment) -> {
+            statement.setInt(1, payment.getId());
+            statement.setBigDecimal(2, payment.getAmount());
+            statement.setInt(3, payment.getOrderId());
+            // The entity maps the method by ordinal
+            statement.setShort(4, (short) payment.getPaymentMethod().ordinal());
+            statement.setTimestamp(5, Timestamp.valueOf(payment.getCreatedDate()));
+        });
+    }
+}
@@ -1,8 +1,20 @@
 package com.pavils.ecommerce.payment;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
 @Repository
-public interface PaymentRepository extends JpaRepository<Payment, Integer> {
+public interface PaymentRepository extends JpaRepository<Payment, Integer>, PaymentBatchRepository {
+
+    @Query("select p.orderId from Payment p where p.orderId in :orderIds")
+    Set<Integer> findPaidOrderIds(@Param("orderIds") Collection<Integer> orderIds);
+
+    @Query("select p.id from Payment p where p.orderId = :orderId")
+    Optional<Integer> findIdByOrderId(@Param("orderId") Integer orderId);
 }
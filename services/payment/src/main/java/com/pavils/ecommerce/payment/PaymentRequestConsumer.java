@@ -0,0 +1,27 @@
+package com.pavils.ecommerce.payment;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentRequestConsumer {
+
+    private final PaymentService service;
+
+    /**
+     * Takes a poll's worth of payment-requested events from the order service. Offsets are
+     * committed only after the listener returns, i.e. after the payments were stored and the
+     * results acknowledged by the broker.
+     */
+    @KafkaListener(topics = "payment-request-topic", groupId = "paymentRequestGroup", batch = "true")
+    public void consumePaymentRequests(List<PaymentRequest> requests) {
+        log.debug("Consuming {} payment requests", requests.size());
+        service.createPayments(requests);
+    }
+}
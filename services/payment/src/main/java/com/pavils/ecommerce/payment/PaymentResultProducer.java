@@ -0,0 +1,33 @@
+package com.pavils.ecommerce.payment;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class PaymentResultProducer {
+
+    private final KafkaTemplate<String, PaymentResult> kafkaTemplate;
+
+    public void sendResult(PaymentResult result) {
+        Message<PaymentResult> message = MessageBuilder
+                .withPayload(result)
+                .setHeader(KafkaHeaders.TOPIC, "payment-result-topic")
+                .setHeader(KafkaHeaders.KEY, result.orderReference())
+                .build();
+
+        kafkaTemplate.send(message);
+    }
+
+    /**
+     * Blocks until every record sent so far, payment notifications included, was acknowledged;
+     * all templates share one producer.
+     */
+    public void flush() {
+        kafkaTemplate.flush();
+    }
+}
@@ -1,31 +1,127 @@
 package com.pavils.ecommerce.payment;
 
+import com.pavils.ecommerce.deadline.RequestDeadline;
 import com.pavils.ecommerce.notification.NotificationProducer;
 import com.pavils.ecommerce.notification.PaymentNotificationRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class PaymentService {
 
     private final PaymentRepository repository;
     private final PaymentMapper mapper;
     private final NotificationProducer producer;
+    private final PaymentResultProducer resultProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
 
+    /**
+     * Pays an order once. A repeated call for an order that already has a payment, such as the
+     * retry of a call that timed out after the payment was stored, gets that payment's id and
+     * sends no second notification; of two concurrent calls, the one the unique order id refuses
+     * gets the other's payment.
+     */
     public Integer createPayment(PaymentRequest request) {
-        var payment = repository.save(mapper.toPayment(request));
-        producer.sendNotification(
-                new PaymentNotificationRequest(
-                        request.orderReference(),
-                        request.amount(),
-                        request.paymentMethod(),
-                        request.customer().firstname(),
-                        request.customer().lastname(),
-                        request.customer().email()
-                )
-        );
+        RequestDeadline.check("payment");
+        var existing = repository.findIdByOrderId(request.orderId());
+        if (existing.isPresent()) {
+            log.info("Order {} is already paid by payment {}", request.orderId(), existing.get());
+            return existing.get();
+        }
+
+        Payment payment;
+        try {
+            payment = repository.save(mapper.toPayment(request));
+        } catch (DataIntegrityViolationException e) {
+            return repository.findIdByOrderId(request.orderId()).orElseThrow(() -> e);
+        }
+        producer.sendNotification(toNotification(request));
 
         return payment.getId();
     }
+
+    /**
+     * Stores a batch of payment requests with one JDBC batch in one transaction, then sends a
+     * notification per stored payment and a result per request, and waits for the broker.
+     * Orders that already have a payment are skipped, so a redelivered batch pays nothing twice.
+     */
+    public List<PaymentResult> createPayments(List<PaymentRequest> requests) {
+        var results = new ArrayList<PaymentResult>(requests.size());
+        var accepted = new ArrayList<PaymentRequest>(requests.size());
+        var payments = new ArrayList<Payment>(requests.size());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            var paid = new HashSet<>(repository.findPaidOrderIds(
+                    requests.stream().map(PaymentRequest::orderId).toList()));
+
+            for (var request : requests) {
+                var rejection = validate(request);
+                if (rejection != null) {
+                    results.add(new PaymentResult(request.orderId(), request.orderReference(), null, PaymentStatus.REJECTED, rejection));
+                    continue;
+                }
+                if (!paid.add(request.orderId())) {
+                    log.info("Skipping payment request for already paid order {}", request.orderId());
+                    continue;
+                }
+                accepted.add(request);
+                payments.add(mapper.toPayment(request));
+            }
+
+            if (!payments.isEmpty()) {
+                repository.insertAll(payments);
+            }
+        });
+
+        for (int i = 0; i < accepted.size(); i++) {
+            var request = accepted.get(i);
+            producer.sendNotification(toNotification(request));
+            results.add(new PaymentResult(request.orderId(), request.orderReference(), payments.get(i).getId(), PaymentStatus.ACCEPTED, null));
+        }
+        results.forEach(resultProducer::sendResult);
+        resultProducer.flush();
+
+        return results;
+    }
+
+    private String validate(PaymentRequest request) {
+        if (request.orderId() == null || request.amount() == null || request.paymentMethod() == null) {
+            return "order, amount and payment method are required";
+        }
+        if (request.customer() == null) {
+            return "customer is required";
+        }
+        var violations = validator.validate(request.customer());
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        return null;
+    }
+
+    private static PaymentNotificationRequest toNotification(PaymentRequest request) {
+        return new PaymentNotificationRequest(
+                request.orderReference(),
+                request.amount(),
+                request.paymentMethod(),
+                request.customer().firstname(),
+                request.customer().lastname(),
+                request.customer().email()
+        );
+    }
 }
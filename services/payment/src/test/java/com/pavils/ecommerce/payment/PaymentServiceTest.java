@@ -1,7 +1,10 @@
 package com.pavils.ecommerce.payment;
 
+import com.pavils.ecommerce.deadline.RequestDeadline;
+import com.pavils.ecommerce.exception.DeadlineExceededException;
 import com.pavils.ecommerce.notification.NotificationProducer;
 import com.pavils.ecommerce.notification.PaymentNotificationRequest;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -9,13 +12,20 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class PaymentServiceTest {
@@ -29,6 +39,9 @@ class PaymentServiceTest {
     @Mock
     private NotificationProducer producer;
 
+    @Mock
+    private PaymentResultProducer resultProducer;
+
     @InjectMocks
     private PaymentService service;
 
@@ -72,6 +85,42 @@ class PaymentServiceTest {
         assertThat(result).isEqualTo(99);
     }
 
+    @Test
+    void createPayment_SameOrderTwice_StoresOnePayment() {
+        PaymentRequest request = new PaymentRequest(
+                null, new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD, 1, "REF-001", customer
+        );
+        Payment savedPayment = Payment.builder().id(42).amount(new BigDecimal("100.00"))
+                .paymentMethod(PaymentMethod.CREDIT_CARD).orderId(1).build();
+
+        when(repository.findIdByOrderId(1)).thenReturn(Optional.empty(), Optional.of(42));
+        when(mapper.toPayment(request)).thenReturn(savedPayment);
+        when(repository.save(savedPayment)).thenReturn(savedPayment);
+
+        assertThat(service.createPayment(request)).isEqualTo(42);
+        assertThat(service.createPayment(request)).isEqualTo(42);
+
+        verify(repository, times(1)).save(any());
+        verify(producer, times(1)).sendNotification(any(PaymentNotificationRequest.class));
+    }
+
+    @Test
+    void createPayment_ConcurrentCallStoredItFirst_ReturnsItsPayment() {
+        PaymentRequest request = new PaymentRequest(
+                null, new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD, 1, "REF-001", customer
+        );
+        Payment payment = Payment.builder().amount(new BigDecimal("100.00"))
+                .paymentMethod(PaymentMethod.CREDIT_CARD).orderId(1).build();
+
+        when(repository.findIdByOrderId(1)).thenReturn(Optional.empty(), Optional.of(42));
+        when(mapper.toPayment(request)).thenReturn(payment);
+        when(repository.save(payment)).thenThrow(new DataIntegrityViolationException("payment_order_id_key"));
+
+        assertThat(service.createPayment(request)).isEqualTo(42);
+
+        verify(producer, never()).sendNotification(any());
+    }
+
     @Test
     void createPayment_NotificationContainsCorrectCustomerAndOrderFields() {
         PaymentRequest request = new PaymentRequest(
@@ -95,4 +144,81 @@ class PaymentServiceTest {
         assertThat(notification.customerLastname()).isEqualTo("Doe");
         assertThat(notification.customerEmail()).isEqualTo("john@example.com");
     }
+
+    @Test
+    void createPayment_DeadlinePassed_StoresNothing() {
+        PaymentRequest request = new PaymentRequest(
+                null, new BigDecimal("100.00"), PaymentMethod.CREDIT_CARD, 1, "REF-001", customer
+        );
+
+        RequestDeadline.runWith(Instant.now().minusSeconds(1), () ->
+                assertThatThrownBy(() -> service.createPayment(request))
+                        .isInstanceOf(DeadlineExceededException.class));
+
+        verify(repository, never()).save(any());
+        verify(producer, never()).sendNotification(any());
+    }
+
+    @Test
+    void createPayments_Batch_InsertsAllPaymentsOnceAndReportsEachResult() {
+        PaymentRequest first = new PaymentRequest(null, new BigDecimal("10.00"), PaymentMethod.PAYPAL, 1, "REF-1", customer);
+        PaymentRequest second = new PaymentRequest(null, new BigDecimal("20.00"), PaymentMethod.VISA_CARD, 2, "REF-2", customer);
+        when(repository.findPaidOrderIds(List.of(1, 2))).thenReturn(Set.of());
+        when(mapper.toPayment(any())).thenAnswer(invocation -> {
+            PaymentRequest request = invocation.getArgument(0);
+            return Payment.builder().amount(request.amount()).orderId(request.orderId()).build();
+        });
+        doAnswer(invocation -> {
+            List<Payment> payments = invocation.getArgument(0);
+            for (int i = 0; i < payments.size(); i++) {
+                payments.get(i).setId(100 + i);
+            }
+            return null;
+        }).when(repository).insertAll(anyList());
+
+        List<PaymentResult> results = batchService().createPayments(List.of(first, second));
+
+        verify(repository, times(1)).insertAll(anyList());
+        verify(repository, never()).save(any());
+        verify(producer, times(2)).sendNotification(any(PaymentNotificationRequest.class));
+        assertThat(results).containsExactly(
+                new PaymentResult(1, "REF-1", 100, PaymentStatus.ACCEPTED, null),
+                new PaymentResult(2, "REF-2", 101, PaymentStatus.ACCEPTED, null)
+        );
+        verify(resultProducer, times(2)).sendResult(any());
+        verify(resultProducer).flush();
+    }
+
+    @Test
+    void createPayments_AlreadyPaidOrder_IsSkipped() {
+        PaymentRequest redelivered = new PaymentRequest(null, new BigDecimal("10.00"), PaymentMethod.PAYPAL, 1, "REF-1", customer);
+        when(repository.findPaidOrderIds(List.of(1))).thenReturn(Set.of(1));
+
+        List<PaymentResult> results = batchService().createPayments(List.of(redelivered));
+
+        assertThat(results).isEmpty();
+        verify(repository, never()).insertAll(anyList());
+        verify(producer, never()).sendNotification(any());
+    }
+
+    @Test
+    void createPayments_InvalidCustomer_IsRejectedWithoutPayment() {
+        PaymentRequest invalid = new PaymentRequest(null, new BigDecimal("10.00"), PaymentMethod.PAYPAL, 1, "REF-1",
+                new Customer("cust-1", "John", "Doe", "not-an-email"));
+        when(repository.findPaidOrderIds(List.of(1))).thenReturn(Set.of());
+
+        List<PaymentResult> results = batchService().createPayments(List.of(invalid));
+
+        assertThat(results).containsExactly(
+                new PaymentResult(1, "REF-1", null, PaymentStatus.REJECTED, "email is not correctly formatted"));
+        verify(repository, never()).insertAll(anyList());
+        verify(producer, never()).sendNotification(any());
+        verify(resultProducer).sendResult(results.get(0));
+    }
+
+    private PaymentService batchService() {
+        return new PaymentService(repository, mapper, producer, resultProducer,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                Validation.buildDefaultValidatorFactory().getValidator());
+    }
 }
@@ -0,0 +1,14 @@
+package com.pavils.ecommerce.category;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Set;
+
+@Repository
+public interface CategoryRepository extends JpaRepository<Category, Integer> {
+
+    @Query("select c.id from Category c")
+    Set<Integer> findAllIds();
+}
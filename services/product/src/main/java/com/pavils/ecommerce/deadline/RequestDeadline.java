@@ -0,0 +1,79 @@
+package com.pavils.ecommerce.deadline;
+
+import com.pavils.ecommerce.exception.DeadlineExceededException;
+import io.micrometer.core.instrument.Metrics;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * The deadline of the request being served: the instant, sent by the gateway in {@value #HEADER}
+ * as epoch milliseconds, after which nobody waits for the answer any more. It is held per thread
+ * and set by {@link RequestDeadlineFilter}. Work skipped because the deadline passed is counted as
+ * {@code deadline.work.avoided}, tagged by stage.
+ */
+public final class RequestDeadline {
+
+    public static final String HEADER = "X-Request-Deadline";
+
+    private static final ThreadLocal<Instant> CURRENT = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static Optional<Instant> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    public static boolean isExpired() {
+        var deadline = CURRENT.get();
+        return deadline != null && !deadline.isAfter(Instant.now());
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline passed, counting {@code stage} as avoided
+     */
+    public static void check(String stage) {
+        if (isExpired()) {
+            avoided(stage);
+            throw new DeadlineExceededException("The request deadline passed before " + stage);
+        }
+    }
+
+    public static void avoided(String stage) {
+        Metrics.counter("deadline.work.avoided", "stage", stage).increment();
+    }
+
+    public static void runWith(Instant deadline, Runnable work) {
+        var previous = set(deadline);
+        try {
+            work.run();
+        } finally {
+            set(previous);
+        }
+    }
+
+    /**
+     * @return the deadline in {@code header}, or {@code null} if it is missing or malformed
+     */
+    static Instant parse(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(header.strip()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static Instant set(Instant deadline) {
+        var previous = CURRENT.get();
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,35 @@
+package com.pavils.ecommerce.deadline;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Answers a request that arrives after its deadline with 504 before any work is done, and makes
+ * the deadline of every other request available through {@link RequestDeadline}.
+ */
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var deadline = RequestDeadline.parse(request.getHeader(RequestDeadline.HEADER));
+        var previous = RequestDeadline.set(deadline);
+        try {
+            if (RequestDeadline.isExpired()) {
+                RequestDeadline.avoided("arrival");
+                response.setStatus(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+                return;
+            }
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestDeadline.set(previous);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.pavils.ecommerce.exception;
+
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(String msg) {
+        super(msg);
+    }
+}
@@ -1,5 +1,6 @@
 package com.pavils.ecommerce.handlers;
 
+import com.pavils.ecommerce.exception.DeadlineExceededException;
 import com.pavils.ecommerce.exception.EntityNotFoundException;
 import com.pavils.ecommerce.exception.ProductPurchaseException;
 import org.springframework.http.HttpStatus;
@@ -28,6 +29,13 @@ public class GlobalExceptionHandler {
                 .body(ex.getMessage());
     }
 
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<String> handle(DeadlineExceededException ex) {
+        return ResponseEntity
+                .status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(ex.getMessage());
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handle(MethodArgumentNotValidException ex) {
         var errors = new HashMap<String, String>();
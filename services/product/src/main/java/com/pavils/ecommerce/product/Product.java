@@ -23,7 +23,7 @@ public class Product {
     private Double availableQuantity;
     private BigDecimal price;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id")
     private Category category;
 }
@@ -0,0 +1,43 @@
+package com.pavils.ecommerce.product;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Caches what rarely changes about a product: name, description, price and category. Stock is
+ * never cached; readers overlay the live quantity, so purchases leave the cache alone. Creating a
+ * product evicts its id, in case a miss for it was cached, once the surrounding transaction commits.
+ * Purchases themselves never read from this cache.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductCache {
+
+    public static final String PRODUCTS = "products";
+
+    private final CacheManager cacheManager;
+    private final ProductRepository productRepository;
+
+    /**
+     * @return the product without its stock quantity, or empty if there is no such product
+     */
+    @Cacheable(cacheNames = PRODUCTS, key = "#id")
+    public Optional<ProductResponse> findDetails(Integer id) {
+        return productRepository.findResponseById(id)
+                .map(product -> product.withAvailableQuantity(null));
+    }
+
+    public void evictProducts(Collection<Integer> productIds) {
+        var products = cacheManager.getCache(PRODUCTS);
+        if (products != null) {
+            var transactionAware = new TransactionAwareCacheDecorator(products);
+            productIds.forEach(transactionAware::evict);
+        }
+    }
+}
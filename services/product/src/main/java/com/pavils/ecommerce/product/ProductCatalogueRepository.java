@@ -0,0 +1,13 @@
+package com.pavils.ecommerce.product;
+
+import java.util.function.Consumer;
+
+public interface ProductCatalogueRepository {
+
+    /**
+     * Reads the catalogue in id order through a server-side cursor and hands every row to the
+     * consumer as soon as it is fetched. Must run inside a transaction, otherwise the driver
+     * buffers the whole result set.
+     */
+    void streamCatalogue(Integer categoryId, Consumer<ProductResponse> consumer);
+}
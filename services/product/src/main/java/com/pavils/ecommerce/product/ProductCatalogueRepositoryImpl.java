@@ -0,0 +1,48 @@
+package com.pavils.ecommerce.product;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.function.Consumer;
+
+@RequiredArgsConstructor
+public class ProductCatalogueRepositoryImpl implements ProductCatalogueRepository {
+
+    private static final int FETCH_SIZE = 500;
+
+    private static final String SELECT_CATALOGUE = """
+            select p.id, p.name, p.description, p.available_quantity, p.price,
+                   c.id as category_id, c.name as category_name, c.description as category_description
+            from product p
+            left join category c on c.id = p.category_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void streamCatalogue(Integer categoryId, Consumer<ProductResponse> consumer) {
+        RowCallbackHandler handler = rs -> consumer.accept(new ProductResponse(
+                rs.getInt("id"),
+                rs.getString("name"),
+                rs.getString("description"),
+                rs.getDouble("available_quantity"),
+                rs.getBigDecimal("price"),
+                rs.getObject("category_id", Integer.class),
+                rs.getString("category_name"),
+                rs.getString("category_description")
+        ));
+
+        jdbcTemplate.query(connection -> {
+            var sql = categoryId == null
+                    ? SELECT_CATALOGUE + " order by p.id"
+                    : SELECT_CATALOGUE + " where p.category_id = ? order by p.id";
+            var statement = connection.prepareStatement(sql);
+            statement.setFetchSize(FETCH_SIZE);
+            if (categoryId != null) {
+                statement.setInt(1, categoryId);
+            }
+            return statement;
+        }, handler);
+    }
+}
@@ -1,10 +1,19 @@
 package com.pavils.ecommerce.product;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pavils.ecommerce.search.ProductSearchIndex;
+import com.pavils.ecommerce.search.ProductSearchResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.util.List;
 
 @RestController
@@ -12,7 +21,12 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ProductController {
 
+    public static final String PURCHASE_ID_HEADER = "X-Purchase-Id";
+
     private final ProductService service;
+    private final ProductImportService importService;
+    private final ProductSearchIndex searchIndex;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<Integer> createProduct(
@@ -21,11 +35,31 @@ public class ProductController {
         return ResponseEntity.ok(service.createProduct(request));
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ProductImportResponse> importJson(InputStream body) throws IOException {
+        return ResponseEntity.ok(importService.importJson(body));
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<ProductImportResponse> importCsv(InputStream body) throws IOException {
+        return ResponseEntity.ok(importService.importCsv(body));
+    }
+
     @PostMapping("/purchase")
     public ResponseEntity<List<ProductPurchaseResponse>> purchaseProducts(
+            @RequestHeader(value = PURCHASE_ID_HEADER, required = false) String purchaseId,
             @RequestBody List<ProductPurchaseRequest> request
     ) {
-        return ResponseEntity.ok(service.purchaseProducts(request));
+        return ResponseEntity.ok(service.purchaseProducts(purchaseId, request));
+    }
+
+    // For the order service only: the gateway refuses every path with an /internal segment
+    @PostMapping("/internal/purchases/{purchase-id}/cancel")
+    public ResponseEntity<Void> cancelPurchase(
+            @PathVariable("purchase-id") String purchaseId
+    ) {
+        service.cancelPurchase(purchaseId);
+        return ResponseEntity.ok().build();
     }
 
     @GetMapping("/{product-id}")
@@ -35,8 +69,54 @@ public class ProductController {
         return ResponseEntity.ok(service.findById(id));
     }
 
+    // Unknown ids are left out of the result
+    @GetMapping("/batch")
+    public ResponseEntity<List<ProductResponse>> findAllByIds(
+            @RequestParam("ids") List<Integer> ids
+    ) {
+        return ResponseEntity.ok(service.findAllByIds(ids));
+    }
+
     @GetMapping
     public ResponseEntity<List<ProductResponse>> findAll() {
         return ResponseEntity.ok(service.findAll());
     }
+
+    @GetMapping("/page")
+    public ResponseEntity<ProductPageResponse> findPage(
+            @RequestParam(value = "afterId", required = false) Integer afterId,
+            @RequestParam(value = "size", defaultValue = "50") int size,
+            @RequestParam(value = "categoryId", required = false) Integer categoryId
+    ) {
+        return ResponseEntity.ok(service.findPage(afterId, size, categoryId));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<ProductSearchResponse> search(
+            @RequestParam(value = "q", required = false) String query,
+            @RequestParam(value = "categoryId", required = false) Integer categoryId,
+            @RequestParam(value = "minPrice", required = false) BigDecimal minPrice,
+            @RequestParam(value = "maxPrice", required = false) BigDecimal maxPrice,
+            @RequestParam(value = "size", defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(searchIndex.search(query, categoryId, minPrice, maxPrice, size));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll(
+            @RequestParam(value = "categoryId", required = false) Integer categoryId
+    ) {
+        StreamingResponseBody body = outputStream -> service.streamAll(categoryId, product -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(product));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 }
@@ -0,0 +1,7 @@
+package com.pavils.ecommerce.product;
+
+public record ProductImportError(
+        long line,
+        String message
+) {
+}
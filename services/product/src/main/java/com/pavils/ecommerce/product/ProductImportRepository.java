@@ -0,0 +1,11 @@
+package com.pavils.ecommerce.product;
+
+import java.util.List;
+
+public interface ProductImportRepository {
+
+    /**
+     * Assigns ids from {@code product_seq} and inserts the products as one JDBC batch.
+     */
+    void insertAll(List<Product> products);
+}
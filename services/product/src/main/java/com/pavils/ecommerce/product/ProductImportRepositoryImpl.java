@@ -0,0 +1,33 @@
+package com.pavils.ecommerce.product;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ProductImportRepositoryImpl implements ProductImportRepository {
+
+    private static final String INSERT_PRODUCT = """
+            insert into product (id, name, description, available_quantity, price, category_id)
+            values (?, ?, ?, ?, ?, ?)
+            """;
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<Product> products) {
+        PooledIds.assign(entityManager, Product.class, products, Product::setId);
+
+        jdbcTemplate.batchUpdate(INSERT_PRODUCT, products, products.size(), (statement, product) -> {
+            statement.setInt(1, product.getId());
+            statement.setString(2, product.getName());
+            statement.setString(3, product.getDescription());
+            statement.setDouble(4, product.getAvailableQuantity());
+            statement.setBigDecimal(5, product.getPrice());
+            statement.setInt(6, product.getCategory().getId());
+        });
+    }
+}
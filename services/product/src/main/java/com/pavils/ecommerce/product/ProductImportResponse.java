@@ -0,0 +1,10 @@
+package com.pavils.ecommerce.product;
+
+import java.util.List;
+
+public record ProductImportResponse(
+        int imported,
+        int rejected,
+        List<ProductImportError> errors
+) {
+}
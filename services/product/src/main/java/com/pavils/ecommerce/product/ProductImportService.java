@@ -0,0 +1,186 @@
+package com.pavils.ecommerce.product;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.pavils.ecommerce.category.CategoryRepository;
+import com.pavils.ecommerce.search.ProductSearchIndex;
+import com.pavils.ecommerce.stock.StockLedger;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Streams a supplier feed row by row, validates each row on its own and inserts valid rows in
+ * JDBC batches, one transaction per batch. A bad row is reported with its line number and
+ * skipped; it never aborts the rest of the file.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductImportService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
+    private static final CsvSchema CSV_SCHEMA = CsvSchema.emptySchema().withHeader();
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ProductMapper mapper;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final StockLedger stockLedger;
+    private final ProductCache productCache;
+    private final ProductSearchIndex searchIndex;
+
+    public ProductImportResponse importJson(InputStream body) throws IOException {
+        var batch = new Batch(categoryRepository.findAllIds());
+
+        try (var parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                batch.reject(parser.currentLocation().getLineNr(), "Expected a JSON array of products");
+                return batch.finish();
+            }
+
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                var line = parser.currentTokenLocation().getLineNr();
+                JsonNode row = parser.readValueAsTree();
+                batch.add(line, () -> objectMapper.treeToValue(row, ProductRequest.class));
+            }
+        } catch (JsonProcessingException e) {
+            batch.reject(e.getLocation() == null ? -1 : e.getLocation().getLineNr(), "Malformed JSON: " + e.getOriginalMessage());
+        }
+
+        return batch.finish();
+    }
+
+    public ProductImportResponse importCsv(InputStream body) throws IOException {
+        var batch = new Batch(categoryRepository.findAllIds());
+
+        try (var rows = CSV_MAPPER.readerFor(Map.class).with(CSV_SCHEMA).<Map<String, String>>readValues(body)) {
+            while (rows.hasNextValue()) {
+                var line = rows.getCurrentLocation().getLineNr();
+                var row = rows.nextValue();
+                batch.add(line, () -> objectMapper.convertValue(row, ProductRequest.class));
+            }
+        } catch (JsonProcessingException e) {
+            batch.reject(e.getLocation() == null ? -1 : e.getLocation().getLineNr(), "Malformed CSV: " + e.getOriginalMessage());
+        }
+
+        return batch.finish();
+    }
+
+    @FunctionalInterface
+    private interface RowReader {
+        ProductRequest read() throws IOException;
+    }
+
+    private final class Batch {
+
+        private final Set<Integer> categoryIds;
+        private final List<Product> pending = new ArrayList<>(BATCH_SIZE);
+        private final List<Long> pendingLines = new ArrayList<>(BATCH_SIZE);
+        private final List<ProductImportError> errors = new ArrayList<>();
+        private int imported;
+        private int rejected;
+
+        private Batch(Set<Integer> categoryIds) {
+            this.categoryIds = categoryIds;
+        }
+
+        private void add(long line, RowReader reader) {
+            ProductRequest request;
+            try {
+                request = reader.read();
+            } catch (IOException | IllegalArgumentException e) {
+                reject(line, "Unreadable row: " + e.getMessage());
+                return;
+            }
+
+            var violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                reject(line, violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+                return;
+            }
+            if (request.availableQuantity() == null) {
+                reject(line, "Quantity is required");
+                return;
+            }
+            if (!categoryIds.contains(request.categoryId())) {
+                reject(line, "Unknown category with ID:: " + request.categoryId());
+                return;
+            }
+
+            var product = mapper.toProduct(request);
+            product.setId(null);
+            pending.add(product);
+            pendingLines.add(line);
+            if (pending.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ProductImportError(line, message));
+            }
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                insert(pending);
+            } catch (DataAccessException e) {
+                // One bad row fails its whole batch, so retry row by row and reject only the bad ones
+                log.warn("Product import batch of {} rows failed, retrying row by row", pending.size(), e);
+                for (int i = 0; i < pending.size(); i++) {
+                    try {
+                        insert(List.of(pending.get(i)));
+                    } catch (DataAccessException rowFailure) {
+                        reject(pendingLines.get(i), "Insert failed: " + rowFailure.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+            pending.clear();
+            pendingLines.clear();
+        }
+
+        private void insert(List<Product> products) {
+            transactionTemplate.executeWithoutResult(status -> productRepository.insertAll(products));
+            products.forEach(stockLedger::register);
+            products.forEach(searchIndex::index);
+            productCache.evictProducts(products.stream().map(Product::getId).toList());
+            imported += products.size();
+        }
+
+        private ProductImportResponse finish() {
+            flush();
+            return new ProductImportResponse(imported, rejected, errors);
+        }
+    }
+}
@@ -19,28 +19,4 @@ public class ProductMapper {
                         .id(request.categoryId())
                         .build())
                 .build();
-    }
-
-    public ProductResponse toProductResponse(Product product) {
-        return new ProductResponse(
-                product.getId(),
-                product.getName(),
-                product.getDescription(),
-                product.getAvailableQuantity(),
-                product.getPrice(),
-                product.getCategory().getId(),
-                product.getCategory().getName(),
-                product.getCategory().getDescription()
-        );
-    }
-
-    public ProductPurchaseResponse toProductPurchaseResponse(Product product, double quantity) {
-        return new ProductPurchaseResponse(
-                product.getId(),
-                product.getName(),
-                product.getDescription(),
-                product.getPrice(),
-                quantity
-        );
-    }
-}
+    }}
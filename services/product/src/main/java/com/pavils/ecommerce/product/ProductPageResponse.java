@@ -0,0 +1,9 @@
+package com.pavils.ecommerce.product;
+
+import java.util.List;
+
+public record ProductPageResponse(
+        List<ProductResponse> products,
+        Integer nextAfterId
+) {
+}
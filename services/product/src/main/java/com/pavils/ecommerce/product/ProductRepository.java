@@ -1,12 +1,43 @@
 package com.pavils.ecommerce.product;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Integer> {
+public interface ProductRepository extends JpaRepository<Product, Integer>, ProductStockRepository,
+        ProductCatalogueRepository, ProductImportRepository {
 
-    List<Product> findAllByIdInOrderById(List<Integer> productIds);
+    String SELECT_PRODUCT_RESPONSE = """
+            select new com.pavils.ecommerce.product.ProductResponse(
+                p.id, p.name, p.description, p.availableQuantity, p.price, c.id, c.name, c.description
+            )
+            from Product p
+            left join p.category c
+            """;
+
+    @Query(SELECT_PRODUCT_RESPONSE + " order by p.id")
+    List<ProductResponse> findAllResponses();
+
+    @Query(SELECT_PRODUCT_RESPONSE + " where p.id = :id")
+    Optional<ProductResponse> findResponseById(@Param("id") Integer id);
+
+    @Query("select p.availableQuantity from Product p where p.id = :id")
+    Optional<Double> findAvailableQuantityById(@Param("id") Integer id);
+
+    @Query(SELECT_PRODUCT_RESPONSE + " where p.id in :ids order by p.id")
+    List<ProductResponse> findResponsesByIds(@Param("ids") Collection<Integer> ids);
+
+    @Query(SELECT_PRODUCT_RESPONSE + """
+            where p.id > :afterId
+              and (:categoryId is null or c.id = :categoryId)
+            order by p.id
+            """)
+    List<ProductResponse> findPage(@Param("afterId") Integer afterId, @Param("categoryId") Integer categoryId, Limit limit);
 }
@@ -12,4 +12,8 @@ public record ProductResponse(
         String categoryName,
         String categoryDescription
 ) {
+
+    public ProductResponse withAvailableQuantity(Double availableQuantity) {
+        return new ProductResponse(id, name, description, availableQuantity, price, categoryId, categoryName, categoryDescription);
+    }
 }
@@ -1,75 +1,190 @@
 package com.pavils.ecommerce.product;
 
 
+import com.pavils.ecommerce.deadline.RequestDeadline;
 import com.pavils.ecommerce.exception.EntityNotFoundException;
 import com.pavils.ecommerce.exception.ProductPurchaseException;
+import com.pavils.ecommerce.search.ProductSearchIndex;
+import com.pavils.ecommerce.stock.StockLedger;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class ProductService {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
+    // How long a purchase can still be cancelled by its id
+    @Value("${application.purchase.retention:86400000}")
+    private long purchaseRetentionMillis;
+
     private final ProductRepository productRepository;
     private final ProductMapper mapper;
+    private final StockLedger stockLedger;
+    private final ProductCache productCache;
+    private final ProductSearchIndex searchIndex;
 
     public Integer createProduct(@Valid ProductRequest request) {
-        var product = mapper.toProduct(request);
-        return productRepository.save(product).getId();
+        var product = productRepository.save(mapper.toProduct(request));
+        stockLedger.register(product);
+        searchIndex.index(product);
+        productCache.evictProducts(List.of(product.getId()));
+        return product.getId();
     }
 
-    public List<ProductPurchaseResponse> purchaseProducts(List<ProductPurchaseRequest> request) {
+    /**
+     * Takes the stock of the whole basket or nothing. A purchase made under a {@code purchaseId}
+     * can later be cancelled by that id; an id can be used for one purchase only.
+     */
+    @Transactional
+    public List<ProductPurchaseResponse> purchaseProducts(String purchaseId, List<ProductPurchaseRequest> request) {
+        // Stock reserved for an order nobody waits for would only have to be given back
+        RequestDeadline.check("purchase");
+        if (purchaseId != null && !productRepository.recordPurchase(purchaseId, request)) {
+            throw new ProductPurchaseException("Purchase already made or cancelled with ID:: " + purchaseId);
+        }
+        if (stockLedger.isEnabled()) {
+            var reservedProducts = stockLedger.reserve(request);
+            searchIndex.adjustStock(reservedProducts);
+            return reservedProducts;
+        }
+
         var productIds = request
                 .stream()
                 .map(ProductPurchaseRequest::productId)
+                .distinct()
                 .toList();
 
-        var storedProducts = productRepository.findAllByIdInOrderById(productIds);
+        var purchasedProducts = productRepository.decrementStock(request);
 
-        if (productIds.size() != storedProducts.size()) {
-            throw new ProductPurchaseException("One or more products does not exists");
+        if (purchasedProducts.size() != productIds.size()) {
+            // Throwing rolls back the lines that were already decremented by the same statement
+            throw rejectedPurchase(productIds, purchasedProducts);
         }
 
-        var requestedProducts = request
+        searchIndex.adjustStock(purchasedProducts);
+        return purchasedProducts
                 .stream()
-                .sorted(Comparator.comparing(ProductPurchaseRequest::productId))
+                .sorted(Comparator.comparing(ProductPurchaseResponse::id))
                 .toList();
+    }
 
-        var purchasedProducts = new ArrayList<ProductPurchaseResponse>();
+    /**
+     * Gives back the stock of a purchase the caller could not complete, e.g. an order whose
+     * customer check failed after the products were already reserved. Only the lines recorded
+     * with the purchase are given back, and only once; cancelling a purchase that has not
+     * arrived yet makes it fail when it does.
+     */
+    @Transactional
+    public void cancelPurchase(String purchaseId) {
+        var request = productRepository.cancelRecordedPurchase(purchaseId);
+        if (request.isEmpty()) {
+            return;
+        }
 
-        for (int i = 0; i < storedProducts.size(); i++) {
-            var storedProduct = storedProducts.get(i);
-            var requestedProduct = requestedProducts.get(i);
+        if (stockLedger.isEnabled()) {
+            stockLedger.release(request);
+        } else {
+            productRepository.incrementStock(request);
+        }
 
-            if (storedProduct.getAvailableQuantity() < requestedProduct.quantity()) {
-                throw new ProductPurchaseException("Insufficient stock quantity for product with id:: " + requestedProduct.productId());
-            }
+        searchIndex.restoreStock(request);
+    }
 
-            var availableQuantityNew = storedProduct.getAvailableQuantity() - requestedProduct.quantity();
-            storedProduct.setAvailableQuantity(availableQuantityNew);
-            productRepository.save(storedProduct);
+    // A cancel comes within seconds of its purchase; older records only keep a late cancel a no-op
+    @Scheduled(fixedDelayString = "${application.purchase.purge-interval:3600000}")
+    public void deleteOldPurchases() {
+        var deleted = productRepository.deletePurchasesBefore(
+                LocalDateTime.now().minus(Duration.ofMillis(purchaseRetentionMillis)));
+        if (deleted > 0) {
+            log.info("Forgot {} purchases older than {} ms", deleted, purchaseRetentionMillis);
+        }
+    }
+
+    private ProductPurchaseException rejectedPurchase(List<Integer> productIds, List<ProductPurchaseResponse> purchasedProducts) {
+        var purchasedIds = purchasedProducts
+                .stream()
+                .map(ProductPurchaseResponse::id)
+                .collect(Collectors.toSet());
+        var rejectedIds = productIds
+                .stream()
+                .filter(id -> !purchasedIds.contains(id))
+                .toList();
+
+        var existingIds = productRepository.findAllById(rejectedIds)
+                .stream()
+                .map(Product::getId)
+                .collect(Collectors.toSet());
 
-            purchasedProducts.add(mapper.toProductPurchaseResponse(storedProduct, requestedProduct.quantity()));
+        if (existingIds.size() != rejectedIds.size()) {
+            return new ProductPurchaseException("One or more products does not exists");
         }
 
-        return purchasedProducts;
+        return new ProductPurchaseException("Insufficient stock quantity for product with id:: " + rejectedIds.get(0));
     }
 
     public ProductResponse findById(Integer id) {
-        return mapper.toProductResponse(productRepository
-                .findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Product not found with ID:: " + id)));
+        var product = productCache.findDetails(id)
+                .orElseThrow(() -> new EntityNotFoundException("Product not found with ID:: " + id));
+        return product.withAvailableQuantity(availableQuantity(id));
+    }
+
+    // Read on every call, so a cached product never shows a stale quantity
+    private double availableQuantity(Integer id) {
+        if (stockLedger.isEnabled()) {
+            return stockLedger.availableQuantity(id);
+        }
+        return productRepository.findAvailableQuantityById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Product not found with ID:: " + id));
+    }
+
+    public List<ProductResponse> findAllByIds(List<Integer> ids) {
+        return withLiveStock(productRepository.findResponsesByIds(ids));
     }
 
     public List<ProductResponse> findAll() {
-        return productRepository.findAll()
-                .stream()
-                .map(mapper::toProductResponse)
-                .toList();
+        return withLiveStock(productRepository.findAllResponses());
+    }
+
+    public ProductPageResponse findPage(Integer afterId, int size, Integer categoryId) {
+        var pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        var products = withLiveStock(productRepository.findPage(afterId == null ? 0 : afterId, categoryId, Limit.of(pageSize)));
+
+        var nextAfterId = products.size() < pageSize ? null : products.get(products.size() - 1).id();
+        return new ProductPageResponse(products, nextAfterId);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAll(Integer categoryId, Consumer<ProductResponse> consumer) {
+        productRepository.streamCatalogue(categoryId, stockLedger.isEnabled()
+                ? product -> consumer.accept(withLiveStock(product))
+                : consumer);
+    }
+
+    // With the ledger on, available_quantity lags behind the ledger until the journal is folded
+    private List<ProductResponse> withLiveStock(List<ProductResponse> products) {
+        if (!stockLedger.isEnabled()) {
+            return products;
+        }
+        return products.stream().map(this::withLiveStock).toList();
+    }
+
+    private ProductResponse withLiveStock(ProductResponse product) {
+        return product.withAvailableQuantity(stockLedger.availableQuantity(product.id()));
     }
 }
@@ -0,0 +1,38 @@
+package com.pavils.ecommerce.product;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ProductStockRepository {
+
+    /**
+     * Decrements stock for every requested product in a single conditional UPDATE.
+     * Only rows that still have enough stock are updated; callers compare the
+     * returned rows with the request to detect missing or sold-out products.
+     */
+    List<ProductPurchaseResponse> decrementStock(List<ProductPurchaseRequest> request);
+
+    /**
+     * Gives back stock taken by an earlier purchase, in a single UPDATE.
+     * Returns the number of product rows that were updated.
+     */
+    int incrementStock(List<ProductPurchaseRequest> request);
+
+    /**
+     * Records the lines of a purchase under its id, in the caller's transaction.
+     * Returns false if the id was already used, by a purchase or by a cancel that came first.
+     */
+    boolean recordPurchase(String purchaseId, List<ProductPurchaseRequest> request);
+
+    /**
+     * Marks the purchase with this id cancelled and returns its lines, exactly once. Returns no
+     * lines if it was already cancelled, or if it has not been recorded; in that case the id is
+     * taken, so the purchase is refused should it still arrive.
+     */
+    List<ProductPurchaseRequest> cancelRecordedPurchase(String purchaseId);
+
+    /**
+     * Forgets purchases recorded before {@code createdBefore}. Returns the number of purchases forgotten.
+     */
+    int deletePurchasesBefore(LocalDateTime createdBefore);
+}
@@ -0,0 +1,143 @@
+package com.pavils.ecommerce.product;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ProductStockRepositoryImpl implements ProductStockRepository {
+
+    // Quantities of duplicated product ids are summed up front, so each product row is touched once.
+    private static final String DECREMENT_STOCK = """
+            update product p
+            set available_quantity = p.available_quantity - r.quantity
+            from (select t.id, sum(t.quantity) as quantity
+                  from unnest(?, ?) as t(id, quantity)
+                  group by t.id) r
+            where p.id = r.id
+              and p.available_quantity >= r.quantity
+            returning p.id, p.name, p.description, p.price, r.quantity
+            """;
+
+    private static final String INCREMENT_STOCK = """
+            update product p
+            set available_quantity = p.available_quantity + r.quantity
+            from (select t.id, sum(t.quantity) as quantity
+                  from unnest(?, ?) as t(id, quantity)
+                  group by t.id) r
+            where p.id = r.id
+            """;
+
+    private static final String RECORD_PURCHASE = """
+            insert into stock_purchase (purchase_id, product_ids, quantities, cancelled)
+            values (?, ?, ?, false)
+            on conflict (purchase_id) do nothing
+            """;
+
+    private static final String CANCEL_RECORDED_PURCHASE = """
+            update stock_purchase
+            set cancelled = true
+            where purchase_id = ?
+              and not cancelled
+            returning product_ids, quantities
+            """;
+
+    // Waits for a concurrent insert of the same id, so an in-flight purchase is either seen or refused
+    private static final String CANCEL_UNRECORDED_PURCHASE = """
+            insert into stock_purchase (purchase_id, product_ids, quantities, cancelled)
+            values (?, '{}', '{}', true)
+            on conflict (purchase_id) do nothing
+            """;
+
+    private static final String DELETE_PURCHASES_BEFORE = "delete from stock_purchase where created_date < ?";
+
+    private static final RowMapper<ProductPurchaseResponse> PURCHASE_ROW = (rs, rowNum) -> new ProductPurchaseResponse(
+            rs.getInt("id"),
+            rs.getString("name"),
+            rs.getString("description"),
+            rs.getBigDecimal("price"),
+            rs.getDouble("quantity")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<ProductPurchaseResponse> decrementStock(List<ProductPurchaseRequest> request) {
+        return jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(DECREMENT_STOCK);
+            bindLines(connection, statement, 1, request);
+            return statement;
+        }, PURCHASE_ROW);
+    }
+
+    @Override
+    public int incrementStock(List<ProductPurchaseRequest> request) {
+        return jdbcTemplate.update(connection -> {
+            var statement = connection.prepareStatement(INCREMENT_STOCK);
+            bindLines(connection, statement, 1, request);
+            return statement;
+        });
+    }
+
+    @Override
+    public boolean recordPurchase(String purchaseId, List<ProductPurchaseRequest> request) {
+        return jdbcTemplate.update(connection -> {
+            var statement = connection.prepareStatement(RECORD_PURCHASE);
+            statement.setString(1, purchaseId);
+            bindLines(connection, statement, 2, request);
+            return statement;
+        }) == 1;
+    }
+
+    @Override
+    public List<ProductPurchaseRequest> cancelRecordedPurchase(String purchaseId) {
+        var lines = cancelRecorded(purchaseId);
+        if (lines != null || jdbcTemplate.update(CANCEL_UNRECORDED_PURCHASE, purchaseId) == 1) {
+            return lines == null ? List.of() : lines;
+        }
+        // The id was taken meanwhile: by a purchase that has committed since, or by another cancel
+        lines = cancelRecorded(purchaseId);
+        return lines == null ? List.of() : lines;
+    }
+
+    @Override
+    public int deletePurchasesBefore(LocalDateTime createdBefore) {
+        return jdbcTemplate.update(DELETE_PURCHASES_BEFORE, Timestamp.valueOf(createdBefore));
+    }
+
+    private List<ProductPurchaseRequest> cancelRecorded(String purchaseId) {
+        return jdbcTemplate.query(CANCEL_RECORDED_PURCHASE, rs -> {
+            if (!rs.next()) {
+                return null;
+            }
+            var productIds = (Integer[]) rs.getArray("product_ids").getArray();
+            var quantities = (Double[]) rs.getArray("quantities").getArray();
+            var lines = new ArrayList<ProductPurchaseRequest>(productIds.length);
+            for (int i = 0; i < productIds.length; i++) {
+                lines.add(new ProductPurchaseRequest(productIds[i], quantities[i]));
+            }
+            return lines;
+        }, purchaseId);
+    }
+
+    private static void bindLines(Connection connection, PreparedStatement statement, int firstIndex,
+                                  List<ProductPurchaseRequest> request) throws SQLException {
+        var productIds = request.stream()
+                .map(ProductPurchaseRequest::productId)
+                .toArray(Integer[]::new);
+        var quantities = request.stream()
+                .map(ProductPurchaseRequest::quantity)
+                .toArray(Double[]::new);
+
+        statement.setArray(firstIndex, connection.createArrayOf("integer", productIds));
+        statement.setArray(firstIndex + 1, connection.createArrayOf("float8", quantities));
+    }
+}
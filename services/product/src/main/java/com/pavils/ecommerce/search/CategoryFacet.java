@@ -0,0 +1,8 @@
+package com.pavils.ecommerce.search;
+
+public record CategoryFacet(
+        Integer categoryId,
+        String categoryName,
+        long count
+) {
+}
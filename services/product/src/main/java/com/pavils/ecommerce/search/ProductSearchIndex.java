@@ -0,0 +1,354 @@
+package com.pavils.ecommerce.search;
+
+import com.pavils.ecommerce.category.Category;
+import com.pavils.ecommerce.category.CategoryRepository;
+import com.pavils.ecommerce.product.Product;
+import com.pavils.ecommerce.product.ProductPurchaseRequest;
+import com.pavils.ecommerce.product.ProductPurchaseResponse;
+import com.pavils.ecommerce.product.ProductRepository;
+import com.pavils.ecommerce.product.ProductResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over product name, description and category name.
+ * <p>
+ * Every query token is matched as a prefix and all tokens must match. Matches can be narrowed by
+ * price range and category, and the category facet counts cover every text and price match
+ * regardless of the selected category. Results are ordered by product id.
+ * <p>
+ * The index is rebuilt from the product table on startup and then kept current by
+ * {@link #index(Product)} for new products, {@link #adjustStock(List)} for purchases and
+ * {@link #restoreStock(List)} for cancelled purchases. Products are never deleted or renamed
+ * by this service, so postings only ever grow.
+ */
+@Component
+@Slf4j
+public class ProductSearchIndex implements SmartInitializingSingleton {
+
+    private static final int MAX_RESULTS = 100;
+    private static final int NO_CATEGORY = -1;
+    private static final int UNKNOWN_CATEGORY = -2;
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Snapshot snapshot = new Snapshot();
+
+    public ProductSearchIndex(
+            ProductRepository productRepository,
+            CategoryRepository categoryRepository,
+            TransactionTemplate transactionTemplate
+    ) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Runs before the web server starts accepting searches
+        rebuild();
+    }
+
+    /**
+     * Replaces the whole index with the current content of the product table. Searches keep
+     * using the previous index until the new one is complete.
+     */
+    public void rebuild() {
+        var rebuilt = new Snapshot();
+        categoryRepository.findAll().forEach(category -> rebuilt.categories.put(category.getId(), category));
+        transactionTemplate.executeWithoutResult(status -> productRepository.streamCatalogue(null, rebuilt::add));
+
+        lock.writeLock().lock();
+        try {
+            snapshot = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product search index rebuilt with {} products and {} terms", rebuilt.documents.size(), rebuilt.postings.size());
+    }
+
+    public void index(Product product) {
+        var categoryId = product.getCategory() == null ? null : product.getCategory().getId();
+        lock.writeLock().lock();
+        try {
+            var category = categoryId == null ? null : snapshot.categories.get(categoryId);
+            snapshot.add(new ProductResponse(
+                    product.getId(),
+                    product.getName(),
+                    product.getDescription(),
+                    product.getAvailableQuantity(),
+                    product.getPrice(),
+                    categoryId,
+                    category == null ? null : category.getName(),
+                    category == null ? null : category.getDescription()
+            ));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Subtracts purchased quantities. Inside a transaction the change is applied only after
+     * commit, so a rolled back purchase never shows up in search results.
+     */
+    public void adjustStock(List<ProductPurchaseResponse> purchasedProducts) {
+        var deltas = new HashMap<Integer, Double>();
+        purchasedProducts.forEach(purchased -> deltas.merge(purchased.id(), -purchased.quantity(), Double::sum));
+        afterCommit(deltas);
+    }
+
+    /**
+     * Adds back stock from a cancelled purchase, with the same after-commit timing as
+     * {@link #adjustStock(List)}.
+     */
+    public void restoreStock(List<ProductPurchaseRequest> cancelledLines) {
+        var deltas = new HashMap<Integer, Double>();
+        cancelledLines.forEach(line -> deltas.merge(line.productId(), line.quantity(), Double::sum));
+        afterCommit(deltas);
+    }
+
+    private void afterCommit(Map<Integer, Double> deltas) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyDeltas(deltas);
+                }
+            });
+        } else {
+            applyDeltas(deltas);
+        }
+    }
+
+    public ProductSearchResponse search(String query, Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, int size) {
+        var limit = Math.clamp(size, 1, MAX_RESULTS);
+        var tokens = tokenize(query == null ? "" : query);
+        // Prices have two decimals, far inside double precision, and the rounding is monotonic,
+        // so inclusive bounds still hold for a price equal to the bound
+        var priceFiltered = minPrice != null || maxPrice != null;
+        var lowest = minPrice == null ? Double.NEGATIVE_INFINITY : minPrice.doubleValue();
+        var highest = maxPrice == null ? Double.POSITIVE_INFINITY : maxPrice.doubleValue();
+
+        lock.readLock().lock();
+        try {
+            var index = snapshot;
+            var matches = index.match(tokens);
+            var selectedSlot = categoryId == null ? NO_CATEGORY : index.facetSlots.getOrDefault(categoryId, UNKNOWN_CATEGORY);
+            var facetCounts = new long[index.facetCategoryIds.size()];
+            var products = new ArrayList<ProductResponse>(limit);
+            long total = 0;
+
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                var price = index.prices[ordinal];
+                if (priceFiltered && !(price >= lowest && price <= highest)) {
+                    continue;
+                }
+                var slot = index.categorySlots[ordinal];
+                if (slot != NO_CATEGORY) {
+                    facetCounts[slot]++;
+                }
+                if (categoryId != null && slot != selectedSlot) {
+                    continue;
+                }
+                total++;
+                if (products.size() < limit) {
+                    products.add(index.documents.get(ordinal));
+                }
+            }
+
+            var facets = new ArrayList<CategoryFacet>();
+            for (int slot = 0; slot < facetCounts.length; slot++) {
+                if (facetCounts[slot] > 0) {
+                    var facetCategoryId = index.facetCategoryIds.get(slot);
+                    facets.add(new CategoryFacet(facetCategoryId, index.categoryName(facetCategoryId), facetCounts[slot]));
+                }
+            }
+            facets.sort(Comparator.comparingLong(CategoryFacet::count).reversed()
+                    .thenComparing(CategoryFacet::categoryId));
+
+            return new ProductSearchResponse(total, products, facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return snapshot.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void applyDeltas(Map<Integer, Double> deltas) {
+        lock.writeLock().lock();
+        try {
+            for (var delta : deltas.entrySet()) {
+                var ordinal = snapshot.documentsById.get(delta.getKey());
+                if (ordinal == null) {
+                    continue;
+                }
+                var document = snapshot.documents.get(ordinal);
+                snapshot.documents.set(ordinal, new ProductResponse(
+                        document.id(),
+                        document.name(),
+                        document.description(),
+                        document.availableQuantity() + delta.getValue(),
+                        document.price(),
+                        document.categoryId(),
+                        document.categoryName(),
+                        document.categoryDescription()
+                ));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+
+        Set<String> tokens = new LinkedHashSet<>();
+        var lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            var wordCharacter = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordCharacter && start < 0) {
+                start = i;
+            } else if (!wordCharacter && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return List.copyOf(tokens);
+    }
+
+    // Mutated only under the write lock, or while a rebuild still owns it exclusively
+    private static final class Snapshot {
+
+        private final Map<Integer, Category> categories = new HashMap<>();
+        private final List<ProductResponse> documents = new ArrayList<>();
+        private final Map<Integer, Integer> documentsById = new HashMap<>();
+        private final NavigableMap<String, Postings> postings = new TreeMap<>();
+        // Price and category per ordinal, kept in primitive arrays so a broad query scans them
+        // without unboxing or touching the documents
+        private double[] prices = new double[1024];
+        private int[] categorySlots = new int[1024];
+        private final List<Integer> facetCategoryIds = new ArrayList<>();
+        private final Map<Integer, Integer> facetSlots = new HashMap<>();
+
+        private void add(ProductResponse product) {
+            var existing = documentsById.get(product.id());
+            if (existing != null) {
+                // Re-indexing an id only refreshes its fields; name and description never change
+                documents.set(existing, product);
+                setFilterFields(existing, product);
+                return;
+            }
+
+            var ordinal = documents.size();
+            documents.add(product);
+            documentsById.put(product.id(), ordinal);
+            if (ordinal == prices.length) {
+                prices = Arrays.copyOf(prices, ordinal * 2);
+                categorySlots = Arrays.copyOf(categorySlots, ordinal * 2);
+            }
+            setFilterFields(ordinal, product);
+
+            var terms = new LinkedHashSet<String>();
+            terms.addAll(tokenize(product.name()));
+            terms.addAll(tokenize(product.description()));
+            terms.addAll(tokenize(product.categoryName()));
+            for (var term : terms) {
+                postings.computeIfAbsent(term, key -> new Postings()).add(ordinal);
+            }
+        }
+
+        private void setFilterFields(int ordinal, ProductResponse product) {
+            prices[ordinal] = product.price() == null ? Double.NaN : product.price().doubleValue();
+            categorySlots[ordinal] = product.categoryId() == null
+                    ? NO_CATEGORY
+                    : facetSlots.computeIfAbsent(product.categoryId(), categoryId -> {
+                        facetCategoryIds.add(categoryId);
+                        return facetCategoryIds.size() - 1;
+                    });
+        }
+
+        private BitSet match(List<String> tokens) {
+            var matches = new BitSet(documents.size());
+            if (tokens.isEmpty()) {
+                matches.set(0, documents.size());
+                return matches;
+            }
+
+            for (int i = 0; i < tokens.size(); i++) {
+                var tokenMatches = new BitSet(documents.size());
+                var token = tokens.get(i);
+                postings.subMap(token, true, token + Character.MAX_VALUE, true)
+                        .values()
+                        .forEach(termPostings -> termPostings.addTo(tokenMatches));
+                if (i == 0) {
+                    matches = tokenMatches;
+                } else {
+                    matches.and(tokenMatches);
+                }
+                if (matches.isEmpty()) {
+                    break;
+                }
+            }
+            return matches;
+        }
+
+        private String categoryName(Integer categoryId) {
+            var category = categories.get(categoryId);
+            return category == null ? null : category.getName();
+        }
+    }
+
+    // Ascending document ordinals; documents are only appended, so adds stay sorted
+    private static final class Postings {
+
+        private int[] ordinals = new int[4];
+        private int size;
+
+        private void add(int ordinal) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        private void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(ordinals[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.pavils.ecommerce.search;
+
+import com.pavils.ecommerce.product.ProductResponse;
+
+import java.util.List;
+
+public record ProductSearchResponse(
+        long total,
+        List<ProductResponse> products,
+        List<CategoryFacet> categories
+) {
+}
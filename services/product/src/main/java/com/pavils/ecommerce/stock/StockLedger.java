@@ -0,0 +1,273 @@
+package com.pavils.ecommerce.stock;
+
+import com.pavils.ecommerce.exception.ProductPurchaseException;
+import com.pavils.ecommerce.product.Product;
+import com.pavils.ecommerce.product.ProductPurchaseRequest;
+import com.pavils.ecommerce.product.ProductPurchaseResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stock counters that sit in front of the product table.
+ * <p>
+ * Every product gets its own stripe, and reservations are granted or denied with a CAS on that
+ * stripe only, so buyers of a hot product never wait on a row lock. Each granted reservation and
+ * each release is appended to {@code stock_journal} in the caller's transaction, i.e. before the
+ * purchase is acknowledged; appending takes no lock on the product row. The journal is folded
+ * into {@code available_quantity} in one statement per flush interval. The table plus the journal
+ * stay the source of truth: counters are rebuilt from both on startup, so a crash loses no stock
+ * that was already sold, and a reservation whose transaction rolls back is given back in memory.
+ * <p>
+ * The ledger assumes it is the only writer of {@code available_quantity}, i.e. a single
+ * product-service instance with {@code application.stock-ledger.enabled=true}.
+ */
+@Component
+@Slf4j
+public class StockLedger implements SmartInitializingSingleton {
+
+    private static final String LOAD_STOCK = """
+            select p.id, p.name, p.description, p.price,
+                   p.available_quantity - coalesce(j.quantity, 0) as available_quantity
+            from product p
+            left join (select product_id, sum(quantity) as quantity
+                       from stock_journal
+                       group by product_id) j on j.product_id = p.id
+            """;
+    private static final String APPEND_JOURNAL = "insert into stock_journal (product_id, quantity) values (?, ?)";
+    // Folds only the journal rows committed when the statement starts; later ones wait for the next flush
+    private static final String FOLD_JOURNAL = """
+            with folded as (delete from stock_journal returning product_id, quantity)
+            update product p
+            set available_quantity = p.available_quantity - f.quantity
+            from (select product_id, sum(quantity) as quantity
+                  from folded
+                  group by product_id) f
+            where p.id = f.product_id
+            """;
+
+    private final Map<Integer, Stripe> stripes = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    public StockLedger(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${application.stock-ledger.enabled:false}") boolean enabled
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Runs before the web server starts accepting purchases
+        if (enabled) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Rebuilds every counter from the product table and the unfolded journal. Only safe while no
+     * reservations are in flight.
+     */
+    public synchronized void reconcile() {
+        stripes.clear();
+        jdbcTemplate.query(LOAD_STOCK, rs -> {
+            var stripe = new Stripe(
+                    rs.getInt("id"),
+                    rs.getString("name"),
+                    rs.getString("description"),
+                    rs.getBigDecimal("price"),
+                    rs.getDouble("available_quantity")
+            );
+            stripes.put(stripe.productId, stripe);
+        });
+        log.info("Stock ledger reconciled {} products from the product table and stock journal", stripes.size());
+    }
+
+    public void register(Product product) {
+        if (enabled) {
+            stripes.put(product.getId(), new Stripe(
+                    product.getId(),
+                    product.getName(),
+                    product.getDescription(),
+                    product.getPrice(),
+                    product.getAvailableQuantity()
+            ));
+        }
+    }
+
+    /**
+     * Reserves the whole basket or nothing, and journals it. Lines for the same product are
+     * summed first.
+     */
+    public List<ProductPurchaseResponse> reserve(List<ProductPurchaseRequest> request) {
+        var quantities = new TreeMap<Integer, Double>();
+        request.forEach(line -> quantities.merge(line.productId(), line.quantity(), Double::sum));
+
+        var basket = new ArrayList<Stripe>(quantities.size());
+        for (var productId : quantities.keySet()) {
+            var stripe = stripes.get(productId);
+            if (stripe == null) {
+                throw new ProductPurchaseException("One or more products does not exists");
+            }
+            basket.add(stripe);
+        }
+
+        var reserved = new ArrayList<ProductPurchaseResponse>(basket.size());
+        for (int i = 0; i < basket.size(); i++) {
+            var stripe = basket.get(i);
+            var quantity = quantities.get(stripe.productId);
+            if (!stripe.tryReserve(quantity)) {
+                for (int j = 0; j < i; j++) {
+                    basket.get(j).release(reserved.get(j).quantity());
+                }
+                throw new ProductPurchaseException("Insufficient stock quantity for product with id:: " + stripe.productId);
+            }
+            reserved.add(new ProductPurchaseResponse(stripe.productId, stripe.name, stripe.description, stripe.price, quantity));
+        }
+
+        journal(basket, reserved.stream().map(ProductPurchaseResponse::quantity).toList(), 1);
+        return reserved;
+    }
+
+    /**
+     * Gives back stock from an earlier reservation, and journals it. Lines for unknown products
+     * are ignored.
+     */
+    public void release(List<ProductPurchaseRequest> request) {
+        var released = new ArrayList<Stripe>(request.size());
+        var quantities = new ArrayList<Double>(request.size());
+        for (var line : request) {
+            var stripe = stripes.get(line.productId());
+            if (stripe != null) {
+                stripe.release(line.quantity());
+                released.add(stripe);
+                quantities.add(line.quantity());
+            }
+        }
+
+        if (!released.isEmpty()) {
+            journal(released, quantities, -1);
+        }
+    }
+
+    public double availableQuantity(Integer productId) {
+        var stripe = stripes.get(productId);
+        return stripe == null ? 0 : stripe.available();
+    }
+
+    /**
+     * Folds every committed journal entry into the product table in one statement.
+     */
+    @Scheduled(fixedDelayString = "${application.stock-ledger.flush-interval:500}")
+    @PreDestroy
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        var folded = transactionTemplate.execute(status -> jdbcTemplate.update(FOLD_JOURNAL));
+        log.debug("Stock ledger folded its journal into {} products", folded);
+    }
+
+    /**
+     * Appends one journal row per stripe in the caller's transaction, or in a new one. If that
+     * transaction does not commit, the counters are adjusted back, so memory never holds a change
+     * the journal lost.
+     */
+    private void journal(List<Stripe> changed, List<Double> quantities, int sign) {
+        var rows = new ArrayList<Object[]>(changed.size());
+        for (int i = 0; i < changed.size(); i++) {
+            rows.add(new Object[]{changed.get(i).productId, sign * quantities.get(i)});
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int completionStatus) {
+                        if (completionStatus != STATUS_COMMITTED) {
+                            undo(changed, quantities, sign);
+                        }
+                    }
+                });
+                jdbcTemplate.batchUpdate(APPEND_JOURNAL, rows);
+            } else {
+                try {
+                    jdbcTemplate.batchUpdate(APPEND_JOURNAL, rows);
+                } catch (RuntimeException e) {
+                    undo(changed, quantities, sign);
+                    throw e;
+                }
+            }
+        });
+    }
+
+    private static void undo(List<Stripe> changed, List<Double> quantities, int sign) {
+        for (int i = 0; i < changed.size(); i++) {
+            changed.get(i).release(sign * quantities.get(i));
+        }
+    }
+
+    private static final class Stripe {
+
+        private final Integer productId;
+        private final String name;
+        private final String description;
+        private final BigDecimal price;
+        // Double bits, so the counter can be updated with a single CAS
+        private final AtomicLong available;
+
+        private Stripe(Integer productId, String name, String description, BigDecimal price, double availableQuantity) {
+            this.productId = productId;
+            this.name = name;
+            this.description = description;
+            this.price = price;
+            this.available = new AtomicLong(Double.doubleToRawLongBits(availableQuantity));
+        }
+
+        private double available() {
+            return Double.longBitsToDouble(available.get());
+        }
+
+        private boolean tryReserve(double quantity) {
+            while (true) {
+                var current = available.get();
+                var remaining = Double.longBitsToDouble(current) - quantity;
+                if (remaining < 0) {
+                    return false;
+                }
+                if (available.compareAndSet(current, Double.doubleToRawLongBits(remaining))) {
+                    return true;
+                }
+            }
+        }
+
+        private void release(double quantity) {
+            available.updateAndGet(bits -> Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + quantity));
+        }
+    }
+}
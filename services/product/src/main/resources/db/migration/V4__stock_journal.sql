@@ -0,0 +1,7 @@
+-- Stock taken (positive) or given back (negative) through the in-memory stock ledger,
+-- not yet folded into product.available_quantity
+create table if not exists stock_journal (
+    id bigserial primary key,
+    product_id integer not null,
+    quantity double precision not null
+);
@@ -0,0 +1,12 @@
+-- Purchases made under an id, so the order service can give their stock back exactly once.
+-- A cancel that arrives before its purchase leaves a cancelled row without lines, which makes
+-- the late purchase fail instead of taking stock nobody will give back.
+create table if not exists stock_purchase (
+    purchase_id varchar(64) primary key,
+    product_ids integer[] not null,
+    quantities double precision[] not null,
+    cancelled boolean not null,
+    created_date timestamp not null default now()
+);
+
+create index if not exists stock_purchase_created_date_idx on stock_purchase (created_date);
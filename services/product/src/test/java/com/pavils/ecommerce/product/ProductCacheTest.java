@@ -0,0 +1,127 @@
+package com.pavils.ecommerce.product;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pavils.ecommerce.exception.EntityNotFoundException;
+import com.pavils.ecommerce.search.ProductSearchIndex;
+import com.pavils.ecommerce.stock.StockLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig
+class ProductCacheTest {
+
+    @Configuration
+    @EnableCaching
+    @Import({ProductService.class, ProductCache.class})
+    static class Config {
+
+        @Bean
+        CacheManager cacheManager() {
+            var cacheManager = new CaffeineCacheManager(ProductCache.PRODUCTS);
+            cacheManager.setCaffeine(Caffeine.newBuilder().maximumSize(100).recordStats());
+            return cacheManager;
+        }
+    }
+
+    @MockitoBean
+    private ProductRepository repository;
+
+    @MockitoBean
+    private ProductMapper mapper;
+
+    @MockitoBean
+    private StockLedger stockLedger;
+
+    @MockitoBean
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private ProductService service;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final ProductResponse widget =
+            new ProductResponse(1, "Widget", "A widget", 10.0, BigDecimal.valueOf(9.99), 1, "Cat", "CatDesc");
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    void findById_RepeatedReads_LoadDetailsOnceAndStockEveryTime() {
+        when(repository.findResponseById(1)).thenReturn(Optional.of(widget));
+        when(repository.findAvailableQuantityById(1)).thenReturn(Optional.of(10.0), Optional.of(8.0));
+
+        service.findById(1);
+        ProductResponse second = service.findById(1);
+
+        assertThat(second).isEqualTo(widget.withAvailableQuantity(8.0));
+        verify(repository, times(1)).findResponseById(1);
+        verify(repository, times(2)).findAvailableQuantityById(1);
+    }
+
+    @Test
+    void findById_CachedEntry_HoldsNoStock() {
+        when(repository.findResponseById(1)).thenReturn(Optional.of(widget));
+        when(repository.findAvailableQuantityById(1)).thenReturn(Optional.of(10.0));
+
+        service.findById(1);
+
+        var cached = cacheManager.getCache(ProductCache.PRODUCTS).get(1, ProductResponse.class);
+        assertThat(cached).isNotNull();
+        assertThat(cached.availableQuantity()).isNull();
+    }
+
+    @Test
+    void purchaseProducts_KeepsCachedDetails() {
+        when(repository.findResponseById(1)).thenReturn(Optional.of(widget));
+        when(repository.findAvailableQuantityById(1)).thenReturn(Optional.of(10.0), Optional.of(8.0));
+        when(repository.decrementStock(any())).thenReturn(List.of(
+                new ProductPurchaseResponse(1, "Widget", "A widget", BigDecimal.valueOf(9.99), 2.0)
+        ));
+        service.findById(1);
+
+        service.purchaseProducts(null, List.of(new ProductPurchaseRequest(1, 2.0)));
+        ProductResponse afterPurchase = service.findById(1);
+
+        assertThat(afterPurchase.availableQuantity()).isEqualTo(8.0);
+        verify(repository, times(1)).findResponseById(1);
+    }
+
+    @Test
+    void createProduct_EvictsACachedMissForItsId() {
+        ProductRequest request = new ProductRequest(null, "Gadget", "A gadget", 5.0, BigDecimal.ONE, 1);
+        Product gadget = Product.builder().id(2).name("Gadget").availableQuantity(5.0).build();
+        ProductResponse gadgetResponse = new ProductResponse(2, "Gadget", null, 5.0, BigDecimal.ONE, 1, "Cat", "CatDesc");
+        when(mapper.toProduct(request)).thenReturn(gadget);
+        when(repository.save(gadget)).thenReturn(gadget);
+        when(repository.findResponseById(2)).thenReturn(Optional.empty(), Optional.of(gadgetResponse));
+        when(repository.findAvailableQuantityById(2)).thenReturn(Optional.of(5.0));
+        assertThatThrownBy(() -> service.findById(2)).isInstanceOf(EntityNotFoundException.class);
+
+        service.createProduct(request);
+
+        assertThat(service.findById(2)).isEqualTo(gadgetResponse);
+        verify(repository, times(2)).findResponseById(2);
+    }
+}
@@ -3,6 +3,9 @@ package com.pavils.ecommerce.product;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pavils.ecommerce.exception.EntityNotFoundException;
 import com.pavils.ecommerce.exception.ProductPurchaseException;
+import com.pavils.ecommerce.search.CategoryFacet;
+import com.pavils.ecommerce.search.ProductSearchIndex;
+import com.pavils.ecommerce.search.ProductSearchResponse;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -10,11 +13,15 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -36,6 +43,12 @@ class ProductControllerTest {
     @MockitoBean
     private ProductService service;
 
+    @MockitoBean
+    private ProductImportService importService;
+
+    @MockitoBean
+    private ProductSearchIndex searchIndex;
+
     @Test
     void createProduct_ValidRequest_Returns200WithId() throws Exception {
         ProductRequest request = new ProductRequest(null, "Widget", "A widget", 10.0, BigDecimal.valueOf(9.99), 1);
@@ -75,7 +88,7 @@ class ProductControllerTest {
         List<ProductPurchaseResponse> responses = List.of(
                 new ProductPurchaseResponse(1, "Widget", "A widget", BigDecimal.valueOf(9.99), 2.0)
         );
-        when(service.purchaseProducts(any())).thenReturn(responses);
+        when(service.purchaseProducts(any(), any())).thenReturn(responses);
 
         mockMvc.perform(post("/api/v1/products/purchase")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -83,13 +96,13 @@ class ProductControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].id").value(1));
 
-        verify(service, times(1)).purchaseProducts(any());
+        verify(service, times(1)).purchaseProducts(isNull(), any());
     }
 
     @Test
     void purchaseProducts_ServiceThrows_Returns400() throws Exception {
         List<ProductPurchaseRequest> requests = List.of(new ProductPurchaseRequest(1, 2.0));
-        when(service.purchaseProducts(any())).thenThrow(new ProductPurchaseException("Insufficient stock"));
+        when(service.purchaseProducts(any(), any())).thenThrow(new ProductPurchaseException("Insufficient stock"));
 
         mockMvc.perform(post("/api/v1/products/purchase")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -97,6 +110,28 @@ class ProductControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void purchaseProducts_WithPurchaseId_PassesItOn() throws Exception {
+        List<ProductPurchaseRequest> requests = List.of(new ProductPurchaseRequest(1, 2.0));
+        when(service.purchaseProducts(any(), any())).thenReturn(List.of());
+
+        mockMvc.perform(post("/api/v1/products/purchase")
+                        .header(ProductController.PURCHASE_ID_HEADER, "purchase-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isOk());
+
+        verify(service).purchaseProducts("purchase-1", requests);
+    }
+
+    @Test
+    void cancelPurchase_ById_Returns200() throws Exception {
+        mockMvc.perform(post("/api/v1/products/internal/purchases/purchase-1/cancel"))
+                .andExpect(status().isOk());
+
+        verify(service).cancelPurchase("purchase-1");
+    }
+
     @Test
     void findById_ExistingProduct_Returns200() throws Exception {
         ProductResponse response = new ProductResponse(
@@ -110,6 +145,18 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$.price").value(9.99));
     }
 
+    @Test
+    void findAllByIds_Returns200WithFoundProducts() throws Exception {
+        ProductResponse response = new ProductResponse(
+                1, "Widget", "A widget", 10.0, BigDecimal.valueOf(9.99), 1, "Electronics", "Electronic items");
+        when(service.findAllByIds(List.of(1, 99))).thenReturn(List.of(response));
+
+        mockMvc.perform(get("/api/v1/products/batch").param("ids", "1,99"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(1));
+    }
+
     @Test
     void findById_NotFound_Returns400() throws Exception {
         // Handler maps EntityNotFoundException to 400, not 404
@@ -142,4 +189,104 @@ class ProductControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(0));
     }
+
+    @Test
+    void findPage_ReturnsProductsAndCursor() throws Exception {
+        ProductPageResponse page = new ProductPageResponse(List.of(
+                new ProductResponse(51, "Widget A", "Desc A", 10.0, BigDecimal.valueOf(5.00), 1, "Cat", "CatDesc")
+        ), 51);
+        when(service.findPage(1, 1, 1)).thenReturn(page);
+
+        mockMvc.perform(get("/api/v1/products/page")
+                        .param("afterId", "1")
+                        .param("size", "1")
+                        .param("categoryId", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products[0].id").value(51))
+                .andExpect(jsonPath("$.nextAfterId").value(51));
+    }
+
+    @Test
+    void findPage_NoParams_UsesDefaults() throws Exception {
+        when(service.findPage(null, 50, null)).thenReturn(new ProductPageResponse(List.of(), null));
+
+        mockMvc.perform(get("/api/v1/products/page"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products.length()").value(0));
+
+        verify(service).findPage(null, 50, null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamAll_WritesOneJsonDocumentPerLine() throws Exception {
+        doAnswer(inv -> {
+            Consumer<ProductResponse> consumer = inv.getArgument(1);
+            consumer.accept(new ProductResponse(1, "Widget A", "Desc A", 10.0, BigDecimal.valueOf(5.00), 1, "Cat", "CatDesc"));
+            consumer.accept(new ProductResponse(2, "Widget B", "Desc B", 20.0, BigDecimal.valueOf(10.00), 1, "Cat", "CatDesc"));
+            return null;
+        }).when(service).streamAll(eq(1), any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/products/stream").param("categoryId", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[1], ProductResponse.class).name()).isEqualTo("Widget B");
+    }
+
+    @Test
+    void importProducts_JsonBody_RoutesToJsonImport() throws Exception {
+        when(importService.importJson(any())).thenReturn(new ProductImportResponse(1, 0, List.of()));
+
+        mockMvc.perform(post("/api/v1/products/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1));
+
+        verify(importService).importJson(any());
+        verify(importService, never()).importCsv(any());
+    }
+
+    @Test
+    void importProducts_CsvBody_RoutesToCsvImport() throws Exception {
+        when(importService.importCsv(any())).thenReturn(new ProductImportResponse(0, 1,
+                List.of(new ProductImportError(2, "Product name is required"))));
+
+        mockMvc.perform(post("/api/v1/products/import")
+                        .contentType("text/csv")
+                        .content("name,description,availableQuantity,price,categoryId\n,x,1,1,1\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(2));
+
+        verify(importService).importCsv(any());
+    }
+
+    @Test
+    void search_WithFilters_PassesThemToTheIndex() throws Exception {
+        var laptop = new ProductResponse(7, "Gaming Laptop", "Fast", 4.0, new BigDecimal("1299.99"), 1, "Electronics", "Devices");
+        when(searchIndex.search("lap", 1, new BigDecimal("1000"), new BigDecimal("1500"), 20))
+                .thenReturn(new ProductSearchResponse(1, List.of(laptop), List.of(new CategoryFacet(1, "Electronics", 1))));
+
+        mockMvc.perform(get("/api/v1/products/search")
+                        .param("q", "lap")
+                        .param("categoryId", "1")
+                        .param("minPrice", "1000")
+                        .param("maxPrice", "1500"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.products[0].name").value("Gaming Laptop"))
+                .andExpect(jsonPath("$.categories[0].categoryName").value("Electronics"))
+                .andExpect(jsonPath("$.categories[0].count").value(1));
+    }
 }
@@ -0,0 +1,97 @@
+package com.pavils.ecommerce.product;
+
+import com.pavils.ecommerce.ProductApplication;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Rows per second loaded through the bulk CSV import against the same rows sent one by one
+ * through {@link ProductService#createProduct}.
+ * <p>
+ * Boots the product service without a web server against the database from docker-compose; override
+ * the connection with {@code -Dbenchmark.jdbc.url}, {@code -Dbenchmark.jdbc.username} and
+ * {@code -Dbenchmark.jdbc.password}. Every row it writes is deleted again on tear down.
+ * Run with {@code mvn test-compile} and then this class's {@code main} from the test classpath.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductImportBenchmark {
+
+    private static final int ROWS = 2_000;
+    private static final String NAME_PREFIX = "benchmark-import-";
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+    private ProductImportService importService;
+    private ProductService productService;
+    private JdbcTemplate jdbcTemplate;
+    private byte[] csv;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(ProductApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.cloud.config.enabled=false",
+                        "spring.cloud.config.import-check.enabled=false",
+                        "eureka.client.enabled=false",
+                        "spring.datasource.url=" + System.getProperty("benchmark.jdbc.url",
+                                "jdbc:postgresql://localhost:5432/product?reWriteBatchedInserts=true"),
+                        "spring.datasource.username=" + System.getProperty("benchmark.jdbc.username", "postgres"),
+                        "spring.datasource.password=" + System.getProperty("benchmark.jdbc.password", "0102"))
+                .run();
+        importService = context.getBean(ProductImportService.class);
+        productService = context.getBean(ProductService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        csv = IntStream.range(0, ROWS)
+                .mapToObj(i -> NAME_PREFIX + i + ",Bulk loaded row,10,19.99,1")
+                .collect(Collectors.joining("\n", "name,description,availableQuantity,price,categoryId\n", "\n"))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.update("delete from product where name like ?", NAME_PREFIX + "%");
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ProductImportResponse bulkImport() throws IOException {
+        return importService.importCsv(new ByteArrayInputStream(csv));
+    }
+
+    @Benchmark
+    public Integer singleCreate() {
+        return productService.createProduct(new ProductRequest(
+                null, NAME_PREFIX + sequence.incrementAndGet(), "Single row", 10.0, new BigDecimal("19.99"), 1));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductImportBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,66 @@
+package com.pavils.ecommerce.product;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+@TestPropertySource(properties = {
+        "spring.cloud.config.enabled=false",
+        "eureka.client.enabled=false",
+        "spring.cloud.config.import-check.enabled=false"
+})
+class ProductImportIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private ProductImportService importService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void importCsv_SeveralBatches_InsertsRowsWithSequenceIdsThatLaterCreatesDoNotReuse() throws Exception {
+        var prefix = "import-" + System.nanoTime() + "-";
+        var csv = IntStream.range(0, 1234)
+                .mapToObj(i -> prefix + i + ",Imported row," + (i % 7 + 1) + ",12.50,1")
+                .collect(Collectors.joining("\n", "name,description,availableQuantity,price,categoryId\n", "\n"));
+
+        var response = importService.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(response.imported()).isEqualTo(1234);
+        assertThat(response.errors()).isEmpty();
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(distinct id) from product where name like ?", Integer.class, prefix + "%"))
+                .isEqualTo(1234);
+
+        var createdId = productService.createProduct(
+                new ProductRequest(null, prefix + "single", "Created after import", 1.0, BigDecimal.ONE, 1));
+
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from product where id = ?", Integer.class, createdId)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "select name from product where id = ?", String.class, createdId)).isEqualTo(prefix + "single");
+    }
+}
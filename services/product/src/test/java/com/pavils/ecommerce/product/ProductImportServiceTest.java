@@ -0,0 +1,192 @@
+package com.pavils.ecommerce.product;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pavils.ecommerce.category.CategoryRepository;
+import com.pavils.ecommerce.search.ProductSearchIndex;
+import com.pavils.ecommerce.stock.StockLedger;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ProductImportServiceTest {
+
+    private ProductRepository repository;
+    private ProductCache productCache;
+    private StockLedger stockLedger;
+    private ProductSearchIndex searchIndex;
+    private ProductImportService service;
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ProductRepository.class);
+        productCache = mock(ProductCache.class);
+        stockLedger = mock(StockLedger.class);
+        searchIndex = mock(ProductSearchIndex.class);
+        CategoryRepository categoryRepository = mock(CategoryRepository.class);
+        when(categoryRepository.findAllIds()).thenReturn(Set.of(1, 51));
+        // The service clears its batch buffer after each insert, so record sizes at call time
+        doAnswer(inv -> batchSizes.add(inv.<List<Product>>getArgument(0).size())).when(repository).insertAll(any());
+
+        service = new ProductImportService(
+                repository,
+                categoryRepository,
+                new ProductMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper(),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                stockLedger,
+                productCache,
+                searchIndex
+        );
+    }
+
+    private InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void importJson_MixedRows_InsertsValidRowsAndReportsInvalidLines() throws Exception {
+        String json = """
+                [
+                {"name": "Widget", "description": "A widget", "availableQuantity": 10, "price": 9.99, "categoryId": 1},
+                {"description": "No name", "availableQuantity": 10, "price": 9.99, "categoryId": 1},
+                {"name": "Gadget", "description": "A gadget", "availableQuantity": 5, "price": "abc", "categoryId": 1},
+                {"name": "Orphan", "description": "No category", "availableQuantity": 5, "price": 1.00, "categoryId": 999},
+                {"name": "Book", "description": "A book", "availableQuantity": 3, "price": 15.99, "categoryId": 51}
+                ]
+                """;
+
+        ProductImportResponse response = service.importJson(body(json));
+
+        assertThat(response.imported()).isEqualTo(2);
+        assertThat(response.rejected()).isEqualTo(3);
+        assertThat(response.errors()).extracting(ProductImportError::line).containsExactly(3L, 4L, 5L);
+        assertThat(response.errors().get(0).message()).isEqualTo("Product name is required");
+        assertThat(response.errors().get(2).message()).isEqualTo("Unknown category with ID:: 999");
+        assertThat(batchSizes).containsExactly(2);
+        verify(stockLedger, times(2)).register(any());
+        verify(searchIndex, times(2)).index(any());
+        verify(productCache).evictProducts(any());
+    }
+
+    @Test
+    void importJson_LargeFeed_InsertsInBatchesOf500() throws Exception {
+        String json = IntStream.range(0, 1200)
+                .mapToObj(i -> "{\"name\": \"P" + i + "\", \"description\": \"D\", \"availableQuantity\": 1, \"price\": 1, \"categoryId\": 1}")
+                .collect(Collectors.joining(",\n", "[\n", "\n]"));
+
+        ProductImportResponse response = service.importJson(body(json));
+
+        assertThat(response.imported()).isEqualTo(1200);
+        assertThat(batchSizes).containsExactly(500, 500, 200);
+    }
+
+    @Test
+    void importJson_NotAnArray_RejectsWithoutInserting() throws Exception {
+        ProductImportResponse response = service.importJson(body("{\"name\": \"Widget\"}"));
+
+        assertThat(response.imported()).isZero();
+        assertThat(response.errors()).singleElement()
+                .extracting(ProductImportError::message).isEqualTo("Expected a JSON array of products");
+        verify(repository, never()).insertAll(any());
+        verifyNoInteractions(productCache);
+    }
+
+    @Test
+    void importJson_TruncatedFile_KeepsRowsReadBeforeTheError() throws Exception {
+        String json = """
+                [
+                {"name": "Widget", "description": "A widget", "availableQuantity": 10, "price": 9.99, "categoryId": 1},
+                {"name": "Gadget", "descr
+                """;
+
+        ProductImportResponse response = service.importJson(body(json));
+
+        assertThat(response.imported()).isEqualTo(1);
+        assertThat(response.rejected()).isEqualTo(1);
+        assertThat(response.errors().get(0).message()).startsWith("Malformed JSON");
+    }
+
+    @Test
+    void importCsv_MixedRows_InsertsValidRowsAndReportsInvalidLines() throws Exception {
+        String csv = """
+                name,description,availableQuantity,price,categoryId
+                Widget,A widget,10,9.99,1
+                Gadget,"A gadget, with comma",-1,5.00,1
+                Book,A book,3,15.99,51
+                """;
+
+        ProductImportResponse response = service.importCsv(body(csv));
+
+        assertThat(response.imported()).isEqualTo(2);
+        assertThat(response.errors()).singleElement()
+                .satisfies(error -> {
+                    assertThat(error.line()).isEqualTo(3L);
+                    assertThat(error.message()).isEqualTo("Quantity should be positive");
+                });
+    }
+
+    @Test
+    void importCsv_EveryInsertFails_ReportsEveryRow() throws Exception {
+        doThrow(new DataIntegrityViolationException("boom")).when(repository).insertAll(any());
+        String csv = """
+                name,description,availableQuantity,price,categoryId
+                Widget,A widget,10,9.99,1
+                Book,A book,3,15.99,51
+                """;
+
+        ProductImportResponse response = service.importCsv(body(csv));
+
+        assertThat(response.imported()).isZero();
+        assertThat(response.rejected()).isEqualTo(2);
+        assertThat(response.errors()).extracting(ProductImportError::line).containsExactly(2L, 3L);
+        assertThat(response.errors()).extracting(ProductImportError::message).containsOnly("Insert failed: boom");
+        verifyNoInteractions(stockLedger, productCache, searchIndex);
+    }
+
+    @Test
+    void importCsv_OneRowFailsItsBatch_RetriesRowByRowAndRejectsOnlyThatRow() throws Exception {
+        doAnswer(inv -> {
+            List<Product> products = inv.getArgument(0);
+            if (products.stream().anyMatch(product -> product.getName().equals("Gadget"))) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            batchSizes.add(products.size());
+            return null;
+        }).when(repository).insertAll(any());
+        String csv = """
+                name,description,availableQuantity,price,categoryId
+                Widget,A widget,10,9.99,1
+                Gadget,A gadget,5,5.00,1
+                Book,A book,3,15.99,51
+                """;
+
+        ProductImportResponse response = service.importCsv(body(csv));
+
+        assertThat(response.imported()).isEqualTo(2);
+        assertThat(response.errors()).singleElement()
+                .satisfies(error -> {
+                    assertThat(error.line()).isEqualTo(3L);
+                    assertThat(error.message()).isEqualTo("Insert failed: value too long");
+                });
+        assertThat(batchSizes).containsExactly(1, 1);
+        verify(stockLedger, times(2)).register(any());
+    }
+}
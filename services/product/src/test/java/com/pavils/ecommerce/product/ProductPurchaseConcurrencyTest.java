@@ -0,0 +1,164 @@
+package com.pavils.ecommerce.product;
+
+import com.pavils.ecommerce.exception.ProductPurchaseException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Runs the real conditional UPDATE against PostgreSQL; skipped when Docker is not available.
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+@TestPropertySource(properties = {
+        "spring.cloud.config.enabled=false",
+        "eureka.client.enabled=false",
+        "spring.cloud.config.import-check.enabled=false"
+})
+class ProductPurchaseConcurrencyTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private ProductService service;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Integer smartphoneId;
+    private Integer laptopId;
+
+    @BeforeEach
+    void setUp() {
+        // Sample data comes from the V3 migration
+        smartphoneId = jdbcTemplate.queryForObject("select id from product where name = 'Smartphone'", Integer.class);
+        laptopId = jdbcTemplate.queryForObject("select id from product where name = 'Laptop'", Integer.class);
+        jdbcTemplate.update("update product set available_quantity = 10 where id in (?, ?)", smartphoneId, laptopId);
+    }
+
+    @Test
+    void purchaseProducts_ManyBuyersForLastUnits_NeverOversells() throws Exception {
+        int buyers = 64;
+        var sold = new AtomicInteger();
+        var rejected = new AtomicInteger();
+        var start = new CountDownLatch(1);
+
+        try (var executor = Executors.newFixedThreadPool(buyers)) {
+            List<Callable<Void>> purchases = IntStream.range(0, buyers)
+                    .<Callable<Void>>mapToObj(i -> () -> {
+                        start.await();
+                        try {
+                            service.purchaseProducts(null, List.of(new ProductPurchaseRequest(smartphoneId, 1)));
+                            sold.incrementAndGet();
+                        } catch (ProductPurchaseException e) {
+                            rejected.incrementAndGet();
+                        }
+                        return null;
+                    })
+                    .toList();
+            var futures = purchases.stream().map(executor::submit).toList();
+            start.countDown();
+            for (var future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(sold.get()).isEqualTo(10);
+        assertThat(rejected.get()).isEqualTo(buyers - 10);
+        assertThat(availableQuantity(smartphoneId)).isZero();
+    }
+
+    @Test
+    void cancelPurchase_AfterPurchase_RestoresStockOfEveryLineOnce() {
+        var purchaseId = UUID.randomUUID().toString();
+        var basket = List.of(
+                new ProductPurchaseRequest(smartphoneId, 3),
+                new ProductPurchaseRequest(laptopId, 2),
+                new ProductPurchaseRequest(smartphoneId, 1)
+        );
+        service.purchaseProducts(purchaseId, basket);
+
+        service.cancelPurchase(purchaseId);
+        service.cancelPurchase(purchaseId);
+
+        assertThat(availableQuantity(smartphoneId)).isEqualTo(10.0);
+        assertThat(availableQuantity(laptopId)).isEqualTo(10.0);
+    }
+
+    @Test
+    void cancelPurchase_BeforePurchaseArrives_RefusesThePurchase() {
+        var purchaseId = UUID.randomUUID().toString();
+
+        service.cancelPurchase(purchaseId);
+
+        assertThatThrownBy(() -> service.purchaseProducts(purchaseId, List.of(new ProductPurchaseRequest(smartphoneId, 3))))
+                .isInstanceOf(ProductPurchaseException.class);
+        assertThat(availableQuantity(smartphoneId)).isEqualTo(10.0);
+    }
+
+    @Test
+    void purchaseProducts_OneLineInsufficient_RollsBackWholeBasket() {
+        var basket = List.of(
+                new ProductPurchaseRequest(smartphoneId, 4),
+                new ProductPurchaseRequest(laptopId, 11)
+        );
+
+        assertThatThrownBy(() -> service.purchaseProducts(null, basket))
+                .isInstanceOf(ProductPurchaseException.class)
+                .hasMessage("Insufficient stock quantity for product with id:: " + laptopId);
+
+        assertThat(availableQuantity(smartphoneId)).isEqualTo(10.0);
+        assertThat(availableQuantity(laptopId)).isEqualTo(10.0);
+    }
+
+    @Test
+    void purchaseProducts_UnknownProduct_RollsBackWholeBasket() {
+        var basket = List.of(
+                new ProductPurchaseRequest(smartphoneId, 4),
+                new ProductPurchaseRequest(-1, 1)
+        );
+
+        assertThatThrownBy(() -> service.purchaseProducts(null, basket))
+                .isInstanceOf(ProductPurchaseException.class)
+                .hasMessage("One or more products does not exists");
+
+        assertThat(availableQuantity(smartphoneId)).isEqualTo(10.0);
+    }
+
+    @Test
+    void purchaseProducts_SufficientStock_ReturnsPurchaseRowsAndDecrements() {
+        var result = service.purchaseProducts(null, List.of(
+                new ProductPurchaseRequest(laptopId, 2),
+                new ProductPurchaseRequest(smartphoneId, 3),
+                new ProductPurchaseRequest(smartphoneId, 1)
+        ));
+
+        assertThat(result).extracting(ProductPurchaseResponse::id).containsExactly(smartphoneId, laptopId);
+        assertThat(result).extracting(ProductPurchaseResponse::name).containsExactly("Smartphone", "Laptop");
+        assertThat(result).extracting(ProductPurchaseResponse::quantity).containsExactly(4.0, 2.0);
+        assertThat(availableQuantity(smartphoneId)).isEqualTo(6.0);
+        assertThat(availableQuantity(laptopId)).isEqualTo(8.0);
+    }
+
+    private Double availableQuantity(Integer productId) {
+        return jdbcTemplate.queryForObject("select available_quantity from product where id = ?", Double.class, productId);
+    }
+}
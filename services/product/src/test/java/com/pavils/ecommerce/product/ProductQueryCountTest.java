@@ -0,0 +1,138 @@
+package com.pavils.ecommerce.product;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Pins the number of SQL statements Hibernate issues per endpoint, so a new N+1 shows up as a failure.
+@SpringBootTest
+@AutoConfigureMockMvc
+@Testcontainers(disabledWithoutDocker = true)
+@TestPropertySource(properties = {
+        "spring.cloud.config.enabled=false",
+        "eureka.client.enabled=false",
+        "spring.cloud.config.import-check.enabled=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class ProductQueryCountTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Statistics statistics;
+    private Integer smartphoneId;
+
+    @BeforeEach
+    void setUp() {
+        smartphoneId = jdbcTemplate.queryForObject("select id from product where name = 'Smartphone'", Integer.class);
+        jdbcTemplate.update("update product set available_quantity = 25 where id = ?", smartphoneId);
+        cacheManager.getCache(ProductCache.PRODUCTS).clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findAll_AcrossSeveralCategories_IssuesOneStatement() throws Exception {
+        mockMvc.perform(get("/api/v1/products"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(6))
+                .andExpect(jsonPath("$[0].categoryName").value("Electronics"));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    // The details are cached but the stock never is, so a miss reads both and a hit the stock only
+    @Test
+    void findById_CacheMiss_IssuesTwoStatements() throws Exception {
+        mockMvc.perform(get("/api/v1/products/" + smartphoneId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categoryName").value("Electronics"))
+                .andExpect(jsonPath("$.availableQuantity").value(25));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void findById_CacheHit_IssuesOneStatementForTheStock() throws Exception {
+        mockMvc.perform(get("/api/v1/products/" + smartphoneId))
+                .andExpect(status().isOk());
+        jdbcTemplate.update("update product set available_quantity = 24 where id = ?", smartphoneId);
+        statistics.clear();
+
+        mockMvc.perform(get("/api/v1/products/" + smartphoneId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categoryName").value("Electronics"))
+                .andExpect(jsonPath("$.availableQuantity").value(24));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findPage_IssuesOneStatement() throws Exception {
+        mockMvc.perform(get("/api/v1/products/page").param("size", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products.length()").value(4));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void purchase_SufficientStock_IssuesNoHibernateStatements() throws Exception {
+        // The decrement is a single JdbcTemplate statement, so Hibernate must stay out of it entirely
+        mockMvc.perform(post("/api/v1/products/purchase")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(new ProductPurchaseRequest(smartphoneId, 1)))))
+                .andExpect(status().isOk());
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void purchase_InsufficientStock_LoadsRejectedProductsWithoutCategories() throws Exception {
+        mockMvc.perform(post("/api/v1/products/purchase")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(new ProductPurchaseRequest(smartphoneId, 1000)))))
+                .andExpect(status().isBadRequest());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -1,22 +1,30 @@
 package com.pavils.ecommerce.product;
 
 import com.pavils.ecommerce.category.Category;
+import com.pavils.ecommerce.deadline.RequestDeadline;
+import com.pavils.ecommerce.exception.DeadlineExceededException;
 import com.pavils.ecommerce.exception.EntityNotFoundException;
 import com.pavils.ecommerce.exception.ProductPurchaseException;
+import com.pavils.ecommerce.search.ProductSearchIndex;
+import com.pavils.ecommerce.stock.StockLedger;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +36,15 @@ class ProductServiceTest {
     @Mock
     private ProductMapper mapper;
 
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private ProductSearchIndex searchIndex;
+
     @InjectMocks
     private ProductService service;
 
@@ -54,43 +71,46 @@ class ProductServiceTest {
         assertThat(id).isEqualTo(5);
         verify(mapper).toProduct(request);
         verify(repository).save(product);
+        verify(stockLedger).register(product);
+        verify(searchIndex).index(product);
+        verify(productCache).evictProducts(List.of(5));
     }
 
     @Test
     void purchaseProducts_AllProductsExist_SufficientStock_ReturnsResponses() {
-        Product p1 = buildProduct(1, 10.0, BigDecimal.valueOf(5.0));
-        Product p2 = buildProduct(2, 20.0, BigDecimal.valueOf(10.0));
         List<ProductPurchaseRequest> requests = List.of(
                 new ProductPurchaseRequest(1, 3.0),
                 new ProductPurchaseRequest(2, 5.0)
         );
-        when(repository.findAllByIdInOrderById(List.of(1, 2))).thenReturn(List.of(p1, p2));
-        when(mapper.toProductPurchaseResponse(p1, 3.0))
-                .thenReturn(new ProductPurchaseResponse(1, "Product 1", "Desc 1", BigDecimal.valueOf(5.0), 3.0));
-        when(mapper.toProductPurchaseResponse(p2, 5.0))
-                .thenReturn(new ProductPurchaseResponse(2, "Product 2", "Desc 2", BigDecimal.valueOf(10.0), 5.0));
-        when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.decrementStock(requests)).thenReturn(List.of(
+                new ProductPurchaseResponse(1, "Product 1", "Desc 1", BigDecimal.valueOf(5.0), 3.0),
+                new ProductPurchaseResponse(2, "Product 2", "Desc 2", BigDecimal.valueOf(10.0), 5.0)
+        ));
 
-        List<ProductPurchaseResponse> result = service.purchaseProducts(requests);
+        List<ProductPurchaseResponse> result = service.purchaseProducts(null, requests);
 
         assertThat(result).hasSize(2);
-        assertThat(p1.getAvailableQuantity()).isEqualTo(7.0);
-        assertThat(p2.getAvailableQuantity()).isEqualTo(15.0);
-        verify(repository).save(p1);
-        verify(repository).save(p2);
+        assertThat(result).extracting(ProductPurchaseResponse::quantity).containsExactly(3.0, 5.0);
+        verify(repository).decrementStock(requests);
+        verify(repository, never()).save(any());
+        verifyNoInteractions(productCache);
+        verify(searchIndex).adjustStock(result);
     }
 
     @Test
     void purchaseProducts_ProductIdsMismatch_ThrowsProductPurchaseException() {
-        Product p1 = buildProduct(1, 10.0, BigDecimal.valueOf(5.0));
         List<ProductPurchaseRequest> requests = List.of(
                 new ProductPurchaseRequest(1, 3.0),
                 new ProductPurchaseRequest(2, 2.0)
         );
-        when(repository.findAllByIdInOrderById(any())).thenReturn(List.of(p1));
-
-        assertThatThrownBy(() -> service.purchaseProducts(requests))
-                .isInstanceOf(ProductPurchaseException.class);
+        when(repository.decrementStock(requests)).thenReturn(List.of(
+                new ProductPurchaseResponse(1, "Product 1", "Desc 1", BigDecimal.valueOf(5.0), 3.0)
+        ));
+        when(repository.findAllById(List.of(2))).thenReturn(List.of());
+
+        assertThatThrownBy(() -> service.purchaseProducts(null, requests))
+                .isInstanceOf(ProductPurchaseException.class)
+                .hasMessage("One or more products does not exists");
     }
 
     @Test
@@ -99,80 +119,174 @@ class ProductServiceTest {
         List<ProductPurchaseRequest> requests = List.of(
                 new ProductPurchaseRequest(1, 5.0)
         );
-        when(repository.findAllByIdInOrderById(List.of(1))).thenReturn(List.of(p1));
+        when(repository.decrementStock(requests)).thenReturn(List.of());
+        when(repository.findAllById(List.of(1))).thenReturn(List.of(p1));
 
-        assertThatThrownBy(() -> service.purchaseProducts(requests))
-                .isInstanceOf(ProductPurchaseException.class);
+        assertThatThrownBy(() -> service.purchaseProducts(null, requests))
+                .isInstanceOf(ProductPurchaseException.class)
+                .hasMessage("Insufficient stock quantity for product with id:: 1");
+        verifyNoInteractions(productCache, searchIndex);
     }
 
     @Test
-    void purchaseProducts_SortsRequestsByProductId_BeforeMatching() {
-        // Requests arrive in order [id=3, id=1]; stored products ordered by id: [id=1, id=3]
-        Product p1 = buildProduct(1, 10.0, BigDecimal.valueOf(5.0));
-        Product p3 = buildProduct(3, 20.0, BigDecimal.valueOf(8.0));
+    void purchaseProducts_ReturnsResponsesOrderedByProductId() {
+        // Requests arrive in order [id=3, id=1]; RETURNING gives no ordering guarantee
         List<ProductPurchaseRequest> requests = List.of(
                 new ProductPurchaseRequest(3, 4.0),
                 new ProductPurchaseRequest(1, 3.0)
         );
-        when(repository.findAllByIdInOrderById(any())).thenReturn(List.of(p1, p3));
-        when(mapper.toProductPurchaseResponse(any(), anyDouble()))
-                .thenReturn(new ProductPurchaseResponse(1, "P1", "D1", BigDecimal.ONE, 3.0));
-        when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.decrementStock(requests)).thenReturn(List.of(
+                new ProductPurchaseResponse(3, "P3", "D3", BigDecimal.ONE, 4.0),
+                new ProductPurchaseResponse(1, "P1", "D1", BigDecimal.ONE, 3.0)
+        ));
 
-        service.purchaseProducts(requests);
+        List<ProductPurchaseResponse> result = service.purchaseProducts(null, requests);
 
-        // After sorting by productId, p1 matched with quantity 3.0 and p3 with 4.0
-        assertThat(p1.getAvailableQuantity()).isEqualTo(7.0);
-        assertThat(p3.getAvailableQuantity()).isEqualTo(16.0);
+        assertThat(result).extracting(ProductPurchaseResponse::id).containsExactly(1, 3);
     }
 
     @Test
-    void purchaseProducts_SavesEachProductAfterDeduction() {
-        Product p1 = buildProduct(1, 10.0, BigDecimal.valueOf(5.0));
-        Product p2 = buildProduct(2, 20.0, BigDecimal.valueOf(10.0));
+    void purchaseProducts_DuplicateProductIds_ExpectsOneRowPerProduct() {
+        // The repository sums quantities per product, so two lines for id=1 come back as one row
         List<ProductPurchaseRequest> requests = List.of(
                 new ProductPurchaseRequest(1, 2.0),
-                new ProductPurchaseRequest(2, 3.0)
+                new ProductPurchaseRequest(1, 3.0)
         );
-        when(repository.findAllByIdInOrderById(any())).thenReturn(List.of(p1, p2));
-        when(mapper.toProductPurchaseResponse(any(), anyDouble()))
-                .thenReturn(new ProductPurchaseResponse(1, "P1", "D1", BigDecimal.ONE, 2.0));
-        when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.decrementStock(requests)).thenReturn(List.of(
+                new ProductPurchaseResponse(1, "P1", "D1", BigDecimal.ONE, 5.0)
+        ));
 
-        service.purchaseProducts(requests);
+        List<ProductPurchaseResponse> result = service.purchaseProducts(null, requests);
 
-        verify(repository, times(2)).save(any(Product.class));
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).quantity()).isEqualTo(5.0);
+        verify(repository, never()).findAllById(any());
     }
 
     @Test
-    void findById_ExistingProduct_ReturnsMappedResponse() {
-        Product product = buildProduct(1, 10.0, BigDecimal.valueOf(9.99));
-        ProductResponse response = new ProductResponse(1, "Product 1", "Desc 1", 10.0, BigDecimal.valueOf(9.99), 1, "Cat", "CatDesc");
-        when(repository.findById(1)).thenReturn(Optional.of(product));
-        when(mapper.toProductResponse(product)).thenReturn(response);
+    void purchaseProducts_DeadlinePassed_ReservesNothing() {
+        List<ProductPurchaseRequest> requests = List.of(new ProductPurchaseRequest(1, 3.0));
+
+        RequestDeadline.runWith(Instant.now().minusSeconds(1), () ->
+                assertThatThrownBy(() -> service.purchaseProducts(null, requests))
+                        .isInstanceOf(DeadlineExceededException.class));
+
+        verifyNoInteractions(repository, stockLedger, productCache, searchIndex);
+    }
+
+    @Test
+    void purchaseProducts_StockLedgerEnabled_ReservesInMemoryWithoutDatabaseWrite() {
+        List<ProductPurchaseRequest> requests = List.of(new ProductPurchaseRequest(1, 2.0));
+        List<ProductPurchaseResponse> reserved = List.of(
+                new ProductPurchaseResponse(1, "P1", "D1", BigDecimal.ONE, 2.0)
+        );
+        when(stockLedger.isEnabled()).thenReturn(true);
+        when(stockLedger.reserve(requests)).thenReturn(reserved);
+
+        List<ProductPurchaseResponse> result = service.purchaseProducts(null, requests);
+
+        assertThat(result).isEqualTo(reserved);
+        verify(repository, never()).decrementStock(any());
+        verify(searchIndex).adjustStock(reserved);
+    }
+
+    @Test
+    void cancelPurchase_DatabaseStock_IncrementsStockAndRestoresSearchIndex() {
+        List<ProductPurchaseRequest> requests = List.of(
+                new ProductPurchaseRequest(1, 2.0),
+                new ProductPurchaseRequest(1, 1.0),
+                new ProductPurchaseRequest(3, 4.0)
+        );
+        when(repository.cancelRecordedPurchase("purchase-1")).thenReturn(requests);
+
+        service.cancelPurchase("purchase-1");
+
+        verify(repository).incrementStock(requests);
+        verify(stockLedger, never()).release(any());
+        verifyNoInteractions(productCache);
+        verify(searchIndex).restoreStock(requests);
+    }
+
+    @Test
+    void cancelPurchase_StockLedgerEnabled_ReleasesInMemoryWithoutDatabaseWrite() {
+        List<ProductPurchaseRequest> requests = List.of(new ProductPurchaseRequest(1, 2.0));
+        when(repository.cancelRecordedPurchase("purchase-1")).thenReturn(requests);
+        when(stockLedger.isEnabled()).thenReturn(true);
+
+        service.cancelPurchase("purchase-1");
+
+        verify(stockLedger).release(requests);
+        verify(repository, never()).incrementStock(any());
+    }
+
+    @Test
+    void cancelPurchase_AlreadyCancelledOrNeverMade_GivesNothingBack() {
+        when(repository.cancelRecordedPurchase("purchase-1")).thenReturn(List.of());
+
+        service.cancelPurchase("purchase-1");
+
+        verify(repository, never()).incrementStock(any());
+        verifyNoInteractions(stockLedger, searchIndex);
+    }
+
+    @Test
+    void purchaseProducts_PurchaseIdAlreadyUsed_TakesNoStock() {
+        List<ProductPurchaseRequest> requests = List.of(new ProductPurchaseRequest(1, 2.0));
+        when(repository.recordPurchase("purchase-1", requests)).thenReturn(false);
+
+        assertThatThrownBy(() -> service.purchaseProducts("purchase-1", requests))
+                .isInstanceOf(ProductPurchaseException.class)
+                .hasMessage("Purchase already made or cancelled with ID:: purchase-1");
+
+        verify(repository, never()).decrementStock(any());
+        verifyNoInteractions(stockLedger);
+    }
+
+    @Test
+    void findById_ExistingProduct_OverlaysLiveStockOnCachedDetails() {
+        ProductResponse details = new ProductResponse(1, "Product 1", "Desc 1", null, BigDecimal.valueOf(9.99), 1, "Cat", "CatDesc");
+        when(productCache.findDetails(1)).thenReturn(Optional.of(details));
+        when(repository.findAvailableQuantityById(1)).thenReturn(Optional.of(7.0));
 
         ProductResponse result = service.findById(1);
 
-        assertThat(result).isEqualTo(response);
+        assertThat(result).isEqualTo(details.withAvailableQuantity(7.0));
+        verifyNoInteractions(mapper);
+    }
+
+    @Test
+    void findById_StockLedgerEnabled_ReadsStockFromLedger() {
+        ProductResponse details = new ProductResponse(1, "Product 1", "Desc 1", null, BigDecimal.valueOf(9.99), 1, "Cat", "CatDesc");
+        when(productCache.findDetails(1)).thenReturn(Optional.of(details));
+        when(stockLedger.isEnabled()).thenReturn(true);
+        when(stockLedger.availableQuantity(1)).thenReturn(4.0);
+
+        assertThat(service.findById(1).availableQuantity()).isEqualTo(4.0);
+        verify(repository, never()).findAvailableQuantityById(any());
     }
 
     @Test
     void findById_NonExistent_ThrowsEntityNotFoundException() {
-        when(repository.findById(99)).thenReturn(Optional.empty());
+        when(productCache.findDetails(99)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> service.findById(99))
                 .isInstanceOf(EntityNotFoundException.class);
     }
 
     @Test
-    void findAll_WithProducts_ReturnsMappedList() {
-        Product p1 = buildProduct(1, 10.0, BigDecimal.valueOf(5.0));
-        Product p2 = buildProduct(2, 20.0, BigDecimal.valueOf(10.0));
+    void findAllByIds_ReturnsProjectedResponses() {
+        ProductResponse response = new ProductResponse(1, "Product 1", "Desc 1", 10.0, BigDecimal.valueOf(9.99), 1, "Cat", "CatDesc");
+        when(repository.findResponsesByIds(List.of(1, 99))).thenReturn(List.of(response));
+
+        assertThat(service.findAllByIds(List.of(1, 99))).containsExactly(response);
+        verifyNoInteractions(mapper);
+    }
+
+    @Test
+    void findAll_WithProducts_ReturnsProjectedList() {
         ProductResponse r1 = new ProductResponse(1, "Product 1", "Desc 1", 10.0, BigDecimal.valueOf(5.0), 1, "Cat", "CatDesc");
         ProductResponse r2 = new ProductResponse(2, "Product 2", "Desc 2", 20.0, BigDecimal.valueOf(10.0), 1, "Cat", "CatDesc");
-        when(repository.findAll()).thenReturn(List.of(p1, p2));
-        when(mapper.toProductResponse(p1)).thenReturn(r1);
-        when(mapper.toProductResponse(p2)).thenReturn(r2);
+        when(repository.findAllResponses()).thenReturn(List.of(r1, r2));
 
         List<ProductResponse> result = service.findAll();
 
@@ -180,12 +294,103 @@ class ProductServiceTest {
         assertThat(result).containsExactly(r1, r2);
     }
 
+    @Test
+    void findAll_StockLedgerEnabled_OverlaysStockFromLedger() {
+        ProductResponse r1 = new ProductResponse(1, "Product 1", "Desc 1", 10.0, BigDecimal.valueOf(5.0), 1, "Cat", "CatDesc");
+        ProductResponse r2 = new ProductResponse(2, "Product 2", "Desc 2", 20.0, BigDecimal.valueOf(10.0), 1, "Cat", "CatDesc");
+        when(repository.findAllResponses()).thenReturn(List.of(r1, r2));
+        when(stockLedger.isEnabled()).thenReturn(true);
+        when(stockLedger.availableQuantity(1)).thenReturn(8.0);
+        when(stockLedger.availableQuantity(2)).thenReturn(0.0);
+
+        assertThat(service.findAll()).containsExactly(r1.withAvailableQuantity(8.0), r2.withAvailableQuantity(0.0));
+    }
+
+    @Test
+    void findAllByIds_StockLedgerEnabled_OverlaysStockFromLedger() {
+        ProductResponse response = new ProductResponse(1, "Product 1", "Desc 1", 10.0, BigDecimal.valueOf(9.99), 1, "Cat", "CatDesc");
+        when(repository.findResponsesByIds(List.of(1))).thenReturn(List.of(response));
+        when(stockLedger.isEnabled()).thenReturn(true);
+        when(stockLedger.availableQuantity(1)).thenReturn(3.0);
+
+        assertThat(service.findAllByIds(List.of(1))).containsExactly(response.withAvailableQuantity(3.0));
+    }
+
+    @Test
+    void findPage_StockLedgerEnabled_OverlaysStockFromLedger() {
+        ProductResponse r1 = new ProductResponse(1, "Product 1", "Desc 1", 10.0, BigDecimal.valueOf(5.0), 1, "Cat", "CatDesc");
+        when(repository.findPage(0, null, Limit.of(2))).thenReturn(List.of(r1));
+        when(stockLedger.isEnabled()).thenReturn(true);
+        when(stockLedger.availableQuantity(1)).thenReturn(6.0);
+
+        assertThat(service.findPage(null, 2, null).products()).containsExactly(r1.withAvailableQuantity(6.0));
+    }
+
+    @Test
+    void streamAll_StockLedgerEnabled_OverlaysStockFromLedger() {
+        ProductResponse r1 = new ProductResponse(1, "Product 1", "Desc 1", 10.0, BigDecimal.valueOf(5.0), 1, "Cat", "CatDesc");
+        when(stockLedger.isEnabled()).thenReturn(true);
+        when(stockLedger.availableQuantity(1)).thenReturn(2.0);
+        doAnswer(invocation -> {
+            invocation.<Consumer<ProductResponse>>getArgument(1).accept(r1);
+            return null;
+        }).when(repository).streamCatalogue(eq(7), any());
+        var streamed = new ArrayList<ProductResponse>();
+
+        service.streamAll(7, streamed::add);
+
+        assertThat(streamed).containsExactly(r1.withAvailableQuantity(2.0));
+    }
+
     @Test
     void findAll_Empty_ReturnsEmptyList() {
-        when(repository.findAll()).thenReturn(List.of());
+        when(repository.findAllResponses()).thenReturn(List.of());
 
         List<ProductResponse> result = service.findAll();
 
         assertThat(result).isEmpty();
     }
+
+    @Test
+    void findPage_FullPage_ReturnsLastIdAsCursor() {
+        ProductResponse r1 = new ProductResponse(1, "Product 1", "Desc 1", 10.0, BigDecimal.valueOf(5.0), 1, "Cat", "CatDesc");
+        ProductResponse r2 = new ProductResponse(2, "Product 2", "Desc 2", 20.0, BigDecimal.valueOf(10.0), 1, "Cat", "CatDesc");
+        when(repository.findPage(0, null, Limit.of(2))).thenReturn(List.of(r1, r2));
+
+        ProductPageResponse result = service.findPage(null, 2, null);
+
+        assertThat(result.products()).containsExactly(r1, r2);
+        assertThat(result.nextAfterId()).isEqualTo(2);
+    }
+
+    @Test
+    void findPage_LastPage_ReturnsNullCursor() {
+        ProductResponse r3 = new ProductResponse(3, "Product 3", "Desc 3", 10.0, BigDecimal.valueOf(5.0), 1, "Cat", "CatDesc");
+        when(repository.findPage(2, 1, Limit.of(2))).thenReturn(List.of(r3));
+
+        ProductPageResponse result = service.findPage(2, 2, 1);
+
+        assertThat(result.products()).containsExactly(r3);
+        assertThat(result.nextAfterId()).isNull();
+    }
+
+    @Test
+    void findPage_OversizedRequest_ClampsPageSize() {
+        when(repository.findPage(0, null, Limit.of(500))).thenReturn(List.of());
+
+        ProductPageResponse result = service.findPage(0, 100_000, null);
+
+        assertThat(result.products()).isEmpty();
+        verify(repository).findPage(0, null, Limit.of(500));
+    }
+
+    @Test
+    void streamAll_DelegatesToCursorQuery() {
+        Consumer<ProductResponse> consumer = product -> {
+        };
+
+        service.streamAll(7, consumer);
+
+        verify(repository).streamCatalogue(7, consumer);
+    }
 }
@@ -0,0 +1,116 @@
+package com.pavils.ecommerce.search;
+
+import com.pavils.ecommerce.category.Category;
+import com.pavils.ecommerce.category.CategoryRepository;
+import com.pavils.ecommerce.product.ProductRepository;
+import com.pavils.ecommerce.product.ProductResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Query latency of the search index over a synthetic catalogue of one million products.
+ * Sample time mode reports percentiles; read the p0.99 row of each query.
+ * <p>
+ * No database is involved: the catalogue is generated from a fixed seed and fed to the same
+ * rebuild path that reads the product table on startup.
+ * Run with {@code mvn test-compile} and then this class's {@code main} from the test classpath.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ProductSearchBenchmark {
+
+    private static final int PRODUCTS = 1_000_000;
+    private static final int CATEGORIES = 20;
+
+    private static final String[] ADJECTIVES = {
+            "wireless", "gaming", "ergonomic", "portable", "compact", "premium", "smart", "vintage",
+            "waterproof", "mechanical", "organic", "digital", "classic", "foldable", "rechargeable", "silent"
+    };
+    private static final String[] NOUNS = {
+            "laptop", "mouse", "keyboard", "monitor", "headphones", "speaker", "camera", "lamp",
+            "chair", "desk", "backpack", "bottle", "watch", "charger", "router", "tablet",
+            "novel", "cookbook", "jacket", "sneakers", "blender", "kettle", "drill", "tent"
+    };
+    private static final String[] DETAILS = {
+            "with long battery life", "for home and office", "made from recycled materials",
+            "with two year warranty", "in matte black", "with fast shipping", "for outdoor use",
+            "with adjustable height", "in stainless steel", "for beginners and experts"
+    };
+
+    @Param({"lap", "wireless mouse", "ch", "priceAndCategory"})
+    public String query;
+
+    private ProductSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        var categories = IntStream.rangeClosed(1, CATEGORIES)
+                .mapToObj(id -> Category.builder().id(id).name("Category " + id).description("Generated").build())
+                .toList();
+
+        var productRepository = mock(ProductRepository.class);
+        var categoryRepository = mock(CategoryRepository.class);
+        when(categoryRepository.findAll()).thenReturn(categories);
+        doAnswer(invocation -> {
+            Consumer<ProductResponse> consumer = invocation.getArgument(1);
+            var random = new Random(42);
+            for (int id = 1; id <= PRODUCTS; id++) {
+                var category = categories.get(random.nextInt(CATEGORIES));
+                consumer.accept(new ProductResponse(
+                        id,
+                        ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)] + " " + id,
+                        NOUNS[random.nextInt(NOUNS.length)] + " " + DETAILS[random.nextInt(DETAILS.length)],
+                        (double) random.nextInt(500),
+                        BigDecimal.valueOf(random.nextInt(200_000), 2),
+                        category.getId(),
+                        category.getName(),
+                        category.getDescription()
+                ));
+            }
+            return null;
+        }).when(productRepository).streamCatalogue(isNull(), any());
+
+        index = new ProductSearchIndex(productRepository, categoryRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        index.rebuild();
+    }
+
+    @Benchmark
+    public ProductSearchResponse search() {
+        if (query.equals("priceAndCategory")) {
+            return index.search("smart", 7, new BigDecimal("100.00"), new BigDecimal("250.00"), 20);
+        }
+        return index.search(query, null, null, null, 20);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int readers : new int[]{1, 8}) {
+            new Runner(new OptionsBuilder()
+                    .include(ProductSearchBenchmark.class.getSimpleName())
+                    .threads(readers)
+                    .build())
+                    .run();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.pavils.ecommerce.search;
+
+import com.pavils.ecommerce.category.Category;
+import com.pavils.ecommerce.category.CategoryRepository;
+import com.pavils.ecommerce.product.Product;
+import com.pavils.ecommerce.product.ProductPurchaseRequest;
+import com.pavils.ecommerce.product.ProductPurchaseResponse;
+import com.pavils.ecommerce.product.ProductRepository;
+import com.pavils.ecommerce.product.ProductResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSearchIndexTest {
+
+    private static final Category ELECTRONICS = Category.builder().id(1).name("Electronics").description("Devices").build();
+    private static final Category BOOKS = Category.builder().id(2).name("Books").description("Paper").build();
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        var productRepository = mock(ProductRepository.class);
+        var categoryRepository = mock(CategoryRepository.class);
+        when(categoryRepository.findAll()).thenReturn(List.of(ELECTRONICS, BOOKS));
+        doAnswer(invocation -> {
+            Consumer<ProductResponse> consumer = invocation.getArgument(1);
+            consumer.accept(product(1, "Gaming Laptop", "Fast laptop with RGB keyboard", "1299.99", ELECTRONICS));
+            consumer.accept(product(2, "Wireless Mouse", "Ergonomic mouse", "29.99", ELECTRONICS));
+            consumer.accept(product(3, "Laptop Stand", "Aluminium stand", "49.99", ELECTRONICS));
+            consumer.accept(product(4, "Java Concurrency in Practice", "Book about threads", "45.00", BOOKS));
+            return null;
+        }).when(productRepository).streamCatalogue(isNull(), any());
+
+        index = new ProductSearchIndex(productRepository, categoryRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        index.afterSingletonsInstantiated();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static ProductResponse product(int id, String name, String description, String price, Category category) {
+        return new ProductResponse(id, name, description, 10.0, new BigDecimal(price),
+                category.getId(), category.getName(), category.getDescription());
+    }
+
+    private static List<Integer> ids(ProductSearchResponse response) {
+        return response.products().stream().map(ProductResponse::id).toList();
+    }
+
+    @Test
+    void search_PrefixOfWord_MatchesNameAndDescription() {
+        var response = index.search("lap", null, null, null, 20);
+
+        assertThat(ids(response)).containsExactly(1, 3);
+        assertThat(response.total()).isEqualTo(2);
+    }
+
+    @Test
+    void search_SeveralTokens_RequiresEveryTokenToMatch() {
+        assertThat(ids(index.search("LAPTOP alum", null, null, null, 20))).containsExactly(3);
+        assertThat(ids(index.search("laptop book", null, null, null, 20))).isEmpty();
+    }
+
+    @Test
+    void search_CategoryName_IsSearchable() {
+        assertThat(ids(index.search("books", null, null, null, 20))).containsExactly(4);
+    }
+
+    @Test
+    void search_PriceRange_FiltersInclusiveBounds() {
+        var response = index.search(null, null, new BigDecimal("29.99"), new BigDecimal("49.99"), 20);
+
+        assertThat(ids(response)).containsExactly(2, 3, 4);
+    }
+
+    @Test
+    void search_CategoryFilter_KeepsFacetCountsForOtherCategories() {
+        var response = index.search("", 2, null, new BigDecimal("100"), 20);
+
+        assertThat(ids(response)).containsExactly(4);
+        assertThat(response.total()).isEqualTo(1);
+        assertThat(response.categories()).containsExactly(
+                new CategoryFacet(1, "Electronics", 2),
+                new CategoryFacet(2, "Books", 1)
+        );
+    }
+
+    @Test
+    void search_SizeBelowTotal_TruncatesProductsButCountsAll() {
+        var response = index.search(null, null, null, null, 2);
+
+        assertThat(ids(response)).containsExactly(1, 2);
+        assertThat(response.total()).isEqualTo(4);
+    }
+
+    @Test
+    void index_NewProduct_IsSearchableWithCategoryName() {
+        index.index(Product.builder()
+                .id(9)
+                .name("Mechanical Keyboard")
+                .description("Clicky")
+                .availableQuantity(3.0)
+                .price(new BigDecimal("89.00"))
+                .category(Category.builder().id(1).build())
+                .build());
+
+        var response = index.search("mech", null, null, null, 20);
+
+        assertThat(ids(response)).containsExactly(9);
+        assertThat(response.products().get(0).categoryName()).isEqualTo("Electronics");
+        assertThat(index.size()).isEqualTo(5);
+    }
+
+    @Test
+    void adjustStock_OutsideTransaction_UpdatesQuantityImmediately() {
+        index.adjustStock(List.of(new ProductPurchaseResponse(2, "Wireless Mouse", "Ergonomic mouse", BigDecimal.ONE, 4.0)));
+
+        assertThat(index.search("mouse", null, null, null, 20).products().get(0).availableQuantity()).isEqualTo(6.0);
+    }
+
+    @Test
+    void adjustStock_InsideTransaction_WaitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        index.adjustStock(List.of(new ProductPurchaseResponse(2, "Wireless Mouse", "Ergonomic mouse", BigDecimal.ONE, 4.0)));
+        assertThat(index.search("mouse", null, null, null, 20).products().get(0).availableQuantity()).isEqualTo(10.0);
+
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        assertThat(index.search("mouse", null, null, null, 20).products().get(0).availableQuantity()).isEqualTo(6.0);
+    }
+
+    @Test
+    void restoreStock_CancelledLines_AddsQuantityBack() {
+        index.adjustStock(List.of(new ProductPurchaseResponse(2, "Wireless Mouse", "Ergonomic mouse", BigDecimal.ONE, 4.0)));
+
+        index.restoreStock(List.of(new ProductPurchaseRequest(2, 3.0), new ProductPurchaseRequest(2, 1.0)));
+
+        assertThat(index.search("mouse", null, null, null, 20).products().get(0).availableQuantity()).isEqualTo(10.0);
+    }
+}
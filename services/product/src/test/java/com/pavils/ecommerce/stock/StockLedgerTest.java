@@ -0,0 +1,187 @@
+package com.pavils.ecommerce.stock;
+
+import com.pavils.ecommerce.exception.ProductPurchaseException;
+import com.pavils.ecommerce.product.Product;
+import com.pavils.ecommerce.product.ProductPurchaseRequest;
+import com.pavils.ecommerce.product.ProductPurchaseResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class StockLedgerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private StockLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        ledger = new StockLedger(jdbcTemplate, new TransactionTemplate(mock(PlatformTransactionManager.class)), true);
+        ledger.register(product(1, 10.0));
+        ledger.register(product(2, 5.0));
+    }
+
+    private Product product(int id, double quantity) {
+        return Product.builder()
+                .id(id)
+                .name("Product " + id)
+                .description("Desc " + id)
+                .availableQuantity(quantity)
+                .price(BigDecimal.valueOf(id))
+                .build();
+    }
+
+    @Test
+    void reserve_SufficientStock_DecrementsCountersAndReturnsLines() {
+        List<ProductPurchaseResponse> result = ledger.reserve(List.of(
+                new ProductPurchaseRequest(2, 1.0),
+                new ProductPurchaseRequest(1, 3.0)
+        ));
+
+        assertThat(result).extracting(ProductPurchaseResponse::id).containsExactly(1, 2);
+        assertThat(result).extracting(ProductPurchaseResponse::name).containsExactly("Product 1", "Product 2");
+        assertThat(ledger.availableQuantity(1)).isEqualTo(7.0);
+        assertThat(ledger.availableQuantity(2)).isEqualTo(4.0);
+    }
+
+    @Test
+    void reserve_DuplicateLines_SumsQuantities() {
+        List<ProductPurchaseResponse> result = ledger.reserve(List.of(
+                new ProductPurchaseRequest(1, 3.0),
+                new ProductPurchaseRequest(1, 4.0)
+        ));
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).quantity()).isEqualTo(7.0);
+        assertThat(ledger.availableQuantity(1)).isEqualTo(3.0);
+    }
+
+    @Test
+    void reserve_OneLineInsufficient_ReleasesEarlierLines() {
+        assertThatThrownBy(() -> ledger.reserve(List.of(
+                new ProductPurchaseRequest(1, 3.0),
+                new ProductPurchaseRequest(2, 6.0)
+        )))
+                .isInstanceOf(ProductPurchaseException.class)
+                .hasMessage("Insufficient stock quantity for product with id:: 2");
+
+        assertThat(ledger.availableQuantity(1)).isEqualTo(10.0);
+        assertThat(ledger.availableQuantity(2)).isEqualTo(5.0);
+    }
+
+    @Test
+    void reserve_UnknownProduct_ThrowsWithoutTouchingCounters() {
+        assertThatThrownBy(() -> ledger.reserve(List.of(
+                new ProductPurchaseRequest(1, 3.0),
+                new ProductPurchaseRequest(99, 1.0)
+        )))
+                .isInstanceOf(ProductPurchaseException.class)
+                .hasMessage("One or more products does not exists");
+
+        assertThat(ledger.availableQuantity(1)).isEqualTo(10.0);
+    }
+
+    @Test
+    void reserve_ManyBuyersForLastUnits_NeverOversells() throws Exception {
+        int buyers = 64;
+        var sold = new AtomicInteger();
+        var start = new CountDownLatch(1);
+
+        try (var executor = Executors.newFixedThreadPool(buyers)) {
+            List<Future<?>> futures = IntStream.range(0, buyers)
+                    .<Future<?>>mapToObj(i -> executor.submit(() -> {
+                        start.await();
+                        try {
+                            ledger.reserve(List.of(new ProductPurchaseRequest(1, 1.0)));
+                            sold.incrementAndGet();
+                        } catch (ProductPurchaseException ignored) {
+                            // sold out
+                        }
+                        return null;
+                    }))
+                    .toList();
+            start.countDown();
+            for (var future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(sold.get()).isEqualTo(10);
+        assertThat(ledger.availableQuantity(1)).isZero();
+    }
+
+    @Test
+    void release_AfterReserve_RestoresCountersAndIgnoresUnknownProducts() {
+        ledger.reserve(List.of(new ProductPurchaseRequest(1, 4.0)));
+
+        ledger.release(List.of(
+                new ProductPurchaseRequest(1, 4.0),
+                new ProductPurchaseRequest(99, 1.0)
+        ));
+
+        assertThat(ledger.availableQuantity(1)).isEqualTo(10.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reserveAndRelease_JournalEveryChangeBeforeReturning() {
+        ledger.reserve(List.of(new ProductPurchaseRequest(2, 1.0), new ProductPurchaseRequest(1, 3.0)));
+        ledger.release(List.of(new ProductPurchaseRequest(1, 3.0), new ProductPurchaseRequest(99, 1.0)));
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("insert into stock_journal"), rows.capture());
+        assertThat(rows.getAllValues().get(0)).containsExactly(new Object[]{1, 3.0}, new Object[]{2, 1.0});
+        assertThat(rows.getAllValues().get(1)).containsExactly(new Object[]{1, -3.0});
+    }
+
+    @Test
+    void reserve_JournalWriteFails_GivesTheStockBack() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertThatThrownBy(() -> ledger.reserve(List.of(new ProductPurchaseRequest(1, 3.0))))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+
+        assertThat(ledger.availableQuantity(1)).isEqualTo(10.0);
+    }
+
+    @Test
+    void flush_FoldsTheJournalInOneStatement() {
+        ledger.reserve(List.of(new ProductPurchaseRequest(1, 2.0)));
+        ledger.reserve(List.of(new ProductPurchaseRequest(1, 3.0)));
+
+        ledger.flush();
+
+        verify(jdbcTemplate, times(1)).update(contains("delete from stock_journal"));
+    }
+
+    @Test
+    void flush_Disabled_DoesNothing() {
+        var disabled = new StockLedger(jdbcTemplate, new TransactionTemplate(mock(PlatformTransactionManager.class)), false);
+        disabled.register(product(1, 10.0));
+
+        disabled.flush();
+
+        assertThat(disabled.availableQuantity(1)).isZero();
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,94 @@
+package com.pavils.ecommerce.stock;
+
+import com.pavils.ecommerce.product.Product;
+import com.pavils.ecommerce.product.ProductPurchaseRequest;
+import com.pavils.ecommerce.product.ProductPurchaseResponse;
+import com.pavils.ecommerce.product.ProductStockRepositoryImpl;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reservation throughput of the in-memory ledger against the database purchase path,
+ * with every buyer hitting the same product.
+ * <p>
+ * The database side needs the product schema from docker-compose; override the connection with
+ * {@code -Dbenchmark.jdbc.url}, {@code -Dbenchmark.jdbc.username} and {@code -Dbenchmark.jdbc.password}.
+ * Run with {@code mvn test-compile} and then this class's {@code main} from the test classpath.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockReservationBenchmark {
+
+    private static final double UNLIMITED_STOCK = 1e12;
+
+    private StockLedger ledger;
+    private HikariDataSource dataSource;
+    private ProductStockRepositoryImpl stockRepository;
+    private List<ProductPurchaseRequest> basket;
+
+    @Setup
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/product"));
+        dataSource.setUsername(System.getProperty("benchmark.jdbc.username", "postgres"));
+        dataSource.setPassword(System.getProperty("benchmark.jdbc.password", "0102"));
+        dataSource.setMaximumPoolSize(64);
+
+        var jdbcTemplate = new JdbcTemplate(dataSource);
+        var productId = jdbcTemplate.queryForObject("select min(id) from product", Integer.class);
+        jdbcTemplate.update("update product set available_quantity = ? where id = ?", UNLIMITED_STOCK, productId);
+        stockRepository = new ProductStockRepositoryImpl(jdbcTemplate);
+
+        // Each reservation appends to the stock journal, which takes no lock on the hot product row
+        ledger = new StockLedger(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)), true);
+        ledger.register(Product.builder()
+                .id(productId)
+                .name("Benchmark product")
+                .description("Hot SKU")
+                .price(BigDecimal.ONE)
+                .availableQuantity(UNLIMITED_STOCK)
+                .build());
+
+        basket = List.of(new ProductPurchaseRequest(productId, 1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        new JdbcTemplate(dataSource).update("delete from stock_journal where product_id = ?", basket.get(0).productId());
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<ProductPurchaseResponse> ledgerReserve() {
+        return ledger.reserve(basket);
+    }
+
+    @Benchmark
+    public List<ProductPurchaseResponse> databasePurchase() {
+        return stockRepository.decrementStock(basket);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int buyers : new int[]{1, 8, 64}) {
+            new Runner(new OptionsBuilder()
+                    .include(StockReservationBenchmark.class.getSimpleName())
+                    .threads(buyers)
+                    .build())
+                    .run();
+        }
+    }
+}